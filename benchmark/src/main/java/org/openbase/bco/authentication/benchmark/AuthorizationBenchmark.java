@@ -0,0 +1,246 @@
+package org.openbase.bco.authentication.benchmark;
+
+/*-
+ * #%L
+ * BCO Authentication Benchmark
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.bco.authentication.lib.AuthorizationHelper;
+import org.openbase.bco.authentication.lib.AuthorizationIndex;
+import org.openbase.jul.extension.protobuf.IdentifiableMessage;
+import org.openbase.type.domotic.authentication.PermissionConfigType.PermissionConfig;
+import org.openbase.type.domotic.authentication.PermissionType.Permission;
+import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
+import org.openbase.type.domotic.unit.authorizationgroup.AuthorizationGroupConfigType.AuthorizationGroupConfig;
+import org.openbase.type.domotic.unit.location.LocationConfigType.LocationConfig;
+import org.openbase.type.spatial.PlacementConfigType.PlacementConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of permission checks on a synthetic location tree. The tree has the configured depth and every location
+ * has the configured number of child locations. Every location grants permissions to a few random groups and
+ * read permissions to a residents group. Each group has the configured number of members and the checked user and
+ * client are members of a group with the configured probability. They are always residents, so units placed at
+ * the deepest locations are readable and every check has to evaluate the whole path.
+ * <p>
+ * The fallback benchmarks check units placed at a location missing in the registry, which are resolved by
+ * {@code getLocationUnitConfig} falling back to the root location found by {@code getRootLocationUnitConfig}.
+ * The allocation per call is reported by adding the gc profiler.
+ * <p>
+ * Run with: {@code mvn -P benchmark package && java -jar benchmark/target/benchmarks.jar AuthorizationBenchmark -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorizationBenchmark {
+
+    private static final String USER_ID = "user";
+    private static final String CLIENT_ID = "client";
+    private static final String MISSING_LOCATION_ID = "missingLocation";
+    private static final String RESIDENTS_GROUP_ID = "group0";
+    private static final int GROUP_COUNT = 32;
+    private static final int GROUPS_PER_LOCATION = 4;
+    private static final int UNIT_COUNT = 64;
+
+    /**
+     * Number of location levels below the root location.
+     */
+    @Param({"2", "4", "6"})
+    public int depth;
+
+    /**
+     * Number of child locations of every location which is not a leaf.
+     */
+    @Param({"2", "4"})
+    public int fanOut;
+
+    /**
+     * Number of members of every group.
+     */
+    @Param({"8", "128"})
+    public int groupSize;
+
+    /**
+     * Probability that the checked user and client are members of a group.
+     */
+    @Param({"0.1", "0.5"})
+    public double membershipDensity;
+
+    private Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups;
+    private Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations;
+    private AuthorizationIndex authorizationIndex;
+    private UnitConfig[] unitConfigs;
+    private UnitConfig missingLocationUnitConfig;
+    private UserClientPair userClientPair;
+    private int unitIndex;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        groups = new HashMap<>();
+        locations = new HashMap<>();
+
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            final AuthorizationGroupConfig.Builder groupConfig = AuthorizationGroupConfig.newBuilder();
+            for (int j = 0; j < groupSize; j++) {
+                groupConfig.addMemberId("member" + random.nextInt(groupSize * GROUP_COUNT));
+            }
+            // the checked user and client are always members of the residents group
+            if (i == 0 || random.nextDouble() < membershipDensity) {
+                groupConfig.addMemberId(USER_ID);
+            }
+            if (i == 0 || random.nextDouble() < membershipDensity) {
+                groupConfig.addMemberId(CLIENT_ID);
+            }
+            final UnitConfig groupUnitConfig = UnitConfig.newBuilder().setId("group" + i).setUnitType(UnitType.AUTHORIZATION_GROUP).setAuthorizationGroupConfig(groupConfig).build();
+            groups.put(groupUnitConfig.getId(), new IdentifiableMessage<>(groupUnitConfig));
+        }
+
+        final UnitConfig rootLocation = UnitConfig.newBuilder()
+                .setId("root")
+                .setUnitType(UnitType.LOCATION)
+                .setLocationConfig(LocationConfig.newBuilder().setRoot(true))
+                .setPermissionConfig(createPermissionConfig(random))
+                .build();
+        locations.put(rootLocation.getId(), new IdentifiableMessage<>(rootLocation));
+
+        List<String> levelLocationIdList = new ArrayList<>();
+        levelLocationIdList.add(rootLocation.getId());
+        for (int level = 0; level < depth; level++) {
+            final List<String> childLocationIdList = new ArrayList<>();
+            for (final String parentId : levelLocationIdList) {
+                for (int i = 0; i < fanOut; i++) {
+                    final UnitConfig location = UnitConfig.newBuilder()
+                            .setId(parentId + "/" + i)
+                            .setUnitType(UnitType.LOCATION)
+                            .setLocationConfig(LocationConfig.newBuilder().setRoot(false))
+                            .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(parentId))
+                            .setPermissionConfig(createPermissionConfig(random))
+                            .build();
+                    locations.put(location.getId(), new IdentifiableMessage<>(location));
+                    childLocationIdList.add(location.getId());
+                }
+            }
+            levelLocationIdList = childLocationIdList;
+        }
+
+        unitConfigs = new UnitConfig[UNIT_COUNT];
+        for (int i = 0; i < UNIT_COUNT; i++) {
+            unitConfigs[i] = UnitConfig.newBuilder()
+                    .setId("unit" + i)
+                    .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(levelLocationIdList.get(random.nextInt(levelLocationIdList.size()))))
+                    .setPermissionConfig(createPermissionConfig(random))
+                    .build();
+        }
+        missingLocationUnitConfig = UnitConfig.newBuilder()
+                .setId("missingLocationUnit")
+                .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(MISSING_LOCATION_ID))
+                .setPermissionConfig(createPermissionConfig(random))
+                .build();
+
+        userClientPair = UserClientPair.newBuilder().setUserId(USER_ID).setClientId(CLIENT_ID).build();
+        authorizationIndex = new AuthorizationIndex();
+        authorizationIndex.update(groups, locations);
+    }
+
+    private static PermissionConfig createPermissionConfig(final Random random) {
+        final PermissionConfig.Builder permissionConfig = PermissionConfig.newBuilder()
+                .setOwnerId("member" + random.nextInt(GROUP_COUNT))
+                .setOwnerPermission(Permission.newBuilder().setRead(true).setWrite(true).setAccess(true))
+                .setOtherPermission(Permission.newBuilder().setRead(false).setWrite(false).setAccess(false));
+        for (int i = 0; i < GROUPS_PER_LOCATION; i++) {
+            permissionConfig.addGroupPermissionBuilder()
+                    .setGroupId("group" + random.nextInt(GROUP_COUNT))
+                    .setPermission(Permission.newBuilder().setRead(random.nextBoolean()).setWrite(random.nextBoolean()).setAccess(random.nextBoolean()));
+        }
+        // grant read permissions to the residents group last so that all other group permissions are scanned before
+        permissionConfig.addGroupPermissionBuilder()
+                .setGroupId(RESIDENTS_GROUP_ID)
+                .setPermission(Permission.newBuilder().setRead(true).setWrite(false).setAccess(false));
+        return permissionConfig.build();
+    }
+
+    private UnitConfig nextUnitConfig() {
+        unitIndex = (unitIndex + 1) % UNIT_COUNT;
+        return unitConfigs[unitIndex];
+    }
+
+    @Benchmark
+    public boolean canRead() {
+        return AuthorizationHelper.canRead(nextUnitConfig(), USER_ID, groups, locations);
+    }
+
+    @Benchmark
+    public boolean canWrite() {
+        return AuthorizationHelper.canWrite(nextUnitConfig(), USER_ID, groups, locations);
+    }
+
+    @Benchmark
+    public boolean canReadUserClientPair() {
+        return AuthorizationHelper.canRead(nextUnitConfig(), userClientPair, groups, locations);
+    }
+
+    @Benchmark
+    public Permission getPermission() {
+        return AuthorizationHelper.getPermission(nextUnitConfig(), USER_ID, groups, locations);
+    }
+
+    @Benchmark
+    public Permission getPermissionUserClientPair() {
+        return AuthorizationHelper.getPermission(nextUnitConfig(), userClientPair, groups, locations);
+    }
+
+    @Benchmark
+    public Permission indexGetPermission() {
+        return authorizationIndex.getPermission(nextUnitConfig(), userClientPair);
+    }
+
+    @Benchmark
+    public boolean canReadMissingLocation() {
+        return AuthorizationHelper.canRead(missingLocationUnitConfig, USER_ID, groups, locations);
+    }
+
+    @Benchmark
+    public Permission getPermissionMissingLocation() {
+        return AuthorizationHelper.getPermission(missingLocationUnitConfig, USER_ID, groups, locations);
+    }
+}
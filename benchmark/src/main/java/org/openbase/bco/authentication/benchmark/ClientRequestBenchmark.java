@@ -0,0 +1,105 @@
+package org.openbase.bco.authentication.benchmark;
+
+/*-
+ * #%L
+ * BCO Authentication Benchmark
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.ByteString;
+import org.openbase.bco.authentication.lib.AuthenticationClientHandler;
+import org.openbase.bco.authentication.lib.EncryptionHelper;
+import org.openbase.bco.authentication.lib.SessionKey;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.extension.type.processing.TimestampProcessor;
+import org.openbase.type.domotic.authentication.AuthenticatorType.Authenticator;
+import org.openbase.type.domotic.authentication.TicketAuthenticatorWrapperType.TicketAuthenticatorWrapper;
+import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the initialization of a client request, i.e. updating the timestamp of the authenticator
+ * of the current session. Compares decrypting the stored authenticator before encrypting it again
+ * with encrypting an authenticator which is kept in plaintext, both with a single and with multiple threads
+ * sharing the same session.
+ * <p>
+ * Run with: {@code mvn -P benchmark package && java -jar benchmark/target/benchmarks.jar ClientRequestBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientRequestBenchmark {
+
+    private SessionKey sessionKey;
+    private Authenticator authenticator;
+    private TicketAuthenticatorWrapper ticketAuthenticatorWrapper;
+
+    @Setup
+    public void setup() throws CouldNotPerformException {
+        sessionKey = SessionKey.generate();
+        authenticator = Authenticator.newBuilder()
+                .setUserClientPair(UserClientPair.newBuilder().setUserId("user").setClientId("client"))
+                .setTimestamp(TimestampProcessor.getCurrentTimestamp())
+                .build();
+
+        // the ticket is opaque for the client so any encrypted content of a similar size is representative
+        final ByteString ticket = EncryptionHelper.encryptSymmetric(authenticator, EncryptionHelper.generateKey());
+        ticketAuthenticatorWrapper = TicketAuthenticatorWrapper.newBuilder()
+                .setTicket(ticket)
+                .setAuthenticator(sessionKey.encrypt(authenticator))
+                .build();
+    }
+
+    @Benchmark
+    public TicketAuthenticatorWrapper decryptAndEncryptAuthenticator() throws CouldNotPerformException {
+        return AuthenticationClientHandler.initServiceServerRequest(sessionKey, ticketAuthenticatorWrapper);
+    }
+
+    @Benchmark
+    public TicketAuthenticatorWrapper encryptPlaintextAuthenticator() throws CouldNotPerformException {
+        return AuthenticationClientHandler.initServiceServerRequest(sessionKey, authenticator, ticketAuthenticatorWrapper);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TicketAuthenticatorWrapper decryptAndEncryptAuthenticatorConcurrent() throws CouldNotPerformException {
+        return AuthenticationClientHandler.initServiceServerRequest(sessionKey, ticketAuthenticatorWrapper);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TicketAuthenticatorWrapper encryptPlaintextAuthenticatorConcurrent() throws CouldNotPerformException {
+        return AuthenticationClientHandler.initServiceServerRequest(sessionKey, authenticator, ticketAuthenticatorWrapper);
+    }
+}
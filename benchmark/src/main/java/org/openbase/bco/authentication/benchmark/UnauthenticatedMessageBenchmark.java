@@ -0,0 +1,98 @@
+package org.openbase.bco.authentication.benchmark;
+
+/*-
+ * #%L
+ * BCO Authentication Benchmark
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.ByteString;
+import org.openbase.bco.authentication.lib.AuthenticatedServiceProcessor;
+import org.openbase.bco.authentication.lib.MessageParserRegistry;
+import org.openbase.bco.authentication.lib.com.AuthenticatedMessageProcessor;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
+import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of processing messages sent without a login, which are transmitted as plain byte strings.
+ * Compares parsing by invoking {@code parseFrom} by reflection, as done before the parser registry, with the
+ * registry itself and with the server and client processors using it.
+ * <p>
+ * Run with: {@code mvn -P benchmark package && java -jar benchmark/target/benchmarks.jar UnauthenticatedMessageBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnauthenticatedMessageBenchmark {
+
+    private AuthenticatedValue authenticatedValue;
+    private ByteString serializedMessage;
+
+    @Setup
+    public void setup() {
+        final UserClientPair userClientPair = UserClientPair.newBuilder().setUserId("user").setClientId("client").build();
+        serializedMessage = userClientPair.toByteString();
+        authenticatedValue = AuthenticatedValue.newBuilder().setValue(serializedMessage).build();
+    }
+
+    @Benchmark
+    public UserClientPair reflectiveParseFrom() throws Exception {
+        final Method parseFrom = UserClientPair.class.getMethod("parseFrom", ByteString.class);
+        return (UserClientPair) parseFrom.invoke(null, serializedMessage);
+    }
+
+    @Benchmark
+    public UserClientPair registryParseFrom() throws CouldNotPerformException {
+        return MessageParserRegistry.parseFrom(serializedMessage, UserClientPair.class);
+    }
+
+    @Benchmark
+    public AuthenticatedValue serverAuthenticatedAction() throws CouldNotPerformException {
+        return AuthenticatedServiceProcessor.authenticatedAction(authenticatedValue, UserClientPair.class, (message, authenticationBaseData) -> message);
+    }
+
+    @Benchmark
+    public UserClientPair clientDataFromAuthenticatedValue() throws CouldNotPerformException {
+        return AuthenticatedMessageProcessor.getDataFromAuthenticatedValue(authenticatedValue, null, UserClientPair.class);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public AuthenticatedValue serverAuthenticatedActionConcurrent() throws CouldNotPerformException {
+        return AuthenticatedServiceProcessor.authenticatedAction(authenticatedValue, UserClientPair.class, (message, authenticationBaseData) -> message);
+    }
+}
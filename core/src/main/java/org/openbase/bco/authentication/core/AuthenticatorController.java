@@ -27,9 +27,11 @@ import org.apache.commons.lang.RandomStringUtils;
 import org.openbase.bco.authentication.lib.*;
 import org.openbase.bco.authentication.lib.AuthenticatedServiceProcessor.InternalIdentifiedProcessable;
 import org.openbase.bco.authentication.lib.AuthenticatedServiceProcessor.TicketValidator;
+import org.openbase.bco.authentication.lib.exception.AuthenticationErrorCode;
 import org.openbase.bco.authentication.lib.exception.SessionExpiredException;
 import org.openbase.bco.authentication.lib.jp.JPAuthenticationScope;
 import org.openbase.bco.authentication.lib.jp.JPCredentialsDirectory;
+import org.openbase.bco.authentication.lib.jp.JPKeyRotationInterval;
 import org.openbase.bco.authentication.lib.jp.JPSessionTimeout;
 import org.openbase.jps.core.JPService;
 import org.openbase.jps.exception.JPNotAvailableException;
@@ -45,6 +47,7 @@ import org.openbase.jul.extension.rsb.scope.ScopeTransformer;
 import org.openbase.jul.iface.Launchable;
 import org.openbase.jul.iface.VoidInitializable;
 import org.openbase.jul.schedule.GlobalCachedExecutorService;
+import org.openbase.jul.schedule.GlobalScheduledExecutorService;
 import org.openbase.jul.schedule.WatchDog;
 import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
 import org.openbase.type.domotic.authentication.LoginCredentialsChangeType.LoginCredentialsChange;
@@ -61,8 +64,11 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.security.Key;
 import java.security.KeyPair;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:thuxohl@techfak.uni-bielefeld.de">Tamino Huxohl</a>
@@ -90,8 +96,17 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
 
     private final long ticketValidityTime;
 
-    private byte[] ticketGrantingServiceSecretKey = null;
-    private byte[] serviceServerSecretKey;
+    /**
+     * Secret key of the service server used if none is stored yet.
+     */
+    private final byte[] serviceServerSecretKey;
+    /**
+     * Rotating keys of the TGS and the SS. The initial key of each ring is the secret key stored before
+     * key rotation was introduced.
+     */
+    private KeyRing ticketGrantingServiceKeyRing = null;
+    private KeyRing serviceServerKeyRing = null;
+    private ScheduledFuture<?> keyRotationTask;
 
     public AuthenticatorController() throws InitializationException {
         this(new CredentialStore(), EncryptionHelper.generateKey());
@@ -148,9 +163,9 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
         }
 
         try {
-            ticketGrantingServiceSecretKey = credentialStore.getCredentials(TICKET_GRANTING_KEY).getCredentials().toByteArray();
-            serviceServerSecretKey = credentialStore.getCredentials(SERVICE_SERVER_SECRET_KEY).getCredentials().toByteArray();
-        } catch (NotAvailableException ex) {
+            ticketGrantingServiceKeyRing = KeyRing.decode(credentialStore.getCredentials(TICKET_GRANTING_KEY).getCredentials().toByteArray());
+            serviceServerKeyRing = KeyRing.decode(credentialStore.getCredentials(SERVICE_SERVER_SECRET_KEY).getCredentials().toByteArray());
+        } catch (CouldNotPerformException ex) {
             throw new InitializationException(this, ex);
         }
     }
@@ -182,10 +197,30 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
         }
 
         serverWatchDog.activate();
+
+        try {
+            final long keyRotationInterval = JPService.getProperty(JPKeyRotationInterval.class).getValue();
+            if (keyRotationInterval != JPKeyRotationInterval.DISABLED && keyRotationTask == null) {
+                keyRotationTask = GlobalScheduledExecutorService.scheduleAtFixedRate(() -> {
+                    try {
+                        rotateKeys();
+                    } catch (CouldNotPerformException ex) {
+                        ExceptionPrinter.printHistory("Could not rotate keys", ex, LOGGER, LogLevel.WARN);
+                    }
+                }, keyRotationInterval, keyRotationInterval, TimeUnit.MILLISECONDS);
+            }
+        } catch (JPNotAvailableException ex) {
+            // property is not registered so keys are not rotated
+        }
     }
 
     @Override
     public void deactivate() throws CouldNotPerformException, InterruptedException {
+        if (keyRotationTask != null) {
+            keyRotationTask.cancel(false);
+            keyRotationTask = null;
+        }
+
         if (serverWatchDog != null) {
             serverWatchDog.deactivate();
         }
@@ -210,6 +245,24 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
         }
     }
 
+    /**
+     * Rotate the keys of the TGS and the SS. Previous keys are accepted for one more validity window of a ticket,
+     * so tickets move to the new keys when they are validated the next time instead of being rejected at once.
+     * Service servers request the new keys when they receive a ticket encrypted with one of them.
+     * The rotated rings are stored so that tickets stay valid if the authenticator restarts.
+     *
+     * @throws CouldNotPerformException if the rotated keys cannot be stored.
+     */
+    public void rotateKeys() throws CouldNotPerformException {
+        final long retentionTime = ticketValidityTime + AuthenticationServerHandler.MAX_TIME_DIFF_SERVER_CLIENT;
+        final int ticketGrantingKeyId = ticketGrantingServiceKeyRing.rotate(retentionTime);
+        final int serviceServerKeyId = serviceServerKeyRing.rotate(retentionTime);
+
+        credentialStore.addCredentials(TICKET_GRANTING_KEY, ticketGrantingServiceKeyRing.encode(), false, true);
+        credentialStore.addCredentials(SERVICE_SERVER_SECRET_KEY, serviceServerKeyRing.encode(), false, true);
+        LOGGER.info("Rotated ticket granting key to [" + ticketGrantingKeyId + "] and service server key to [" + serviceServerKeyId + "]");
+    }
+
     /**
      * Test if the initial password needs to be generated. This is the case if only three entries are in the credential
      * credentialStore. One for the service server client, one for the ticket granting key and one for the service server secret
@@ -249,12 +302,16 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
                     }
                 }
 
+                // resolve keys through the store so that they are only parsed once per credentials
+                final Key userKey = (userCredentials == null) ? null : credentialStore.getEncryptionKey(userCredentials);
+                final Key clientKey = (clientCredentials == null) ? null : credentialStore.getEncryptionKey(clientCredentials);
+
                 // handle request
-                return AuthenticationServerHandler.handleKDCRequest(userClientPair, userCredentials, clientCredentials, ticketGrantingServiceSecretKey, ticketValidityTime);
+                return AuthenticationServerHandler.handleKDCRequest(userClientPair, userKey, clientKey, ticketGrantingServiceKeyRing, ticketValidityTime);
             } catch (NotAvailableException ex) {
                 ExceptionPrinter.printHistory(ex, LOGGER, LogLevel.WARN);
                 ExceptionReporter.getInstance().report(ex);
-                throw new NotAvailableException(ex.getMessage());
+                throw new NotAvailableException(AuthenticationErrorCode.tagMessage(ex, AuthenticationErrorCode.NOT_AVAILABLE));
             } catch (CouldNotPerformException ex) {
                 if (ex instanceof NotSupportedException) {
                     throw ex;
@@ -276,11 +333,11 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
     public Future<TicketSessionKeyWrapper> requestClientServerTicket(final TicketAuthenticatorWrapper ticketAuthenticatorWrapper) {
         return GlobalCachedExecutorService.submit(() -> {
             try {
-                return AuthenticationServerHandler.handleTGSRequest(ticketGrantingServiceSecretKey, serviceServerSecretKey, ticketAuthenticatorWrapper, ticketValidityTime);
+                return AuthenticationServerHandler.handleTGSRequest(ticketGrantingServiceKeyRing, serviceServerKeyRing, ticketAuthenticatorWrapper, ticketValidityTime);
             } catch (CouldNotPerformException ex) {
                 ExceptionPrinter.printHistory(ex, LOGGER, LogLevel.WARN);
                 ExceptionReporter.getInstance().report(ex);
-                throw new RejectedException(ex.getMessage());
+                throw new RejectedException(AuthenticationErrorCode.tagMessage(ex, AuthenticationErrorCode.REJECTED));
             }
         });
     }
@@ -297,7 +354,7 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
         return GlobalCachedExecutorService.submit(() -> {
             try {
                 // validate ticket
-                final AuthenticationBaseData authenticationBaseData = AuthenticationServerHandler.handleSSRequest(serviceServerSecretKey, ticketAuthenticatorWrapper, ticketValidityTime);
+                final AuthenticationBaseData authenticationBaseData = AuthenticationServerHandler.handleSSRequest(serviceServerKeyRing, ticketAuthenticatorWrapper, ticketValidityTime);
                 // validate that user and client still exists so that no user can be logged in after being removed
                 final UserClientPair pair = authenticationBaseData.getUserClientPair();
                 if (!pair.getUserId().isEmpty() && !credentialStore.hasEntry(pair.getUserId())) {
@@ -311,11 +368,11 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
                 // return updated ticket wrapper
                 return authenticationBaseData.getTicketAuthenticatorWrapper();
             } catch (SessionExpiredException ex) {
-                throw ex;
+                throw new SessionExpiredException(AuthenticationErrorCode.SESSION_EXPIRED.tag(ex.getMessage()));
             } catch (CouldNotPerformException ex) {
                 ExceptionPrinter.printHistory(ex, LOGGER, LogLevel.WARN);
                 ExceptionReporter.getInstance().report(ex);
-                throw new RejectedException(ex.getMessage());
+                throw new RejectedException(AuthenticationErrorCode.tagMessage(ex, AuthenticationErrorCode.REJECTED));
             }
         });
     }
@@ -326,7 +383,7 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
      * @return an object capable of verifying tickets,
      */
     private TicketValidator getTicketValidator() {
-        return authenticatedValue -> AuthenticationServerHandler.handleSSRequest(serviceServerSecretKey, authenticatedValue.getTicketAuthenticatorWrapper(), ticketValidityTime);
+        return authenticatedValue -> AuthenticationServerHandler.handleSSRequest(serviceServerKeyRing, authenticatedValue.getTicketAuthenticatorWrapper(), ticketValidityTime);
     }
 
     /**
@@ -405,7 +462,7 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
 
             // validate that only admins can register new admins
             if (loginCredentials.getAdmin() && !credentialStore.isAdmin(authenticationBaseData.getUserClientPair().getUserId())) {
-                throw new PermissionDeniedException("You are not permitted to register an admin.");
+                throw new PermissionDeniedException(AuthenticationErrorCode.PERMISSION_DENIED.tag("You are not permitted to register an admin."));
             }
 
             // do not allow overwriting of existing users
@@ -435,13 +492,13 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
             // if the user which is logged in differs from the user to be removed the logged in user has to be an admin
             if (!idToBeRemoved.equals(authenticationBaseData.getUserClientPair().getUserId())) {
                 if (!credentialStore.isAdmin(authenticationBaseData.getUserClientPair().getUserId())) {
-                    throw new PermissionDeniedException("You are not allowed to perform this action");
+                    throw new PermissionDeniedException(AuthenticationErrorCode.PERMISSION_DENIED.tag("You are not allowed to perform this action"));
                 }
             }
 
             // make sure that if an admin is removed it it not the last one
             if (credentialStore.isAdmin(idToBeRemoved) && credentialStore.getAdminCount() <= 1) {
-                throw new PermissionDeniedException("The last admin cannot remove itself");
+                throw new PermissionDeniedException(AuthenticationErrorCode.PERMISSION_DENIED.tag("The last admin cannot remove itself"));
             }
 
             // remove user and return id
@@ -462,7 +519,7 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
         return GlobalCachedExecutorService.submit(() -> AuthenticatedServiceProcessor.authenticatedAction(authenticatedValue, LoginCredentials.class, getTicketValidator(), (InternalIdentifiedProcessable<LoginCredentials, Serializable>) (loginCredentials, authenticationBaseData) -> {
             // only admins can change admin flags
             if (!credentialStore.isAdmin(authenticationBaseData.getUserClientPair().getUserId())) {
-                throw new PermissionDeniedException("You are not permitted to perform this action.");
+                throw new PermissionDeniedException(AuthenticationErrorCode.PERMISSION_DENIED.tag("You are not permitted to perform this action."));
             }
 
             // don't allow administrators to change administrator status of themselves
@@ -497,13 +554,15 @@ public class AuthenticatorController implements AuthenticationService, Launchabl
 
                 AuthenticatedValue.Builder authenticatedValue = AuthenticatedValue.newBuilder();
                 authenticatedValue.setTicketAuthenticatorWrapper(authenticationBaseData.getTicketAuthenticatorWrapper());
-                authenticatedValue.setValue(EncryptionHelper.encryptSymmetric(this.serviceServerSecretKey, authenticationBaseData.getSessionKey()));
+                // the whole key ring is distributed so that the service server accepts tickets of all retained keys,
+                // but only after a rotation so that service servers without key rotation support keep working
+                authenticatedValue.setValue(EncryptionHelper.encryptSymmetric(serviceServerKeyRing.encodeCompatible(), authenticationBaseData.getSessionKey()));
 
                 return authenticatedValue.build();
             } catch (CouldNotPerformException ex) {
                 ExceptionPrinter.printHistory(ex, LOGGER, LogLevel.WARN);
                 ExceptionReporter.getInstance().report(ex);
-                throw new RejectedException(ex.getMessage());
+                throw new RejectedException(AuthenticationErrorCode.tagMessage(ex, AuthenticationErrorCode.REJECTED));
             }
         });
     }
@@ -22,6 +22,9 @@ package org.openbase.bco.authentication.lib;
  * #L%
  */
 
+import org.openbase.bco.authentication.lib.StoreChange.ChangeType;
+import org.openbase.bco.authentication.lib.StoreChangeStream.Subscription;
+import org.openbase.bco.authentication.lib.iface.StoreChangeListener;
 import org.openbase.bco.authentication.lib.jp.JPCredentialsDirectory;
 import org.openbase.jps.core.JPService;
 import org.openbase.jps.exception.JPNotAvailableException;
@@ -32,6 +35,7 @@ import org.openbase.jul.exception.printer.ExceptionPrinter;
 import org.openbase.jul.exception.printer.LogLevel;
 import org.openbase.jul.iface.Shutdownable;
 import org.openbase.jul.processing.FileProcessor;
+import org.openbase.jul.schedule.SyncObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,12 +44,17 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Abstract class for a protected store. Protected means that the file the data of this
  * store is serialized to will only grant the executing user read and write permissions.
  * Currently this store manages an internal map with strings as keys/ids and arbitrary
  * data types as values. This class also handles loading and saving of the store.
+ * <p>
+ * All modifications of the store are published as an ordered change stream which can be subscribed
+ * via {@link #subscribe(StoreChangeListener, long)}. Modifications are serialized by an internal lock
+ * while reading entries does not block.
  *
  * @param <DT>  the internal data type handled by this store
  * @param <SDT> the data type the internal map is converted to/from for de-/serialization
@@ -56,8 +65,10 @@ public abstract class AbstractProtectedStore<DT, SDT> implements Shutdownable {
 
     protected Logger logger = LoggerFactory.getLogger(getClass());
 
+    private final SyncObject storeLock = new SyncObject("ProtectedStoreLock");
     private final Map<String, DT> map;
     private final FileProcessor<SDT> fileProcessor;
+    private final StoreChangeStream<DT> changeStream;
 
     private File storeFile;
 
@@ -68,7 +79,8 @@ public abstract class AbstractProtectedStore<DT, SDT> implements Shutdownable {
      */
     public AbstractProtectedStore(final FileProcessor<SDT> fileProcessor) {
         this.fileProcessor = fileProcessor;
-        this.map = new HashMap<>();
+        this.map = new ConcurrentHashMap<>();
+        this.changeStream = new StoreChangeStream<>(this::getSnapshot);
     }
 
     /**
@@ -104,14 +116,19 @@ public abstract class AbstractProtectedStore<DT, SDT> implements Shutdownable {
             saveStore();
         }
 
-        // clear existing entries.
-        map.clear();
+        synchronized (storeLock) {
+            // clear existing entries.
+            map.clear();
 
-        try {
-            // load from file
-            load(fileProcessor.deserialize(storeFile), map);
-        } catch (ClassCastException ex) {
-            throw new CouldNotPerformException("Could not load store from file[" + storeFile.getAbsolutePath() + "]");
+            try {
+                // load from file
+                load(fileProcessor.deserialize(storeFile), map);
+            } catch (ClassCastException ex) {
+                throw new CouldNotPerformException("Could not load store from file[" + storeFile.getAbsolutePath() + "]");
+            } finally {
+                // entries have been replaced so every listener has to be resynchronized
+                changeStream.invalidate();
+            }
         }
     }
 
@@ -119,11 +136,13 @@ public abstract class AbstractProtectedStore<DT, SDT> implements Shutdownable {
      * Stores the internal map into the store file.
      */
     private void saveStore() {
-        try {
-            // save into file
-            fileProcessor.serialize(save(map), storeFile);
-        } catch (CouldNotPerformException ex) {
-            ExceptionPrinter.printHistory(ex, logger, LogLevel.ERROR);
+        synchronized (storeLock) {
+            try {
+                // save into file
+                fileProcessor.serialize(save(map), storeFile);
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory(ex, logger, LogLevel.ERROR);
+            }
         }
     }
 
@@ -157,8 +176,9 @@ public abstract class AbstractProtectedStore<DT, SDT> implements Shutdownable {
      * @throws NotAvailableException if no entry for the id exists
      */
     public DT getEntry(final String id) throws NotAvailableException {
-        if (hasEntry(id)) {
-            return map.get(id);
+        final DT value = map.get(id);
+        if (value != null) {
+            return value;
         }
 
         throw new NotAvailableException("Entry with key[" + id + "]");
@@ -170,10 +190,37 @@ public abstract class AbstractProtectedStore<DT, SDT> implements Shutdownable {
      * @param id the id of the entry to remove
      */
     public void removeEntry(final String id) {
-        if (this.hasEntry(id)) {
-            this.map.remove(id);
+        synchronized (storeLock) {
+            final DT removedValue = map.remove(id);
+            if (removedValue != null) {
+                changeStream.publish(ChangeType.REMOVED, id, removedValue);
+            }
+            saveStore();
+        }
+    }
+
+    /**
+     * Removes all given entries from the store if existent and save once afterwards.
+     *
+     * @param ids the ids of the entries to remove
+     *
+     * @return the number of entries which have been removed
+     */
+    public int removeEntries(final Collection<String> ids) {
+        int removedCount = 0;
+        synchronized (storeLock) {
+            for (final String id : ids) {
+                final DT removedValue = map.remove(id);
+                if (removedValue != null) {
+                    changeStream.publish(ChangeType.REMOVED, id, removedValue);
+                    removedCount++;
+                }
+            }
+            if (removedCount > 0) {
+                saveStore();
+            }
         }
-        this.saveStore();
+        return removedCount;
     }
 
     /**
@@ -184,8 +231,11 @@ public abstract class AbstractProtectedStore<DT, SDT> implements Shutdownable {
      * @param value the new value for the id
      */
     public void addEntry(final String id, final DT value) {
-        map.put(id, value);
-        this.saveStore();
+        synchronized (storeLock) {
+            final DT previousValue = map.put(id, value);
+            changeStream.publish(previousValue == null ? ChangeType.ADDED : ChangeType.UPDATED, id, value);
+            saveStore();
+        }
     }
 
     /**
@@ -206,15 +256,64 @@ public abstract class AbstractProtectedStore<DT, SDT> implements Shutdownable {
         return map.size();
     }
 
+    /**
+     * Create a snapshot of all entries together with the sequence number of the last change it contains.
+     *
+     * @return a snapshot of the store
+     */
+    public StoreSnapshot<DT> getSnapshot() {
+        synchronized (storeLock) {
+            return new StoreSnapshot<>(changeStream.getSequenceNumber(), map);
+        }
+    }
+
+    /**
+     * Get the sequence number of the last change of this store.
+     *
+     * @return the current sequence number
+     */
+    public long getSequenceNumber() {
+        return changeStream.getSequenceNumber();
+    }
+
+    /**
+     * Subscribe to all changes of this store following the given sequence number.
+     * Changes are delivered asynchronously and in order. If the requested changes are not buffered anymore
+     * the listener is resynchronized by a snapshot first.
+     *
+     * @param listener       the listener notified about changes
+     * @param sequenceNumber the sequence number of the last change already known to the listener,
+     *                       or {@link StoreChangeStream#SNAPSHOT} to start with a snapshot
+     *
+     * @return the subscription which can be used to cancel it
+     */
+    public Subscription subscribe(final StoreChangeListener<DT> listener, final long sequenceNumber) {
+        return changeStream.subscribe(listener, sequenceNumber);
+    }
+
+    /**
+     * Subscribe to all changes of this store starting with a snapshot of the current state.
+     *
+     * @param listener the listener notified about changes
+     *
+     * @return the subscription which can be used to cancel it
+     */
+    public Subscription subscribe(final StoreChangeListener<DT> listener) {
+        return subscribe(listener, StoreChangeStream.SNAPSHOT);
+    }
+
     /**
      * Shutdown the store by saving it.
      */
     @Override
     public void shutdown() {
-        if (JPService.testMode()) {
-            map.clear();
+        synchronized (storeLock) {
+            if (JPService.testMode()) {
+                map.clear();
+                changeStream.invalidate();
+            }
+            saveStore();
         }
-        saveStore();
     }
 
     /**
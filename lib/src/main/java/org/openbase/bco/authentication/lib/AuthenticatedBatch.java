@@ -0,0 +1,101 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Batch of messages sent with a single authenticated request.
+ * <p>
+ * The batch is encrypted as a whole with the session key and sent as the value of one authenticated value,
+ * so the ticket of the request is only verified once for all messages, see
+ * {@link AuthenticatedServiceProcessor#authenticatedBatchAction(org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue, Class, AuthenticatedServiceProcessor.InternalIdentifiedProcessable)}.
+ * <p>
+ * The number of messages is serialized in front of the messages, so a batch exceeding
+ * {@link AuthenticatedServiceProcessor#MAX_BATCH_SIZE} is rejected before any of its messages is deserialized.
+ */
+public final class AuthenticatedBatch implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private transient ArrayList<Serializable> messageList;
+
+    /**
+     * Create a batch of messages.
+     *
+     * @param messageList the messages in the order in which they are processed.
+     */
+    public AuthenticatedBatch(final List<? extends Serializable> messageList) {
+        this.messageList = new ArrayList<>(messageList);
+    }
+
+    /**
+     * Get the messages of the batch.
+     *
+     * @return an unmodifiable list of the messages.
+     */
+    public List<Serializable> getMessageList() {
+        return Collections.unmodifiableList(messageList);
+    }
+
+    /**
+     * Get the number of messages in the batch.
+     *
+     * @return the number of messages.
+     */
+    public int size() {
+        return messageList.size();
+    }
+
+    private void writeObject(final ObjectOutputStream objectOutputStream) throws IOException {
+        objectOutputStream.defaultWriteObject();
+        objectOutputStream.writeInt(messageList.size());
+        for (final Serializable message : messageList) {
+            objectOutputStream.writeObject(message);
+        }
+    }
+
+    private void readObject(final ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        objectInputStream.defaultReadObject();
+        final int size = objectInputStream.readInt();
+        if (size < 0 || size > AuthenticatedServiceProcessor.MAX_BATCH_SIZE) {
+            throw new InvalidObjectException("Batch size[" + size + "] exceeds the maximum of " + AuthenticatedServiceProcessor.MAX_BATCH_SIZE);
+        }
+
+        messageList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final Object message = objectInputStream.readObject();
+            if (message != null && !(message instanceof Serializable)) {
+                throw new InvalidObjectException("Message[" + message.getClass().getSimpleName() + "] of batch is not serializable");
+            }
+            messageList.add((Serializable) message);
+        }
+    }
+}
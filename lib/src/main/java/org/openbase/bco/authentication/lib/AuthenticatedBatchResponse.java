@@ -0,0 +1,164 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.bco.authentication.lib.exception.AuthenticationErrorCode;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.PermissionDeniedException;
+import org.openbase.jul.exception.RejectedException;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Response to an {@link AuthenticatedBatch} containing the result or the error of every message of the batch
+ * in the order of the batch. A failing message does not fail the other messages of its batch.
+ */
+public final class AuthenticatedBatchResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<Item> itemList;
+
+    /**
+     * Create an empty response.
+     *
+     * @param expectedSize the number of messages of the batch.
+     */
+    public AuthenticatedBatchResponse(final int expectedSize) {
+        this.itemList = new ArrayList<>(expectedSize);
+    }
+
+    /**
+     * Add the result of the next message.
+     *
+     * @param result the result, which may be null.
+     */
+    public void addResult(final Serializable result) {
+        itemList.add(new Item(result, null));
+    }
+
+    /**
+     * Add the error of the next message. The message of the error is tagged with its error code, so that
+     * the client can recreate an exception of the same kind.
+     *
+     * @param error the error.
+     */
+    public void addError(final CouldNotPerformException error) {
+        itemList.add(new Item(null, AuthenticationErrorCode.tagMessage(error, resolveErrorCode(error))));
+    }
+
+    /**
+     * Get the number of results.
+     *
+     * @return the number of results.
+     */
+    public int size() {
+        return itemList.size();
+    }
+
+    /**
+     * Check if the message at an index has been processed successfully.
+     *
+     * @param index the index of the message in the batch.
+     *
+     * @return true if the message has been processed successfully.
+     */
+    public boolean isSuccessful(final int index) {
+        return itemList.get(index).errorMessage == null;
+    }
+
+    /**
+     * Get the error message of the message at an index.
+     *
+     * @param index the index of the message in the batch.
+     *
+     * @return the error message tagged with its error code.
+     *
+     * @throws NotAvailableException if the message has been processed successfully.
+     */
+    public String getErrorMessage(final int index) throws NotAvailableException {
+        final String errorMessage = itemList.get(index).errorMessage;
+        if (errorMessage == null) {
+            throw new NotAvailableException("Error message of batch item[" + index + "]");
+        }
+        return errorMessage;
+    }
+
+    /**
+     * Get the result of the message at an index.
+     *
+     * @param index       the index of the message in the batch.
+     * @param resultClass the class of the result.
+     * @param <T>         the type of the result.
+     *
+     * @return the result, which may be null if the executed action does not return anything.
+     *
+     * @throws CouldNotPerformException if processing the message failed. The exception is of the type belonging to
+     *                                  the error code of the failure and its message does not contain the marker.
+     */
+    public <T> T getResult(final int index, final Class<T> resultClass) throws CouldNotPerformException {
+        final Item item = itemList.get(index);
+        if (item.errorMessage != null) {
+            throw AuthenticationErrorCode.resolve(item.errorMessage).toException(item.errorMessage);
+        }
+
+        try {
+            return resultClass.cast(item.result);
+        } catch (ClassCastException ex) {
+            throw new CouldNotPerformException("Result of batch item[" + index + "] is not of type[" + resultClass.getSimpleName() + "]", ex);
+        }
+    }
+
+    private static AuthenticationErrorCode resolveErrorCode(final CouldNotPerformException error) {
+        final AuthenticationErrorCode errorCode = AuthenticationErrorCode.resolve(error);
+        if (errorCode != AuthenticationErrorCode.UNKNOWN) {
+            return errorCode;
+        }
+
+        // errors of the action performed by the server are usually not tagged
+        if (error instanceof PermissionDeniedException) {
+            return AuthenticationErrorCode.PERMISSION_DENIED;
+        } else if (error instanceof RejectedException) {
+            return AuthenticationErrorCode.REJECTED;
+        } else if (error instanceof NotAvailableException) {
+            return AuthenticationErrorCode.NOT_AVAILABLE;
+        }
+        return AuthenticationErrorCode.UNKNOWN;
+    }
+
+    private static final class Item implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Serializable result;
+        private final String errorMessage;
+
+        private Item(final Serializable result, final String errorMessage) {
+            this.result = result;
+            this.errorMessage = errorMessage;
+        }
+    }
+}
@@ -22,17 +22,24 @@ package org.openbase.bco.authentication.lib;
  * #L%
  */
 
+import com.google.protobuf.ByteString;
 import org.openbase.bco.authentication.lib.AuthenticationClientHandler.TicketWrapperSessionKeyPair;
+import org.openbase.bco.authentication.lib.exception.AuthenticationErrorCode;
+import org.openbase.bco.authentication.lib.exception.SessionExpiredException;
 import org.openbase.bco.authentication.lib.jp.JPAuthentication;
 import org.openbase.bco.authentication.lib.jp.JPCredentialsDirectory;
 import org.openbase.bco.authentication.lib.jp.JPSessionTimeout;
 import org.openbase.jps.core.JPService;
 import org.openbase.jps.exception.JPNotAvailableException;
 import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.ExceptionProcessor;
 import org.openbase.jul.exception.NotAvailableException;
 import org.openbase.jul.exception.RejectedException;
 import org.openbase.jul.exception.printer.ExceptionPrinter;
 import org.openbase.jul.exception.printer.LogLevel;
+import org.openbase.jul.schedule.GlobalCachedExecutorService;
+import org.openbase.jul.schedule.GlobalScheduledExecutorService;
+import org.openbase.jul.schedule.SyncObject;
 import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
 import org.openbase.type.domotic.authentication.AuthenticationTokenType.AuthenticationToken;
 import org.openbase.type.domotic.authentication.AuthenticatorType.Authenticator;
@@ -48,7 +55,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * This class represents a Service Server and provides methods to validate Kerberos client-server-tickets.
@@ -58,35 +69,198 @@ import java.util.concurrent.ExecutionException;
 public class AuthenticatedServerManager {
 
     public static final String SERVICE_SERVER_PRIVATE_KEY_FILENAME = "service_server_private_key";
+    /**
+     * Maximal number of decoded tokens of each type cached by the service server.
+     */
+    public static final int TOKEN_CACHE_SIZE = 1024;
+    /**
+     * Time in milliseconds a request waits for the service server to become ready.
+     */
+    public static final long READY_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * Time in milliseconds a request to the authenticator may take before it is retried.
+     */
+    private static final long REQUEST_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+    /**
+     * Initial and maximal delay in milliseconds between attempts to log in at the authenticator.
+     */
+    private static final long MIN_RETRY_DELAY = 100;
+    private static final long MAX_RETRY_DELAY = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * Minimal time in milliseconds between two requests of the keys triggered by tickets encrypted with unknown keys.
+     * The key id of a ticket is not authenticated, so forged tickets must not cause a request every time.
+     */
+    private static final long KEY_REFRESH_COOLDOWN = TimeUnit.SECONDS.toMillis(30);
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(AuthenticatedServerManager.class);
-    private byte[] serviceServerSecretKey;
-    private static AuthenticatedServerManager instance;
+    private static final AtomicReference<AuthenticatedServerManager> INSTANCE = new AtomicReference<>();
+    /**
+     * Keys of the service server distributed by the authenticator. The ring is replaced when the authenticator
+     * rotated its keys.
+     */
+    private volatile KeyRing serviceServerKeyRing;
+    /**
+     * Completed as soon as the service server logged in and received its keys.
+     */
+    private final CompletableFuture<Void> readyFuture;
+    private volatile boolean shutdown;
+    /**
+     * Lock of the login at the authenticator, which is shared by the bootstrap and refreshing the keys.
+     */
+    private final SyncObject authenticatorLock = new SyncObject("ServiceServerAuthenticatorLock");
+    private final SyncObject keyRefreshLock = new SyncObject("ServiceServerKeyRefreshLock");
+    /**
+     * Latest request of the keys because of an unknown key, shared by all tickets encrypted with unknown keys.
+     */
+    private CompletableFuture<Void> keyRefreshFuture;
+    private long keyRefreshTime;
     private TicketAuthenticatorWrapper ticketAuthenticatorWrapper;
-    private byte[] sessionKey;
+    private SessionKey sessionKey;
     private final long ticketValidityTime;
+    /**
+     * Tokens decoded with the service server secret key by their encoded string. Clients send the same token with
+     * every request, so only the decryption with the session key has to be performed per request.
+     */
+    private final ExpiringCache<String, AuthorizationToken> authorizationTokenCache;
+    private final ExpiringCache<String, AuthenticationToken> authenticationTokenCache;
 
     private AuthenticatedServerManager() throws CouldNotPerformException {
         try {
             this.ticketValidityTime = JPService.getProperty(JPSessionTimeout.class).getValue();
-            if (JPService.getProperty(JPAuthentication.class).getValue()) {
-                this.login();
-                this.requestServiceServerSecretKey();
+            this.authorizationTokenCache = new ExpiringCache<>(TOKEN_CACHE_SIZE, ticketValidityTime, TimeUnit.MILLISECONDS);
+            this.authenticationTokenCache = new ExpiringCache<>(TOKEN_CACHE_SIZE, ticketValidityTime, TimeUnit.MILLISECONDS);
+            this.readyFuture = new CompletableFuture<>();
+            if (!JPService.getProperty(JPAuthentication.class).getValue()) {
+                readyFuture.complete(null);
             }
         } catch (JPNotAvailableException ex) {
             throw new CouldNotPerformException("Could not check JPProperty", ex);
         }
     }
 
-    public static synchronized AuthenticatedServerManager getInstance() throws CouldNotPerformException {
-        if (instance == null) {
-            instance = new AuthenticatedServerManager();
+    /**
+     * Get the service server instance. The first call creates the instance and starts to log in at the authenticator
+     * in the background, so this method never blocks on the authenticator. Requests which are verified before the
+     * service server is ready wait for it, see {@link #getReadyFuture()}.
+     *
+     * @return the service server instance.
+     *
+     * @throws CouldNotPerformException if the instance cannot be created.
+     */
+    public static AuthenticatedServerManager getInstance() throws CouldNotPerformException {
+        final AuthenticatedServerManager instance = INSTANCE.get();
+        if (instance != null) {
+            return instance;
+        }
+
+        final AuthenticatedServerManager newInstance = new AuthenticatedServerManager();
+        if (!INSTANCE.compareAndSet(null, newInstance)) {
+            // another thread created the instance in the meantime
+            return INSTANCE.get();
+        }
+        newInstance.bootstrap(MIN_RETRY_DELAY);
+        return newInstance;
+    }
+
+    /**
+     * Create the service server instance if it does not exist yet so that it logs in at the authenticator before
+     * the first request has to be verified.
+     *
+     * @return a future completed as soon as the service server is ready.
+     */
+    public static CompletableFuture<Void> prepare() {
+        try {
+            return getInstance().getReadyFuture();
+        } catch (CouldNotPerformException ex) {
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+            return future;
+        }
+    }
+
+    public static void shutdown() {
+        final AuthenticatedServerManager instance = INSTANCE.getAndSet(null);
+        if (instance != null) {
+            instance.shutdown = true;
+            instance.readyFuture.completeExceptionally(new CouldNotPerformException("Service server has been shut down"));
+        }
+    }
+
+    /**
+     * Get a future which is completed as soon as the service server logged in at the authenticator and received
+     * its keys. Failed attempts are retried until one succeeds, so the future only completes exceptionally if the
+     * service server is shut down or if the next attempt cannot be scheduled.
+     *
+     * @return the future of the readiness of the service server.
+     */
+    public CompletableFuture<Void> getReadyFuture() {
+        return readyFuture;
+    }
+
+    /**
+     * Try to log in and to request the keys of the service server. If this fails, e.g. because the authenticator
+     * has not been started yet, the attempt is repeated with an exponentially growing delay. Failed attempts are
+     * expected while the system starts so they are only logged without stack trace.
+     *
+     * @param retryDelay the delay in milliseconds before the next attempt if this one fails.
+     */
+    private void bootstrap(final long retryDelay) {
+        if (shutdown || readyFuture.isDone()) {
+            return;
         }
 
-        return instance;
+        GlobalCachedExecutorService.submit(() -> {
+            try {
+                synchronized (authenticatorLock) {
+                    if (shutdown || readyFuture.isDone()) {
+                        return null;
+                    }
+                    login();
+                    requestServiceServerSecretKey();
+                }
+                readyFuture.complete(null);
+            } catch (CouldNotPerformException ex) {
+                if (shutdown) {
+                    return null;
+                }
+                LOGGER.warn("Service server could not log in at the authenticator, retry in " + retryDelay + "ms: " + ExceptionProcessor.getInitialCause(ex).getMessage());
+                ExceptionPrinter.printHistory(ex, LOGGER, LogLevel.DEBUG);
+                try {
+                    GlobalScheduledExecutorService.schedule(() -> bootstrap(Math.min(retryDelay * 2, MAX_RETRY_DELAY)), retryDelay, TimeUnit.MILLISECONDS);
+                } catch (CouldNotPerformException exx) {
+                    readyFuture.completeExceptionally(ExceptionPrinter.printHistoryAndReturnThrowable(exx, LOGGER, LogLevel.ERROR));
+                }
+            }
+            return null;
+        });
     }
 
-    public static synchronized void shutdown() {
-        instance = null;
+    /**
+     * Wait until the service server is ready and get its keys.
+     *
+     * @return the key ring of the service server.
+     *
+     * @throws CouldNotPerformException if the service server does not become ready in time or if authentication
+     *                                  is disabled.
+     */
+    private KeyRing getServiceServerKeyRing() throws CouldNotPerformException {
+        final KeyRing keyRing = serviceServerKeyRing;
+        if (keyRing != null) {
+            return keyRing;
+        }
+
+        try {
+            readyFuture.get(READY_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CouldNotPerformException("Interrupted while waiting for the service server", ex);
+        } catch (ExecutionException | TimeoutException ex) {
+            throw new NotAvailableException("Service server secret key", ex);
+        }
+
+        if (serviceServerKeyRing == null) {
+            throw new NotAvailableException("Service server secret key");
+        }
+        return serviceServerKeyRing;
     }
 
     /**
@@ -109,23 +283,44 @@ public class AuthenticatedServerManager {
         // create authentication base data from ticket
         final AuthenticationBaseData authenticationBaseData = verifyClientServerTicket(authenticatedValue.getTicketAuthenticatorWrapper());
 
-        // if authenticated value has this token encrypt it and add it to the return data
+        // if authenticated value has this token decrypt it and add it to the return data
         if (authenticatedValue.hasAuthorizationToken()) {
-            String tokenString = EncryptionHelper.decryptSymmetric(authenticatedValue.getAuthorizationToken(), authenticationBaseData.getSessionKey(), String.class);
-            AuthorizationToken decrypt = EncryptionHelper.decrypt(Base64.getDecoder().decode(tokenString), serviceServerSecretKey, AuthorizationToken.class, true);
-            authenticationBaseData.setAuthorizationToken(decrypt);
+            authenticationBaseData.setAuthorizationToken(decodeToken(authenticatedValue.getAuthorizationToken(), authenticationBaseData.getSessionKey(), authorizationTokenCache, AuthorizationToken.class));
         }
 
-        // if authenticated value has this token encrypt it and add it to the return data
+        // if authenticated value has this token decrypt it and add it to the return data
         if (authenticatedValue.hasAuthenticationToken()) {
-            String tokenString = EncryptionHelper.decryptSymmetric(authenticatedValue.getAuthenticationToken(), authenticationBaseData.getSessionKey(), String.class);
-            AuthenticationToken decrypt = EncryptionHelper.decrypt(Base64.getDecoder().decode(tokenString), serviceServerSecretKey, AuthenticationToken.class, true);
-            authenticationBaseData.setAuthenticationToken(decrypt);
+            authenticationBaseData.setAuthenticationToken(decodeToken(authenticatedValue.getAuthenticationToken(), authenticationBaseData.getSessionKey(), authenticationTokenCache, AuthenticationToken.class));
         }
 
         return authenticationBaseData;
     }
 
+    /**
+     * Decode a token sent with a request. The token is decrypted with the session key of the request and the resulting
+     * string is decoded with the service server secret key. The second step is skipped if the string has been decoded
+     * before.
+     *
+     * @param encryptedToken the token encrypted with the session key.
+     * @param sessionKey     the session key of the request.
+     * @param tokenCache     the cache of tokens decoded before.
+     * @param tokenClass     the class of the token.
+     * @param <T>            the type of the token.
+     *
+     * @return the decoded token.
+     *
+     * @throws CouldNotPerformException if the token cannot be decrypted.
+     */
+    private <T> T decodeToken(final ByteString encryptedToken, final SessionKey sessionKey, final ExpiringCache<String, T> tokenCache, final Class<T> tokenClass) throws CouldNotPerformException {
+        final String tokenString = EncryptionHelper.decryptSymmetric(encryptedToken, sessionKey, String.class);
+        T token = tokenCache.get(tokenString);
+        if (token == null) {
+            token = EncryptionHelper.decrypt(Base64.getDecoder().decode(tokenString), getServiceServerKeyRing().getInitialKey(), tokenClass, true);
+            tokenCache.put(tokenString, token);
+        }
+        return token;
+    }
+
     /**
      * Verifies the ticket from a given TicketAuthenticatorWrapper and returns authentication base data
      * containing values according to the authentication.
@@ -139,9 +334,24 @@ public class AuthenticatedServerManager {
      */
     public AuthenticationBaseData verifyClientServerTicket(final TicketAuthenticatorWrapper ticketAuthenticatorWrapper) throws CouldNotPerformException, RejectedException {
         try {
+            KeyRing keyRing = getServiceServerKeyRing();
+
             // decrypt ticket and authenticator
-            Ticket clientServerTicket = EncryptionHelper.decryptSymmetric(ticketAuthenticatorWrapper.getTicket(), serviceServerSecretKey, Ticket.class);
-            Authenticator authenticator = EncryptionHelper.decryptSymmetric(ticketAuthenticatorWrapper.getAuthenticator(), clientServerTicket.getSessionKeyBytes().toByteArray(), Authenticator.class);
+            Ticket clientServerTicket;
+            try {
+                clientServerTicket = keyRing.decrypt(ticketAuthenticatorWrapper.getTicket(), Ticket.class);
+            } catch (SessionExpiredException ex) {
+                // fetch the new keys if the ticket may have been encrypted with a key created by a rotation
+                final int keyId = KeyRing.getKeyId(ticketAuthenticatorWrapper.getTicket());
+                if (keyRing.hasKey(keyId) || keyId <= keyRing.getCurrentKeyId()) {
+                    throw ex;
+                }
+                keyRing = awaitKeyRefresh();
+                clientServerTicket = keyRing.decrypt(ticketAuthenticatorWrapper.getTicket(), Ticket.class);
+            }
+            // create the session key handle once and reuse it for the whole request
+            final SessionKey clientSessionKey = new SessionKey(clientServerTicket.getSessionKeyBytes());
+            Authenticator authenticator = clientSessionKey.decrypt(ticketAuthenticatorWrapper.getAuthenticator(), Authenticator.class);
 
             // compare clientIDs and timestamp to period
             AuthenticationServerHandler.validateTicket(clientServerTicket, authenticator);
@@ -153,17 +363,74 @@ public class AuthenticatedServerManager {
 
             // update TicketAuthenticatorWrapper
             TicketAuthenticatorWrapper.Builder response = ticketAuthenticatorWrapper.toBuilder();
-            response.setTicket(EncryptionHelper.encryptSymmetric(clientServerTicket, serviceServerSecretKey));
-            response.setAuthenticator(EncryptionHelper.encryptSymmetric(authenticatorBuilder.build(), clientServerTicket.getSessionKeyBytes().toByteArray()));
+            response.setTicket(keyRing.encrypt(clientServerTicket));
+            response.setAuthenticator(clientSessionKey.encrypt(authenticatorBuilder.build()));
 
-            return new AuthenticationBaseData(authenticator.getUserClientPair(), clientServerTicket.getSessionKeyBytes().toByteArray(), response.build());
+            return new AuthenticationBaseData(authenticator.getUserClientPair(), clientSessionKey, response.build());
+        } catch (SessionExpiredException ex) {
+            // the error is sent to the client which can only resolve it from the tagged message
+            throw ExceptionPrinter.printHistoryAndReturnThrowable(new SessionExpiredException(AuthenticationErrorCode.SESSION_EXPIRED.tag(ex.getMessage())), LOGGER, LogLevel.ERROR);
         } catch (RejectedException ex) {
             throw ExceptionPrinter.printHistoryAndReturnThrowable(ex, LOGGER, LogLevel.ERROR);
         }
     }
 
     /**
-     * Login method for the service server.
+     * Wait for the keys of the service server to be requested again because a ticket has been encrypted with
+     * an unknown key. The wait is bounded so that requests with forged key ids are rejected soon.
+     *
+     * @return the current key ring of the service server.
+     *
+     * @throws CouldNotPerformException if interrupted while waiting.
+     */
+    private KeyRing awaitKeyRefresh() throws CouldNotPerformException {
+        try {
+            refreshKeyRing().get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CouldNotPerformException("Interrupted while waiting for the service server keys", ex);
+        } catch (ExecutionException | TimeoutException ex) {
+            // the ticket is rejected with the keys known so far
+            LOGGER.debug("Service server keys could not be refreshed in time");
+        }
+        return serviceServerKeyRing;
+    }
+
+    /**
+     * Request the keys of the service server again in the background. Concurrent calls share a single request and
+     * a new one is only started if the previous one started more than {@link #KEY_REFRESH_COOLDOWN} ago, so tickets
+     * with forged key ids cannot flood the authenticator or block the verification of other tickets.
+     *
+     * @return a future completed when the keys have been requested.
+     */
+    private CompletableFuture<Void> refreshKeyRing() {
+        synchronized (keyRefreshLock) {
+            if (keyRefreshFuture != null && (!keyRefreshFuture.isDone() || System.currentTimeMillis() - keyRefreshTime < KEY_REFRESH_COOLDOWN)) {
+                return keyRefreshFuture;
+            }
+
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            keyRefreshFuture = future;
+            keyRefreshTime = System.currentTimeMillis();
+            LOGGER.debug("Request service server keys because of an unknown key");
+            GlobalCachedExecutorService.submit(() -> {
+                try {
+                    synchronized (authenticatorLock) {
+                        login();
+                        requestServiceServerSecretKey();
+                    }
+                    future.complete(null);
+                } catch (CouldNotPerformException ex) {
+                    future.completeExceptionally(ExceptionPrinter.printHistoryAndReturnThrowable(ex, LOGGER, LogLevel.ERROR));
+                }
+                return null;
+            });
+            return future;
+        }
+    }
+
+    /**
+     * Login method for the service server. Errors are logged by the caller.
      *
      * @throws CouldNotPerformException If the login fails.
      */
@@ -179,27 +446,29 @@ public class AuthenticatedServerManager {
             final UserClientPair userClientPair = UserClientPair.newBuilder().setClientId(CredentialStore.SERVICE_SERVER_ID).build();
 
             // request TGT
-            TicketSessionKeyWrapper ticketSessionKeyWrapper = CachedAuthenticationRemote.getRemote().requestTicketGrantingTicket(userClientPair).get();
+            TicketSessionKeyWrapper ticketSessionKeyWrapper = CachedAuthenticationRemote.getRemote().requestTicketGrantingTicket(userClientPair).get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
 
             // handle KDC response on client side
             TicketWrapperSessionKeyPair ticketWrapperSessionKeyPair = AuthenticationClientHandler.handleKeyDistributionCenterResponse(userClientPair, null, loginCredentials, ticketSessionKeyWrapper);
 
             // request CST
-            ticketSessionKeyWrapper = CachedAuthenticationRemote.getRemote().requestClientServerTicket(ticketWrapperSessionKeyPair.getTicketAuthenticatorWrapper()).get();
+            ticketSessionKeyWrapper = CachedAuthenticationRemote.getRemote().requestClientServerTicket(ticketWrapperSessionKeyPair.getTicketAuthenticatorWrapper()).get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
 
             // handle TGS response on client side
             ticketWrapperSessionKeyPair = AuthenticationClientHandler.handleTicketGrantingServiceResponse(userClientPair, ticketWrapperSessionKeyPair.getSessionKey(), ticketSessionKeyWrapper);
             this.ticketAuthenticatorWrapper = ticketWrapperSessionKeyPair.getTicketAuthenticatorWrapper();
             this.sessionKey = ticketWrapperSessionKeyPair.getSessionKey();
-        } catch (ExecutionException | JPNotAvailableException | CouldNotPerformException | IOException | InterruptedException ex) {
-            ExceptionPrinter.printHistory(ex, LOGGER, LogLevel.ERROR);
+        } catch (ExecutionException | TimeoutException | JPNotAvailableException | CouldNotPerformException | IOException ex) {
             throw new CouldNotPerformException("Login failed!", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CouldNotPerformException("Interrupted while logging in", ex);
         }
     }
 
     /**
      * Requests the service server secret key from the AuthenticationController.
-     * This can only be performed after being {@link #login()} has been called.
+     * This can only be performed after being {@link #login()} has been called. Errors are logged by the caller.
      *
      * @throws CouldNotPerformException if the key cannot be requested
      */
@@ -208,15 +477,17 @@ public class AuthenticatedServerManager {
             // init ticket for the request
             ticketAuthenticatorWrapper = AuthenticationClientHandler.initServiceServerRequest(sessionKey, ticketAuthenticatorWrapper);
             // perform the request
-            final AuthenticatedValue value = CachedAuthenticationRemote.getRemote().requestServiceServerSecretKey(ticketAuthenticatorWrapper).get();
+            final AuthenticatedValue value = CachedAuthenticationRemote.getRemote().requestServiceServerSecretKey(ticketAuthenticatorWrapper).get(REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
             // validate the response
             ticketAuthenticatorWrapper = AuthenticationClientHandler.handleServiceServerResponse(sessionKey,
                     ticketAuthenticatorWrapper, value.getTicketAuthenticatorWrapper());
 
-            // decrypt and save service server secret key
-            serviceServerSecretKey = EncryptionHelper.decryptSymmetric(value.getValue(), sessionKey, byte[].class);
-        } catch (ExecutionException | CouldNotPerformException ex) {
-            ExceptionPrinter.printHistory(ex, LOGGER, LogLevel.ERROR);
+            // decrypt and save the key ring of the service server
+            serviceServerKeyRing = KeyRing.decode(EncryptionHelper.decryptSymmetric(value.getValue(), sessionKey, byte[].class));
+            // tokens decoded with a previous secret key may not be valid anymore
+            authorizationTokenCache.clear();
+            authenticationTokenCache.clear();
+        } catch (ExecutionException | TimeoutException | CouldNotPerformException ex) {
             throw new CouldNotPerformException("Could not get the service server secret key.", ex);
         } catch (InterruptedException ex) {
             Thread.currentThread().interrupt();
@@ -225,11 +496,12 @@ public class AuthenticatedServerManager {
     }
 
     /**
-     * Get the service server secret key.
+     * Get the service server secret key. This is the initial key of the key ring which is never rotated.
      *
      * @return the service server secret key
      */
     public byte[] getServiceServerSecretKey() {
-        return serviceServerSecretKey;
+        final KeyRing keyRing = serviceServerKeyRing;
+        return (keyRing == null) ? null : keyRing.getInitialKey();
     }
 }
@@ -22,21 +22,24 @@ package org.openbase.bco.authentication.lib;
  * #L%
  */
 
-import com.google.protobuf.ByteString;
 import com.google.protobuf.Message;
+import org.openbase.bco.authentication.lib.AuthenticationClientHandler.RequestTicket;
 import org.openbase.bco.authentication.lib.future.AuthenticatedValueFuture;
 import org.openbase.bco.authentication.lib.jp.JPAuthentication;
 import org.openbase.jps.core.JPService;
 import org.openbase.jps.exception.JPNotAvailableException;
 import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.ExceptionProcessor;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.RejectedException;
 import org.openbase.jul.extension.type.iface.TransactionIdProvider;
 import org.openbase.jul.schedule.FutureProcessor;
 import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
 import org.openbase.type.domotic.authentication.TicketAuthenticatorWrapperType.TicketAuthenticatorWrapper;
 
+import java.io.InvalidObjectException;
 import java.io.Serializable;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.List;
 import java.util.concurrent.Future;
 
 /**
@@ -46,6 +49,11 @@ import java.util.concurrent.Future;
  */
 public class AuthenticatedServiceProcessor {
 
+    /**
+     * Maximal number of messages in a batch processed by a server.
+     */
+    public static final int MAX_BATCH_SIZE = 1024;
+
     /**
      * Method used by the server which performs an authenticated action.
      *
@@ -115,13 +123,7 @@ public class AuthenticatedServiceProcessor {
             // start to build the response
             AuthenticatedValue.Builder response = AuthenticatedValue.newBuilder();
             if (authenticatedValue.hasTicketAuthenticatorWrapper()) {
-                try {
-                    if (!JPService.getProperty(JPAuthentication.class).getValue()) {
-                        throw new CouldNotPerformException("Cannot execute authenticated action because authentication is disabled");
-                    }
-                } catch (JPNotAvailableException ex) {
-                    throw new CouldNotPerformException("Could not check JPEnableAuthentication property", ex);
-                }
+                verifyAuthenticationEnabled();
                 // verify ticket in encrypt tokens if they were send
                 final AuthenticationBaseData authenticationBaseData = ticketValidator.verifyClientServerTicket(authenticatedValue);
 
@@ -142,31 +144,26 @@ public class AuthenticatedServiceProcessor {
                 response.setTicketAuthenticatorWrapper(authenticationBaseData.getTicketAuthenticatorWrapper());
             } else {
                 // ticket no available so request without login
-                try {
-                    RECEIVE message = null;
-
-                    if (authenticatedValue.hasValue() && !authenticatedValue.getValue().isEmpty()) {
-                        if (!Message.class.isAssignableFrom(internalClass)) {
-                            throw new CouldNotPerformException("Authenticated value has a value but the method implemented by the server did not expect one!");
-                        }
-                        // when not logged in the received value is not encrypted but just send as a byte string
-                        // so get the received message by calling parseFrom which is supported by every message
-                        Method parseFrom = internalClass.getMethod("parseFrom", ByteString.class);
-                        message = (RECEIVE) parseFrom.invoke(null, authenticatedValue.getValue());
-                    }
+                RECEIVE message = null;
 
-                    // execute the action of the server
-                    RETURN result = executable.process(message, null);
-                    if (result != null) {
-                        if (!(result instanceof Message)) {
-                            throw new CouldNotPerformException("Result[" + result + "] of authenticated action is not a message or not null and therefore not supported!");
-                        }
+                if (authenticatedValue.hasValue() && !authenticatedValue.getValue().isEmpty()) {
+                    if (!Message.class.isAssignableFrom(internalClass)) {
+                        throw new CouldNotPerformException("Authenticated value has a value but the method implemented by the server did not expect one!");
+                    }
+                    // when not logged in the received value is not encrypted but just send as a byte string
+                    // so parse it with the parser registered for the expected message
+                    message = MessageParserRegistry.parseFrom(authenticatedValue.getValue(), internalClass);
+                }
 
-                        // add result as a byte string to the response
-                        response.setValue(((Message) result).toByteString());
+                // execute the action of the server
+                RETURN result = executable.process(message, null);
+                if (result != null) {
+                    if (!(result instanceof Message)) {
+                        throw new CouldNotPerformException("Result[" + result + "] of authenticated action is not a message or not null and therefore not supported!");
                     }
-                } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-                    throw new CouldNotPerformException("Could not invoke parseFrom method on [" + internalClass.getSimpleName() + "]", ex);
+
+                    // add result as a byte string to the response
+                    response.setValue(((Message) result).toByteString());
                 }
             }
             // return the response
@@ -176,6 +173,95 @@ public class AuthenticatedServiceProcessor {
         }
     }
 
+    /**
+     * Method used by the server which performs an action for every message of an {@link AuthenticatedBatch}.
+     *
+     * @param <RECEIVE>          The type of the messages that the server receives to perform its action.
+     * @param <RETURN>           The type of value that the server responds with for each message.
+     * @param authenticatedValue The authenticatedValue containing the batch which is send with the request.
+     * @param internalClass      Class of type RECEIVE which every message of the batch has to be an instance of.
+     * @param executable         Interface defining the action that the server performs for each message.
+     *                           This executable should also perform authorization if needed.
+     *
+     * @return An AuthenticatedValue containing an {@link AuthenticatedBatchResponse} which should be send as a response.
+     *
+     * @throws CouldNotPerformException If the batch cannot be processed, e.g. ticket invalid or encryption failed.
+     */
+    public static <RECEIVE extends Serializable, RETURN extends Serializable> AuthenticatedValue authenticatedBatchAction(
+            final AuthenticatedValue authenticatedValue,
+            final Class<RECEIVE> internalClass,
+            final InternalIdentifiedProcessable<RECEIVE, RETURN> executable) throws CouldNotPerformException {
+        return authenticatedBatchAction(authenticatedValue, internalClass, value -> AuthenticatedServerManager.getInstance().verifyClientServerTicket(value), executable);
+    }
+
+    /**
+     * Method used by the server which performs an action for every message of an {@link AuthenticatedBatch}.
+     * The ticket is only verified once and all actions are performed with the same authentication data.
+     * An action which fails does not abort the batch but its error is reported for its message in the response.
+     *
+     * @param <RECEIVE>          The type of the messages that the server receives to perform its action.
+     * @param <RETURN>           The type of value that the server responds with for each message.
+     * @param authenticatedValue The authenticatedValue containing the batch which is send with the request.
+     * @param internalClass      Class of type RECEIVE which every message of the batch has to be an instance of.
+     * @param ticketValidator    Interface defining how the authenticated value is verified and authentication as well
+     *                           as authorization information is extracted.
+     * @param executable         Interface defining the action that the server performs for each message.
+     *                           This executable should also perform authorization if needed.
+     *
+     * @return An AuthenticatedValue containing an {@link AuthenticatedBatchResponse} which should be send as a response.
+     *
+     * @throws CouldNotPerformException If the batch cannot be processed, e.g. ticket invalid or encryption failed.
+     */
+    public static <RECEIVE extends Serializable, RETURN extends Serializable> AuthenticatedValue authenticatedBatchAction(
+            final AuthenticatedValue authenticatedValue,
+            final Class<RECEIVE> internalClass,
+            final TicketValidator ticketValidator,
+            final InternalIdentifiedProcessable<RECEIVE, RETURN> executable) throws CouldNotPerformException {
+        try {
+            if (!authenticatedValue.hasTicketAuthenticatorWrapper()) {
+                throw new NotAvailableException("TicketAuthenticatorWrapper");
+            }
+            verifyAuthenticationEnabled();
+
+            // verify the ticket once for the whole batch
+            final AuthenticationBaseData authenticationBaseData = ticketValidator.verifyClientServerTicket(authenticatedValue);
+
+            // the batch verifies its size before its messages are deserialized
+            final AuthenticatedBatch batch;
+            try {
+                batch = EncryptionHelper.decryptSymmetric(authenticatedValue.getValue(), authenticationBaseData.getSessionKey(), AuthenticatedBatch.class);
+            } catch (CouldNotPerformException ex) {
+                if (ExceptionProcessor.getInitialCause(ex) instanceof InvalidObjectException) {
+                    throw new RejectedException("Batch is malformed or exceeds the maximum size of " + MAX_BATCH_SIZE, ex);
+                }
+                throw ex;
+            }
+
+            final AuthenticatedBatchResponse batchResponse = new AuthenticatedBatchResponse(batch.size());
+            for (final Serializable message : batch.getMessageList()) {
+                try {
+                    if (message != null && !internalClass.isInstance(message)) {
+                        throw new CouldNotPerformException("Message[" + message.getClass().getSimpleName() + "] of batch is not of type[" + internalClass.getSimpleName() + "]");
+                    }
+                    batchResponse.addResult(executable.process(internalClass.cast(message), authenticationBaseData));
+                } catch (CouldNotPerformException ex) {
+                    batchResponse.addError(ex);
+                } catch (RuntimeException ex) {
+                    // a faulty message must not abort the remaining messages of the batch
+                    batchResponse.addError(new CouldNotPerformException("Could not process message of batch", ex));
+                }
+            }
+
+            // encrypt all results at once and add the updated ticket
+            return AuthenticatedValue.newBuilder()
+                    .setValue(EncryptionHelper.encryptSymmetric(batchResponse, authenticationBaseData.getSessionKey()))
+                    .setTicketAuthenticatorWrapper(authenticationBaseData.getTicketAuthenticatorWrapper())
+                    .build();
+        } catch (CouldNotPerformException ex) {
+            throw new CouldNotPerformException("Could not execute authenticated batch action!", ex);
+        }
+    }
+
     /**
      * Method used by the remote to request an authenticated action from a server.
      * <p>
@@ -199,20 +285,20 @@ public class AuthenticatedServiceProcessor {
             if (sessionManager.isLoggedIn()) {
                 // someone is logged in with the session manager
                 try {
-                    // initialize a ticket for the request
-                    TicketAuthenticatorWrapper ticketAuthenticatorWrapper = sessionManager.initializeServiceServerRequest();
+                    // initialize a ticket for the request, it remembers the request timestamp to verify the response
+                    final RequestTicket requestTicket = sessionManager.initializeRequestTicket();
                     AuthenticatedValue.Builder authenticatedValue = AuthenticatedValue.newBuilder();
                     // add the ticket to the authenticated value which is send
-                    authenticatedValue.setTicketAuthenticatorWrapper(ticketAuthenticatorWrapper);
+                    authenticatedValue.setTicketAuthenticatorWrapper(requestTicket.getTicketAuthenticatorWrapper());
 
                     if (message != null) {
-                        // encrypt the message which is send with the session key
-                        authenticatedValue.setValue(EncryptionHelper.encryptSymmetric(message, sessionManager.getSessionKey()));
+                        // encrypt the message which is send with the session key of the ticket
+                        authenticatedValue.setValue(EncryptionHelper.encryptSymmetric(message, requestTicket.getSessionKey()));
                     }
                     // perform the internal request
                     Future<AuthenticatedValue> future = internalRequestable.request(authenticatedValue.build());
                     // wrap the response in an authenticated synchronization future
-                    return new AuthenticatedValueFuture<>(future, responseClass, ticketAuthenticatorWrapper, sessionManager);
+                    return new AuthenticatedValueFuture<>(future, responseClass, requestTicket, sessionManager);
                 } catch (CouldNotPerformException ex) {
                     throw new CouldNotPerformException("Could not request authenticated Action!", ex);
                 }
@@ -229,13 +315,65 @@ public class AuthenticatedServiceProcessor {
                 // perform the internal request
                 Future<AuthenticatedValue> future = internalRequestable.request(authenticateValue.build());
                 // wrap the response in an authenticated synchronization future
-                return new AuthenticatedValueFuture<>(future, responseClass, null, sessionManager);
+                return new AuthenticatedValueFuture<>(future, responseClass, (TicketAuthenticatorWrapper) null, sessionManager);
             }
         } catch (CouldNotPerformException ex) {
             return FutureProcessor.canceledFuture(responseClass, ex);
         }
     }
 
+    /**
+     * Method used by the remote to request an authenticated action for a batch of messages from a server.
+     * All messages are sent with a single ticket and the server responds with the results of all messages at once.
+     * Batches can only be requested if someone is logged in.
+     * <p>
+     * Note: The future object is canceled if no one is logged in, if a ticket for the request cannot be initialized
+     * or if the encryption of the batch fails.
+     *
+     * @param <SEND>              The type of the messages which are send to the server.
+     * @param messageList         The messages which are encrypted and send to the server in the given order.
+     * @param sessionManager      The session manager from which the ticket is used.
+     * @param internalRequestable Interface for the internal authenticated request which is called.
+     *
+     * @return A future containing the response with a result or an error for every message.
+     */
+    public static <SEND extends Serializable> Future<AuthenticatedBatchResponse> requestAuthenticatedBatchAction(
+            final List<SEND> messageList,
+            final SessionManager sessionManager,
+            final InternalRequestable internalRequestable) {
+        try {
+            if (!sessionManager.isLoggedIn()) {
+                throw new CouldNotPerformException("Could not request authenticated batch action because no one is logged in");
+            }
+
+            if (messageList.size() > MAX_BATCH_SIZE) {
+                throw new RejectedException("Batch size[" + messageList.size() + "] exceeds the maximum of " + MAX_BATCH_SIZE);
+            }
+
+            // initialize a ticket for the request, it remembers the request timestamp to verify the response
+            final RequestTicket requestTicket = sessionManager.initializeRequestTicket();
+            final AuthenticatedValue authenticatedValue = AuthenticatedValue.newBuilder()
+                    .setTicketAuthenticatorWrapper(requestTicket.getTicketAuthenticatorWrapper())
+                    .setValue(EncryptionHelper.encryptSymmetric(new AuthenticatedBatch(messageList), requestTicket.getSessionKey()))
+                    .build();
+
+            // perform the internal request and wrap the response in an authenticated synchronization future
+            return new AuthenticatedValueFuture<>(internalRequestable.request(authenticatedValue), AuthenticatedBatchResponse.class, requestTicket, sessionManager);
+        } catch (CouldNotPerformException ex) {
+            return FutureProcessor.canceledFuture(AuthenticatedBatchResponse.class, ex);
+        }
+    }
+
+    private static void verifyAuthenticationEnabled() throws CouldNotPerformException {
+        try {
+            if (!JPService.getProperty(JPAuthentication.class).getValue()) {
+                throw new CouldNotPerformException("Cannot execute authenticated action because authentication is disabled");
+            }
+        } catch (JPNotAvailableException ex) {
+            throw new CouldNotPerformException("Could not check JPEnableAuthentication property", ex);
+        }
+    }
+
     public interface InternalIdentifiedProcessable<RECEIVE, RETURN> {
 
         /**
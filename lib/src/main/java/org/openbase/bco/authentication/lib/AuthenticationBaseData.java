@@ -42,7 +42,7 @@ public class AuthenticationBaseData {
     private AuthenticationToken authenticationToken;
     private AuthorizationToken authorizationToken;
     private final UserClientPair userClientPair;
-    private final byte[] sessionKey;
+    private final SessionKey sessionKey;
     private final TicketAuthenticatorWrapper ticketAuthenticatorWrapper;
 
     /**
@@ -56,7 +56,7 @@ public class AuthenticationBaseData {
      */
     public AuthenticationBaseData(
             final UserClientPair userClientPair,
-            final byte[] sessionKey,
+            final SessionKey sessionKey,
             final TicketAuthenticatorWrapper ticketAuthenticatorWrapper,
             final AuthenticationToken authenticationToken,
             final AuthorizationToken authorizationToken) {
@@ -76,16 +76,48 @@ public class AuthenticationBaseData {
      */
     public AuthenticationBaseData(
             final UserClientPair userClientPair,
-            final byte[] sessionKey,
+            final SessionKey sessionKey,
             final TicketAuthenticatorWrapper ticketAuthenticatorWrapper) {
         this(userClientPair, sessionKey, ticketAuthenticatorWrapper, null, null);
     }
 
+    /**
+     * Create new authentication base data.
+     *
+     * @param userClientPair             pair identifying the user and/or client logged in
+     * @param sessionKey                 the encoded session key
+     * @param ticketAuthenticatorWrapper the updated ticket which should be send as a response to the client
+     * @param authenticationToken        the authentication token send with the request
+     * @param authorizationToken         the authorization token send with the request.
+     */
+    public AuthenticationBaseData(
+            final UserClientPair userClientPair,
+            final byte[] sessionKey,
+            final TicketAuthenticatorWrapper ticketAuthenticatorWrapper,
+            final AuthenticationToken authenticationToken,
+            final AuthorizationToken authorizationToken) {
+        this(userClientPair, new SessionKey(sessionKey), ticketAuthenticatorWrapper, authenticationToken, authorizationToken);
+    }
+
+    /**
+     * Create new authentication base data.
+     *
+     * @param userClientPair             pair identifying the user and/or client logged in
+     * @param sessionKey                 the encoded session key
+     * @param ticketAuthenticatorWrapper the updated ticket which should be send as a response to the client
+     */
+    public AuthenticationBaseData(
+            final UserClientPair userClientPair,
+            final byte[] sessionKey,
+            final TicketAuthenticatorWrapper ticketAuthenticatorWrapper) {
+        this(userClientPair, new SessionKey(sessionKey), ticketAuthenticatorWrapper, null, null);
+    }
+
     public UserClientPair getUserClientPair() {
         return userClientPair;
     }
 
-    public byte[] getSessionKey() {
+    public SessionKey getSessionKey() {
         return sessionKey;
     }
 
@@ -24,6 +24,7 @@ package org.openbase.bco.authentication.lib;
 
 import com.google.protobuf.ByteString;
 import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.NotAvailableException;
 import org.openbase.jul.exception.RejectedException;
 import org.openbase.jul.extension.type.processing.TimestampProcessor;
 import org.openbase.type.domotic.authentication.AuthenticatorType.Authenticator;
@@ -33,6 +34,8 @@ import org.openbase.type.domotic.authentication.TicketSessionKeyWrapperType.Tick
 import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
 import org.openbase.type.timing.TimestampType.Timestamp;
 
+import java.security.Key;
+
 /**
  * @author <a href="mailto:sfast@techfak.uni-bielefeld.de">Sebastian Fast</a>
  */
@@ -55,14 +58,43 @@ public class AuthenticationClientHandler {
      * @throws CouldNotPerformException If de-/encryption of the ticket fails
      */
     public static TicketWrapperSessionKeyPair handleKeyDistributionCenterResponse(final UserClientPair userClientPair, final LoginCredentials userCredentials, final LoginCredentials clientCredentials, final TicketSessionKeyWrapper wrapper) throws CouldNotPerformException {
+        // only parse the credentials which are actually required by the pair
+        final Key userKey = (userCredentials == null || userClientPair.getUserId().isEmpty()) ? null : EncryptionHelper.createDecryptionKey(userCredentials);
+        final Key clientKey = (clientCredentials == null || userClientPair.getClientId().isEmpty()) ? null : EncryptionHelper.createDecryptionKey(clientCredentials);
+        return handleKeyDistributionCenterResponse(userClientPair, userKey, clientKey, wrapper);
+    }
+
+    /**
+     * Handles a KeyDistributionCenter (KDC) response with already parsed keys of the user and client.
+     * This allows callers to reuse keys, e.g. cached by the {@link CredentialStore}, instead of parsing
+     * the credentials on every login.
+     *
+     * @param userClientPair pair identifying the user and client logged in
+     * @param userKey        decryption key of the user logged in. Only required if the pair contains a user id.
+     * @param clientKey      decryption key of the client logged in. Only required if the pair contains a client id.
+     * @param wrapper        TicketSessionKeyWrapper containing the TicketGrantingTicket and TGS session key
+     *
+     * @return Returns a pair containing:
+     * 1. An TicketAuthenticatorWrapperWrapper containing both the TicketGrantingTicket and Authenticator
+     * 2. A SessionKey representing the TGS session key
+     *
+     * @throws CouldNotPerformException If de-/encryption of the ticket fails
+     */
+    public static TicketWrapperSessionKeyPair handleKeyDistributionCenterResponse(final UserClientPair userClientPair, final Key userKey, final Key clientKey, final TicketSessionKeyWrapper wrapper) throws CouldNotPerformException {
         byte[] ticketGrantingServiceSessionKey = wrapper.getSessionKey().toByteArray();
 
         // decrypt TGS session key
         if (userClientPair.hasClientId() && !userClientPair.getClientId().isEmpty()) {
-            ticketGrantingServiceSessionKey = EncryptionHelper.decrypt(ticketGrantingServiceSessionKey, clientCredentials, byte[].class);
+            if (clientKey == null) {
+                throw new NotAvailableException("client credentials");
+            }
+            ticketGrantingServiceSessionKey = EncryptionHelper.decrypt(ticketGrantingServiceSessionKey, clientKey, byte[].class);
         }
         if (userClientPair.hasUserId() && !userClientPair.getUserId().isEmpty()) {
-            ticketGrantingServiceSessionKey = EncryptionHelper.decrypt(ticketGrantingServiceSessionKey, userCredentials, byte[].class);
+            if (userKey == null) {
+                throw new NotAvailableException("user credentials");
+            }
+            ticketGrantingServiceSessionKey = EncryptionHelper.decrypt(ticketGrantingServiceSessionKey, userKey, byte[].class);
         }
 
         // create Authenticator with empty timestamp
@@ -72,7 +104,7 @@ public class AuthenticationClientHandler {
         authenticator.setTimestamp(TimestampProcessor.getCurrentTimestamp());
 
         // create a pair containing session key and wrapper with authenticator encrypted with session key.
-        return createTicketWrapperSessionKeyPair(ticketGrantingServiceSessionKey, authenticator.build(), wrapper.getTicket());
+        return createTicketWrapperSessionKeyPair(new SessionKey(ticketGrantingServiceSessionKey), authenticator.build(), wrapper.getTicket());
     }
 
     /**
@@ -91,8 +123,27 @@ public class AuthenticationClientHandler {
      * @throws CouldNotPerformException If de-/encryption of the ticket fails
      */
     public static TicketWrapperSessionKeyPair handleTicketGrantingServiceResponse(final UserClientPair userClientPair, final byte[] ticketGrantingServiceSessionKey, final TicketSessionKeyWrapper wrapper) throws CouldNotPerformException {
+        return handleTicketGrantingServiceResponse(userClientPair, new SessionKey(ticketGrantingServiceSessionKey), wrapper);
+    }
+
+    /**
+     * Handles a TicketGrantingService response
+     * Decrypts the ServiceServer (SS) session key with TGS session key
+     * Creates an Authenticator containing the clientID and empty timestamp encrypted with the SS session key
+     *
+     * @param userClientPair                  pair identifying the user and client logged in
+     * @param ticketGrantingServiceSessionKey TGS session key provided by handleKDCResponse()
+     * @param wrapper                         TicketSessionKeyWrapper containing the ClientServerTicket and SS session key
+     *
+     * @return Returns a pair containing:
+     * 1. An TicketAuthenticatorWrapperWrapper containing both the ClientServerTicket and Authenticator
+     * 2. A SessionKey representing the SS session key
+     *
+     * @throws CouldNotPerformException If de-/encryption of the ticket fails
+     */
+    public static TicketWrapperSessionKeyPair handleTicketGrantingServiceResponse(final UserClientPair userClientPair, final SessionKey ticketGrantingServiceSessionKey, final TicketSessionKeyWrapper wrapper) throws CouldNotPerformException {
         // decrypt SS session key
-        byte[] SSSessionKey = EncryptionHelper.decryptSymmetric(wrapper.getSessionKey(), ticketGrantingServiceSessionKey, byte[].class);
+        final SessionKey SSSessionKey = new SessionKey(ticketGrantingServiceSessionKey.decrypt(wrapper.getSessionKey(), byte[].class));
 
         // create Authenticator with empty timestamp
         // set timestamp in initSSRequest()
@@ -113,13 +164,13 @@ public class AuthenticationClientHandler {
      *
      * @throws CouldNotPerformException if encryption of the authenticator with the session key fails.
      */
-    private static TicketWrapperSessionKeyPair createTicketWrapperSessionKeyPair(final byte[] sessionKey, final Authenticator authenticator, final ByteString ticket) throws CouldNotPerformException {
+    private static TicketWrapperSessionKeyPair createTicketWrapperSessionKeyPair(final SessionKey sessionKey, final Authenticator authenticator, final ByteString ticket) throws CouldNotPerformException {
         // create TicketAuthenticatorWrapper
         TicketAuthenticatorWrapper.Builder ticketAuthenticatorWrapper = TicketAuthenticatorWrapper.newBuilder();
-        ticketAuthenticatorWrapper.setAuthenticator(EncryptionHelper.encryptSymmetric(authenticator, sessionKey));
+        ticketAuthenticatorWrapper.setAuthenticator(sessionKey.encrypt(authenticator));
         ticketAuthenticatorWrapper.setTicket(ticket);
 
-        return new TicketWrapperSessionKeyPair(sessionKey, ticketAuthenticatorWrapper.build());
+        return new TicketWrapperSessionKeyPair(sessionKey, authenticator, ticketAuthenticatorWrapper.build());
     }
 
     /**
@@ -133,21 +184,77 @@ public class AuthenticationClientHandler {
      * @throws CouldNotPerformException if de-/encrypting the authenticator inside the wrapper fails
      */
     public static TicketAuthenticatorWrapper initServiceServerRequest(final byte[] serviceServerSessionKey, final TicketAuthenticatorWrapper wrapper) throws CouldNotPerformException {
+        return initServiceServerRequest(new SessionKey(serviceServerSessionKey), wrapper);
+    }
+
+    /**
+     * Initializes a ServiceServer request by setting the current timestamp in the authenticator.
+     *
+     * @param serviceServerSessionKey SS session key provided by handleTGSResponse()
+     * @param wrapper                 TicketAuthenticatorWrapper wrapper that contains both encrypted Authenticator and CST
+     *
+     * @return Returns a wrapper class containing both the CST and modified Authenticator
+     *
+     * @throws CouldNotPerformException if de-/encrypting the authenticator inside the wrapper fails
+     */
+    public static TicketAuthenticatorWrapper initServiceServerRequest(final SessionKey serviceServerSessionKey, final TicketAuthenticatorWrapper wrapper) throws CouldNotPerformException {
         // decrypt authenticator
-        final Authenticator.Builder authenticator = EncryptionHelper.decryptSymmetric(wrapper.getAuthenticator(), serviceServerSessionKey, Authenticator.class).toBuilder();
+        final Authenticator.Builder authenticator = serviceServerSessionKey.decrypt(wrapper.getAuthenticator(), Authenticator.class).toBuilder();
 
         // update timestamp
         authenticator.setTimestamp(TimestampProcessor.getCurrentTimestamp());
 
         // update ticket authenticatorWrapper
         final TicketAuthenticatorWrapper.Builder ticketAuthenticatorWrapper = wrapper.toBuilder();
-        ticketAuthenticatorWrapper.setAuthenticator(EncryptionHelper.encryptSymmetric(authenticator.build(), serviceServerSessionKey));
+        ticketAuthenticatorWrapper.setAuthenticator(serviceServerSessionKey.encrypt(authenticator.build()));
 
         return ticketAuthenticatorWrapper.build();
     }
 
+    /**
+     * Initializes a ServiceServer request by setting the current timestamp in an already decrypted authenticator.
+     * In contrast to {@link #initServiceServerRequest(SessionKey, TicketAuthenticatorWrapper)} the authenticator
+     * of the wrapper does not have to be decrypted, so only a single encryption is needed.
+     *
+     * @param serviceServerSessionKey SS session key provided by handleTGSResponse()
+     * @param authenticator           the plaintext authenticator of the wrapper
+     * @param wrapper                 TicketAuthenticatorWrapper wrapper that contains both encrypted Authenticator and CST
+     *
+     * @return Returns a wrapper class containing both the CST and modified Authenticator
+     *
+     * @throws CouldNotPerformException if encrypting the authenticator fails
+     */
+    public static TicketAuthenticatorWrapper initServiceServerRequest(final SessionKey serviceServerSessionKey, final Authenticator authenticator, final TicketAuthenticatorWrapper wrapper) throws CouldNotPerformException {
+        return createServiceServerRequest(serviceServerSessionKey, authenticator, wrapper).getTicketAuthenticatorWrapper();
+    }
+
+    /**
+     * Initializes a ServiceServer request by setting the current timestamp in an already decrypted authenticator.
+     * The returned request ticket remembers the timestamp in plaintext so that the response can be verified
+     * by {@link #handleServiceServerResponse(RequestTicket, TicketAuthenticatorWrapper)} with a single decryption.
+     *
+     * @param serviceServerSessionKey SS session key provided by handleTGSResponse()
+     * @param authenticator           the plaintext authenticator of the wrapper
+     * @param wrapper                 TicketAuthenticatorWrapper wrapper that contains both encrypted Authenticator and CST
+     *
+     * @return the request ticket containing the wrapper to be sent
+     *
+     * @throws CouldNotPerformException if encrypting the authenticator fails
+     */
+    public static RequestTicket createServiceServerRequest(final SessionKey serviceServerSessionKey, final Authenticator authenticator, final TicketAuthenticatorWrapper wrapper) throws CouldNotPerformException {
+        // update timestamp
+        final Authenticator.Builder updatedAuthenticator = authenticator.toBuilder();
+        updatedAuthenticator.setTimestamp(TimestampProcessor.getCurrentTimestamp());
+
+        // update ticket authenticatorWrapper
+        final TicketAuthenticatorWrapper.Builder ticketAuthenticatorWrapper = wrapper.toBuilder();
+        ticketAuthenticatorWrapper.setAuthenticator(serviceServerSessionKey.encrypt(updatedAuthenticator.build()));
+
+        return new RequestTicket(serviceServerSessionKey, ticketAuthenticatorWrapper.build(), updatedAuthenticator.getTimestamp().getTime());
+    }
+
     public static TicketAuthenticatorWrapper initServiceServerRequest(final TicketWrapperSessionKeyPair ticketWrapperSessionKeyPair) throws CouldNotPerformException {
-        return initServiceServerRequest(ticketWrapperSessionKeyPair.getSessionKey(), ticketWrapperSessionKeyPair.getTicketAuthenticatorWrapper());
+        return initServiceServerRequest(ticketWrapperSessionKeyPair.getSessionKey(), ticketWrapperSessionKeyPair.getAuthenticator(), ticketWrapperSessionKeyPair.getTicketAuthenticatorWrapper());
     }
 
     /**
@@ -164,9 +271,26 @@ public class AuthenticationClientHandler {
      * @throws CouldNotPerformException If de-/encryption of the authenticator fails or the timestamps do not match
      */
     public static TicketAuthenticatorWrapper handleServiceServerResponse(final byte[] serviceServerSessionKey, final TicketAuthenticatorWrapper lastWrapper, final TicketAuthenticatorWrapper currentWrapper) throws CouldNotPerformException {
+        return handleServiceServerResponse(new SessionKey(serviceServerSessionKey), lastWrapper, currentWrapper);
+    }
+
+    /**
+     * Handles a ServiceServer response
+     * Decrypts Authenticator of both last- and currentWrapper with ServiceServerSessionKey
+     * Compares timestamps of both Authenticators with each other
+     *
+     * @param serviceServerSessionKey SS session key provided by handleTGSResponse()
+     * @param lastWrapper             Last TicketAuthenticatorWrapper provided by either handleTGSResponse() or handleSSResponse()
+     * @param currentWrapper          Current TicketAuthenticatorWrapper provided by (Remote?)
+     *
+     * @return Returns an TicketAuthenticatorWrapperWrapper containing both the CST and Authenticator
+     *
+     * @throws CouldNotPerformException If de-/encryption of the authenticator fails or the timestamps do not match
+     */
+    public static TicketAuthenticatorWrapper handleServiceServerResponse(final SessionKey serviceServerSessionKey, final TicketAuthenticatorWrapper lastWrapper, final TicketAuthenticatorWrapper currentWrapper) throws CouldNotPerformException {
         // decrypt authenticators
-        Authenticator lastAuthenticator = EncryptionHelper.decryptSymmetric(lastWrapper.getAuthenticator(), serviceServerSessionKey, Authenticator.class);
-        Authenticator currentAuthenticator = EncryptionHelper.decryptSymmetric(currentWrapper.getAuthenticator(), serviceServerSessionKey, Authenticator.class);
+        Authenticator lastAuthenticator = serviceServerSessionKey.decrypt(lastWrapper.getAuthenticator(), Authenticator.class);
+        Authenticator currentAuthenticator = serviceServerSessionKey.decrypt(currentWrapper.getAuthenticator(), Authenticator.class);
 
         // compare both timestamps
         AuthenticationClientHandler.validateTimestamp(lastAuthenticator.getTimestamp(), currentAuthenticator.getTimestamp());
@@ -174,6 +298,28 @@ public class AuthenticationClientHandler {
         return currentWrapper;
     }
 
+    /**
+     * Handles a ServiceServer response to a request initialized by
+     * {@link #createServiceServerRequest(SessionKey, Authenticator, TicketAuthenticatorWrapper)}.
+     * Only the authenticator of the response is decrypted because the timestamp of the request is known in plaintext.
+     *
+     * @param requestTicket  the ticket used for the request
+     * @param currentWrapper the TicketAuthenticatorWrapper of the response
+     *
+     * @return the decrypted authenticator of the response
+     *
+     * @throws CouldNotPerformException If decryption of the authenticator fails or the timestamps do not match
+     */
+    public static Authenticator handleServiceServerResponse(final RequestTicket requestTicket, final TicketAuthenticatorWrapper currentWrapper) throws CouldNotPerformException {
+        // decrypt authenticator
+        final Authenticator currentAuthenticator = requestTicket.getSessionKey().decrypt(currentWrapper.getAuthenticator(), Authenticator.class);
+
+        // compare both timestamps
+        AuthenticationClientHandler.validateTimestamp(requestTicket.getTimestamp(), currentAuthenticator.getTimestamp());
+
+        return currentAuthenticator;
+    }
+
     /**
      * Validate if the timestamps are equal.
      * Compares now + 1 == then, because server adds +1 to authenticator's timestamp.
@@ -184,7 +330,20 @@ public class AuthenticationClientHandler {
      * @throws RejectedException thrown if the timestamps have a different time
      */
     public static void validateTimestamp(final Timestamp now, final Timestamp then) throws RejectedException {
-        if (now.getTime() + 1 != then.getTime()) {
+        validateTimestamp(now.getTime(), then);
+    }
+
+    /**
+     * Validate if the timestamps are equal.
+     * Compares now + 1 == then, because server adds +1 to authenticator's timestamp.
+     *
+     * @param now  the time of the first timestamp
+     * @param then the second timestamp
+     *
+     * @throws RejectedException thrown if the timestamps have a different time
+     */
+    public static void validateTimestamp(final long now, final Timestamp then) throws RejectedException {
+        if (now + 1 != then.getTime()) {
             throw new RejectedException("Timestamps do not match");
         }
     }
@@ -194,11 +353,13 @@ public class AuthenticationClientHandler {
      */
     public static class TicketWrapperSessionKeyPair {
 
-        private final byte[] sessionKey;
+        private final SessionKey sessionKey;
+        private final Authenticator authenticator;
         private final TicketAuthenticatorWrapper ticketAuthenticatorWrapper;
 
-        TicketWrapperSessionKeyPair(final byte[] sessionKey, final TicketAuthenticatorWrapper ticketAuthenticatorWrapper) {
+        TicketWrapperSessionKeyPair(final SessionKey sessionKey, final Authenticator authenticator, final TicketAuthenticatorWrapper ticketAuthenticatorWrapper) {
             this.sessionKey = sessionKey;
+            this.authenticator = authenticator;
             this.ticketAuthenticatorWrapper = ticketAuthenticatorWrapper;
         }
 
@@ -207,10 +368,19 @@ public class AuthenticationClientHandler {
          *
          * @return the session key.
          */
-        public byte[] getSessionKey() {
+        public SessionKey getSessionKey() {
             return sessionKey;
         }
 
+        /**
+         * Get the plaintext of the authenticator contained in the ticket wrapper.
+         *
+         * @return the authenticator.
+         */
+        public Authenticator getAuthenticator() {
+            return authenticator;
+        }
+
         /**
          * Get the stored ticket wrapper.
          *
@@ -220,4 +390,48 @@ public class AuthenticationClientHandler {
             return ticketAuthenticatorWrapper;
         }
     }
+
+    /**
+     * Ticket wrapper initialized for a request together with the plaintext request timestamp
+     * and the session key used, needed to verify the response.
+     */
+    public static class RequestTicket {
+
+        private final SessionKey sessionKey;
+        private final TicketAuthenticatorWrapper ticketAuthenticatorWrapper;
+        private final long timestamp;
+
+        RequestTicket(final SessionKey sessionKey, final TicketAuthenticatorWrapper ticketAuthenticatorWrapper, final long timestamp) {
+            this.sessionKey = sessionKey;
+            this.ticketAuthenticatorWrapper = ticketAuthenticatorWrapper;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * Get the session key used for the request.
+         *
+         * @return the session key.
+         */
+        public SessionKey getSessionKey() {
+            return sessionKey;
+        }
+
+        /**
+         * Get the ticket wrapper to be sent with the request.
+         *
+         * @return the wrapper.
+         */
+        public TicketAuthenticatorWrapper getTicketAuthenticatorWrapper() {
+            return ticketAuthenticatorWrapper;
+        }
+
+        /**
+         * Get the time of the timestamp in the authenticator of the request.
+         *
+         * @return the time in milliseconds.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
 }
@@ -41,6 +41,7 @@ import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPai
 import org.openbase.type.timing.IntervalType.Interval;
 import org.openbase.type.timing.TimestampType.Timestamp;
 
+import java.security.Key;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -74,26 +75,74 @@ public class AuthenticationServerHandler {
      */
     public static TicketSessionKeyWrapper handleKDCRequest(final UserClientPair userClientPair, final LoginCredentials userCredentials, final LoginCredentials clientCredentials, final byte[] ticketGrantingServiceSecretKey, final long validityTime)
             throws CouldNotPerformException {
+        // only parse the credentials which are actually required by the pair
+        final Key userKey = (userCredentials == null || userClientPair.getUserId().isEmpty()) ? null : EncryptionHelper.createEncryptionKey(userCredentials);
+        final Key clientKey = (clientCredentials == null || userClientPair.getClientId().isEmpty()) ? null : EncryptionHelper.createEncryptionKey(clientCredentials);
+        return handleKDCRequest(userClientPair, userKey, clientKey, ticketGrantingServiceSecretKey, validityTime);
+    }
+
+    /**
+     * Handles a Key Distribution Center (KDC) login request with already parsed keys of the user and client.
+     * This allows callers to reuse keys, e.g. cached by the {@link CredentialStore}, instead of parsing
+     * the credentials on every request.
+     *
+     * @param userClientPair                 pair identifying the client and user which are logged in
+     * @param userKey                        the encryption key of the user which is only needed if a user is defined in
+     *                                       the userClientPair
+     * @param clientKey                      the encryption key of the client which is only needed if a client is defined in
+     *                                       the userClientPair
+     * @param ticketGrantingServiceSecretKey TGS secret key generated by controller or saved somewhere in the system
+     * @param validityTime                   the time in milliseconds from now how long the TGT is valid
+     *
+     * @return Returns wrapper class containing both the TGT and TGS session key
+     *
+     * @throws NotAvailableException    Throws, if a required key is missing
+     * @throws CouldNotPerformException If the encryption fails
+     */
+    public static TicketSessionKeyWrapper handleKDCRequest(final UserClientPair userClientPair, final Key userKey, final Key clientKey, final byte[] ticketGrantingServiceSecretKey, final long validityTime)
+            throws CouldNotPerformException {
+        return handleKDCRequest(userClientPair, userKey, clientKey, new KeyRing(ticketGrantingServiceSecretKey), validityTime);
+    }
+
+    /**
+     * Handles a Key Distribution Center (KDC) login request with already parsed keys of the user and client.
+     * The TGT is encrypted with the current key of the ring of the TGS.
+     *
+     * @param userClientPair               pair identifying the client and user which are logged in
+     * @param userKey                      the encryption key of the user which is only needed if a user is defined in
+     *                                     the userClientPair
+     * @param clientKey                    the encryption key of the client which is only needed if a client is defined in
+     *                                     the userClientPair
+     * @param ticketGrantingServiceKeyRing key ring of the TGS
+     * @param validityTime                 the time in milliseconds from now how long the TGT is valid
+     *
+     * @return Returns wrapper class containing both the TGT and TGS session key
+     *
+     * @throws NotAvailableException    Throws, if a required key is missing
+     * @throws CouldNotPerformException If the encryption fails
+     */
+    public static TicketSessionKeyWrapper handleKDCRequest(final UserClientPair userClientPair, final Key userKey, final Key clientKey, final KeyRing ticketGrantingServiceKeyRing, final long validityTime)
+            throws CouldNotPerformException {
         byte[] ticketGrantingServiceSessionKey = EncryptionHelper.generateKey();
 
         // create ticket granting ticket
-        final ByteString ticketGrantingTicket = updateAndEncryptTicket(Ticket.newBuilder().setUserClientPair(userClientPair), validityTime, ticketGrantingServiceSessionKey, ticketGrantingServiceSecretKey);
+        final ByteString ticketGrantingTicket = updateAndEncryptTicket(Ticket.newBuilder().setUserClientPair(userClientPair), validityTime, ticketGrantingServiceSessionKey, ticketGrantingServiceKeyRing);
 
         // create TicketSessionKeyWrapper
         TicketSessionKeyWrapper.Builder ticketSessionKeyWrapper = TicketSessionKeyWrapper.newBuilder();
         ticketSessionKeyWrapper.setTicket(ticketGrantingTicket);
 
         if (userClientPair.hasUserId() && !userClientPair.getUserId().isEmpty()) {
-            if (userCredentials == null) {
+            if (userKey == null) {
                 throw new NotAvailableException("user credentials");
             }
-            ticketGrantingServiceSessionKey = EncryptionHelper.encrypt(ticketGrantingServiceSessionKey, userCredentials);
+            ticketGrantingServiceSessionKey = EncryptionHelper.encrypt(ticketGrantingServiceSessionKey, userKey);
         }
         if (userClientPair.hasClientId() && !userClientPair.getClientId().isEmpty()) {
-            if (clientCredentials == null) {
+            if (clientKey == null) {
                 throw new NotAvailableException("client credentials");
             }
-            ticketGrantingServiceSessionKey = EncryptionHelper.encrypt(ticketGrantingServiceSessionKey, clientCredentials);
+            ticketGrantingServiceSessionKey = EncryptionHelper.encrypt(ticketGrantingServiceSessionKey, clientKey);
         }
 
         ticketSessionKeyWrapper.setSessionKey(ByteString.copyFrom(ticketGrantingServiceSessionKey));
@@ -118,10 +167,31 @@ public class AuthenticationServerHandler {
      * @throws CouldNotPerformException If de- or encryption fail.
      */
     public static TicketSessionKeyWrapper handleTGSRequest(final byte[] ticketGrantingServiceSecretKey, final byte[] serviceServerSecretKey, final TicketAuthenticatorWrapper wrapper, final long validityTime) throws RejectedException, CouldNotPerformException {
+        return handleTGSRequest(new KeyRing(ticketGrantingServiceSecretKey), new KeyRing(serviceServerSecretKey), wrapper, validityTime);
+    }
+
+    /**
+     * Handles a Ticket Granting Service (TGS) request with rotating keys.
+     * The TGT is decrypted with the key of the TGS ring it has been encrypted with and the CST is encrypted with
+     * the current key of the SS ring.
+     *
+     * @param ticketGrantingServiceKeyRing key ring of the TGS
+     * @param serviceServerKeyRing         key ring of the SS
+     * @param wrapper                      TicketAuthenticatorWrapperWrapper that contains both encrypted Authenticator and TGT
+     * @param validityTime                 time in milli seconds how long the new ticket is valid from now on
+     *
+     * @return Returns a wrapper class containing both the CST and SS session key
+     *
+     * @throws RejectedException        If timestamp in Authenticator does not fit to time period in TGT
+     *                                  or, if clientID in Authenticator does not match clientID in TGT
+     *                                  or, if the TGT has been encrypted with a retired key
+     * @throws CouldNotPerformException If de- or encryption fail.
+     */
+    public static TicketSessionKeyWrapper handleTGSRequest(final KeyRing ticketGrantingServiceKeyRing, final KeyRing serviceServerKeyRing, final TicketAuthenticatorWrapper wrapper, final long validityTime) throws RejectedException, CouldNotPerformException {
         // decrypt ticket and authenticator
-        Ticket ticketGrantingTicket = EncryptionHelper.decryptSymmetric(wrapper.getTicket(), ticketGrantingServiceSecretKey, Ticket.class);
-        byte[] ticketGrantingServiceSessionKey = ticketGrantingTicket.getSessionKeyBytes().toByteArray();
-        Authenticator authenticator = EncryptionHelper.decryptSymmetric(wrapper.getAuthenticator(), ticketGrantingServiceSessionKey, Authenticator.class);
+        Ticket ticketGrantingTicket = ticketGrantingServiceKeyRing.decrypt(wrapper.getTicket(), Ticket.class);
+        final SessionKey ticketGrantingServiceSessionKey = new SessionKey(ticketGrantingTicket.getSessionKeyBytes());
+        Authenticator authenticator = ticketGrantingServiceSessionKey.decrypt(wrapper.getAuthenticator(), Authenticator.class);
 
         // compare clientIDs and timestamp to period
         AuthenticationServerHandler.validateTicket(ticketGrantingTicket, authenticator);
@@ -130,11 +200,11 @@ public class AuthenticationServerHandler {
         byte[] serviceServerSessionKey = EncryptionHelper.generateKey();
 
         // update validity interval, session key and encrypt
-        final ByteString clientServerTicket = EncryptionHelper.encryptSymmetric(serviceServerSessionKey, ticketGrantingServiceSessionKey);
+        final ByteString clientServerTicket = ticketGrantingServiceSessionKey.encrypt(serviceServerSessionKey);
 
         // create TicketSessionKeyWrapper
         TicketSessionKeyWrapper.Builder ticketSessionKeyWrapper = TicketSessionKeyWrapper.newBuilder();
-        ticketSessionKeyWrapper.setTicket(updateAndEncryptTicket(ticketGrantingTicket.toBuilder(), validityTime, serviceServerSessionKey, serviceServerSecretKey));
+        ticketSessionKeyWrapper.setTicket(updateAndEncryptTicket(ticketGrantingTicket.toBuilder(), validityTime, serviceServerSessionKey, serviceServerKeyRing));
         ticketSessionKeyWrapper.setSessionKey(clientServerTicket);
 
         return ticketSessionKeyWrapper.build();
@@ -146,16 +216,16 @@ public class AuthenticationServerHandler {
      * @param ticket       the ticket to be updated.
      * @param validityTime time in milliseconds how long the ticket should be valid
      * @param sessionKey   the session key added to the ticket.
-     * @param secretKey    the key used to encrypt the ticket.
+     * @param keyRing      the key ring whose current key is used to encrypt the ticket.
      *
      * @return an updated and encrypted ticket.
      *
      * @throws CouldNotPerformException if encryption fails.
      */
-    private static ByteString updateAndEncryptTicket(final Ticket.Builder ticket, final long validityTime, final byte[] sessionKey, final byte[] secretKey) throws CouldNotPerformException {
+    private static ByteString updateAndEncryptTicket(final Ticket.Builder ticket, final long validityTime, final byte[] sessionKey, final KeyRing keyRing) throws CouldNotPerformException {
         ticket.setValidityPeriod(getValidityInterval(validityTime));
         ticket.setSessionKeyBytes(ByteString.copyFrom(sessionKey));
-        return EncryptionHelper.encryptSymmetric(ticket.build(), secretKey);
+        return keyRing.encrypt(ticket.build());
     }
 
     /**
@@ -174,9 +244,31 @@ public class AuthenticationServerHandler {
      * @throws CouldNotPerformException If de- or encryption fail.
      */
     public static AuthenticationBaseData handleSSRequest(final byte[] serviceServerSecretKey, final TicketAuthenticatorWrapper wrapper, final long validityTime) throws CouldNotPerformException {
+        return handleSSRequest(new KeyRing(serviceServerSecretKey), wrapper, validityTime);
+    }
+
+    /**
+     * Handles a service method (Remote) request to Service Server (SS) (Manager) with rotating keys.
+     * The CST is decrypted with the key it has been encrypted with and encrypted again with the current key,
+     * so that the tickets of active sessions move to a new key on their next request.
+     *
+     * @param serviceServerKeyRing key ring of the SS
+     * @param wrapper              TicketAuthenticatorWrapper wrapper that contains both encrypted Authenticator and TGT
+     * @param validityTime         time in milli seconds how long the new ticket is valid from now on
+     *
+     * @return Returns a wrapper class containing both the modified CST and unchanged Authenticator
+     *
+     * @throws RejectedException        If timestamp in Authenticator does not fit to time period in TGT
+     *                                  or, if clientID in Authenticator does not match clientID in TGT
+     *                                  or, if the CST has been encrypted with a retired key
+     * @throws CouldNotPerformException If de- or encryption fail.
+     */
+    public static AuthenticationBaseData handleSSRequest(final KeyRing serviceServerKeyRing, final TicketAuthenticatorWrapper wrapper, final long validityTime) throws CouldNotPerformException {
         // decrypt ticket and authenticator
-        final Ticket.Builder clientServerTicket = EncryptionHelper.decryptSymmetric(wrapper.getTicket(), serviceServerSecretKey, Ticket.class).toBuilder();
-        final Authenticator.Builder authenticator = EncryptionHelper.decryptSymmetric(wrapper.getAuthenticator(), clientServerTicket.getSessionKeyBytes().toByteArray(), Authenticator.class).toBuilder();
+        final Ticket.Builder clientServerTicket = serviceServerKeyRing.decrypt(wrapper.getTicket(), Ticket.class).toBuilder();
+        // create the session key handle once and reuse it for the whole request
+        final SessionKey sessionKey = new SessionKey(clientServerTicket.getSessionKeyBytes());
+        final Authenticator.Builder authenticator = sessionKey.decrypt(wrapper.getAuthenticator(), Authenticator.class).toBuilder();
 
         // compare clientIDs and timestamp to period
         AuthenticationServerHandler.validateTicket(clientServerTicket, authenticator);
@@ -189,10 +281,10 @@ public class AuthenticationServerHandler {
 
         // update TicketAuthenticatorWrapper
         TicketAuthenticatorWrapper.Builder ticketAuthenticatorWrapper = wrapper.toBuilder();
-        ticketAuthenticatorWrapper.setTicket(EncryptionHelper.encryptSymmetric(clientServerTicket.build(), serviceServerSecretKey));
-        ticketAuthenticatorWrapper.setAuthenticator(EncryptionHelper.encryptSymmetric(authenticator.build(), clientServerTicket.getSessionKeyBytes().toByteArray()));
+        ticketAuthenticatorWrapper.setTicket(serviceServerKeyRing.encrypt(clientServerTicket.build()));
+        ticketAuthenticatorWrapper.setAuthenticator(sessionKey.encrypt(authenticator.build()));
 
-        return new AuthenticationBaseData(authenticator.getUserClientPair(), clientServerTicket.getSessionKeyBytes().toByteArray(), ticketAuthenticatorWrapper.build());
+        return new AuthenticationBaseData(authenticator.getUserClientPair(), sessionKey, ticketAuthenticatorWrapper.build());
     }
 
     private static final DateFormat DATE_FORMAT = new SimpleDateFormat("d.M.Y - H:m:s:S");
@@ -33,7 +33,6 @@ import org.openbase.jul.exception.printer.LogLevel;
 import org.openbase.jul.extension.protobuf.IdentifiableMessage;
 import org.openbase.jul.extension.type.processing.LabelProcessor;
 import org.openbase.jul.extension.type.processing.ScopeProcessor;
-import org.openbase.jul.processing.StringProcessor;
 import org.openbase.type.domotic.authentication.PermissionConfigType.PermissionConfig;
 import org.openbase.type.domotic.authentication.PermissionConfigType.PermissionConfig.MapFieldEntry;
 import org.openbase.type.domotic.authentication.PermissionType.Permission;
@@ -42,7 +41,12 @@ import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
 import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Helper class to determine the permissions for a given user on a given permission configuration.
@@ -55,6 +59,18 @@ public class AuthorizationHelper {
 
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(AuthorizationHelper.class);
 
+    static final int READ_BIT = 1;
+    static final int WRITE_BIT = 1 << 1;
+    static final int ACCESS_BIT = 1 << 2;
+    static final int ALL_BITS = READ_BIT | WRITE_BIT | ACCESS_BIT;
+
+    /**
+     * Minimal number of units filtered in parallel by {@link #filterReadable(Collection, UserClientPair, Map, Map)}.
+     */
+    private static final int PARALLEL_FILTER_THRESHOLD = 1024;
+    private static final int USER_PRINCIPAL = 1;
+    private static final int CLIENT_PRINCIPAL = 1 << 1;
+
     public enum PermissionType {
         READ,
         WRITE,
@@ -87,8 +103,7 @@ public class AuthorizationHelper {
      * @return true if either the user or the client have read permissions for the unit, else false.
      */
     public static boolean canRead(UnitConfig unitConfig, final UserClientPair userClientPair, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) {
-        return canRead(unitConfig, userClientPair.getUserId(), groups, locations)
-                || canRead(unitConfig, userClientPair.getClientId(), groups, locations);
+        return canDo(unitConfig, userClientPair, groups, locations, PermissionType.READ);
     }
 
     /**
@@ -117,8 +132,7 @@ public class AuthorizationHelper {
      * @return true if either the user or the client have write permissions for the unit, else false.
      */
     public static boolean canWrite(UnitConfig unitConfig, final UserClientPair userClientPair, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) {
-        return canWrite(unitConfig, userClientPair.getUserId(), groups, locations)
-                || canWrite(unitConfig, userClientPair.getClientId(), groups, locations);
+        return canDo(unitConfig, userClientPair, groups, locations, PermissionType.WRITE);
     }
 
     /**
@@ -146,12 +160,12 @@ public class AuthorizationHelper {
      * @return true if either the user or the client can access the unit, else false.
      */
     public static boolean canAccess(UnitConfig unitConfig, final UserClientPair userClientPair, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) {
-        return canAccess(unitConfig, userClientPair.getUserId(), groups, locations)
-                || canAccess(unitConfig, userClientPair.getClientId(), groups, locations);
+        return canDo(unitConfig, userClientPair, groups, locations, PermissionType.ACCESS);
     }
 
     /**
      * Checks all permissions for a user.
+     * The effective permission config of the unit is resolved once and all permission types are evaluated together.
      *
      * @param unitConfig The unitConfig of the unit for which the permissions apply.
      * @param userId     ID of the user whose permissions should be checked.
@@ -161,38 +175,160 @@ public class AuthorizationHelper {
      * @return Permission object representing the maximum permissions for the given user on the given unit.
      */
     public static Permission getPermission(UnitConfig unitConfig, String userId, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) {
-        return Permission.newBuilder()
-                .setAccess(canAccess(unitConfig, userId, groups, locations))
-                .setRead(canRead(unitConfig, userId, groups, locations))
-                .setWrite(canWrite(unitConfig, userId, groups, locations))
-                .build();
+        return toPermission(getPermissionBits(unitConfig, userId, null, groups, locations, ALL_BITS));
     }
 
-    public static boolean canDo(UnitConfig unitConfig, final String userId, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations, PermissionType type) {
-        if (!isAuthenticationUnit(unitConfig) && !isRootLocation(unitConfig, locations)) {
-            // check if the given user has read permissions for the parent location otherwise skip all further checks
+    /**
+     * Checks all permissions for a user and a client at once, e.g. to filter data in {@code filterDataForUser}.
+     * The effective permission config of the unit is resolved once and all permission types are evaluated together
+     * for both of them.
+     *
+     * @param unitConfig     the unit config checked.
+     * @param userClientPair the pair containing a user id and a client id.
+     * @param groups         a map of all authorization groups.
+     * @param locations      a map of all locations.
+     *
+     * @return Permission object containing every permission that either the user or the client have for the unit.
+     */
+    public static Permission getPermission(UnitConfig unitConfig, final UserClientPair userClientPair, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) {
+        return toPermission(getPermissionBits(unitConfig, userClientPair.getUserId(), userClientPair.getClientId(), groups, locations, ALL_BITS));
+    }
+
+    /**
+     * Check one permission type for a user and a client at once. The effective permission config of the unit is
+     * resolved once for both of them.
+     *
+     * @param unitConfig     the unit config checked.
+     * @param userClientPair the pair containing a user id and a client id.
+     * @param groups         a map of all authorization groups.
+     * @param locations      a map of all locations.
+     * @param type           the permission type to check.
+     *
+     * @return true if either the user or the client have the permission for the unit.
+     */
+    private static boolean canDo(final UnitConfig unitConfig, final UserClientPair userClientPair, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations, final PermissionType type) {
+        final int typeBit = toBit(type);
+        return (getPermissionBits(unitConfig, userClientPair.getUserId(), userClientPair.getClientId(), groups, locations, typeBit) & typeBit) != 0;
+    }
+
+    /**
+     * Internal helper method to evaluate the permissions of a user and a client for a unit in one pass.
+     * The result is only complete for the required permissions, see
+     * {@link #getPermissionBits(PermissionConfig, String, Map, int)}.
+     *
+     * @param unitConfig   the unit config checked.
+     * @param userId       ID of the user whose permissions should be checked.
+     * @param clientId     ID of the client whose permissions should be checked or null if only the user is checked.
+     * @param groups       All available groups in the system, indexed by their group ID.
+     * @param locations    All available locations in the system, indexed by their id.
+     * @param requiredBits The bits of the permission types which have to be evaluated.
+     *
+     * @return The bits of the permission types granted to the user or the client.
+     */
+    private static int getPermissionBits(final UnitConfig unitConfig, final String userId, final String clientId, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations, final int requiredBits) {
+        final PermissionConfigCache.Entry entry;
+        try {
+            entry = resolvePermissionConfig(unitConfig, locations);
+        } catch (NotAvailableException ex) {
+            ExceptionPrinter.printHistory("can not perform the permission check! Permission will be denied!", ex, LOGGER, LogLevel.WARN);
+            return 0;
+        }
+
+        // user and client need read permissions for all parent locations otherwise they have no permissions at all
+        boolean userReads = true;
+        boolean clientReads = clientId != null;
+        for (PermissionConfigCache.Entry parentEntry = entry.getParent(); parentEntry != null && (userReads || clientReads); parentEntry = parentEntry.getParent()) {
+            userReads = userReads && (getPermissionBits(parentEntry.getPermissionConfig(), userId, groups, READ_BIT) & READ_BIT) != 0;
+            clientReads = clientReads && (getPermissionBits(parentEntry.getPermissionConfig(), clientId, groups, READ_BIT) & READ_BIT) != 0;
+        }
+
+        int permissionBits = 0;
+        if (userReads) {
+            permissionBits |= getPermissionBits(entry.getPermissionConfig(), userId, groups, requiredBits);
+        }
+        if (clientReads && (permissionBits & requiredBits) != requiredBits) {
+            permissionBits |= getPermissionBits(entry.getPermissionConfig(), clientId, groups, requiredBits & ~permissionBits);
+        }
+        return permissionBits;
+    }
+
+    /**
+     * Filter all units which can be read by a user or a client, e.g. to filter a registry in {@code filterDataForUser}.
+     * The result matches calling {@link #canRead(UnitConfig, UserClientPair, Map, Map)} for every unit. But whether
+     * the user and client can read a location is only evaluated once for the whole collection and large collections
+     * are filtered in parallel on the common fork/join pool.
+     *
+     * @param unitConfigs    the unit configs to filter.
+     * @param userClientPair the pair containing a user id and a client id.
+     * @param groups         a map of all authorization groups.
+     * @param locations      a map of all locations.
+     *
+     * @return a list of all readable unit configs in the iteration order of the collection.
+     */
+    public static List<UnitConfig> filterReadable(final Collection<UnitConfig> unitConfigs, final UserClientPair userClientPair, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) {
+        // principals reading an entry and all its parents, shared by all units filtered
+        final Map<PermissionConfigCache.Entry, Integer> readingPrincipalMap = new ConcurrentHashMap<>();
+        final Predicate<UnitConfig> readable = unitConfig -> {
+            final PermissionConfigCache.Entry entry;
             try {
-                if (!canRead(getLocationUnitConfig(unitConfig.getPlacementConfig().getLocationId(), locations), userId, groups, locations)) {
-                    return false;
-                }
+                entry = resolvePermissionConfig(unitConfig, locations);
             } catch (NotAvailableException ex) {
-                String scope;
-                try {
-                    scope = ScopeProcessor.generateStringRep(unitConfig.getScope());
-                } catch (CouldNotPerformException exx) {
-                    scope = "?";
-                }
-                ExceptionPrinter.printHistory("PermissionConfig of Unit[" + scope + "] is denied!", ex, LOGGER, LogLevel.WARN);
+                ExceptionPrinter.printHistory("can not perform the canDo check! Permission will be denied!", ex, LOGGER, LogLevel.WARN);
                 return false;
             }
+            return getReadingPrincipals(entry, userClientPair.getUserId(), userClientPair.getClientId(), groups, readingPrincipalMap) != 0;
+        };
+
+        if (unitConfigs.size() < PARALLEL_FILTER_THRESHOLD) {
+            return unitConfigs.stream().filter(readable).collect(Collectors.toList());
+        }
+        return unitConfigs.parallelStream().filter(readable).collect(Collectors.toList());
+    }
+
+    private static int getReadingPrincipals(final PermissionConfigCache.Entry entry, final String userId, final String clientId, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, final Map<PermissionConfigCache.Entry, Integer> readingPrincipalMap) {
+        final Integer cachedPrincipals = readingPrincipalMap.get(entry);
+        if (cachedPrincipals != null) {
+            return cachedPrincipals;
+        }
+
+        int principals = (entry.getParent() == null) ? USER_PRINCIPAL | CLIENT_PRINCIPAL : getReadingPrincipals(entry.getParent(), userId, clientId, groups, readingPrincipalMap);
+        if ((principals & USER_PRINCIPAL) != 0 && !canDo(entry.getPermissionConfig(), userId, groups, PermissionType.READ)) {
+            principals &= ~USER_PRINCIPAL;
+        }
+        if ((principals & CLIENT_PRINCIPAL) != 0 && !canDo(entry.getPermissionConfig(), clientId, groups, PermissionType.READ)) {
+            principals &= ~CLIENT_PRINCIPAL;
         }
 
+        // concurrent evaluations of the same entry compute the same value so no atomic update is needed
+        readingPrincipalMap.put(entry, principals);
+        return principals;
+    }
+
+    public static boolean canDo(UnitConfig unitConfig, final String userId, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations, PermissionType type) {
+        final PermissionConfigCache.Entry entry;
         try {
-            return canDo(getPermissionConfig(unitConfig, locations), userId, groups, type);
-        } catch (CouldNotPerformException ex) {
+            entry = resolvePermissionConfig(unitConfig, locations);
+        } catch (NotAvailableException ex) {
             ExceptionPrinter.printHistory("can not perform the canDo check! Permission will be denied!", ex, LOGGER, LogLevel.WARN);
             return false;
         }
+
+        // check if the given user has read permissions for all parent locations otherwise skip all further checks
+        for (PermissionConfigCache.Entry parentEntry = entry.getParent(); parentEntry != null; parentEntry = parentEntry.getParent()) {
+            if (!canDo(parentEntry.getPermissionConfig(), userId, groups, PermissionType.READ)) {
+                return false;
+            }
+        }
+
+        return canDo(entry.getPermissionConfig(), userId, groups, type);
+    }
+
+    /**
+     * Invalidate all cached effective permission configs. This is only required if locations are changed without
+     * replacing their unit configs in the locations map, because changed unit configs are detected automatically.
+     */
+    public static void invalidatePermissionConfigCache() {
+        PermissionConfigCache.invalidateAll();
     }
 
     /**
@@ -206,50 +342,108 @@ public class AuthorizationHelper {
      * @return True if the user has the given permission, false if not.
      */
     private static boolean canDo(final PermissionConfig permissionConfig, final String userId, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, PermissionType type) {
+        final int typeBit = toBit(type);
+        return (getPermissionBits(permissionConfig, userId, groups, typeBit) & typeBit) != 0;
+    }
+
+    /**
+     * Internal helper method to evaluate all permissions of a user for a permission config in one pass.
+     * The evaluation stops as soon as all required permissions are granted, so the result may contain
+     * further permissions but is only complete for the required ones.
+     *
+     * @param permissionConfig The permission config to evaluate.
+     * @param userId           ID of the user whose permissions should be checked.
+     * @param groups           All available groups in the system, indexed by their group ID.
+     * @param requiredBits     The bits of the permission types which have to be evaluated.
+     *
+     * @return The bits of the permission types granted to the user.
+     */
+    private static int getPermissionBits(final PermissionConfig permissionConfig, final String userId, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, final int requiredBits) {
         // Other
-        if (permitted(permissionConfig.getOtherPermission(), type)) {
-            return true;
-        }
+        int bits = toBits(permissionConfig.getOtherPermission());
 
         // If no user was given, only "other" rights apply.
-        if (userId == null || userId.isEmpty()) {
-            return false;
+        if ((bits & requiredBits) == requiredBits || userId == null || userId.isEmpty()) {
+            return bits;
         }
 
         // Owner
         if (permissionConfig.getOwnerId().equals(userId)) {
-            if (permitted(permissionConfig.getOwnerPermission(), type)) {
-                return true;
-            }
+            bits |= toBits(permissionConfig.getOwnerPermission());
         }
 
         // Groups
         if (groups == null) {
-            return false;
+            return bits;
         }
 
         // check the groups defined in the permission config
         ProtocolStringList groupMembers;
         for (final MapFieldEntry entry : permissionConfig.getGroupPermissionList()) {
+            if ((bits & requiredBits) == requiredBits) {
+                break;
+            }
+
+            // skip groups which would not grant any missing permission
+            final int entryBits = toBits(entry.getPermission());
+            if ((entryBits & requiredBits & ~bits) == 0) {
+                continue;
+            }
+
             // every user is also a group so check if the group id matches the user id
-            if (entry.getGroupId().equals(userId) && permitted(entry.getPermission(), type)) {
-                return true;
+            if (entry.getGroupId().equals(userId)) {
+                bits |= entryBits;
+                continue;
             }
 
             // continue if the provided group id is a user which is not the checked one
-            if (!groups.containsKey(entry.getGroupId())) {
+            final IdentifiableMessage<String, UnitConfig, UnitConfig.Builder> group = groups.get(entry.getGroupId());
+            if (group == null) {
                 continue;
             }
 
-            // retrieve group
-            groupMembers = groups.get(entry.getGroupId()).getMessage().getAuthorizationGroupConfig().getMemberIdList();
-            // Check if the user belongs to the group and the group has the according permissions
-            if (groupMembers.contains(userId) && permitted(entry.getPermission(), type)) {
-                return true;
+            // Check if the user belongs to the group
+            groupMembers = group.getMessage().getAuthorizationGroupConfig().getMemberIdList();
+            if (groupMembers.contains(userId)) {
+                bits |= entryBits;
             }
         }
+        return bits;
+    }
 
-        return false;
+    static int toBits(final Permission permission) {
+        int bits = 0;
+        if (permission.getRead()) {
+            bits |= READ_BIT;
+        }
+        if (permission.getWrite()) {
+            bits |= WRITE_BIT;
+        }
+        if (permission.getAccess()) {
+            bits |= ACCESS_BIT;
+        }
+        return bits;
+    }
+
+    static int toBit(final PermissionType type) {
+        switch (type) {
+            case READ:
+                return READ_BIT;
+            case WRITE:
+                return WRITE_BIT;
+            case ACCESS:
+                return ACCESS_BIT;
+            default:
+                return 0;
+        }
+    }
+
+    static Permission toPermission(final int bits) {
+        return Permission.newBuilder()
+                .setAccess((bits & ACCESS_BIT) != 0)
+                .setRead((bits & READ_BIT) != 0)
+                .setWrite((bits & WRITE_BIT) != 0)
+                .build();
     }
 
     public static boolean permitted(final Permission permission, final PermissionType type) {
@@ -265,62 +459,21 @@ public class AuthorizationHelper {
         }
     }
 
-    private static PermissionConfig getPermissionConfig(final UnitConfig unitConfig, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) throws NotAvailableException {
+    static PermissionConfigCache.Entry resolvePermissionConfig(final UnitConfig unitConfig, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) throws NotAvailableException {
         try {
-            if (unitConfig == null) {
-                throw new NotAvailableException("UnitConfig");
-            }
-
-            // the root location should always use its own permissions to terminate the recursive permission resolution.
-            if (isRootLocation(unitConfig, locations)) {
-                if (!unitConfig.hasPermissionConfig()) {
-                    throw new InvalidStateException("The root location does not provide a permission config!");
-                }
-                return unitConfig.getPermissionConfig();
-            }
-
-            // user or authentication group permissions are independent of there location referred location.
-            if (isAuthenticationUnit(unitConfig)) {
-                if (!unitConfig.hasPermissionConfig()) {
-                    throw new InvalidStateException(StringProcessor.transformUpperCaseToPascalCase(unitConfig.getUnitType().name()) + " should always provide a permission config!");
-                }
-                return unitConfig.getPermissionConfig();
-            }
-
-            // verify needed location information
-            if (locations == null || locations.isEmpty()) {
-                throw new InvalidStateException("No location information available for permission resolution!");
-            }
-
-            PermissionConfig unitPermissionConfig;
-
-            // resolve parent permissions
-            try {
-                final UnitConfig locationUnitConfig = getLocationUnitConfig(unitConfig.getPlacementConfig().getLocationId(), locations);
-                unitPermissionConfig = getPermissionConfig(locationUnitConfig, locations);
-            } catch (NotAvailableException ex) {
-                throw new InvalidStateException("Parent location does not provide a permission config!", ex);
-            }
-
-            // resolve unit permissions and merge those with the parent location permissions
-            if (unitConfig.hasPermissionConfig()) {
-                unitPermissionConfig = mergePermissionConfigs(unitConfig.getPermissionConfig(), unitPermissionConfig);
-            }
-
-            return unitPermissionConfig;
-
+            return PermissionConfigCache.getCache(locations).resolve(unitConfig, locations);
         } catch (CouldNotPerformException ex) {
             String scope;
             try {
                 scope = ScopeProcessor.generateStringRep(unitConfig.getScope());
-            } catch (CouldNotPerformException exx) {
+            } catch (CouldNotPerformException | NullPointerException exx) {
                 scope = "?";
             }
             throw new NotAvailableException("PermissionConfig of Unit[" + scope + "]", ex);
         }
     }
 
-    private static boolean isRootLocation(final UnitConfig unitConfig, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) {
+    static boolean isRootLocation(final UnitConfig unitConfig, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) {
 
         // if this unit is not a location it can not be a root location
         if (unitConfig.getUnitType() != UnitType.LOCATION) {
@@ -349,7 +502,11 @@ public class AuthorizationHelper {
         }
     }
 
-    private static boolean isAuthenticationUnit(final UnitConfig unitConfig) {
+    static boolean isLocation(final UnitConfig unitConfig) {
+        return unitConfig.getUnitType() == UnitType.LOCATION;
+    }
+
+    static boolean isAuthenticationUnit(final UnitConfig unitConfig) {
         switch (unitConfig.getUnitType()) {
             case USER:
             case AUTHORIZATION_GROUP:
@@ -359,7 +516,7 @@ public class AuthorizationHelper {
         }
     }
 
-    private static UnitConfig getLocationUnitConfig(final String locationId, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) throws NotAvailableException {
+    static UnitConfig getLocationUnitConfig(final String locationId, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) throws NotAvailableException {
         try {
             if (locationId.isEmpty()) {
                 throw new NotAvailableException("locationId");
@@ -380,7 +537,7 @@ public class AuthorizationHelper {
         }
     }
 
-    private static PermissionConfig mergePermissionConfigs(final PermissionConfig unitPermissionConfig, final PermissionConfig parentLocationPermissionConfig) throws CouldNotPerformException {
+    static PermissionConfig mergePermissionConfigs(final PermissionConfig unitPermissionConfig, final PermissionConfig parentLocationPermissionConfig) throws CouldNotPerformException {
         if (unitPermissionConfig == null) {
             throw new NotAvailableException("UserPermissionConfig");
         }
@@ -0,0 +1,386 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.bco.authentication.lib.AuthorizationHelper.PermissionType;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.exception.printer.LogLevel;
+import org.openbase.jul.extension.protobuf.IdentifiableMessage;
+import org.openbase.jul.schedule.SyncObject;
+import org.openbase.type.domotic.authentication.PermissionConfigType.PermissionConfig;
+import org.openbase.type.domotic.authentication.PermissionConfigType.PermissionConfig.MapFieldEntry;
+import org.openbase.type.domotic.authentication.PermissionType.Permission;
+import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.slf4j.LoggerFactory;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiled index answering the same questions as the static methods of {@link AuthorizationHelper}.
+ * <p>
+ * Group ids are interned to ints when groups and permission configs are compiled. The ids of checked users and
+ * clients are only looked up, so checks do not grow the index. The membership of every principal is stored as a
+ * bitset of the groups it belongs to and the group permissions of an effective permission config are compiled into one bitset
+ * of granted groups per permission type, while the other and owner permissions are packed into a few bits.
+ * Checking a permission then only consists of a few bit operations instead of scanning the group permissions
+ * and the member lists of the groups.
+ * <p>
+ * The index is updated with the maps of authorization groups and locations by {@link #update(Map, Map)}.
+ * Only groups whose unit config has been replaced are compiled again and effective permission configs are only
+ * compiled again if the permission config of the unit or one of its locations has been replaced.
+ * Checks never block and see either the state before or after an update.
+ */
+public class AuthorizationIndex {
+
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(AuthorizationIndex.class);
+
+    private final SyncObject updateLock = new SyncObject("AuthorizationIndexUpdateLock");
+    private final Map<String, Integer> idMap;
+    private final AtomicInteger idCounter;
+    private final Map<String, CompiledPermissionConfig> compiledPermissionConfigMap;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Create an empty index. It has to be updated with the groups and locations before permissions can be checked.
+     */
+    public AuthorizationIndex() {
+        this.idMap = new ConcurrentHashMap<>();
+        this.idCounter = new AtomicInteger(0);
+        this.compiledPermissionConfigMap = new ConcurrentHashMap<>();
+        this.snapshot = new Snapshot(null, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * Update the index with the current authorization groups and locations. Only the membership of groups which
+     * have been added, removed or replaced is compiled again. The locations map is kept and used to resolve the
+     * effective permission configs of units, so locations replaced later are detected automatically.
+     *
+     * @param groups    All available groups in the system, indexed by their group ID.
+     * @param locations All available locations in the system, indexed by their id.
+     */
+    public void update(final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) {
+        synchronized (updateLock) {
+            final Snapshot previous = snapshot;
+            if (groups == null) {
+                snapshot = new Snapshot(locations, null, Collections.emptyMap());
+                return;
+            }
+
+            final Map<String, UnitConfig> previousGroups = previous.groupMap == null ? Collections.emptyMap() : previous.groupMap;
+            final Map<String, UnitConfig> groupMap = new HashMap<>();
+            final Set<String> changedGroupSet = new HashSet<>();
+            for (final Entry<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> entry : groups.entrySet()) {
+                final UnitConfig groupConfig = entry.getValue().getMessage();
+                groupMap.put(entry.getKey(), groupConfig);
+                if (previousGroups.get(entry.getKey()) != groupConfig) {
+                    changedGroupSet.add(entry.getKey());
+                }
+            }
+            for (final String groupId : previousGroups.keySet()) {
+                if (!groupMap.containsKey(groupId)) {
+                    changedGroupSet.add(groupId);
+                }
+            }
+
+            if (changedGroupSet.isEmpty() && previous.groupMap != null) {
+                snapshot = new Snapshot(locations, previous.groupMap, previous.membershipMap);
+                return;
+            }
+
+            // copy the membership of all principals affected by a changed group and apply the changes
+            final Map<String, BitSet> membershipMap = new HashMap<>(previous.membershipMap);
+            final Set<String> copiedSet = new HashSet<>();
+            for (final String groupId : changedGroupSet) {
+                final int groupIndex = intern(groupId);
+                final UnitConfig previousGroup = previousGroups.get(groupId);
+                if (previousGroup != null) {
+                    for (final String memberId : previousGroup.getAuthorizationGroupConfig().getMemberIdList()) {
+                        getCopiedMembership(membershipMap, copiedSet, memberId).clear(groupIndex);
+                    }
+                }
+
+                final UnitConfig group = groupMap.get(groupId);
+                if (group != null) {
+                    for (final String memberId : group.getAuthorizationGroupConfig().getMemberIdList()) {
+                        getCopiedMembership(membershipMap, copiedSet, memberId).set(groupIndex);
+                    }
+                }
+            }
+            membershipMap.values().removeIf(BitSet::isEmpty);
+            snapshot = new Snapshot(locations, groupMap, membershipMap);
+        }
+    }
+
+    private static BitSet getCopiedMembership(final Map<String, BitSet> membershipMap, final Set<String> copiedSet, final String memberId) {
+        BitSet membership = membershipMap.get(memberId);
+        if (copiedSet.add(memberId)) {
+            // bitsets of the previous snapshot may still be read and are never modified
+            membership = (membership == null) ? new BitSet() : (BitSet) membership.clone();
+            membershipMap.put(memberId, membership);
+        }
+        return membership;
+    }
+
+    private int intern(final String id) {
+        return idMap.computeIfAbsent(id, key -> idCounter.getAndIncrement());
+    }
+
+    /**
+     * Check if a user has a permission for a unit.
+     *
+     * @param unitConfig the unit config.
+     * @param userId     the id of the user.
+     * @param type       the permission type.
+     *
+     * @return true if the user has the permission.
+     */
+    public boolean canDo(final UnitConfig unitConfig, final String userId, final PermissionType type) {
+        return (getPermissionBits(unitConfig, userId, null) & AuthorizationHelper.toBit(type)) != 0;
+    }
+
+    /**
+     * Check if a user has a permission for a unit.
+     *
+     * @param unitConfig     the unit config.
+     * @param userClientPair the pair containing a user id and a client id.
+     * @param type           the permission type.
+     *
+     * @return true if either the user or the client has the permission.
+     */
+    public boolean canDo(final UnitConfig unitConfig, final UserClientPair userClientPair, final PermissionType type) {
+        return (getPermissionBits(unitConfig, userClientPair.getUserId(), userClientPair.getClientId()) & AuthorizationHelper.toBit(type)) != 0;
+    }
+
+    /**
+     * Get all permissions of a user for a unit.
+     *
+     * @param unitConfig the unit config.
+     * @param userId     the id of the user.
+     *
+     * @return the maximum permissions of the user for the unit.
+     */
+    public Permission getPermission(final UnitConfig unitConfig, final String userId) {
+        return AuthorizationHelper.toPermission(getPermissionBits(unitConfig, userId, null));
+    }
+
+    /**
+     * Get all permissions of a user and a client for a unit.
+     *
+     * @param unitConfig     the unit config.
+     * @param userClientPair the pair containing a user id and a client id.
+     *
+     * @return the maximum permissions of the user or the client for the unit.
+     */
+    public Permission getPermission(final UnitConfig unitConfig, final UserClientPair userClientPair) {
+        return AuthorizationHelper.toPermission(getPermissionBits(unitConfig, userClientPair.getUserId(), userClientPair.getClientId()));
+    }
+
+    private int getPermissionBits(final UnitConfig unitConfig, final String userId, final String clientId) {
+        final Snapshot currentSnapshot = snapshot;
+        final PermissionConfigCache.Entry entry;
+        try {
+            entry = AuthorizationHelper.resolvePermissionConfig(unitConfig, currentSnapshot.locations);
+        } catch (NotAvailableException ex) {
+            ExceptionPrinter.printHistory("can not perform the canDo check! Permission will be denied!", ex, LOGGER, LogLevel.WARN);
+            return 0;
+        }
+
+        final Principal user = currentSnapshot.getPrincipal(userId);
+        final Principal client = (clientId == null) ? null : currentSnapshot.getPrincipal(clientId);
+        boolean userReads = true;
+        boolean clientReads = client != null;
+
+        // both principals need read permissions for all parent locations otherwise they have no permissions at all
+        for (PermissionConfigCache.Entry parentEntry = entry.getParent(); parentEntry != null && (userReads || clientReads); parentEntry = parentEntry.getParent()) {
+            final CompiledPermissionConfig parentConfig = compile(parentEntry);
+            userReads = userReads && (parentConfig.getPermissionBits(user) & AuthorizationHelper.READ_BIT) != 0;
+            clientReads = clientReads && (parentConfig.getPermissionBits(client) & AuthorizationHelper.READ_BIT) != 0;
+        }
+
+        final CompiledPermissionConfig compiledConfig = compile(entry);
+        int permissionBits = 0;
+        if (userReads) {
+            permissionBits |= compiledConfig.getPermissionBits(user);
+        }
+        if (clientReads) {
+            permissionBits |= compiledConfig.getPermissionBits(client);
+        }
+        return permissionBits;
+    }
+
+    private CompiledPermissionConfig compile(final PermissionConfigCache.Entry entry) {
+        final UnitConfig unitConfig = entry.getUnitConfig();
+        final PermissionConfig parentConfig = (entry.getParent() == null) ? null : entry.getParent().getPermissionConfig();
+        final CompiledPermissionConfig compiledConfig = compiledPermissionConfigMap.get(unitConfig.getId());
+        // the effective config of a unit is merged again on every resolution, so validate by its inputs instead
+        if (compiledConfig != null && compiledConfig.unitConfig == unitConfig && compiledConfig.parentConfig == parentConfig) {
+            return compiledConfig;
+        }
+
+        final CompiledPermissionConfig newConfig = new CompiledPermissionConfig(unitConfig, parentConfig, entry.getPermissionConfig());
+        compiledPermissionConfigMap.put(unitConfig.getId(), newConfig);
+        return newConfig;
+    }
+
+    /**
+     * Immutable state of the index created by an update.
+     */
+    private final class Snapshot {
+
+        private final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations;
+        /**
+         * The indexed groups or null if no groups are available so that only other and owner permissions apply.
+         */
+        private final Map<String, UnitConfig> groupMap;
+        private final Map<String, BitSet> membershipMap;
+
+        private Snapshot(final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations, final Map<String, UnitConfig> groupMap, final Map<String, BitSet> membershipMap) {
+            this.locations = locations;
+            this.groupMap = groupMap;
+            this.membershipMap = membershipMap;
+        }
+
+        private Principal getPrincipal(final String id) {
+            if (id == null || id.isEmpty()) {
+                return Principal.NONE;
+            }
+            if (groupMap == null) {
+                return new Principal(id, null);
+            }
+            return new Principal(id, membershipMap.get(id));
+        }
+    }
+
+    /**
+     * A user or client together with the groups it belongs to.
+     */
+    private static final class Principal {
+
+        private static final Principal NONE = new Principal(null, null);
+
+        private final String id;
+        private final BitSet membership;
+
+        private Principal(final String id, final BitSet membership) {
+            this.id = id;
+            this.membership = membership;
+        }
+    }
+
+    /**
+     * Effective permission config compiled into bits.
+     */
+    private final class CompiledPermissionConfig {
+
+        private final UnitConfig unitConfig;
+        private final PermissionConfig parentConfig;
+        private final int otherBits;
+        private final String ownerId;
+        private final int ownerBits;
+        private final BitSet readGroups;
+        private final BitSet writeGroups;
+        private final BitSet accessGroups;
+
+        private CompiledPermissionConfig(final UnitConfig unitConfig, final PermissionConfig parentConfig, final PermissionConfig source) {
+            this.unitConfig = unitConfig;
+            this.parentConfig = parentConfig;
+            this.otherBits = AuthorizationHelper.toBits(source.getOtherPermission());
+            this.ownerId = source.getOwnerId();
+            this.ownerBits = AuthorizationHelper.toBits(source.getOwnerPermission());
+            this.readGroups = new BitSet();
+            this.writeGroups = new BitSet();
+            this.accessGroups = new BitSet();
+
+            for (final MapFieldEntry entry : source.getGroupPermissionList()) {
+                final int groupIndex = intern(entry.getGroupId());
+                final Permission permission = entry.getPermission();
+                if (permission.getRead()) {
+                    readGroups.set(groupIndex);
+                }
+                if (permission.getWrite()) {
+                    writeGroups.set(groupIndex);
+                }
+                if (permission.getAccess()) {
+                    accessGroups.set(groupIndex);
+                }
+            }
+        }
+
+        private int getPermissionBits(final Principal principal) {
+            int bits = otherBits;
+            // If no user was given, only "other" rights apply.
+            if (principal == null || principal.id == null) {
+                return bits;
+            }
+
+            if (ownerId.equals(principal.id)) {
+                bits |= ownerBits;
+            }
+
+            // every user is also a group, the id is not interned on lookup because it comes from a request
+            // and an id which has never been interned is not used as a group by any compiled config
+            final Integer groupIndex = idMap.get(principal.id);
+            if (groupIndex != null) {
+                bits |= getGroupBits(groupIndex);
+            }
+
+            if (principal.membership != null) {
+                if (readGroups.intersects(principal.membership)) {
+                    bits |= AuthorizationHelper.READ_BIT;
+                }
+                if (writeGroups.intersects(principal.membership)) {
+                    bits |= AuthorizationHelper.WRITE_BIT;
+                }
+                if (accessGroups.intersects(principal.membership)) {
+                    bits |= AuthorizationHelper.ACCESS_BIT;
+                }
+            }
+            return bits;
+        }
+
+        private int getGroupBits(final int groupIndex) {
+            int bits = 0;
+            if (readGroups.get(groupIndex)) {
+                bits |= AuthorizationHelper.READ_BIT;
+            }
+            if (writeGroups.get(groupIndex)) {
+                bits |= AuthorizationHelper.WRITE_BIT;
+            }
+            if (accessGroups.get(groupIndex)) {
+                bits |= AuthorizationHelper.ACCESS_BIT;
+            }
+            return bits;
+        }
+    }
+}
@@ -34,11 +34,18 @@ import org.openbase.type.domotic.authentication.LoginCredentialsEncodedCollectio
 import org.openbase.type.domotic.authentication.LoginCredentialsEncodedType.LoginCredentialsEncoded;
 import org.openbase.type.domotic.authentication.LoginCredentialsType.LoginCredentials;
 
+import java.security.Key;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class provides access to the storage of login credentials.
+ * <p>
+ * Keys parsed from stored credentials are cached so that repeated logins do not have to parse them again.
+ * A cached key belongs to the exact credentials instance it was parsed from, which acts as the version of the
+ * credentials. Thus replacing the credentials of an id always invalidates the cached keys.
  *
  * @author <a href="mailto:cromankiewicz@techfak.uni-bielefeld.de">Constantin Romankiewicz</a>
  */
@@ -49,8 +56,11 @@ public class CredentialStore extends AbstractProtectedStore<LoginCredentials, Lo
      */
     public static final String SERVICE_SERVER_ID = "serviceServer";
 
+    private final Map<String, CachedKeys> keyCache;
+
     public CredentialStore() {
         super(new ProtoBufFileProcessor(new CredentialEncodingTransformer()));
+        this.keyCache = new ConcurrentHashMap<>();
     }
 
     /**
@@ -84,6 +94,142 @@ public class CredentialStore extends AbstractProtectedStore<LoginCredentials, Lo
         addEntry(userId, loginCredentials);
     }
 
+    /**
+     * Get the key used to encrypt data for the owner of the credentials stored for an id.
+     * For symmetric credentials this is the secret key and for asymmetric credentials the public key.
+     *
+     * @param id id of the client or user.
+     *
+     * @return the parsed key.
+     *
+     * @throws CouldNotPerformException if no credentials are stored for the id or if they cannot be parsed.
+     */
+    public Key getEncryptionKey(final String id) throws CouldNotPerformException {
+        return getEncryptionKey(getEntry(id));
+    }
+
+    /**
+     * Get the key used to encrypt data with the given credentials. If they are the credentials currently
+     * stored for their id, the key is parsed only once and cached afterwards.
+     *
+     * @param loginCredentials the credentials.
+     *
+     * @return the parsed key.
+     *
+     * @throws CouldNotPerformException if the credentials cannot be parsed.
+     */
+    public Key getEncryptionKey(final LoginCredentials loginCredentials) throws CouldNotPerformException {
+        final CachedKeys cachedKeys = getCachedKeys(loginCredentials);
+        if (cachedKeys == null) {
+            return EncryptionHelper.createEncryptionKey(loginCredentials);
+        }
+        return cachedKeys.getEncryptionKey();
+    }
+
+    /**
+     * Get the key used to decrypt data encrypted for the owner of the credentials stored for an id.
+     * For symmetric credentials this is the secret key and for asymmetric credentials the private key.
+     *
+     * @param id id of the client or user.
+     *
+     * @return the parsed key.
+     *
+     * @throws CouldNotPerformException if no credentials are stored for the id or if they cannot be parsed.
+     */
+    public Key getDecryptionKey(final String id) throws CouldNotPerformException {
+        return getDecryptionKey(getEntry(id));
+    }
+
+    /**
+     * Get the key used to decrypt data with the given credentials. If they are the credentials currently
+     * stored for their id, the key is parsed only once and cached afterwards.
+     *
+     * @param loginCredentials the credentials.
+     *
+     * @return the parsed key.
+     *
+     * @throws CouldNotPerformException if the credentials cannot be parsed.
+     */
+    public Key getDecryptionKey(final LoginCredentials loginCredentials) throws CouldNotPerformException {
+        final CachedKeys cachedKeys = getCachedKeys(loginCredentials);
+        if (cachedKeys == null) {
+            return EncryptionHelper.createDecryptionKey(loginCredentials);
+        }
+        return cachedKeys.getDecryptionKey();
+    }
+
+    /**
+     * Resolve the cache entry for credentials.
+     *
+     * @param loginCredentials the credentials.
+     *
+     * @return the cache entry or null if the credentials are not the ones currently stored for their id.
+     */
+    private CachedKeys getCachedKeys(final LoginCredentials loginCredentials) {
+        final String id = loginCredentials.getId();
+        final LoginCredentials storedCredentials;
+        try {
+            storedCredentials = getEntry(id);
+        } catch (NotAvailableException ex) {
+            return null;
+        }
+
+        if (storedCredentials != loginCredentials && !storedCredentials.equals(loginCredentials)) {
+            return null;
+        }
+
+        final CachedKeys cachedKeys = keyCache.get(id);
+        if (cachedKeys != null && cachedKeys.credentials == storedCredentials) {
+            return cachedKeys;
+        }
+
+        final CachedKeys newCachedKeys = new CachedKeys(storedCredentials);
+        keyCache.put(id, newCachedKeys);
+        return newCachedKeys;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Cached keys of the id are invalidated.
+     *
+     * @param id    {@inheritDoc}
+     * @param value {@inheritDoc}
+     */
+    @Override
+    public void addEntry(final String id, final LoginCredentials value) {
+        super.addEntry(id, value);
+        keyCache.remove(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Cached keys of the id are invalidated.
+     *
+     * @param id {@inheritDoc}
+     */
+    @Override
+    public void removeEntry(final String id) {
+        super.removeEntry(id);
+        keyCache.remove(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Cached keys of the ids are invalidated.
+     *
+     * @param ids {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public int removeEntries(final Collection<String> ids) {
+        final int removedCount = super.removeEntries(ids);
+        for (final String id : ids) {
+            keyCache.remove(id);
+        }
+        return removedCount;
+    }
+
     /**
      * Tells whether a given user has administrator permissions.
      *
@@ -176,6 +322,34 @@ public class CredentialStore extends AbstractProtectedStore<LoginCredentials, Lo
         return decoded.build();
     }
 
+    /**
+     * Keys parsed from one version of the credentials of an id. Both keys are parsed lazily.
+     */
+    private static class CachedKeys {
+
+        private final LoginCredentials credentials;
+        private volatile Key encryptionKey;
+        private volatile Key decryptionKey;
+
+        private CachedKeys(final LoginCredentials credentials) {
+            this.credentials = credentials;
+        }
+
+        private Key getEncryptionKey() throws CouldNotPerformException {
+            if (encryptionKey == null) {
+                encryptionKey = EncryptionHelper.createEncryptionKey(credentials);
+            }
+            return encryptionKey;
+        }
+
+        private Key getDecryptionKey() throws CouldNotPerformException {
+            if (decryptionKey == null) {
+                decryptionKey = EncryptionHelper.createDecryptionKey(credentials);
+            }
+            return decryptionKey;
+        }
+    }
+
     public static class CredentialEncodingTransformer implements ProtoBufFileProcessor.TypeToMessageTransformer<LoginCredentialsCollection, LoginCredentialsEncodedCollection, LoginCredentialsEncodedCollection.Builder> {
 
         @Override
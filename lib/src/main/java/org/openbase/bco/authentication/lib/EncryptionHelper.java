@@ -54,8 +54,8 @@ public class EncryptionHelper {
     private static final String ASYMMETRIC_TRANSFORMATION = ASYMMETRIC_ALGORITHM;
     private static final int ASYMMETRIC_KEY_LENGTH = 1024;
 
-    private static final String SYMMETRIC_ALGORITHM = "AES";
-    private static final String SYMMETRIC_TRANSFORMATION = SYMMETRIC_ALGORITHM;
+    static final String SYMMETRIC_ALGORITHM = "AES";
+    static final String SYMMETRIC_TRANSFORMATION = SYMMETRIC_ALGORITHM;
 
     // todo release: think about increasing the key lenght before releasing bco 2.0
     private static final int SYMMETRIC_KEY_LENGTH = 128;
@@ -157,7 +157,7 @@ public class EncryptionHelper {
      * @throws CouldNotPerformException if encryption fails.
      */
     public static byte[] encrypt(final Serializable object, final LoginCredentials loginCredentials) throws CouldNotPerformException {
-        return encrypt(object, loginCredentials.getCredentials().toByteArray(), loginCredentials.getSymmetric());
+        return encrypt(object, createEncryptionKey(loginCredentials));
     }
 
     /**
@@ -172,19 +172,60 @@ public class EncryptionHelper {
      * @throws CouldNotPerformException if encrypting fails encryption.
      */
     public static byte[] encrypt(final Serializable object, final byte[] key, final boolean symmetric) throws CouldNotPerformException {
+        return encrypt(object, createEncryptionKey(key, symmetric));
+    }
+
+    /**
+     * Encrypts any Object into a byte array using an already parsed key.
+     * The algorithm used is determined by the algorithm of the key.
+     *
+     * @param object Object to be encrypted
+     * @param key    the key created by {@link #createEncryptionKey(byte[], boolean)}
+     *
+     * @return Returns encrypted object as byte array
+     *
+     * @throws CouldNotPerformException if encrypting fails encryption.
+     */
+    public static byte[] encrypt(final Serializable object, final Key key) throws CouldNotPerformException {
+        final Cipher cipher;
         try {
-            Key keyType;
-            Cipher cipher;
-            // specify key and generate cipher
-            if (symmetric) {
-                keyType = new SecretKeySpec(key, SYMMETRIC_ALGORITHM);
-                cipher = Cipher.getInstance(SYMMETRIC_TRANSFORMATION);
-            } else {
-                keyType = KeyFactory.getInstance(ASYMMETRIC_TRANSFORMATION).generatePublic(new X509EncodedKeySpec(key));
-                cipher = Cipher.getInstance(ASYMMETRIC_TRANSFORMATION);
-            }
-            cipher.init(Cipher.ENCRYPT_MODE, keyType);
+            // generate cipher
+            cipher = Cipher.getInstance(getTransformation(key));
+            cipher.init(Cipher.ENCRYPT_MODE, key);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException ex) {
+            throw new FatalImplementationErrorException("Unable to encrypt object[" + object + "]", EncryptionHelper.class, ex);
+        }
+        return encrypt(object, cipher);
+    }
 
+    /**
+     * Encrypts any Object into a ByteString using a symmetric session key.
+     * The cipher initialized by the session key is reused.
+     *
+     * @param object     Object to be encrypted
+     * @param sessionKey the session key to encrypt the object with
+     *
+     * @return Returns encrypted object as ByteString
+     *
+     * @throws CouldNotPerformException if encrypting fails encryption.
+     */
+    public static ByteString encryptSymmetric(final Serializable object, final SessionKey sessionKey) throws CouldNotPerformException {
+        return sessionKey.encrypt(object);
+    }
+
+    /**
+     * Serialize an object and encrypt it with an initialized cipher.
+     * The cipher is not thread safe, so callers sharing it have to synchronize.
+     *
+     * @param object the object to be encrypted
+     * @param cipher the cipher initialized in encryption mode
+     *
+     * @return the encrypted object
+     *
+     * @throws CouldNotPerformException if encrypting fails encryption.
+     */
+    static byte[] encrypt(final Serializable object, final Cipher cipher) throws CouldNotPerformException {
+        try {
             // cipher
             try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
                 try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(byteArrayOutputStream)) {
@@ -193,13 +234,111 @@ public class EncryptionHelper {
                     return cipher.doFinal(byteArrayOutputStream.toByteArray());
                 }
             }
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException | IllegalBlockSizeException | InvalidKeyException | BadPaddingException | InvalidKeySpecException ex) {
+        } catch (IllegalBlockSizeException | BadPaddingException ex) {
             throw new FatalImplementationErrorException("Unable to encrypt object[" + object + "]", EncryptionHelper.class, ex);
         } catch (IOException ex) {
             throw new CouldNotPerformException("Could not encrypt object[" + object + "]", ex);
         }
     }
 
+    /**
+     * Create the key used for encryption from the credentials. For symmetric credentials this is the secret key
+     * and for asymmetric credentials the public key.
+     *
+     * @param loginCredentials type containing the credentials and a flag if they are symmetric or asymmetric.
+     *
+     * @return the key ready to be used for encryption.
+     *
+     * @throws CouldNotPerformException if the credentials cannot be parsed as a key.
+     */
+    public static Key createEncryptionKey(final LoginCredentials loginCredentials) throws CouldNotPerformException {
+        return createEncryptionKey(loginCredentials.getCredentials().toByteArray(), loginCredentials.getSymmetric());
+    }
+
+    /**
+     * Create the key used for encryption from its encoded form. For symmetric keys this is the secret key
+     * and for asymmetric keys the X.509 encoded public key.
+     *
+     * @param key       the encoded key.
+     * @param symmetric if the key is symmetric or asymmetric.
+     *
+     * @return the key ready to be used for encryption.
+     *
+     * @throws CouldNotPerformException if the key cannot be parsed.
+     */
+    public static Key createEncryptionKey(final byte[] key, final boolean symmetric) throws CouldNotPerformException {
+        if (symmetric) {
+            return new SecretKeySpec(key, SYMMETRIC_ALGORITHM);
+        }
+
+        try {
+            return KeyFactory.getInstance(ASYMMETRIC_ALGORITHM).generatePublic(new X509EncodedKeySpec(key));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new FatalImplementationErrorException("Key algorithm non existent", EncryptionHelper.class, ex);
+        } catch (InvalidKeySpecException ex) {
+            throw new CouldNotPerformException("Could not parse public key", ex);
+        }
+    }
+
+    /**
+     * Create the key used for decryption from the credentials. For symmetric credentials this is the secret key
+     * and for asymmetric credentials the private key.
+     *
+     * @param loginCredentials type containing the credentials and a flag if they are symmetric or asymmetric.
+     *
+     * @return the key ready to be used for decryption.
+     *
+     * @throws CouldNotPerformException if the credentials cannot be parsed as a key.
+     */
+    public static Key createDecryptionKey(final LoginCredentials loginCredentials) throws CouldNotPerformException {
+        return createDecryptionKey(loginCredentials.getCredentials().toByteArray(), loginCredentials.getSymmetric());
+    }
+
+    /**
+     * Create the key used for decryption from its encoded form. For symmetric keys this is the secret key
+     * and for asymmetric keys the PKCS#8 encoded private key.
+     *
+     * @param key       the encoded key.
+     * @param symmetric if the key is symmetric or asymmetric.
+     *
+     * @return the key ready to be used for decryption.
+     *
+     * @throws CouldNotPerformException if the key cannot be parsed.
+     */
+    public static Key createDecryptionKey(final byte[] key, final boolean symmetric) throws CouldNotPerformException {
+        if (symmetric) {
+            return new SecretKeySpec(key, SYMMETRIC_ALGORITHM);
+        }
+
+        try {
+            return KeyFactory.getInstance(ASYMMETRIC_ALGORITHM).generatePrivate(new PKCS8EncodedKeySpec(key));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new FatalImplementationErrorException("Key algorithm non existent", EncryptionHelper.class, ex);
+        } catch (InvalidKeySpecException ex) {
+            throw new CouldNotPerformException("Could not parse private key", ex);
+        }
+    }
+
+    /**
+     * Resolve the cipher transformation matching the algorithm of a key.
+     *
+     * @param key the key.
+     *
+     * @return the transformation used to create a cipher for the key.
+     *
+     * @throws NoSuchAlgorithmException if the algorithm of the key is not supported.
+     */
+    private static String getTransformation(final Key key) throws NoSuchAlgorithmException {
+        switch (key.getAlgorithm()) {
+            case SYMMETRIC_ALGORITHM:
+                return SYMMETRIC_TRANSFORMATION;
+            case ASYMMETRIC_ALGORITHM:
+                return ASYMMETRIC_TRANSFORMATION;
+            default:
+                throw new NoSuchAlgorithmException("Key algorithm[" + key.getAlgorithm() + "] is not supported");
+        }
+    }
+
     /**
      * Decrypt an object with a symmetric key and directly cast it to type T.
      *
@@ -245,7 +384,7 @@ public class EncryptionHelper {
      * @throws CouldNotPerformException if the byte array could not be decrypted using the given key or is not an instance of the given class.
      */
     public static <T> T decrypt(final byte[] encryptedObject, final LoginCredentials loginCredentials, final Class<T> encryptedClass) throws CouldNotPerformException {
-        return decrypt(encryptedObject, loginCredentials.getCredentials().toByteArray(), encryptedClass, loginCredentials.getSymmetric());
+        return decrypt(encryptedObject, createDecryptionKey(loginCredentials), encryptedClass);
     }
 
     /**
@@ -279,18 +418,68 @@ public class EncryptionHelper {
      * @throws CouldNotPerformException if the byte array could not be decrypted using the given key or is not an instance of the given class
      */
     public static <T> T decrypt(final byte[] encryptedObject, final byte[] key, final Class<T> encryptedClass, final boolean symmetric) throws CouldNotPerformException {
+        return decrypt(encryptedObject, createDecryptionKey(key, symmetric), encryptedClass);
+    }
+
+    /**
+     * Decrypts a byte array into an Object of type T using an already parsed key.
+     * The algorithm used is determined by the algorithm of the key.
+     *
+     * @param <T>             the type to which the encrypted object is casted
+     * @param encryptedObject byte array to be decrypted
+     * @param key             the key created by {@link #createDecryptionKey(byte[], boolean)}
+     * @param encryptedClass  the class to which the decrypted object is cast
+     *
+     * @return Returns decrypted object as Object
+     *
+     * @throws CouldNotPerformException if the byte array could not be decrypted using the given key or is not an instance of the given class
+     */
+    public static <T> T decrypt(final byte[] encryptedObject, final Key key, final Class<T> encryptedClass) throws CouldNotPerformException {
+        final Cipher cipher;
+        try {
+            // generate cipher
+            cipher = Cipher.getInstance(getTransformation(key));
+            cipher.init(Cipher.DECRYPT_MODE, key);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
+            throw new FatalImplementationErrorException("Decryption of [" + encryptedObject + "] failed", EncryptionHelper.class, ex);
+        } catch (InvalidKeyException ex) {
+            throw new CouldNotPerformException("Could not decrypt byte array to object of type[" + encryptedClass.getName() + "]", ex);
+        }
+        return decrypt(encryptedObject, cipher, encryptedClass);
+    }
+
+    /**
+     * Decrypt an object with a symmetric session key and directly cast it to type T.
+     * The cipher initialized by the session key is reused.
+     *
+     * @param <T>             the type to which the encrypted object is casted
+     * @param encryptedObject the object encrypted as a ByteString
+     * @param sessionKey      the session key used to decrypt the object
+     * @param encryptedClass  the class to which the decrypted object is cast
+     *
+     * @return the decrypted object cast as T
+     *
+     * @throws CouldNotPerformException if the byte array could not be decrypted using the given key or is not an instance of the given class
+     */
+    public static <T> T decryptSymmetric(final ByteString encryptedObject, final SessionKey sessionKey, final Class<T> encryptedClass) throws CouldNotPerformException {
+        return sessionKey.decrypt(encryptedObject, encryptedClass);
+    }
+
+    /**
+     * Decrypt a byte array with an initialized cipher and deserialize it into an Object of type T.
+     * The cipher is not thread safe, so callers sharing it have to synchronize.
+     *
+     * @param <T>             the type to which the encrypted object is casted
+     * @param encryptedObject byte array to be decrypted
+     * @param cipher          the cipher initialized in decryption mode
+     * @param encryptedClass  the class to which the decrypted object is cast
+     *
+     * @return Returns decrypted object as Object
+     *
+     * @throws CouldNotPerformException if the byte array could not be decrypted using the given cipher or is not an instance of the given class
+     */
+    static <T> T decrypt(final byte[] encryptedObject, final Cipher cipher, final Class<T> encryptedClass) throws CouldNotPerformException {
         try {
-            Key keyType;
-            Cipher cipher;
-            // specify key and generate cipher
-            if (symmetric) {
-                keyType = new SecretKeySpec(key, SYMMETRIC_ALGORITHM);
-                cipher = Cipher.getInstance(SYMMETRIC_TRANSFORMATION);
-            } else {
-                keyType = KeyFactory.getInstance(ASYMMETRIC_TRANSFORMATION).generatePrivate(new PKCS8EncodedKeySpec(key));
-                cipher = Cipher.getInstance(ASYMMETRIC_TRANSFORMATION);
-            }
-            cipher.init(Cipher.DECRYPT_MODE, keyType);
             byte[] decrypted = cipher.doFinal(encryptedObject);
 
             // decipher
@@ -299,9 +488,9 @@ public class EncryptionHelper {
                     return (T) objectInputStream.readObject();
                 }
             }
-        } catch (NoSuchAlgorithmException | ClassNotFoundException | NoSuchPaddingException | IllegalBlockSizeException ex) {
+        } catch (ClassNotFoundException | IllegalBlockSizeException ex) {
             throw new FatalImplementationErrorException("Decryption of [" + encryptedObject + "] failed", EncryptionHelper.class, ex);
-        } catch (IOException | BadPaddingException | ClassCastException | InvalidKeyException | InvalidKeySpecException ex) {
+        } catch (IOException | BadPaddingException | ClassCastException ex) {
             throw new CouldNotPerformException("Could not decrypt byte array to object of type[" + encryptedClass.getName() + "]", ex);
         }
     }
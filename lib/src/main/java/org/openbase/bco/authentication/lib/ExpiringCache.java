@@ -0,0 +1,145 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.schedule.SyncObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache whose entries expire a fixed time after they have been added.
+ * <p>
+ * Entries are held in access order so that the least recently used entry is evicted if the cache is full.
+ * Expired entries are never returned and removed lazily when they are accessed or evicted.
+ * Values have to be immutable because they are shared by all callers which hit the same entry.
+ *
+ * @param <K> the type of the keys of the cache
+ * @param <V> the type of the cached values
+ */
+public class ExpiringCache<K, V> {
+
+    private final SyncObject cacheLock = new SyncObject("ExpiringCacheLock");
+    private final LinkedHashMap<K, Entry<V>> entryMap;
+    private final int maxSize;
+    private final long timeToLive;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize    the maximal number of entries held by the cache.
+     * @param timeToLive the time after which an entry expires.
+     * @param timeUnit   the time unit of the time to live.
+     */
+    public ExpiringCache(final int maxSize, final long timeToLive, final TimeUnit timeUnit) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Maximal size[" + maxSize + "] of a cache has to be positive");
+        }
+        this.entryMap = new LinkedHashMap<>(16, 0.75f, true);
+        this.maxSize = maxSize;
+        this.timeToLive = timeUnit.toMillis(timeToLive);
+    }
+
+    /**
+     * Get the value cached for a key.
+     *
+     * @param key the key.
+     *
+     * @return the cached value or null if no value is cached for the key or if it expired.
+     */
+    public V get(final K key) {
+        final long currentTime = System.currentTimeMillis();
+        synchronized (cacheLock) {
+            final Entry<V> entry = entryMap.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expirationTime <= currentTime) {
+                entryMap.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    /**
+     * Add or replace the value cached for a key. If the cache is full the least recently used entry is evicted.
+     *
+     * @param key   the key.
+     * @param value the value.
+     */
+    public void put(final K key, final V value) {
+        final long currentTime = System.currentTimeMillis();
+        synchronized (cacheLock) {
+            entryMap.put(key, new Entry<>(value, currentTime + timeToLive));
+            if (entryMap.size() > maxSize) {
+                final Iterator<Entry<V>> iterator = entryMap.values().iterator();
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove the value cached for a key.
+     *
+     * @param key the key.
+     */
+    public void invalidate(final K key) {
+        synchronized (cacheLock) {
+            entryMap.remove(key);
+        }
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public void clear() {
+        synchronized (cacheLock) {
+            entryMap.clear();
+        }
+    }
+
+    /**
+     * Get the number of entries in the cache. This may include expired entries which have not been removed yet.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        synchronized (cacheLock) {
+            return entryMap.size();
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expirationTime;
+
+        private Entry(final V value, final long expirationTime) {
+            this.value = value;
+            this.expirationTime = expirationTime;
+        }
+    }
+}
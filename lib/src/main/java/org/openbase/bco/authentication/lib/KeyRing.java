@@ -0,0 +1,371 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.ByteString;
+import org.openbase.bco.authentication.lib.exception.SessionExpiredException;
+import org.openbase.jul.exception.CouldNotPerformException;
+
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ring of rotating symmetric keys used to encrypt tickets.
+ * <p>
+ * Every key of the ring has an id and everything encrypted by the ring is prefixed with the id of the key used, so
+ * decrypting never has to guess the key. As long as the ring has never been rotated data is encrypted without a
+ * prefix, so that the format stays the same as before key rotation was introduced if rotation is disabled.
+ * A rotation generates a new current key while the previous one keeps being
+ * accepted for a retention time, usually one ticket validity window. Tickets are re-encrypted with the current key
+ * whenever they are validated, so the tickets of active sessions move to the new key on their next request instead
+ * of failing all at once. Data without an id prefix, e.g. tickets issued before key rotation was introduced,
+ * is decrypted with the initial key of the ring.
+ * <p>
+ * The initial key with id {@code 0} is never removed from the ring because it is also the long lived secret key of
+ * the service server, e.g. used to encrypt tokens. Like any other key it is not accepted for tickets after it retired.
+ * The ring is held as an immutable snapshot so encrypting and decrypting never block a rotation.
+ */
+public class KeyRing {
+
+    /**
+     * Id of the initial key of a ring.
+     */
+    public static final int INITIAL_KEY_ID = 0;
+    /**
+     * Id returned by {@link #getKeyId(ByteString)} for data without an id prefix.
+     */
+    public static final int NO_KEY_ID = -1;
+
+    private static final byte[] KEY_ID_MARKER = {(byte) 0xB0, (byte) 0xC0};
+    private static final int HEADER_LENGTH = KEY_ID_MARKER.length + Integer.BYTES;
+    private static final byte[] ENCODING_MARKER = {(byte) 0xB0, (byte) 0xC1};
+    /**
+     * Length of an encoded ring containing a single key without the key itself.
+     * Single secret keys are shorter than this, so they can never be mistaken for a ring.
+     */
+    private static final int MIN_ENCODING_LENGTH = ENCODING_MARKER.length + Integer.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final AtomicReference<List<Generation>> generations;
+
+    /**
+     * Create a key ring containing only the given initial key.
+     *
+     * @param initialKey the initial key, e.g. a secret key created by {@link EncryptionHelper#generateKey()}.
+     */
+    public KeyRing(final byte[] initialKey) {
+        this(Collections.singletonList(new Generation(INITIAL_KEY_ID, new SessionKey(initialKey), Long.MAX_VALUE)));
+    }
+
+    private KeyRing(final List<Generation> generations) {
+        this.generations = new AtomicReference<>(Collections.unmodifiableList(generations));
+    }
+
+    /**
+     * Get the id of the current key.
+     *
+     * @return the id of the key used for encryption.
+     */
+    public int getCurrentKeyId() {
+        return getCurrentGeneration().id;
+    }
+
+    /**
+     * Get the initial key of the ring. It is the long lived secret key which is never rotated.
+     *
+     * @return the encoded initial key.
+     */
+    public byte[] getInitialKey() {
+        return generations.get().get(0).key.getEncoded();
+    }
+
+    /**
+     * Check if the ring contains a key with the given id. Keys which retired but are still retained are contained.
+     *
+     * @param keyId the id of the key.
+     *
+     * @return true if the ring contains the key.
+     */
+    public boolean hasKey(final int keyId) {
+        return findGeneration(generations.get(), keyId) != null;
+    }
+
+    /**
+     * Encrypt an object with the current key and prefix it with the id of the key.
+     * Objects encrypted with the initial key are not prefixed.
+     *
+     * @param object the object to be encrypted.
+     *
+     * @return the encrypted object prefixed with the key id.
+     *
+     * @throws CouldNotPerformException if the encryption fails.
+     */
+    public ByteString encrypt(final Serializable object) throws CouldNotPerformException {
+        final Generation generation = getCurrentGeneration();
+        if (generation.id == INITIAL_KEY_ID) {
+            return generation.key.encrypt(object);
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(KEY_ID_MARKER).putInt(generation.id);
+        return ByteString.copyFrom(header.array()).concat(generation.key.encrypt(object));
+    }
+
+    /**
+     * Decrypt an object with the key identified by its prefix.
+     *
+     * @param encryptedObject the object encrypted by a key ring.
+     * @param encryptedClass  the class to which the decrypted object is cast.
+     * @param <T>             the type of the decrypted object.
+     *
+     * @return the decrypted object.
+     *
+     * @throws SessionExpiredException  if the key with which the object has been encrypted retired or is unknown.
+     * @throws CouldNotPerformException if the decryption fails.
+     */
+    public <T> T decrypt(final ByteString encryptedObject, final Class<T> encryptedClass) throws CouldNotPerformException {
+        final int keyId = getKeyId(encryptedObject);
+        final List<Generation> currentGenerations = generations.get();
+        final Generation generation = findGeneration(currentGenerations, keyId == NO_KEY_ID ? INITIAL_KEY_ID : keyId);
+        if (generation == null) {
+            // data encrypted without a prefix may start with the marker by chance
+            final Generation initialGeneration = currentGenerations.get(0);
+            if (initialGeneration.retirementTime > System.currentTimeMillis()) {
+                try {
+                    return initialGeneration.key.decrypt(encryptedObject, encryptedClass);
+                } catch (CouldNotPerformException ex) {
+                    // the prefix is real so the key is unknown
+                }
+            }
+            throw new SessionExpiredException("Ticket has been encrypted with unknown key[" + keyId + "]");
+        }
+        if (generation.retirementTime <= System.currentTimeMillis()) {
+            throw new SessionExpiredException("Ticket has been encrypted with retired key[" + keyId + "]");
+        }
+
+        if (keyId == NO_KEY_ID) {
+            return generation.key.decrypt(encryptedObject, encryptedClass);
+        }
+        return generation.key.decrypt(encryptedObject.substring(HEADER_LENGTH), encryptedClass);
+    }
+
+    /**
+     * Generate a new current key. The previous current key is retained for the given time while all keys which
+     * retired before, except the initial one, are removed.
+     *
+     * @param retentionTime the time in milliseconds for which the previous key is accepted for decryption.
+     *
+     * @return the id of the new current key.
+     */
+    public int rotate(final long retentionTime) {
+        final long currentTime = System.currentTimeMillis();
+        while (true) {
+            final List<Generation> currentGenerations = generations.get();
+            final Generation current = currentGenerations.get(currentGenerations.size() - 1);
+
+            final List<Generation> rotatedGenerations = new ArrayList<>(currentGenerations.size() + 1);
+            for (final Generation generation : currentGenerations) {
+                if (generation == current) {
+                    rotatedGenerations.add(new Generation(generation.id, generation.key, currentTime + retentionTime));
+                } else if (generation.id == INITIAL_KEY_ID || generation.retirementTime > currentTime) {
+                    rotatedGenerations.add(generation);
+                }
+            }
+            final Generation next = new Generation(current.id + 1, SessionKey.generate(), Long.MAX_VALUE);
+            rotatedGenerations.add(next);
+
+            if (generations.compareAndSet(currentGenerations, Collections.unmodifiableList(rotatedGenerations))) {
+                return next.id;
+            }
+        }
+    }
+
+    /**
+     * Replace all keys of this ring with the keys of another one, e.g. after a new ring has been distributed.
+     *
+     * @param keyRing the ring whose keys are taken over.
+     */
+    public void update(final KeyRing keyRing) {
+        generations.set(keyRing.generations.get());
+    }
+
+    /**
+     * Encode the ring so that it can be stored or transmitted.
+     *
+     * @return the encoded ring.
+     */
+    public byte[] encode() {
+        final List<Generation> currentGenerations = generations.get();
+        int length = ENCODING_MARKER.length + Integer.BYTES;
+        for (final Generation generation : currentGenerations) {
+            length += Integer.BYTES + Long.BYTES + Integer.BYTES + generation.key.getEncoded().length;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(ENCODING_MARKER).putInt(currentGenerations.size());
+        for (final Generation generation : currentGenerations) {
+            final byte[] key = generation.key.getEncoded();
+            buffer.putInt(generation.id).putLong(generation.retirementTime).putInt(key.length).put(key);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Encode the ring in the format expected by receivers which may not support key rotation: the single initial
+     * key as long as the ring has never been rotated and the encoded ring otherwise.
+     *
+     * @return the initial key or the encoded ring.
+     */
+    public byte[] encodeCompatible() {
+        final List<Generation> currentGenerations = generations.get();
+        if (currentGenerations.size() == 1 && currentGenerations.get(0).id == INITIAL_KEY_ID) {
+            return currentGenerations.get(0).key.getEncoded();
+        }
+        return encode();
+    }
+
+    /**
+     * Decode a ring created by {@link #encode()}. Data which is not an encoded ring is interpreted as a single
+     * secret key so that keys stored before key rotation was introduced are the initial key of the ring.
+     * Data is only treated as a ring if it matches the layout of an encoded ring exactly, so that a secret key
+     * starting with the marker of the encoding is still decoded as a key.
+     *
+     * @param encodedKeyRing the encoded ring or a single secret key.
+     *
+     * @return the decoded ring.
+     *
+     * @throws CouldNotPerformException if the data is neither an encoded ring nor a secret key.
+     */
+    public static KeyRing decode(final byte[] encodedKeyRing) throws CouldNotPerformException {
+        final List<Generation> generationList = decodeGenerations(encodedKeyRing);
+        if (generationList != null) {
+            return new KeyRing(generationList);
+        }
+
+        if (encodedKeyRing.length == 0 || startsWith(encodedKeyRing, ENCODING_MARKER) && encodedKeyRing.length >= MIN_ENCODING_LENGTH) {
+            throw new CouldNotPerformException("Could not decode key ring");
+        }
+        return new KeyRing(encodedKeyRing);
+    }
+
+    private static List<Generation> decodeGenerations(final byte[] encodedKeyRing) {
+        if (encodedKeyRing.length < MIN_ENCODING_LENGTH || !startsWith(encodedKeyRing, ENCODING_MARKER)) {
+            return null;
+        }
+
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(encodedKeyRing, ENCODING_MARKER.length, encodedKeyRing.length - ENCODING_MARKER.length);
+            final int size = buffer.getInt();
+            if (size <= 0) {
+                return null;
+            }
+
+            final List<Generation> generationList = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                final int id = buffer.getInt();
+                final long retirementTime = buffer.getLong();
+                final int keyLength = buffer.getInt();
+                if (keyLength <= 0 || keyLength > buffer.remaining()) {
+                    return null;
+                }
+                // ids are assigned in ascending order starting with the initial key
+                if ((i == 0 && id != INITIAL_KEY_ID) || (i > 0 && id <= generationList.get(i - 1).id)) {
+                    return null;
+                }
+                final byte[] key = new byte[keyLength];
+                buffer.get(key);
+                generationList.add(new Generation(id, new SessionKey(key), retirementTime));
+            }
+
+            if (buffer.hasRemaining()) {
+                return null;
+            }
+            return generationList;
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the id of the key with which an object has been encrypted by a key ring.
+     *
+     * @param encryptedObject the encrypted object.
+     *
+     * @return the id of the key or {@link #NO_KEY_ID} if the object has no id prefix.
+     */
+    public static int getKeyId(final ByteString encryptedObject) {
+        if (encryptedObject.size() < HEADER_LENGTH
+                || encryptedObject.byteAt(0) != KEY_ID_MARKER[0]
+                || encryptedObject.byteAt(1) != KEY_ID_MARKER[1]) {
+            return NO_KEY_ID;
+        }
+        return encryptedObject.substring(KEY_ID_MARKER.length, HEADER_LENGTH).asReadOnlyByteBuffer().getInt();
+    }
+
+    private Generation getCurrentGeneration() {
+        final List<Generation> currentGenerations = generations.get();
+        return currentGenerations.get(currentGenerations.size() - 1);
+    }
+
+    private static Generation findGeneration(final List<Generation> generationList, final int keyId) {
+        // the ring only contains a few keys and the current one is the most likely
+        for (int i = generationList.size() - 1; i >= 0; i--) {
+            if (generationList.get(i).id == keyId) {
+                return generationList.get(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(final byte[] bytes, final byte[] prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Key of a ring together with its id and the time after which it is not accepted anymore.
+     */
+    private static final class Generation {
+
+        private final int id;
+        private final SessionKey key;
+        private final long retirementTime;
+
+        private Generation(final int id, final SessionKey key, final long retirementTime) {
+            this.id = id;
+            this.key = key;
+            this.retirementTime = retirementTime;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.Parser;
+import org.openbase.jul.exception.CouldNotPerformException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the parsers of protobuf messages by their class.
+ * <p>
+ * Messages sent without a login are not encrypted but transmitted as plain byte strings, so they have to be parsed
+ * knowing only the class of the expected message. Instead of looking up and invoking the static {@code parseFrom}
+ * method by reflection for every message, the parser of a class is resolved once and shared afterwards.
+ * Parsing directly from a {@link ByteString} does not copy its bytes.
+ */
+public final class MessageParserRegistry {
+
+    private static final Map<Class<?>, Parser<?>> PARSER_MAP = new ConcurrentHashMap<>();
+
+    private MessageParserRegistry() {
+    }
+
+    /**
+     * Get the parser of a message class.
+     *
+     * @param messageClass the class of the message.
+     * @param <M>          the type of the message.
+     *
+     * @return the parser of the message class.
+     *
+     * @throws CouldNotPerformException if the class is not a protobuf message or its parser cannot be resolved.
+     */
+    @SuppressWarnings("unchecked")
+    public static <M> Parser<M> getParser(final Class<M> messageClass) throws CouldNotPerformException {
+        final Parser<?> parser = PARSER_MAP.get(messageClass);
+        if (parser != null) {
+            return (Parser<M>) parser;
+        }
+
+        if (!Message.class.isAssignableFrom(messageClass)) {
+            throw new CouldNotPerformException("Class[" + messageClass.getSimpleName() + "] is not a protobuf message");
+        }
+
+        try {
+            final Message defaultInstance = (Message) messageClass.getMethod("getDefaultInstance").invoke(null);
+            final Parser<?> resolvedParser = defaultInstance.getParserForType();
+            // parsers are stateless so a parser resolved concurrently can be dropped
+            final Parser<?> previousParser = PARSER_MAP.putIfAbsent(messageClass, resolvedParser);
+            return (Parser<M>) (previousParser == null ? resolvedParser : previousParser);
+        } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | ClassCastException ex) {
+            throw new CouldNotPerformException("Could not resolve parser of [" + messageClass.getSimpleName() + "]", ex);
+        }
+    }
+
+    /**
+     * Parse a message from a byte string.
+     *
+     * @param byteString   the serialized message.
+     * @param messageClass the class of the message.
+     * @param <M>          the type of the message.
+     *
+     * @return the parsed message.
+     *
+     * @throws CouldNotPerformException if the class is not a protobuf message or the byte string cannot be parsed.
+     */
+    public static <M> M parseFrom(final ByteString byteString, final Class<M> messageClass) throws CouldNotPerformException {
+        try {
+            return getParser(messageClass).parseFrom(byteString);
+        } catch (InvalidProtocolBufferException ex) {
+            throw new CouldNotPerformException("Could not parse [" + messageClass.getSimpleName() + "]", ex);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.InvalidStateException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.extension.protobuf.IdentifiableMessage;
+import org.openbase.jul.processing.StringProcessor;
+import org.openbase.type.domotic.authentication.PermissionConfigType.PermissionConfig;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the effective permission configs of locations, i.e. their own permission configs merged with the ones
+ * of all their parent locations.
+ * <p>
+ * Every location is resolved once and the resolution of a unit only merges its own permission config with the cached
+ * one of its location. A cached entry remembers the unit config it has been resolved for and its parent entry.
+ * Unit configs are immutable, so an entry is still valid as long as the locations map provides the same
+ * unit config instances for the location and all its parents. If a location changes only the entries of
+ * this location and the locations below it are resolved again on their next use. Authorization groups do not affect
+ * effective permission configs because group membership is evaluated when a permission is checked.
+ * Additionally all entries can be invalidated at once by incrementing the version of the cache.
+ * <p>
+ * Location ids are only unique within one locations map, so every locations map gets its own cache which is
+ * available via {@link #getCache(Map)}. The caches only weakly reference their locations map and are discarded
+ * together with it. Entries of locations which have been removed from the map are evicted as soon as the cache
+ * contains more entries than the map contains locations.
+ */
+final class PermissionConfigCache {
+
+    /**
+     * Caches of all locations maps which are still in use, indexed by the identity of the map.
+     */
+    private static final Map<LocationsReference, PermissionConfigCache> LOCATIONS_CACHE_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * Queue of references to locations maps which have been garbage collected.
+     */
+    private static final ReferenceQueue<Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>>> DISCARDED_LOCATIONS_QUEUE = new ReferenceQueue<>();
+
+    private final Map<String, Entry> locationEntryMap;
+    private final AtomicLong version;
+
+    PermissionConfigCache() {
+        this.locationEntryMap = new ConcurrentHashMap<>();
+        this.version = new AtomicLong(0);
+    }
+
+    /**
+     * Get the cache of a locations map. Without a locations map no location can be resolved, so a new empty cache
+     * is returned in this case.
+     *
+     * @param locations all available locations, indexed by their id.
+     *
+     * @return the cache used to resolve permission configs with the given locations map.
+     */
+    static PermissionConfigCache getCache(final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) {
+        if (locations == null) {
+            return new PermissionConfigCache();
+        }
+
+        // drop the caches of locations maps which are not used anymore
+        for (Object reference = DISCARDED_LOCATIONS_QUEUE.poll(); reference != null; reference = DISCARDED_LOCATIONS_QUEUE.poll()) {
+            LOCATIONS_CACHE_MAP.remove(reference);
+        }
+        return LOCATIONS_CACHE_MAP.computeIfAbsent(new LocationsReference(locations), reference -> new PermissionConfigCache());
+    }
+
+    /**
+     * Invalidate the cached entries of all locations maps.
+     */
+    static void invalidateAll() {
+        for (final PermissionConfigCache cache : LOCATIONS_CACHE_MAP.values()) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Invalidate all cached entries.
+     */
+    void invalidate() {
+        version.incrementAndGet();
+        locationEntryMap.clear();
+    }
+
+    /**
+     * Get the number of cached locations.
+     *
+     * @return the number of cached locations.
+     */
+    int size() {
+        return locationEntryMap.size();
+    }
+
+    /**
+     * Resolve the effective permission config of a unit.
+     *
+     * @param unitConfig the unit config.
+     * @param locations  all available locations, indexed by their id.
+     *
+     * @return an entry containing the effective permission config of the unit and the entries of its parent locations.
+     *
+     * @throws CouldNotPerformException if the permission config cannot be resolved.
+     */
+    Entry resolve(final UnitConfig unitConfig, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) throws CouldNotPerformException {
+        if (unitConfig == null) {
+            throw new NotAvailableException("UnitConfig");
+        }
+
+        final long currentVersion = version.get();
+        if (AuthorizationHelper.isLocation(unitConfig)) {
+            final Entry cachedEntry = locationEntryMap.get(unitConfig.getId());
+            if (cachedEntry != null && isValid(cachedEntry, unitConfig, locations, currentVersion)) {
+                return cachedEntry;
+            }
+        }
+
+        final Entry entry = computeEntry(unitConfig, locations, currentVersion);
+        if (AuthorizationHelper.isLocation(unitConfig)) {
+            locationEntryMap.put(unitConfig.getId(), entry);
+
+            // evict the entries of removed locations
+            if (locations != null && locationEntryMap.size() > locations.size()) {
+                locationEntryMap.keySet().removeIf(locationId -> !locations.containsKey(locationId));
+            }
+        }
+        return entry;
+    }
+
+    private Entry computeEntry(final UnitConfig unitConfig, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations, final long currentVersion) throws CouldNotPerformException {
+        // the root location should always use its own permissions to terminate the recursive permission resolution.
+        if (AuthorizationHelper.isRootLocation(unitConfig, locations)) {
+            if (!unitConfig.hasPermissionConfig()) {
+                throw new InvalidStateException("The root location does not provide a permission config!");
+            }
+            return new Entry(unitConfig, null, unitConfig.getPermissionConfig(), currentVersion);
+        }
+
+        // user or authentication group permissions are independent of there location referred location.
+        if (AuthorizationHelper.isAuthenticationUnit(unitConfig)) {
+            if (!unitConfig.hasPermissionConfig()) {
+                throw new InvalidStateException(StringProcessor.transformUpperCaseToPascalCase(unitConfig.getUnitType().name()) + " should always provide a permission config!");
+            }
+            return new Entry(unitConfig, null, unitConfig.getPermissionConfig(), currentVersion);
+        }
+
+        // verify needed location information
+        if (locations == null || locations.isEmpty()) {
+            throw new InvalidStateException("No location information available for permission resolution!");
+        }
+
+        // resolve parent permissions
+        final Entry parentEntry;
+        try {
+            parentEntry = resolve(AuthorizationHelper.getLocationUnitConfig(unitConfig.getPlacementConfig().getLocationId(), locations), locations);
+        } catch (CouldNotPerformException ex) {
+            throw new InvalidStateException("Parent location does not provide a permission config!", ex);
+        }
+
+        // resolve unit permissions and merge those with the parent location permissions
+        if (unitConfig.hasPermissionConfig()) {
+            return new Entry(unitConfig, parentEntry, AuthorizationHelper.mergePermissionConfigs(unitConfig.getPermissionConfig(), parentEntry.getPermissionConfig()), currentVersion);
+        }
+        return new Entry(unitConfig, parentEntry, parentEntry.getPermissionConfig(), currentVersion);
+    }
+
+    private boolean isValid(final Entry entry, final UnitConfig unitConfig, final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations, final long currentVersion) {
+        Entry currentEntry = entry;
+        UnitConfig currentUnitConfig = unitConfig;
+        while (true) {
+            if (currentEntry.version != currentVersion || currentEntry.unitConfig != currentUnitConfig) {
+                return false;
+            }
+
+            if (currentEntry.parent == null) {
+                // an entry without parent stays valid as long as the unit is still a root location
+                return AuthorizationHelper.isRootLocation(currentUnitConfig, locations);
+            }
+
+            try {
+                currentUnitConfig = AuthorizationHelper.getLocationUnitConfig(currentUnitConfig.getPlacementConfig().getLocationId(), locations);
+            } catch (NotAvailableException ex) {
+                return false;
+            }
+            currentEntry = currentEntry.parent;
+        }
+    }
+
+    /**
+     * Effective permission config of a unit together with the entry of its parent location.
+     */
+    static final class Entry {
+
+        private final UnitConfig unitConfig;
+        private final Entry parent;
+        private final PermissionConfig permissionConfig;
+        private final long version;
+
+        private Entry(final UnitConfig unitConfig, final Entry parent, final PermissionConfig permissionConfig, final long version) {
+            this.unitConfig = unitConfig;
+            this.parent = parent;
+            this.permissionConfig = permissionConfig;
+            this.version = version;
+        }
+
+        /**
+         * Get the unit config for which this entry has been resolved.
+         *
+         * @return the unit config.
+         */
+        UnitConfig getUnitConfig() {
+            return unitConfig;
+        }
+
+        /**
+         * Get the entry of the parent location.
+         *
+         * @return the entry of the parent location or null if the unit is a root location or an authentication unit.
+         */
+        Entry getParent() {
+            return parent;
+        }
+
+        /**
+         * Get the permission config of the unit merged with the ones of its parent locations.
+         *
+         * @return the effective permission config.
+         */
+        PermissionConfig getPermissionConfig() {
+            return permissionConfig;
+        }
+    }
+
+    /**
+     * Weak reference to a locations map which is compared by the identity of the map.
+     */
+    private static final class LocationsReference extends WeakReference<Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>>> {
+
+        private final int hashCode;
+
+        private LocationsReference(final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations) {
+            super(locations, DISCARDED_LOCATIONS_QUEUE);
+            this.hashCode = System.identityHashCode(locations);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof LocationsReference)) {
+                return false;
+            }
+            final Object locations = get();
+            return locations != null && locations == ((LocationsReference) obj).get();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Session managed by a {@link SessionPool}.
+ * <p>
+ * A pooled session is a full session manager with its own ticket, session key and login observers, so it can be
+ * used wherever a session manager is expected, e.g. for authenticated requests. It does not schedule a renewal
+ * task of its own. Instead it only marks when its ticket is due and the shared renewal task of the pool renews it.
+ */
+public final class PooledSession extends SessionManager {
+
+    private final String id;
+    private final SessionPool sessionPool;
+    private final AtomicBoolean renewing;
+
+    private volatile boolean renewalActive;
+    private volatile long nextRenewalTime;
+    private volatile long lastAccessTime;
+
+    PooledSession(final String id, final SessionPool sessionPool, final CredentialStore credentialStore) {
+        super(credentialStore, false);
+        this.id = id;
+        this.sessionPool = sessionPool;
+        this.renewing = new AtomicBoolean(false);
+        this.renewalActive = false;
+        this.lastAccessTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Get the id under which this session is registered in its pool.
+     *
+     * @return the id of the session.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the time at which the session was accessed through its pool the last time.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * Mark the session as used so that it is not evicted for being idle.
+     */
+    void touch() {
+        lastAccessTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Check if the ticket of this session should be renewed by the shared renewal task.
+     *
+     * @param currentTime the current time in milliseconds.
+     *
+     * @return true if the renewal is active, due and not already in progress.
+     */
+    boolean isRenewalDue(final long currentTime) {
+        return renewalActive && currentTime >= nextRenewalTime && !renewing.get();
+    }
+
+    /**
+     * Try to mark a renewal of this session as in progress.
+     *
+     * @return false if a renewal is already in progress.
+     */
+    boolean beginRenewal() {
+        return renewing.compareAndSet(false, true);
+    }
+
+    /**
+     * Mark the renewal of this session as finished and compute the time of the next one.
+     */
+    void finishRenewal() {
+        nextRenewalTime = sessionPool.computeNextRenewalTime();
+        renewing.set(false);
+    }
+
+    /**
+     * Only marks the session as due for renewal by the pool instead of scheduling a task.
+     */
+    @Override
+    void startTicketRenewal() {
+        nextRenewalTime = sessionPool.computeNextRenewalTime();
+        renewalActive = true;
+    }
+
+    @Override
+    void stopTicketRenewal() {
+        renewalActive = false;
+    }
+
+    @Override
+    boolean isTicketRenewalActive() {
+        return renewalActive;
+    }
+}
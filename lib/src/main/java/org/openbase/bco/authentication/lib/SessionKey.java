@@ -0,0 +1,226 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.ByteString;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.FatalImplementationErrorException;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Serializable;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Immutable handle of a symmetric session key.
+ * <p>
+ * The handle is created once when a session key is received, e.g. by decrypting a ticket, and owns the
+ * ciphers initialized with the key. Thus all en- and decryptions performed with the same session key during a
+ * request/response cycle neither copy the key nor create and initialize new ciphers.
+ * Ciphers are not thread safe, so every en- or decryption borrows a cipher from a pool of the handle. Threads
+ * using the same session key concurrently therefore do not block each other and the pool only grows to the number
+ * of threads using the key at the same time.
+ */
+public final class SessionKey implements SecretKey {
+
+    private static final long serialVersionUID = 4172850261187943951L;
+
+    private final SecretKeySpec secretKeySpec;
+
+    private final transient Queue<Cipher> encryptionCipherPool;
+    private final transient Queue<Cipher> decryptionCipherPool;
+
+    /**
+     * Create a new session key handle.
+     *
+     * @param key the encoded symmetric key. The array is copied.
+     */
+    public SessionKey(final byte[] key) {
+        this.secretKeySpec = new SecretKeySpec(key, EncryptionHelper.SYMMETRIC_ALGORITHM);
+        this.encryptionCipherPool = new ConcurrentLinkedQueue<>();
+        this.decryptionCipherPool = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Create a new session key handle.
+     *
+     * @param key the encoded symmetric key.
+     */
+    public SessionKey(final ByteString key) {
+        this(key.toByteArray());
+    }
+
+    /**
+     * Generate a new random session key.
+     *
+     * @return a handle of the new session key.
+     */
+    public static SessionKey generate() {
+        return new SessionKey(EncryptionHelper.generateKey());
+    }
+
+    /**
+     * Encrypt an object with this session key.
+     *
+     * @param object the object to be encrypted.
+     *
+     * @return the encrypted object.
+     *
+     * @throws CouldNotPerformException if the encryption fails.
+     */
+    public ByteString encrypt(final Serializable object) throws CouldNotPerformException {
+        final Cipher cipher = acquireCipher(encryptionCipherPool, Cipher.ENCRYPT_MODE);
+        final ByteString encrypted = ByteString.copyFrom(EncryptionHelper.encrypt(object, cipher));
+        // a cipher is only returned after success because a failure may leave it in an undefined state
+        encryptionCipherPool.offer(cipher);
+        return encrypted;
+    }
+
+    /**
+     * Decrypt an object with this session key.
+     *
+     * @param encryptedObject the encrypted object.
+     * @param encryptedClass  the class to which the decrypted object is cast.
+     * @param <T>             the type of the decrypted object.
+     *
+     * @return the decrypted object.
+     *
+     * @throws CouldNotPerformException if the decryption fails or the decrypted object is not of the given class.
+     */
+    public <T> T decrypt(final ByteString encryptedObject, final Class<T> encryptedClass) throws CouldNotPerformException {
+        return decrypt(encryptedObject.toByteArray(), encryptedClass);
+    }
+
+    /**
+     * Decrypt an object with this session key.
+     *
+     * @param encryptedObject the encrypted object.
+     * @param encryptedClass  the class to which the decrypted object is cast.
+     * @param <T>             the type of the decrypted object.
+     *
+     * @return the decrypted object.
+     *
+     * @throws CouldNotPerformException if the decryption fails or the decrypted object is not of the given class.
+     */
+    public <T> T decrypt(final byte[] encryptedObject, final Class<T> encryptedClass) throws CouldNotPerformException {
+        final Cipher cipher = acquireCipher(decryptionCipherPool, Cipher.DECRYPT_MODE);
+        final T decrypted = EncryptionHelper.decrypt(encryptedObject, cipher, encryptedClass);
+        // a cipher is only returned after success because a failure may leave it in an undefined state
+        decryptionCipherPool.offer(cipher);
+        return decrypted;
+    }
+
+    /**
+     * Get the encoded key as a byte string, e.g. to add it to a ticket.
+     *
+     * @return the encoded key.
+     */
+    public ByteString toByteString() {
+        return ByteString.copyFrom(secretKeySpec.getEncoded());
+    }
+
+    private Cipher acquireCipher(final Queue<Cipher> cipherPool, final int mode) throws CouldNotPerformException {
+        final Cipher cipher = cipherPool.poll();
+        if (cipher != null) {
+            return cipher;
+        }
+        return createCipher(mode);
+    }
+
+    private Cipher createCipher(final int mode) throws CouldNotPerformException {
+        try {
+            final Cipher cipher = Cipher.getInstance(EncryptionHelper.SYMMETRIC_TRANSFORMATION);
+            cipher.init(mode, secretKeySpec);
+            return cipher;
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException ex) {
+            throw new FatalImplementationErrorException("Could not initialize cipher for session key", this, ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public String getAlgorithm() {
+        return secretKeySpec.getAlgorithm();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public String getFormat() {
+        return secretKeySpec.getFormat();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a copy of the encoded key.
+     */
+    @Override
+    public byte[] getEncoded() {
+        return secretKeySpec.getEncoded();
+    }
+
+    /**
+     * Recreate the handle on deserialization so that its cipher pools are initialized.
+     *
+     * @return a new handle for the deserialized key.
+     */
+    private Object readResolve() {
+        return new SessionKey(secretKeySpec.getEncoded());
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SessionKey)) {
+            return false;
+        }
+        return MessageDigest.isEqual(getEncoded(), ((SessionKey) obj).getEncoded());
+    }
+
+    @Override
+    public int hashCode() {
+        return secretKeySpec.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        // never print the key itself
+        return getClass().getSimpleName() + "[" + getAlgorithm() + "]";
+    }
+}
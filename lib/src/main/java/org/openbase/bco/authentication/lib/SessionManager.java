@@ -23,11 +23,16 @@ package org.openbase.bco.authentication.lib;
  */
 
 import com.google.protobuf.ByteString;
+import org.openbase.bco.authentication.lib.AuthenticationClientHandler.RequestTicket;
 import org.openbase.bco.authentication.lib.AuthenticationClientHandler.TicketWrapperSessionKeyPair;
+import org.openbase.bco.authentication.lib.TicketCacheStore.CachedTicket;
+import org.openbase.bco.authentication.lib.exception.AuthenticationErrorCode;
 import org.openbase.bco.authentication.lib.exception.SessionExpiredException;
+import org.openbase.bco.authentication.lib.iface.AsyncSession;
 import org.openbase.bco.authentication.lib.iface.Session;
 import org.openbase.bco.authentication.lib.jp.JPAuthentication;
 import org.openbase.bco.authentication.lib.jp.JPSessionTimeout;
+import org.openbase.bco.authentication.lib.jp.JPTicketCache;
 import org.openbase.jps.core.JPService;
 import org.openbase.jps.exception.JPNotAvailableException;
 import org.openbase.jul.exception.*;
@@ -38,6 +43,7 @@ import org.openbase.jul.pattern.ObservableImpl;
 import org.openbase.jul.pattern.Observer;
 import org.openbase.jul.schedule.GlobalCachedExecutorService;
 import org.openbase.jul.schedule.GlobalScheduledExecutorService;
+import org.openbase.jul.schedule.SyncObject;
 import org.openbase.type.domotic.authentication.AuthTokenType.AuthToken;
 import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
 import org.openbase.type.domotic.authentication.AuthenticatorType.Authenticator;
@@ -49,23 +55,40 @@ import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPai
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
+import java.security.Key;
 import java.security.KeyPair;
 import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.LongFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * @author <a href="mailto:sfast@techfak.uni-bielefeld.de">Sebastian Fast</a>
  */
-public class SessionManager implements Shutdownable, Session {
+public class SessionManager implements Shutdownable, Session, AsyncSession {
 
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(SessionManager.class);
-    private static final String STORE_FILENAME = "client_credential_store.json";
+    static final String STORE_FILENAME = "client_credential_store.json";
+    /**
+     * Timeout for requests to the authenticator in seconds.
+     */
+    private static final long REQUEST_TIMEOUT = 5;
+
+    // patterns to resolve errors of servers which do not tag their messages with an error code
+    private static final Pattern NOT_AVAILABLE_PATTERN = Pattern.compile("NotAvailableException: (.*)[\n\r]");
+    private static final Pattern REJECTED_PATTERN = Pattern.compile("RejectedException: (.*)[\n\r]");
+    private static final Pattern PERMISSION_DENIED_PATTERN = Pattern.compile("PermissionDeniedException: (.*)[\n\r]");
+    private static final Pattern SESSION_EXPIRED_PATTERN = Pattern.compile("SessionExpiredException: (.*)[\n\r]");
 
     private static SessionManager instance;
 
@@ -88,27 +111,43 @@ public class SessionManager implements Shutdownable, Session {
      */
     private final ObservableImpl<SessionManager, UserClientPair> loginObservable;
     /**
-     * The ticket and authenticator of the current session.
+     * Snapshot of the current session containing the logged in user and client, their ticket and the session key.
+     * It is only replaced as a whole so that requests never block on login, logout or a ticket renewal.
      */
-    private TicketAuthenticatorWrapper ticketAuthenticatorWrapper;
-    /**
-     * The key of the current session.
-     */
-    private byte[] sessionKey;
+    private final AtomicReference<SessionState> sessionState;
     /**
      * Credential store of the session manager. Storing user password hashes and client private keys.
      */
     private final CredentialStore credentialStore;
     /**
-     * Pair describing the currently logged in user and client.
+     * Cache of the tickets of sessions which stay logged in so that they can be resumed after a restart.
+     * It is null if the cache is disabled by {@link JPTicketCache}.
      */
-    private final UserClientPair.Builder userClientPair;
+    private final TicketCacheStore ticketCache;
     /**
      * Future of a task that renews the ticket of a user if he wants to stay logged in.
      */
-    private ScheduledFuture ticketRenewalTask;
+    private final AtomicReference<ScheduledFuture<?>> ticketRenewalTask = new AtomicReference<>();
+
+    /**
+     * Future of the last queued login. Logins are chained on it so that they are performed one after another.
+     */
+    private final AtomicReference<CompletableFuture<Void>> loginQueue;
+    /**
+     * Generation of the session which is incremented by every logout. Logins only publish their session if no logout
+     * happened since they have been queued, so a logout cannot be undone by a login which was queued or in progress.
+     */
+    private final AtomicLong sessionGeneration;
+    /**
+     * Lock making the check of the generation and the publication of a session atomic with respect to a logout.
+     */
+    private final SyncObject sessionLock = new SyncObject("SessionLock");
+    /**
+     * Future of the current or last re-login. Re-logins requested while it is in progress join it.
+     */
+    private final AtomicReference<CompletableFuture<Void>> reLoginFlight;
 
-    private boolean skipNotification = false;
+    private volatile boolean skipNotification = false;
 
     /**
      * Create a session manager with the default credential store.
@@ -123,29 +162,76 @@ public class SessionManager implements Shutdownable, Session {
      * @param credentialStore the credential store used by the session manager.
      */
     public SessionManager(final CredentialStore credentialStore) {
-        try {
-            // register shutdown hook and delay it some time so other instances can still prepare the shutdown with their permissions.
-            Shutdownable.registerShutdownHook(this, 3000);
-        } catch (CouldNotPerformException ex) {
-            ExceptionPrinter.printHistory("Could not register session manager shutdown hook", ex, LOGGER, LogLevel.WARN);
+        this(credentialStore, true);
+    }
+
+    /**
+     * Get the credential store used by this session manager.
+     *
+     * @return the credential store.
+     */
+    CredentialStore getCredentialStore() {
+        return credentialStore;
+    }
+
+    /**
+     * Crate a session manager using a given credential store.
+     *
+     * @param credentialStore the credential store used by the session manager.
+     * @param standalone      if false the session manager is owned by a {@link SessionPool} which already initialized
+     *                        the credential store and takes care of the shutdown.
+     */
+    SessionManager(final CredentialStore credentialStore, final boolean standalone) {
+        if (standalone) {
+            try {
+                // register shutdown hook and delay it some time so other instances can still prepare the shutdown with their permissions.
+                Shutdownable.registerShutdownHook(this, 3000);
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory("Could not register session manager shutdown hook", ex, LOGGER, LogLevel.WARN);
+            }
         }
-        this.userClientPair = UserClientPair.newBuilder();
+        this.sessionState = new AtomicReference<>(SessionState.EMPTY);
+        this.loginQueue = new AtomicReference<>(CompletableFuture.completedFuture(null));
+        this.sessionGeneration = new AtomicLong(0);
+        this.reLoginFlight = new AtomicReference<>(CompletableFuture.completedFuture(null));
         // create login observable
         this.loginObservable = new ObservableImpl<>(this);
         // add executor service so that it is not waited for notifications and so that they are done in parallel
         this.loginObservable.setExecutorService(GlobalCachedExecutorService.getInstance().getExecutorService());
         // save and init credential store
         this.credentialStore = credentialStore;
+        if (standalone) {
+            try {
+                this.credentialStore.init(STORE_FILENAME);
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory("Could not init credential store for session manager", ex, LOGGER, LogLevel.WARN);
+            }
+        }
+        // sessions of a pool are never resumed so they do not use the ticket cache
+        this.ticketCache = standalone ? initTicketCache() : null;
+    }
+
+    private static TicketCacheStore initTicketCache() {
         try {
-            this.credentialStore.init(STORE_FILENAME);
+            if (!JPService.getProperty(JPTicketCache.class).getValue()) {
+                return null;
+            }
+
+            final TicketCacheStore ticketCacheStore = new TicketCacheStore();
+            ticketCacheStore.init(TicketCacheStore.STORE_FILENAME);
+            return ticketCacheStore;
+        } catch (JPNotAvailableException ex) {
+            // property is not registered so the cache is disabled
+            return null;
         } catch (CouldNotPerformException ex) {
-            ExceptionPrinter.printHistory("Could not init credential store for session manager", ex, LOGGER, LogLevel.WARN);
+            ExceptionPrinter.printHistory("Could not init ticket cache for session manager", ex, LOGGER, LogLevel.WARN);
+            return null;
         }
     }
 
     //TODO: test if this method is necessary
     public TicketAuthenticatorWrapper getTicketAuthenticatorWrapper() {
-        return ticketAuthenticatorWrapper;
+        return sessionState.get().getTicketAuthenticatorWrapper();
     }
 
     /**
@@ -158,25 +244,71 @@ public class SessionManager implements Shutdownable, Session {
      *
      * @throws CouldNotPerformException if one of the tickets cannot be decrypted using the current session key
      */
-    public synchronized void updateTicketAuthenticatorWrapper(final TicketAuthenticatorWrapper wrapper) throws CouldNotPerformException {
-        if (ticketAuthenticatorWrapper == null) {
+    public void updateTicketAuthenticatorWrapper(final TicketAuthenticatorWrapper wrapper) throws CouldNotPerformException {
+        final SessionState state = sessionState.get();
+        if (state.getTicketAuthenticatorWrapper() == null) {
             // the ticket authenticator wrapper can only be null if no one is logged in, then it does not make sense to update it
             throw new CouldNotPerformException("Could not update ticketAuthenticatorWrapper because it was never set");
         }
 
         try {
-            // decrypt current and new authenticators
-            Authenticator lastAuthenticator = EncryptionHelper.decryptSymmetric(ticketAuthenticatorWrapper.getAuthenticator(), this.getSessionKey(), Authenticator.class);
-            Authenticator currentAuthenticator = EncryptionHelper.decryptSymmetric(wrapper.getAuthenticator(), this.getSessionKey(), Authenticator.class);
-            // keep the newer one
-            if (currentAuthenticator.getTimestamp().getTime() > lastAuthenticator.getTimestamp().getTime()) {
-                ticketAuthenticatorWrapper = wrapper;
-            }
+            // decrypt new authenticator, the current one is kept in plaintext by the session state
+            final SessionKey sessionKey = state.getSessionKey();
+            updateTicketAuthenticatorWrapper(sessionKey, wrapper, sessionKey.decrypt(wrapper.getAuthenticator(), Authenticator.class));
         } catch (CouldNotPerformException ex) {
             throw new CouldNotPerformException("Could not update ticket authenticator wrapper", ex);
         }
     }
 
+    /**
+     * Verify the response of a server to a request initialized by {@link #initializeRequestTicket()} and
+     * set the returned ticket as the current one if it is newer.
+     * Only the authenticator of the response is decrypted, because the timestamp of the request is remembered
+     * by the request ticket.
+     * If the session has been replaced in the meantime, e.g. by a re-login, the returned ticket is discarded.
+     *
+     * @param requestTicket the ticket used for the request
+     * @param response      the ticket authenticator wrapper returned by the server
+     *
+     * @throws CouldNotPerformException if the response cannot be decrypted or does not match the request
+     */
+    public void verifyServiceServerResponse(final RequestTicket requestTicket, final TicketAuthenticatorWrapper response) throws CouldNotPerformException {
+        try {
+            final Authenticator authenticator = AuthenticationClientHandler.handleServiceServerResponse(requestTicket, response);
+            updateTicketAuthenticatorWrapper(requestTicket.getSessionKey(), response, authenticator);
+        } catch (CouldNotPerformException ex) {
+            throw new CouldNotPerformException("Could not verify service server response", ex);
+        }
+    }
+
+    /**
+     * Replace the ticket of the session belonging to the given session key if the given one is newer.
+     * If the session has been replaced in the meantime, e.g. by a re-login, the ticket is discarded.
+     *
+     * @param sessionKey    the key of the session the wrapper belongs to
+     * @param wrapper       the new ticket authenticator wrapper
+     * @param authenticator the decrypted authenticator of the new wrapper
+     */
+    private void updateTicketAuthenticatorWrapper(final SessionKey sessionKey, final TicketAuthenticatorWrapper wrapper, final Authenticator authenticator) {
+        final long timestamp = authenticator.getTimestamp().getTime();
+        while (true) {
+            final SessionState state = sessionState.get();
+            if (state.getSessionKey() != sessionKey) {
+                // session has been replaced so the ticket is outdated
+                return;
+            }
+
+            // keep the newer one
+            if (timestamp <= state.getTimestamp()) {
+                return;
+            }
+
+            if (sessionState.compareAndSet(state, state.withTicketAuthenticatorWrapper(wrapper, authenticator, timestamp))) {
+                return;
+            }
+        }
+    }
+
     /**
      * Get the key of the current session managed by this session manager.
      *
@@ -184,8 +316,8 @@ public class SessionManager implements Shutdownable, Session {
      *
      * @return the current session key
      */
-    public byte[] getSessionKey() {
-        return sessionKey;
+    public SessionKey getSessionKey() {
+        return sessionState.get().getSessionKey();
     }
 
     /**
@@ -196,16 +328,41 @@ public class SessionManager implements Shutdownable, Session {
      * @throws RejectedException if the ticket could not be initialized
      */
     public TicketAuthenticatorWrapper initializeServiceServerRequest() throws RejectedException {
+        return initializeRequestTicket(sessionState.get()).getTicketAuthenticatorWrapper();
+    }
+
+    /**
+     * Initialize the current ticket for a request and remember everything needed to verify the response.
+     * The response should be passed to {@link #verifyServiceServerResponse(RequestTicket, TicketAuthenticatorWrapper)}.
+     *
+     * @return the request ticket containing the current ticket initialized for a request
+     *
+     * @throws RejectedException if the ticket could not be initialized
+     */
+    public RequestTicket initializeRequestTicket() throws RejectedException {
+        return initializeRequestTicket(sessionState.get());
+    }
+
+    private RequestTicket initializeRequestTicket(final SessionState state) throws RejectedException {
+        if (!state.isLoggedIn()) {
+            throw new RejectedException("Initializing request rejected because no one is logged in");
+        }
+
         try {
-            return AuthenticationClientHandler.initServiceServerRequest(this.getSessionKey(), this.getTicketAuthenticatorWrapper());
+            // the authenticator is kept in plaintext so initializing only requires to encrypt it
+            return AuthenticationClientHandler.createServiceServerRequest(state.getSessionKey(), state.getAuthenticator(), state.getTicketAuthenticatorWrapper());
         } catch (CouldNotPerformException ex) {
             throw new RejectedException("Initializing request rejected", ex);
         }
     }
 
     public <VALUE extends Serializable> AuthenticatedValue initializeRequest(final VALUE value, final AuthToken authToken) throws CouldNotPerformException {
+        // use a single snapshot so that ticket and value are encrypted with the same session key
+        final SessionState state = sessionState.get();
+        final SessionKey sessionKey = state.getSessionKey();
+
         AuthenticatedValue.Builder authenticatedValue = AuthenticatedValue.newBuilder();
-        authenticatedValue.setTicketAuthenticatorWrapper(initializeServiceServerRequest());
+        authenticatedValue.setTicketAuthenticatorWrapper(initializeRequestTicket(state).getTicketAuthenticatorWrapper());
         authenticatedValue.setValue(EncryptionHelper.encryptSymmetric(value, sessionKey));
 
         if (authToken != null && authToken.hasAuthenticationToken() && !authToken.getAuthenticationToken().isEmpty()) {
@@ -228,7 +385,7 @@ public class SessionManager implements Shutdownable, Session {
      * @throws CouldNotPerformException {@inheritDoc}
      */
     @Override
-    public synchronized void loginUser(final String id, final boolean stayLoggedIn) throws CouldNotPerformException {
+    public void loginUser(final String id, final boolean stayLoggedIn) throws CouldNotPerformException {
         loginUser(id, credentialStore.getCredentials(id), stayLoggedIn);
     }
 
@@ -242,7 +399,7 @@ public class SessionManager implements Shutdownable, Session {
      * @throws CouldNotPerformException {@inheritDoc}
      */
     @Override
-    public synchronized void loginUser(final String id, final String password, final boolean stayLoggedIn) throws CouldNotPerformException {
+    public void loginUser(final String id, final String password, final boolean stayLoggedIn) throws CouldNotPerformException {
         final LoginCredentials credentials = LoginCredentials.newBuilder().setId(id).setSymmetric(true)
                 .setCredentials(ByteString.copyFrom(EncryptionHelper.hash(password))).build();
         loginUser(id, credentials, stayLoggedIn);
@@ -258,7 +415,7 @@ public class SessionManager implements Shutdownable, Session {
      * @throws CouldNotPerformException {@inheritDoc}
      */
     @Override
-    public synchronized void loginUser(final String id, final byte[] passwordHash, final boolean stayLoggedIn) throws CouldNotPerformException {
+    public void loginUser(final String id, final byte[] passwordHash, final boolean stayLoggedIn) throws CouldNotPerformException {
         final LoginCredentials credentials = LoginCredentials.newBuilder().setId(id).setSymmetric(true)
                 .setCredentials(ByteString.copyFrom(passwordHash, 0, EncryptionHelper.HASH_LENGTH)).build();
         loginUser(id, credentials, stayLoggedIn);
@@ -274,8 +431,8 @@ public class SessionManager implements Shutdownable, Session {
      * @throws CouldNotPerformException {@inheritDoc}
      */
     @Override
-    public synchronized void loginUser(final String id, final LoginCredentials credentials, final boolean stayLoggedIn) throws CouldNotPerformException {
-        internalLogin(id, credentials, stayLoggedIn, true);
+    public void loginUser(final String id, final LoginCredentials credentials, final boolean stayLoggedIn) throws CouldNotPerformException {
+        await(loginUserAsync(id, credentials, stayLoggedIn));
     }
 
     /**
@@ -287,7 +444,7 @@ public class SessionManager implements Shutdownable, Session {
      * @throws CouldNotPerformException {@inheritDoc}
      */
     @Override
-    public synchronized void loginClient(final String id, final boolean stayLoggedIn) throws CouldNotPerformException {
+    public void loginClient(final String id, final boolean stayLoggedIn) throws CouldNotPerformException {
         loginClient(id, credentialStore.getCredentials(id), stayLoggedIn);
     }
 
@@ -301,7 +458,7 @@ public class SessionManager implements Shutdownable, Session {
      * @throws CouldNotPerformException {@inheritDoc}
      */
     @Override
-    public synchronized void loginClient(final String id, final String password, final boolean stayLoggedIn) throws CouldNotPerformException {
+    public void loginClient(final String id, final String password, final boolean stayLoggedIn) throws CouldNotPerformException {
         final LoginCredentials credentials = LoginCredentials.newBuilder().setId(id).setSymmetric(true)
                 .setCredentials(ByteString.copyFrom(EncryptionHelper.hash(password))).build();
         loginClient(id, credentials, stayLoggedIn);
@@ -317,8 +474,100 @@ public class SessionManager implements Shutdownable, Session {
      * @throws CouldNotPerformException {@inheritDoc}
      */
     @Override
-    public synchronized void loginClient(final String id, final LoginCredentials credentials, final boolean stayLoggedIn) throws CouldNotPerformException {
-        internalLogin(id, credentials, stayLoggedIn, false);
+    public void loginClient(final String id, final LoginCredentials credentials, final boolean stayLoggedIn) throws CouldNotPerformException {
+        await(loginClientAsync(id, credentials, stayLoggedIn));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id           {@inheritDoc}
+     * @param credentials  {@inheritDoc}
+     * @param stayLoggedIn {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> loginUserAsync(final String id, final LoginCredentials credentials, final boolean stayLoggedIn) {
+        return enqueueLogin(generation -> internalLogin(id, credentials, stayLoggedIn, true, generation));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param id           {@inheritDoc}
+     * @param credentials  {@inheritDoc}
+     * @param stayLoggedIn {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> loginClientAsync(final String id, final LoginCredentials credentials, final boolean stayLoggedIn) {
+        return enqueueLogin(generation -> internalLogin(id, credentials, stayLoggedIn, false, generation));
+    }
+
+    /**
+     * Queue a login so that logins of this session manager are performed one after another.
+     * The login is started when the previous one completed, regardless of its result, so no thread is blocked
+     * while waiting for its turn. A login is cancelled if a logout happens after it has been queued.
+     *
+     * @param login function starting the login with the session generation at the time it has been queued.
+     *
+     * @return a future completed with the result of the login.
+     */
+    private CompletableFuture<Void> enqueueLogin(final LongFunction<CompletableFuture<Void>> login) {
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+        final long generation = sessionGeneration.get();
+        final CompletableFuture<Void> previousLogin = loginQueue.getAndSet(result);
+        previousLogin.whenComplete((previousResult, previousThrowable) -> {
+            if (generation != sessionGeneration.get()) {
+                result.completeExceptionally(new CouldNotPerformException("Login has been cancelled by a logout"));
+                return;
+            }
+
+            try {
+                login.apply(generation).whenComplete((loginResult, throwable) -> {
+                    if (throwable != null) {
+                        result.completeExceptionally(unwrap(throwable));
+                    } else {
+                        result.complete(null);
+                    }
+                });
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Publish a session if no logout happened since the login publishing it has been queued.
+     *
+     * @param state      the new session.
+     * @param generation the session generation at the time the login has been queued.
+     *
+     * @throws CouldNotPerformException if a logout happened meanwhile.
+     */
+    private void publishSession(final SessionState state, final long generation) throws CouldNotPerformException {
+        synchronized (sessionLock) {
+            if (generation != sessionGeneration.get()) {
+                throw new CouldNotPerformException("Login has been cancelled by a logout");
+            }
+            sessionState.set(state);
+        }
+    }
+
+    /**
+     * Clear the current session, stop its ticket renewal and cancel all logins which are queued or in progress.
+     *
+     * @return the session which has been cleared.
+     */
+    private SessionState invalidateSession() {
+        synchronized (sessionLock) {
+            sessionGeneration.incrementAndGet();
+            stopTicketRenewal();
+            return sessionState.getAndSet(SessionState.EMPTY);
+        }
     }
 
     /**
@@ -328,13 +577,15 @@ public class SessionManager implements Shutdownable, Session {
      * @param loginCredentials credentials of the user/client to be logged in.
      * @param stayLoggedIn     flag to keep the user logged in and to auto extend the session if needed.
      * @param isUser           defines if the given id refers to a user or a client account.
+     * @param generation       the session generation at the time the login has been queued.
      *
-     * @return Returns true if login successful
-     *
-     * @throws NotAvailableException    If the entered clientId could not be found.
-     * @throws CouldNotPerformException In case of a communication error between client and server.
+     * @return a future completed when the login is done. It fails with a {@link NotAvailableException} if the entered
+     * id could not be found or with a {@link CouldNotPerformException} in case of a communication error between client and server.
      */
-    private synchronized void internalLogin(final String id, final LoginCredentials loginCredentials, final boolean stayLoggedIn, final boolean isUser) throws CouldNotPerformException, NotAvailableException {
+    private CompletableFuture<Void> internalLogin(final String id, final LoginCredentials loginCredentials, final boolean stayLoggedIn, final boolean isUser, final long generation) {
+        final UserClientPair.Builder userClientPair;
+        LoginCredentials userCredentials = null;
+        LoginCredentials clientCredentials = null;
         try {
             // validate authentication property
             try {
@@ -346,24 +597,26 @@ public class SessionManager implements Shutdownable, Session {
             }
 
             // handle cases when somebody is already logged in
-            if (this.isLoggedIn()) {
+            final SessionState previousState = sessionState.get();
+            if (previousState.isLoggedIn()) {
                 // do nothing if same user or client is already logged in
-                if (id.equals(this.userClientPair.getUserId()) || id.equals(this.userClientPair.getClientId())) {
-                    return;
+                if (id.equals(previousState.getUserClientPair().getUserId()) || id.equals(previousState.getUserClientPair().getClientId())) {
+                    return CompletableFuture.completedFuture(null);
                 }
 
                 // cancel current ticket renewal task
-                if (ticketRenewalTask != null && !ticketRenewalTask.isDone()) {
-                    ticketRenewalTask.cancel(true);
-                }
+                stopTicketRenewal();
 
                 // if new client is logged in while a user is logged in the user has to be logged out
-                if (!userClientPair.getUserId().isEmpty() && !isUser) {
-                    this.logout();
+                // the previous client is not logged in again because it is replaced anyway
+                if (!previousState.getUserClientPair().getUserId().isEmpty() && !isUser) {
+                    publishSession(SessionState.EMPTY, generation);
+                    notifyLoginObserver();
                 }
             }
 
-            // save the new id
+            // the new pair is only published with the session after a successful login
+            userClientPair = sessionState.get().getUserClientPair().toBuilder();
             if (isUser) {
                 userClientPair.setUserId(id);
             } else {
@@ -371,8 +624,6 @@ public class SessionManager implements Shutdownable, Session {
             }
 
             // resolve user at client id and credentials
-            LoginCredentials userCredentials = null;
-            LoginCredentials clientCredentials = null;
             if (isUser) {
                 // user is logged in so the parameters are his credentials
                 userCredentials = loginCredentials;
@@ -385,140 +636,335 @@ public class SessionManager implements Shutdownable, Session {
                 // client is logged in so the parameters are his credentials
                 clientCredentials = loginCredentials;
             }
+        } catch (CouldNotPerformException ex) {
+            LOGGER.info("Login failed: ", ex);
+            return failedFuture(ex);
+        }
+
+        final UserClientPair pair = userClientPair.build();
+        final LoginCredentials finalUserCredentials = userCredentials;
+        final LoginCredentials finalClientCredentials = clientCredentials;
+        final boolean renewTicket = stayLoggedIn || !isUser;
+        if (!renewTicket || ticketCache == null) {
+            return login(pair, finalUserCredentials, finalClientCredentials, renewTicket, generation);
+        }
+
+        // try to resume a cached session and only perform the whole handshake if this fails
+        return resumeSession(pair, finalUserCredentials, finalClientCredentials, generation).handle((result, throwable) -> {
+            if (throwable == null) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            return login(pair, finalUserCredentials, finalClientCredentials, true, generation);
+        }).thenCompose(Function.identity());
+    }
 
+    /**
+     * Resume a session from the ticket cache. The cached ticket is validated by the authenticator with a single
+     * request which also extends its validity. On success the session is published and its ticket is renewed
+     * periodically. A cached ticket which cannot be validated is removed from the cache.
+     *
+     * @param userClientPair    the pair to be logged in.
+     * @param userCredentials   the credentials of the user or null if the pair does not contain a user.
+     * @param clientCredentials the credentials of the client or null if the pair does not contain a client.
+     * @param generation        the session generation at the time the login has been queued.
+     *
+     * @return a future completed when the session is resumed.
+     */
+    private CompletableFuture<Void> resumeSession(final UserClientPair userClientPair, final LoginCredentials userCredentials, final LoginCredentials clientCredentials, final long generation) {
+        final CachedTicket cachedTicket;
+        final RequestTicket requestTicket;
+        final AuthenticationRemote remote;
+        try {
+            cachedTicket = ticketCache.getTicket(userClientPair, userCredentials, clientCredentials, AuthenticationServerHandler.MAX_TIME_DIFF_SERVER_CLIENT);
+            requestTicket = initializeRequestTicket(new SessionState(userClientPair, cachedTicket.getTicketAuthenticatorWrapper(), cachedTicket.getAuthenticator(), cachedTicket.getSessionKey()));
+            remote = CachedAuthenticationRemote.getRemote();
+        } catch (CouldNotPerformException ex) {
+            return failedFuture(ex);
+        }
+
+        return toCompletableFuture(remote.validateClientServerTicket(requestTicket.getTicketAuthenticatorWrapper())).thenAccept(response -> {
             try {
-                // request ticket granting ticket
-                TicketSessionKeyWrapper ticketSessionKeyWrapper = CachedAuthenticationRemote.getRemote().requestTicketGrantingTicket(getUserClientPair()).get(5, TimeUnit.SECONDS);
-                // handle response
+                final Authenticator authenticator = AuthenticationClientHandler.handleServiceServerResponse(requestTicket, response);
+                final SessionState state = new SessionState(userClientPair, response, authenticator, requestTicket.getSessionKey());
+                publishSession(state, generation);
+                cacheTicket(state, cachedTicket.getFingerprint());
+            } catch (CouldNotPerformException ex) {
+                throw new CompletionException(ex);
+            }
 
-                TicketWrapperSessionKeyPair ticketWrapperSessionKeyPair = AuthenticationClientHandler.handleKeyDistributionCenterResponse(getUserClientPair(), userCredentials, clientCredentials, ticketSessionKeyWrapper);
+            LOGGER.debug("Resumed session of " + userClientPair.getUserId() + "@" + userClientPair.getClientId() + " from ticket cache");
+            notifyLoginObserver();
+            startTicketRenewal(generation);
+        }).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                LOGGER.debug("Could not resume session from ticket cache", unwrap(throwable));
+                ticketCache.removeTicket(userClientPair);
+            }
+        });
+    }
 
-                // request client server ticket
-                ticketSessionKeyWrapper = CachedAuthenticationRemote.getRemote().requestClientServerTicket(ticketWrapperSessionKeyPair.getTicketAuthenticatorWrapper()).get(5, TimeUnit.SECONDS);
-                // handle response
-                ticketWrapperSessionKeyPair = AuthenticationClientHandler.handleTicketGrantingServiceResponse(getUserClientPair(), ticketWrapperSessionKeyPair.getSessionKey(), ticketSessionKeyWrapper);
-                this.ticketAuthenticatorWrapper = ticketWrapperSessionKeyPair.getTicketAuthenticatorWrapper();
-                this.sessionKey = ticketWrapperSessionKeyPair.getSessionKey();
+    /**
+     * Write the ticket of a session into the ticket cache. The ticket is valid for the session timeout from now on
+     * because it has just been issued or validated by the authenticator.
+     *
+     * @param state       the session.
+     * @param fingerprint the fingerprint of the credentials of the session.
+     */
+    private void cacheTicket(final SessionState state, final String fingerprint) {
+        try {
+            final long expiration = System.currentTimeMillis() + JPService.getProperty(JPSessionTimeout.class).getValue();
+            ticketCache.addTicket(new CachedTicket(state.getUserClientPair(), state.getTicketAuthenticatorWrapper(), state.getAuthenticator(), state.getSessionKey(), fingerprint, expiration));
+        } catch (JPNotAvailableException ex) {
+            ExceptionPrinter.printHistory("Could not cache ticket", ex, LOGGER, LogLevel.WARN);
+        }
+    }
 
-                notifyLoginObserver();
+    /**
+     * Update the cached ticket of the current session after it has been renewed.
+     *
+     * @param sessionKey the key of the renewed session. Nothing is updated if the session has been replaced meanwhile.
+     */
+    private void updateCachedTicket(final SessionKey sessionKey) {
+        if (ticketCache == null) {
+            return;
+        }
+
+        final SessionState state = sessionState.get();
+        if (state.getSessionKey() != sessionKey) {
+            return;
+        }
 
-                // user wants to stay logged or is a client so trigger a ticket renewal task
-                if (stayLoggedIn || !isUser) {
+        try {
+            final CachedTicket cachedTicket = ticketCache.getTicket(state.getUserClientPair());
+            if (cachedTicket.getSessionKey() == sessionKey) {
+                cacheTicket(state, cachedTicket.getFingerprint());
+            }
+        } catch (NotAvailableException ex) {
+            // the session is not cached because it does not stay logged in
+        }
+    }
+
+    /**
+     * Perform the handshake with the authenticator for a pair of user and client and publish the new session on success.
+     * The session state is only replaced on success so there is nothing to reset on failure.
+     *
+     * @param userClientPair    the pair to be logged in.
+     * @param userCredentials   the credentials of the user. Only required if the pair contains a user id.
+     * @param clientCredentials the credentials of the client. Only required if the pair contains a client id.
+     * @param renewTicket       flag to start the ticket renewal after the login.
+     * @param generation        the session generation at the time the login has been queued.
+     *
+     * @return a future completed when the login is done.
+     */
+    private CompletableFuture<Void> login(final UserClientPair userClientPair, final LoginCredentials userCredentials, final LoginCredentials clientCredentials, final boolean renewTicket, final long generation) {
+        final AuthenticationRemote remote;
+        try {
+            remote = CachedAuthenticationRemote.getRemote();
+        } catch (CouldNotPerformException ex) {
+            LOGGER.info("Login failed: ", ex);
+            return failedFuture(new CouldNotPerformException("Could not login", ex));
+        }
+
+        // request ticket granting ticket
+        return toCompletableFuture(remote.requestTicketGrantingTicket(userClientPair)).thenApply(ticketSessionKeyWrapper -> {
+            try {
+                // resolve keys through the store so that stored credentials are only parsed once
+                final Key userKey = (userCredentials == null) ? null : credentialStore.getDecryptionKey(userCredentials);
+                final Key clientKey = (clientCredentials == null) ? null : credentialStore.getDecryptionKey(clientCredentials);
+                // handle response
+                return AuthenticationClientHandler.handleKeyDistributionCenterResponse(userClientPair, userKey, clientKey, ticketSessionKeyWrapper);
+            } catch (CouldNotPerformException ex) {
+                throw new CompletionException(ex);
+            }
+        }).thenCompose(ticketGrantingTicketPair ->
+                // request client server ticket
+                toCompletableFuture(remote.requestClientServerTicket(ticketGrantingTicketPair.getTicketAuthenticatorWrapper())).thenApply(ticketSessionKeyWrapper -> {
                     try {
-                        final Long sessionTimeout = JPService.getProperty(JPSessionTimeout.class).getValue();
-                        final long delay = (long) ((2 * sessionTimeout) / 4.0d);
-                        ticketRenewalTask = GlobalScheduledExecutorService.scheduleWithFixedDelay(() -> {
-                            try {
-                                renewTicket();
-                            } catch (CouldNotPerformException ex) {
-                                if(!ExceptionProcessor.isCausedBySystemShutdown(ex)) {
-                                    ExceptionPrinter.printHistory("Could not renew ticket", ex, LOGGER, LogLevel.WARN);
-                                }
-                            } catch (InterruptedException ex) {
-                                Thread.currentThread().interrupt();
-                            }
-                        }, delay, delay, TimeUnit.MILLISECONDS);
-                    } catch (JPNotAvailableException ex) {
-                        if(!ExceptionProcessor.isCausedBySystemShutdown(ex)) {
-                            ExceptionPrinter.printHistory("Could not start ticket renewal task", ex, LOGGER, LogLevel.WARN);
-                        }
+                        // handle response
+                        return AuthenticationClientHandler.handleTicketGrantingServiceResponse(userClientPair, ticketGrantingTicketPair.getSessionKey(), ticketSessionKeyWrapper);
+                    } catch (CouldNotPerformException ex) {
+                        throw new CompletionException(ex);
                     }
-                }
+                })
+        ).thenAccept(ticketWrapperSessionKeyPair -> {
+            final SessionState state = new SessionState(userClientPair, ticketWrapperSessionKeyPair.getTicketAuthenticatorWrapper(), ticketWrapperSessionKeyPair.getAuthenticator(), ticketWrapperSessionKeyPair.getSessionKey());
+            try {
+                publishSession(state, generation);
             } catch (CouldNotPerformException ex) {
-                throw new CouldNotPerformException("Could not login", ex);
-            } catch (ExecutionException ex) {
-                Throwable cause = ex.getCause();
+                throw new CompletionException(ex);
+            }
+            if (renewTicket && ticketCache != null) {
+                cacheTicket(state, TicketCacheStore.computeFingerprint(userCredentials, clientCredentials));
+            }
 
-                // Ugly workaround, as RSB wraps the stacktrace into the message string.
-                Pattern pattern = Pattern.compile("NotAvailableException: (.*)[\n\r]");
-                Matcher matcher = pattern.matcher(cause.getMessage());
+            notifyLoginObserver();
 
-                if (matcher.find()) {
-                    ExceptionPrinter.printHistory(cause, LOGGER, LogLevel.ERROR);
-                    throw new NotAvailableException(matcher.group(1));
-                }
+            // user wants to stay logged or is a client so trigger a ticket renewal task
+            if (renewTicket) {
+                startTicketRenewal(generation);
+            }
+        }).handle((result, throwable) -> {
+            if (throwable == null) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            final CouldNotPerformException ex = resolveLoginError(unwrap(throwable));
+            LOGGER.info("Login failed: ", ex);
+            return SessionManager.<Void>failedFuture(ex);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Convert the failure of a login request into the exception reported to the caller.
+     *
+     * @param throwable the failure.
+     *
+     * @return the exception describing the failure.
+     */
+    private CouldNotPerformException resolveLoginError(final Throwable throwable) {
+        if (throwable instanceof ExecutionException) {
+            final Throwable cause = throwable.getCause();
 
+            // resolve the error code with which the authenticator tagged the message
+            if (AuthenticationErrorCode.resolve(cause) == AuthenticationErrorCode.NOT_AVAILABLE) {
                 ExceptionPrinter.printHistory(cause, LOGGER, LogLevel.ERROR);
-                throw new CouldNotPerformException("Internal server error.", cause);
-            } catch (TimeoutException e) {
-                throw new org.openbase.jul.exception.TimeoutException("Requests to the authenticator timed out!");
-            } catch (InterruptedException ex) {
-                //TODO: handle me correctly
-                Thread.currentThread().interrupt();
-                throw new CouldNotPerformException(ex);
+                return new NotAvailableException(AuthenticationErrorCode.extractMessage(cause));
             }
-        } catch (CouldNotPerformException ex) {
-            // clear id on failure
-            if (isUser) {
-                if (userClientPair.getUserId().equals(id)) {
-                    userClientPair.clearUserId();
-                }
-            } else {
-                if (userClientPair.getClientId().equals(id)) {
-                    userClientPair.clearClientId();
+
+            // Ugly workaround, as RSB wraps the stacktrace into the message string.
+            if (cause.getMessage() != null) {
+                final Matcher matcher = NOT_AVAILABLE_PATTERN.matcher(cause.getMessage());
+                if (matcher.find()) {
+                    ExceptionPrinter.printHistory(cause, LOGGER, LogLevel.ERROR);
+                    return new NotAvailableException(matcher.group(1));
                 }
             }
-            // todo: @pleminoq anything else the reset?
-            // e.g. ticketAuthenticatorWrapper, sessionKey
 
-            LOGGER.info("Login failed: ", ex);
-            throw ex;
+            ExceptionPrinter.printHistory(cause, LOGGER, LogLevel.ERROR);
+            return new CouldNotPerformException("Internal server error.", cause);
+        } else if (throwable instanceof TimeoutException) {
+            return new org.openbase.jul.exception.TimeoutException("Requests to the authenticator timed out!");
         }
+        return new CouldNotPerformException("Could not login", throwable);
     }
 
     /**
      * {@inheritDoc}
+     * The client is logged in again in the background, see {@link #logoutAsync()}.
      */
     @Override
-    public synchronized void logout() {
-        boolean stayLoggedIn = ticketRenewalTask != null && !ticketRenewalTask.isDone();
-        // cancel ticket renewal task
-        if (stayLoggedIn) {
-            ticketRenewalTask.cancel(true);
-        }
-
-        // clear ticket and session key
-        this.ticketAuthenticatorWrapper = null;
-        this.sessionKey = null;
-
-        // if a user was logged in clear user id
-        if (!userClientPair.getUserId().isEmpty()) {
-            userClientPair.clearUserId();
-
-            // if a client was logged in additionally, log him in again
-            if (!userClientPair.getClientId().isEmpty()) {
-                try {
-                    loginClient(userClientPair.getClientId(), stayLoggedIn);
-                    // return because the login notifies observer already
-                    return;
-                } catch (CouldNotPerformException ex) {
-                    ExceptionPrinter.printHistory("Could not login as client again after user logout", ex, LOGGER, LogLevel.WARN);
-                }
+    public void logout() {
+        try {
+            await(logoutAsync());
+        } catch (CouldNotPerformException ex) {
+            // the failed re-login of the client has already been logged by logoutAsync
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> logoutAsync() {
+        final boolean stayLoggedIn = isTicketRenewalActive();
+
+        // clear ticket, session key and ids and cancel the ticket renewal task
+        final UserClientPair userClientPair = invalidateSession().getUserClientPair();
+        if (ticketCache != null) {
+            ticketCache.removeTicket(userClientPair);
+        }
+
+        // if a user and a client were logged in, log the client in again
+        if (!userClientPair.getUserId().isEmpty() && !userClientPair.getClientId().isEmpty()) {
+            try {
+                // the login notifies observers already
+                return loginClientAsync(userClientPair.getClientId(), credentialStore.getCredentials(userClientPair.getClientId()), stayLoggedIn).whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        ExceptionPrinter.printHistory("Could not login as client again after user logout", unwrap(throwable), LOGGER, LogLevel.WARN);
+                        notifyLoginObserver();
+                    }
+                });
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory("Could not login as client again after user logout", ex, LOGGER, LogLevel.WARN);
             }
-        } else if (!userClientPair.getClientId().isEmpty()) {
-            // only a client has been logged in so clear its id
-            userClientPair.clearClientId();
         }
 
         // notify observer of logout
         notifyLoginObserver();
+        return CompletableFuture.completedFuture(null);
     }
 
     /**
      * The normal logout method logs in a client again if a user and a client were registered.
      * This method will also logout the client. This is mostly necessary for unit tests.
      */
-    public synchronized void completeLogout() {
-        if (ticketRenewalTask != null && !ticketRenewalTask.isDone()) {
-            ticketRenewalTask.cancel(true);
+    public void completeLogout() {
+        final UserClientPair userClientPair = invalidateSession().getUserClientPair();
+        if (ticketCache != null) {
+            ticketCache.removeTicket(userClientPair);
         }
-        userClientPair.clearUserId();
-        userClientPair.clearClientId();
-        sessionKey = null;
-        ticketAuthenticatorWrapper = null;
         notifyLoginObserver();
     }
 
+    /**
+     * Start the ticket renewal of a session published by a login unless a logout happened meanwhile.
+     *
+     * @param generation the session generation at the time the login has been queued.
+     */
+    private void startTicketRenewal(final long generation) {
+        synchronized (sessionLock) {
+            if (generation != sessionGeneration.get()) {
+                return;
+            }
+            startTicketRenewal();
+        }
+    }
+
+    /**
+     * Start a task which renews the ticket of the current session before it runs out.
+     * A previously started task is cancelled.
+     */
+    void startTicketRenewal() {
+        try {
+            final Long sessionTimeout = JPService.getProperty(JPSessionTimeout.class).getValue();
+            final long delay = (long) ((2 * sessionTimeout) / 4.0d);
+            // the renewal is performed asynchronously so that no scheduler thread waits for the authenticator
+            final ScheduledFuture<?> previousTask = ticketRenewalTask.getAndSet(GlobalScheduledExecutorService.scheduleWithFixedDelay(() -> renewAsync().whenComplete((result, throwable) -> {
+                if (throwable != null && !ExceptionProcessor.isCausedBySystemShutdown(throwable)) {
+                    ExceptionPrinter.printHistory("Could not renew ticket", throwable, LOGGER, LogLevel.WARN);
+                }
+            }), delay, delay, TimeUnit.MILLISECONDS));
+            if (previousTask != null) {
+                previousTask.cancel(true);
+            }
+        } catch (JPNotAvailableException | CouldNotPerformException ex) {
+            if(!ExceptionProcessor.isCausedBySystemShutdown(ex)) {
+                ExceptionPrinter.printHistory("Could not start ticket renewal task", ex, LOGGER, LogLevel.WARN);
+            }
+        }
+    }
+
+    /**
+     * Stop the ticket renewal of the current session if it is active.
+     */
+    void stopTicketRenewal() {
+        final ScheduledFuture<?> task = ticketRenewalTask.getAndSet(null);
+        if (task != null && !task.isDone()) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Check if the ticket of the current session is renewed automatically.
+     *
+     * @return true if the ticket renewal is active.
+     */
+    boolean isTicketRenewalActive() {
+        final ScheduledFuture<?> task = ticketRenewalTask.get();
+        return task != null && !task.isDone();
+    }
+
     /**
      * Method notifies login observer with the current user at client id.
      */
@@ -541,7 +987,7 @@ public class SessionManager implements Shutdownable, Session {
      */
     @Override
     public boolean isLoggedIn() {
-        return this.ticketAuthenticatorWrapper != null && this.sessionKey != null;
+        return sessionState.get().isLoggedIn();
     }
 
     /**
@@ -550,13 +996,14 @@ public class SessionManager implements Shutdownable, Session {
      * @return {@inheritDoc}
      */
     @Override
-    public synchronized boolean isAdmin() {
-        if (!this.isLoggedIn()) {
+    public boolean isAdmin() {
+        final SessionState state = sessionState.get();
+        if (!state.isLoggedIn()) {
             return false;
         }
 
         try {
-            return CachedAuthenticationRemote.getRemote().isAdmin(userClientPair.getUserId()).get(5, TimeUnit.SECONDS);
+            return CachedAuthenticationRemote.getRemote().isAdmin(state.getUserClientPair().getUserId()).get(5, TimeUnit.SECONDS);
         } catch (InterruptedException | CouldNotPerformException | ExecutionException | TimeoutException ex) {
             ExceptionPrinter.printHistory(ex, LOGGER, LogLevel.ERROR);
         }
@@ -567,54 +1014,105 @@ public class SessionManager implements Shutdownable, Session {
     /**
      * Renew the ticket for the current session by validating it at the authenticator controller.
      * This method is used to keep a user logged in by renewing the ticket before a session runs out.
+     * The renewal does not block other requests. The renewed ticket is discarded if the session has been replaced meanwhile.
      *
      * @throws CouldNotPerformException if the ticket could not be renewed
      */
-    private synchronized void renewTicket() throws CouldNotPerformException, InterruptedException {
+    void renewTicket() throws CouldNotPerformException, InterruptedException {
+        await(renewAsync());
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> renewAsync() {
         // validate that someone is logged in
-        if (!this.isLoggedIn()) {
-            throw new CouldNotPerformException("Could not renew ticket because not one is logged in");
+        final SessionState state = sessionState.get();
+        if (!state.isLoggedIn()) {
+            return failedFuture(new CouldNotPerformException("Could not renew ticket because not one is logged in"));
         }
 
-        // perform a request with the current ticket
+        final RequestTicket requestTicket;
+        final AuthenticationRemote remote;
         try {
             // initialize current ticket for a request
-            TicketAuthenticatorWrapper request = AuthenticationClientHandler.initServiceServerRequest(this.sessionKey, this.ticketAuthenticatorWrapper);
-            // perform the request
-            TicketAuthenticatorWrapper response = CachedAuthenticationRemote.getRemote().validateClientServerTicket(request).get(5, TimeUnit.SECONDS);
-            // validate response and set as current ticket
-            ticketAuthenticatorWrapper = AuthenticationClientHandler.handleServiceServerResponse(this.sessionKey, request, response);
-        } catch (ExecutionException ex) {
-            Throwable cause = ex.getCause();
-
-            Pattern pattern = Pattern.compile("RejectedException: (.*)[\n\r]");
-            Matcher matcher = pattern.matcher(cause.getMessage());
+            requestTicket = initializeRequestTicket(state);
+            remote = CachedAuthenticationRemote.getRemote();
+        } catch (CouldNotPerformException ex) {
+            return failedFuture(ex);
+        }
 
-            if (matcher.find()) {
-                ExceptionPrinter.printHistory(cause, LOGGER, LogLevel.ERROR);
-                throw new RejectedException(matcher.group(1));
+        // perform a request with the current ticket
+        return toCompletableFuture(remote.validateClientServerTicket(requestTicket.getTicketAuthenticatorWrapper())).thenAccept(response -> {
+            try {
+                // validate response and set as current ticket
+                verifyServiceServerResponse(requestTicket, response);
+                updateCachedTicket(requestTicket.getSessionKey());
+            } catch (CouldNotPerformException ex) {
+                throw new CompletionException(ex);
             }
+        }).handle((result, throwable) -> {
+            if (throwable == null) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            return SessionManager.<Void>failedFuture(resolveRenewalError(unwrap(throwable)));
+        }).thenCompose(Function.identity());
+    }
 
-            pattern = Pattern.compile("PermissionDeniedException: (.*)[\n\r]");
-            matcher = pattern.matcher(cause.getMessage());
-
-            if (matcher.find()) {
-                ExceptionPrinter.printHistory(cause, LOGGER, LogLevel.ERROR);
-                throw new PermissionDeniedException(matcher.group(1));
+    /**
+     * Convert the failure of a ticket renewal into the exception reported to the caller.
+     *
+     * @param throwable the failure.
+     *
+     * @return the exception describing the failure.
+     */
+    private CouldNotPerformException resolveRenewalError(final Throwable throwable) {
+        if (throwable instanceof ExecutionException) {
+            final Throwable cause = throwable.getCause();
+
+            // resolve the error code with which the authenticator tagged the message
+            final AuthenticationErrorCode errorCode = AuthenticationErrorCode.resolve(cause);
+            switch (errorCode) {
+                case SESSION_EXPIRED:
+                    return errorCode.toException(AuthenticationErrorCode.extractMessage(cause));
+                case REJECTED:
+                case PERMISSION_DENIED:
+                    ExceptionPrinter.printHistory(cause, LOGGER, LogLevel.ERROR);
+                    return errorCode.toException(AuthenticationErrorCode.extractMessage(cause));
+                default:
+                    break;
             }
 
-            pattern = Pattern.compile("SessionExpiredException: (.*)[\n\r]");
-            matcher = pattern.matcher(cause.getMessage());
+            if (cause.getMessage() != null) {
+                Matcher matcher = REJECTED_PATTERN.matcher(cause.getMessage());
+                if (matcher.find()) {
+                    ExceptionPrinter.printHistory(cause, LOGGER, LogLevel.ERROR);
+                    return new RejectedException(matcher.group(1));
+                }
+
+                matcher = PERMISSION_DENIED_PATTERN.matcher(cause.getMessage());
+                if (matcher.find()) {
+                    ExceptionPrinter.printHistory(cause, LOGGER, LogLevel.ERROR);
+                    return new PermissionDeniedException(matcher.group(1));
+                }
 
-            if (matcher.find()) {
-                throw new SessionExpiredException(matcher.group(1));
+                matcher = SESSION_EXPIRED_PATTERN.matcher(cause.getMessage());
+                if (matcher.find()) {
+                    return new SessionExpiredException(matcher.group(1));
+                }
             }
 
             ExceptionPrinter.printHistory(cause, LOGGER, LogLevel.ERROR);
-            throw new CouldNotPerformException("Internal server error.", cause);
-        } catch (TimeoutException e) {
-            throw new org.openbase.jul.exception.TimeoutException(e);
+            return new CouldNotPerformException("Internal server error.", cause);
+        } else if (throwable instanceof TimeoutException) {
+            return new org.openbase.jul.exception.TimeoutException(throwable);
+        } else if (throwable instanceof CouldNotPerformException) {
+            return (CouldNotPerformException) throwable;
         }
+        return new CouldNotPerformException("Could not renew ticket", throwable);
     }
 
     /**
@@ -623,34 +1121,108 @@ public class SessionManager implements Shutdownable, Session {
      * @throws CouldNotPerformException {@inheritDoc}
      */
     @Override
-    public synchronized void reLogin() throws CouldNotPerformException {
+    public void reLogin() throws CouldNotPerformException {
+        await(reLoginAsync());
+    }
+
+    /**
+     * {@inheritDoc}
+     * A user and client who were logged in together are logged in again with a single handshake.
+     * Concurrent calls are coalesced: while a re-login is in progress, further calls return its result
+     * instead of starting another one.
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<Void> reLoginAsync() {
+        while (true) {
+            final CompletableFuture<Void> currentReLogin = reLoginFlight.get();
+            if (!currentReLogin.isDone()) {
+                // join the re-login in progress
+                return currentReLogin.thenApply(Function.identity());
+            }
+
+            final CompletableFuture<Void> reLogin = new CompletableFuture<>();
+            if (reLoginFlight.compareAndSet(currentReLogin, reLogin)) {
+                enqueueLogin(this::internalReLogin).whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        reLogin.completeExceptionally(unwrap(throwable));
+                    } else {
+                        reLogin.complete(null);
+                    }
+                });
+                return reLogin.thenApply(Function.identity());
+            }
+        }
+    }
+
+    /**
+     * Re-login because a request performed with the given session failed, e.g. because its ticket expired or the
+     * authenticator restarted. If the session has already been replaced, e.g. by a re-login triggered by another
+     * failed request, no further re-login is started. Thus all requests failing for the same session cause a single
+     * re-login and await its result.
+     *
+     * @param failedSessionKey the key of the session with which the failed request was performed.
+     *
+     * @return a future completed when the session has been replaced.
+     */
+    public CompletableFuture<Void> reLoginAsync(final SessionKey failedSessionKey) {
+        if (failedSessionKey != null && sessionState.get().getSessionKey() != failedSessionKey) {
+            // the session has already been replaced, at most a re-login is still finishing
+            return reLoginFlight.get().thenApply(Function.identity());
+        }
+        return reLoginAsync();
+    }
+
+    /**
+     * Re-login with the credentials from the store. This is performed as a queued login.
+     *
+     * @param generation the session generation at the time the re-login has been queued.
+     *
+     * @return a future completed when the re-login is finished.
+     */
+    private CompletableFuture<Void> internalReLogin(final long generation) {
         // skip notifications
         skipNotification = true;
+
+        // save if user stayed logged in
+        final boolean stayLoggedIn = isTicketRenewalActive();
+        // save user and client id
+        final UserClientPair userClientPair = getUserClientPair();
+
+        final CompletableFuture<Void> login;
         try {
-            // save if user stayed logged in
-            final boolean stayLoggedIn = ticketRenewalTask != null && !ticketRenewalTask.isDone();
-            // save user and client id
-            final UserClientPair userClientPair = getUserClientPair();
-            // logout);
-            logout();
+            // logout
+            stopTicketRenewal();
+            publishSession(SessionState.EMPTY, generation);
+
+            final boolean clientStored = !userClientPair.getClientId().isEmpty() && credentialStore.hasEntry(userClientPair.getClientId());
+            final LoginCredentials clientCredentials = clientStored ? credentialStore.getCredentials(userClientPair.getClientId()) : null;
             if (!userClientPair.getUserId().isEmpty() && credentialStore.hasEntry(userClientPair.getUserId())) {
-                // if user was save in store log him in again, this is valid because logout will login a client
-                // if a user was logged in at a client
-                loginUser(userClientPair.getUserId(), stayLoggedIn);
-            } else {
-                // user was not logged in so login the client again if possible
-                if (!userClientPair.getClientId().isEmpty() && credentialStore.hasEntry(userClientPair.getClientId())) {
-                    loginClient(userClientPair.getClientId(), stayLoggedIn);
+                // if user was save in store log him in again together with the client if possible
+                final UserClientPair.Builder pair = UserClientPair.newBuilder().setUserId(userClientPair.getUserId());
+                if (clientStored) {
+                    pair.setClientId(userClientPair.getClientId());
                 }
+                login = login(pair.build(), credentialStore.getCredentials(userClientPair.getUserId()), clientCredentials, stayLoggedIn, generation);
+            } else if (clientStored) {
+                // user was not logged in so login the client again if possible
+                login = login(UserClientPair.newBuilder().setClientId(userClientPair.getClientId()).build(), null, clientCredentials, true, generation);
+            } else {
+                login = CompletableFuture.completedFuture(null);
             }
         } catch (CouldNotPerformException ex) {
-            throw ex;
-        } finally {
-            // enable notifications again
             skipNotification = false;
+            return failedFuture(ex);
         }
 
-        notifyLoginObserver();
+        return login.whenComplete((result, throwable) -> {
+            // enable notifications again
+            skipNotification = false;
+            if (throwable == null) {
+                notifyLoginObserver();
+            }
+        });
     }
 
     /**
@@ -662,12 +1234,11 @@ public class SessionManager implements Shutdownable, Session {
      *
      * @throws CouldNotPerformException In case of a communication error between client and server.
      */
-    public synchronized Future<LoginCredentialsChange> changePassword(final String userId, final String oldCredentials, final String newCredentials) throws CouldNotPerformException {
+    public Future<LoginCredentialsChange> changePassword(final String userId, final String oldCredentials, final String newCredentials) throws CouldNotPerformException {
         if (!this.isLoggedIn()) {
             throw new CouldNotPerformException("Please log in first!");
         }
 
-        ticketAuthenticatorWrapper = AuthenticationClientHandler.initServiceServerRequest(sessionKey, ticketAuthenticatorWrapper);
         byte[] oldHash = EncryptionHelper.hash(oldCredentials);
         byte[] newHash = EncryptionHelper.hash(newCredentials);
 
@@ -681,7 +1252,7 @@ public class SessionManager implements Shutdownable, Session {
         return AuthenticatedServiceProcessor.requestAuthenticatedAction(loginCredentialsChange, LoginCredentialsChange.class, this, authenticatedValue -> CachedAuthenticationRemote.getRemote().changeCredentials(authenticatedValue));
     }
 
-    public synchronized String getCredentialHashFromLocalStore(String userId) throws CouldNotPerformException {
+    public String getCredentialHashFromLocalStore(String userId) throws CouldNotPerformException {
         if (!this.isLoggedIn()) {
             throw new CouldNotPerformException("Please log in first!");
         }
@@ -689,7 +1260,7 @@ public class SessionManager implements Shutdownable, Session {
         return Base64.getEncoder().encodeToString(credentialStore.getEntry(userId).getCredentials().toByteArray());
     }
 
-    public synchronized boolean hasCredentials() {
+    public boolean hasCredentials() {
         return !credentialStore.isEmpty();
     }
 
@@ -701,7 +1272,7 @@ public class SessionManager implements Shutdownable, Session {
      *
      * @throws org.openbase.jul.exception.CouldNotPerformException if the client could not registered
      */
-    public synchronized Future<LoginCredentials> registerClient(final String clientId) throws CouldNotPerformException {
+    public Future<LoginCredentials> registerClient(final String clientId) throws CouldNotPerformException {
         // generate key pair
         final KeyPair keyPair = EncryptionHelper.generateKeyPair();
         // create credentials with private key and store locally
@@ -717,7 +1288,7 @@ public class SessionManager implements Shutdownable, Session {
         return this.internalRegister(loginCredentials.build());
     }
 
-    public synchronized boolean hasCredentialsForId(final String id) {
+    public boolean hasCredentialsForId(final String id) {
         return this.credentialStore.hasEntry(id) || this.credentialStore.hasEntry("@" + id);
     }
 
@@ -730,7 +1301,7 @@ public class SessionManager implements Shutdownable, Session {
      *
      * @throws org.openbase.jul.exception.CouldNotPerformException if the user could not be registered
      */
-    public synchronized Future<LoginCredentials> registerUser(final String userId, final String password, final boolean isAdmin) throws CouldNotPerformException {
+    public Future<LoginCredentials> registerUser(final String userId, final String password, final boolean isAdmin) throws CouldNotPerformException {
         byte[] key = EncryptionHelper.hash(password);
         final LoginCredentials loginCredentials = LoginCredentials.newBuilder().setId(userId).setAdmin(isAdmin).setSymmetric(true).setCredentials(ByteString.copyFrom(key)).build();
         return this.internalRegister(loginCredentials);
@@ -743,8 +1314,10 @@ public class SessionManager implements Shutdownable, Session {
      * @param loginCredentials {@inheritDoc}
      */
     @Override
-    public synchronized void storeCredentials(final String id, final LoginCredentials loginCredentials) throws CouldNotPerformException {
-        if (isLoggedIn()) {
+    public void storeCredentials(final String id, final LoginCredentials loginCredentials) throws CouldNotPerformException {
+        final SessionState state = sessionState.get();
+        if (state.isLoggedIn()) {
+            final UserClientPair userClientPair = state.getUserClientPair();
             boolean userIdMatches = id.equals(userClientPair.getUserId()) && !userClientPair.getUserId().isEmpty();
             boolean clientIdMatches = id.equals(userClientPair.getClientId()) && !userClientPair.getClientId().isEmpty();
             if (userIdMatches || clientIdMatches) {
@@ -774,7 +1347,7 @@ public class SessionManager implements Shutdownable, Session {
         return AuthenticatedServiceProcessor.requestAuthenticatedAction(loginCredentials, LoginCredentials.class, this, authenticatedValue -> CachedAuthenticationRemote.getRemote().register(authenticatedValue));
     }
 
-    public synchronized Future<String> removeUser(String id) throws CouldNotPerformException {
+    public Future<String> removeUser(String id) throws CouldNotPerformException {
         if (!this.isAdmin()) {
             throw new CouldNotPerformException("You have to be an admin to perform this action");
         }
@@ -782,7 +1355,7 @@ public class SessionManager implements Shutdownable, Session {
         return AuthenticatedServiceProcessor.requestAuthenticatedAction(id, String.class, this, authenticatedValue -> CachedAuthenticationRemote.getRemote().removeUser(authenticatedValue));
     }
 
-    public synchronized Future<LoginCredentials> setAdministrator(final String id, boolean isAdmin) throws CouldNotPerformException {
+    public Future<LoginCredentials> setAdministrator(final String id, boolean isAdmin) throws CouldNotPerformException {
         if (!this.isLoggedIn()) {
             throw new CouldNotPerformException("Please log in first!");
         }
@@ -797,7 +1370,7 @@ public class SessionManager implements Shutdownable, Session {
      * @return userId@clientId
      */
     public UserClientPair getUserClientPair() {
-        return userClientPair.build();
+        return sessionState.get().getUserClientPair();
     }
 
     public void addLoginObserver(final Observer<SessionManager, UserClientPair> observer) {
@@ -818,6 +1391,126 @@ public class SessionManager implements Shutdownable, Session {
      */
     @Override
     public void shutdown() {
-        completeLogout();
+        // the cached ticket is kept so that the session can be resumed after a restart
+        invalidateSession();
+        notifyLoginObserver();
+    }
+
+    /**
+     * Wait for an asynchronous operation of this session manager to complete.
+     *
+     * @param future the future of the operation.
+     *
+     * @throws CouldNotPerformException if the operation failed or the waiting thread was interrupted.
+     */
+    private static void await(final CompletableFuture<?> future) throws CouldNotPerformException {
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CouldNotPerformException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof CouldNotPerformException) {
+                throw (CouldNotPerformException) ex.getCause();
+            }
+            throw new CouldNotPerformException(ex.getCause());
+        }
+    }
+
+    /**
+     * Bridge a future of the authentication remote into a completable future. Waiting for the response is done
+     * by a thread of the global executor service so that callers are never blocked.
+     *
+     * @param future the future returned by the authentication remote.
+     * @param <T>    the type of the response.
+     *
+     * @return a completable future completed with the response. It fails with the {@link ExecutionException},
+     * {@link TimeoutException} or {@link InterruptedException} thrown while waiting for the response.
+     */
+    private static <T> CompletableFuture<T> toCompletableFuture(final Future<T> future) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return future.get(REQUEST_TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(ex);
+            } catch (ExecutionException | TimeoutException ex) {
+                throw new CompletionException(ex);
+            }
+        }, GlobalCachedExecutorService.getInstance().getExecutorService());
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(final Throwable throwable) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+    private static Throwable unwrap(final Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
+        }
+        return throwable;
+    }
+
+    /**
+     * Immutable snapshot of a session. Ticket, session key and the pair of user and client always belong together
+     * because the snapshot is only replaced as a whole.
+     */
+    private static final class SessionState {
+
+        private static final SessionState EMPTY = new SessionState(UserClientPair.getDefaultInstance(), null, null, null, Long.MIN_VALUE);
+
+        private final UserClientPair userClientPair;
+        private final TicketAuthenticatorWrapper ticketAuthenticatorWrapper;
+        /**
+         * The plaintext of the authenticator in the ticket authenticator wrapper.
+         */
+        private final Authenticator authenticator;
+        private final SessionKey sessionKey;
+        /**
+         * The time of the newest verified authenticator, kept as a primitive to compare responses against.
+         */
+        private final long timestamp;
+
+        private SessionState(final UserClientPair userClientPair, final TicketAuthenticatorWrapper ticketAuthenticatorWrapper, final Authenticator authenticator, final SessionKey sessionKey) {
+            this(userClientPair, ticketAuthenticatorWrapper, authenticator, sessionKey, authenticator.getTimestamp().getTime());
+        }
+
+        private SessionState(final UserClientPair userClientPair, final TicketAuthenticatorWrapper ticketAuthenticatorWrapper, final Authenticator authenticator, final SessionKey sessionKey, final long timestamp) {
+            this.userClientPair = userClientPair;
+            this.ticketAuthenticatorWrapper = ticketAuthenticatorWrapper;
+            this.authenticator = authenticator;
+            this.sessionKey = sessionKey;
+            this.timestamp = timestamp;
+        }
+
+        private UserClientPair getUserClientPair() {
+            return userClientPair;
+        }
+
+        private TicketAuthenticatorWrapper getTicketAuthenticatorWrapper() {
+            return ticketAuthenticatorWrapper;
+        }
+
+        private Authenticator getAuthenticator() {
+            return authenticator;
+        }
+
+        private SessionKey getSessionKey() {
+            return sessionKey;
+        }
+
+        private long getTimestamp() {
+            return timestamp;
+        }
+
+        private boolean isLoggedIn() {
+            return ticketAuthenticatorWrapper != null && sessionKey != null;
+        }
+
+        private SessionState withTicketAuthenticatorWrapper(final TicketAuthenticatorWrapper ticketAuthenticatorWrapper, final Authenticator authenticator, final long timestamp) {
+            return new SessionState(userClientPair, ticketAuthenticatorWrapper, authenticator, sessionKey, timestamp);
+        }
     }
 }
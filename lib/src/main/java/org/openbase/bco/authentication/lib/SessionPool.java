@@ -0,0 +1,296 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.bco.authentication.lib.jp.JPSessionTimeout;
+import org.openbase.jps.core.JPService;
+import org.openbase.jps.exception.JPNotAvailableException;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.ExceptionProcessor;
+import org.openbase.jul.exception.InstantiationException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.exception.printer.LogLevel;
+import org.openbase.jul.iface.Shutdownable;
+import org.openbase.jul.schedule.GlobalScheduledExecutorService;
+import org.openbase.jul.schedule.SyncObject;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of independent sessions, e.g. for a gateway performing requests for many logged in users.
+ * <p>
+ * Every session of the pool is a {@link PooledSession} with its own ticket, session key and login observers,
+ * so users do not have to share the global {@link SessionManager} and logins of different users do not block
+ * each other. All sessions share the credential store of the pool and a single renewal task. The renewal time of
+ * each session is jittered so that sessions logged in at the same time do not renew their tickets at the same time.
+ * Sessions which have not been accessed for the idle timeout are evicted and if the pool is full the least recently
+ * used session is evicted. Evicted sessions are logged out.
+ * <p>
+ * The pool does not register a shutdown hook, so its owner has to call {@link #shutdown()} when it is not needed
+ * anymore.
+ */
+public class SessionPool implements Shutdownable {
+
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(SessionPool.class);
+
+    /**
+     * Default number of sessions held by a pool.
+     */
+    public static final int DEFAULT_MAX_SESSIONS = 1024;
+    /**
+     * Default time in milliseconds after which a session which has not been accessed is evicted.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+    /**
+     * Interval of the shared task which renews tickets and evicts idle sessions in milliseconds.
+     */
+    public static final long MAINTENANCE_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+    /**
+     * Fraction of the renewal delay by which the renewal of a session is randomly brought forward.
+     */
+    private static final double RENEWAL_JITTER = 0.25d;
+
+    private final SyncObject sessionLock = new SyncObject("SessionPoolLock");
+    /**
+     * Sessions in access order so that the first entry is the least recently used one.
+     */
+    private final LinkedHashMap<String, PooledSession> sessionMap;
+    private final CredentialStore credentialStore;
+    private final int maxSessions;
+    private final long idleTimeout;
+    private final long renewalDelay;
+    private final ScheduledFuture<?> maintenanceTask;
+
+    /**
+     * Create a session pool with the default capacity and idle timeout. The pool shares the credential store of the
+     * global {@link SessionManager}, so clients registered through either of them are kept in the same store.
+     *
+     * @throws InstantiationException if the pool cannot be created
+     */
+    public SessionPool() throws InstantiationException {
+        this(SessionManager.getInstance().getCredentialStore(), DEFAULT_MAX_SESSIONS, DEFAULT_IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a session pool.
+     *
+     * @param credentialStore the credential store shared by all sessions of the pool. It has to be initialized by the
+     *                        caller and must not use the file of another store instance, e.g. of the global
+     *                        {@link SessionManager}, because each instance overwrites the file with its own entries.
+     * @param maxSessions     the maximal number of sessions held by the pool.
+     * @param idleTimeout     the time after which a session which has not been accessed is evicted.
+     * @param timeUnit        the time unit of the idle timeout.
+     *
+     * @throws InstantiationException if the pool cannot be created
+     */
+    public SessionPool(final CredentialStore credentialStore, final int maxSessions, final long idleTimeout, final TimeUnit timeUnit) throws InstantiationException {
+        try {
+            if (maxSessions <= 0) {
+                throw new CouldNotPerformException("Maximal number of sessions[" + maxSessions + "] has to be positive");
+            }
+
+            this.sessionMap = new LinkedHashMap<>(16, 0.75f, true);
+            this.credentialStore = credentialStore;
+            this.maxSessions = maxSessions;
+            this.idleTimeout = timeUnit.toMillis(idleTimeout);
+            // renew at half of the session timeout as the session manager does
+            this.renewalDelay = JPService.getProperty(JPSessionTimeout.class).getValue() / 2;
+
+            this.maintenanceTask = GlobalScheduledExecutorService.scheduleAtFixedRate(this::maintainSessions, MAINTENANCE_INTERVAL, MAINTENANCE_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (CouldNotPerformException | JPNotAvailableException ex) {
+            throw new InstantiationException(this, ex);
+        }
+    }
+
+    /**
+     * Get the session registered for an id or create a new one if none exists.
+     * If a new session exceeds the capacity of the pool the least recently used session is evicted.
+     *
+     * @param id the id of the session, e.g. the id of the user for whom requests are performed.
+     *
+     * @return the session for the id.
+     */
+    public PooledSession openSession(final String id) {
+        final PooledSession session;
+        PooledSession evictedSession = null;
+        synchronized (sessionLock) {
+            final PooledSession existingSession = sessionMap.get(id);
+            if (existingSession != null) {
+                existingSession.touch();
+                return existingSession;
+            }
+
+            session = new PooledSession(id, this, credentialStore);
+            sessionMap.put(id, session);
+            if (sessionMap.size() > maxSessions) {
+                final Iterator<PooledSession> iterator = sessionMap.values().iterator();
+                evictedSession = iterator.next();
+                iterator.remove();
+            }
+        }
+
+        // logout outside of the lock because it notifies observers of the evicted session
+        if (evictedSession != null) {
+            LOGGER.debug("Evict least recently used session[" + evictedSession.getId() + "]");
+            evictedSession.completeLogout();
+        }
+        return session;
+    }
+
+    /**
+     * Get the session registered for an id.
+     *
+     * @param id the id of the session.
+     *
+     * @return the session for the id.
+     *
+     * @throws NotAvailableException if no session is registered for the id, e.g. because it has been evicted.
+     */
+    public PooledSession getSession(final String id) throws NotAvailableException {
+        synchronized (sessionLock) {
+            final PooledSession session = sessionMap.get(id);
+            if (session == null) {
+                throw new NotAvailableException("Session[" + id + "]");
+            }
+            session.touch();
+            return session;
+        }
+    }
+
+    /**
+     * Check if a session is registered for an id. This does not count as an access of the session.
+     *
+     * @param id the id of the session.
+     *
+     * @return true if a session is registered for the id.
+     */
+    public boolean hasSession(final String id) {
+        synchronized (sessionLock) {
+            return sessionMap.containsKey(id);
+        }
+    }
+
+    /**
+     * Remove the session registered for an id from the pool and log it out.
+     *
+     * @param id the id of the session.
+     */
+    public void closeSession(final String id) {
+        final PooledSession session;
+        synchronized (sessionLock) {
+            session = sessionMap.remove(id);
+        }
+
+        if (session != null) {
+            session.completeLogout();
+        }
+    }
+
+    /**
+     * Get the number of sessions in the pool.
+     *
+     * @return the number of sessions.
+     */
+    public int getSize() {
+        synchronized (sessionLock) {
+            return sessionMap.size();
+        }
+    }
+
+    /**
+     * Compute the time at which a session renewed now has to be renewed again.
+     *
+     * @return the time in milliseconds.
+     */
+    long computeNextRenewalTime() {
+        final long jitter = (long) (ThreadLocalRandom.current().nextDouble() * RENEWAL_JITTER * renewalDelay);
+        return System.currentTimeMillis() + renewalDelay - jitter;
+    }
+
+    /**
+     * Evict idle sessions and trigger the renewal of all sessions which are due.
+     * This method is called periodically by the maintenance task of the pool.
+     */
+    void maintainSessions() {
+        final long currentTime = System.currentTimeMillis();
+        final List<PooledSession> idleSessionList = new ArrayList<>();
+        final List<PooledSession> dueSessionList = new ArrayList<>();
+        synchronized (sessionLock) {
+            final Iterator<PooledSession> iterator = sessionMap.values().iterator();
+            while (iterator.hasNext()) {
+                final PooledSession session = iterator.next();
+                if (currentTime - session.getLastAccessTime() > idleTimeout) {
+                    iterator.remove();
+                    idleSessionList.add(session);
+                } else if (session.isRenewalDue(currentTime)) {
+                    dueSessionList.add(session);
+                }
+            }
+        }
+
+        for (final PooledSession session : idleSessionList) {
+            LOGGER.debug("Evict idle session[" + session.getId() + "]");
+            session.completeLogout();
+        }
+
+        for (final PooledSession session : dueSessionList) {
+            if (!session.beginRenewal()) {
+                continue;
+            }
+
+            // renewals do not block the maintenance task while waiting for the authenticator
+            session.renewAsync().whenComplete((result, throwable) -> {
+                if (throwable != null && !ExceptionProcessor.isCausedBySystemShutdown(throwable)) {
+                    ExceptionPrinter.printHistory("Could not renew ticket of session[" + session.getId() + "]", throwable, LOGGER, LogLevel.WARN);
+                }
+                session.finishRenewal();
+            });
+        }
+    }
+
+    /**
+     * Stop the maintenance task and log out all sessions of the pool.
+     */
+    @Override
+    public void shutdown() {
+        maintenanceTask.cancel(false);
+
+        final List<PooledSession> sessionList;
+        synchronized (sessionLock) {
+            sessionList = new ArrayList<>(sessionMap.values());
+            sessionMap.clear();
+        }
+
+        for (final PooledSession session : sessionList) {
+            session.completeLogout();
+        }
+    }
+}
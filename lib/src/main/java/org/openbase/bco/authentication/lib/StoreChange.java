@@ -0,0 +1,111 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+/**
+ * A single change of an entry in a protected store. Changes are numbered by a sequence number
+ * which is strictly increasing for each store so that listeners can detect their position in the change stream.
+ *
+ * @param <DT> the internal data type of the store this change belongs to
+ */
+public class StoreChange<DT> {
+
+    /**
+     * The kind of a change.
+     */
+    public enum ChangeType {
+        /**
+         * A new entry was added to the store.
+         */
+        ADDED,
+        /**
+         * The value of an existing entry was replaced.
+         */
+        UPDATED,
+        /**
+         * An entry was removed from the store.
+         */
+        REMOVED
+    }
+
+    private final long sequenceNumber;
+    private final ChangeType changeType;
+    private final String id;
+    private final DT value;
+
+    /**
+     * Create a new store change.
+     *
+     * @param sequenceNumber the sequence number of this change.
+     * @param changeType     the kind of the change.
+     * @param id             the id of the changed entry.
+     * @param value          the new value of the entry or, if the entry was removed, the value it had before.
+     */
+    public StoreChange(final long sequenceNumber, final ChangeType changeType, final String id, final DT value) {
+        this.sequenceNumber = sequenceNumber;
+        this.changeType = changeType;
+        this.id = id;
+        this.value = value;
+    }
+
+    /**
+     * Get the sequence number of this change.
+     *
+     * @return the sequence number.
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * Get the kind of this change.
+     *
+     * @return the change type.
+     */
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    /**
+     * Get the id of the changed entry.
+     *
+     * @return the id of the entry.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Get the value of the changed entry. For removed entries this is the value the entry had before its removal.
+     *
+     * @return the value of the entry.
+     */
+    public DT getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + sequenceNumber + ":" + changeType.name() + ":" + id + "]";
+    }
+}
@@ -0,0 +1,329 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.bco.authentication.lib.StoreChange.ChangeType;
+import org.openbase.bco.authentication.lib.iface.StoreChangeListener;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.exception.printer.LogLevel;
+import org.openbase.jul.schedule.GlobalCachedExecutorService;
+import org.openbase.jul.schedule.SyncObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ordered change stream of a protected store.
+ * <p>
+ * Published changes are numbered by a strictly increasing sequence number and kept in a ring buffer of fixed capacity.
+ * Every subscription is drained by its own task on the global executor so publishing never waits for listeners.
+ * A subscription that falls behind the buffered changes, or that subscribed from a sequence number which is no longer
+ * buffered, is resynchronized by a snapshot of the store and continues with the changes following the snapshot.
+ *
+ * @param <DT> the internal data type of the store
+ */
+public class StoreChangeStream<DT> {
+
+    /**
+     * Sequence number which can be used to subscribe with an initial snapshot of the store.
+     */
+    public static final long SNAPSHOT = -1;
+
+    /**
+     * The default number of changes buffered for subscriptions which are behind.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The maximal number of changes copied out of the buffer at once while draining a subscription.
+     */
+    private static final int DRAIN_BATCH_SIZE = 64;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StoreChangeStream.class);
+
+    /**
+     * Provider for snapshots used to resynchronize subscriptions.
+     *
+     * @param <DT> the internal data type of the store
+     */
+    public interface SnapshotProvider<DT> {
+
+        /**
+         * Create a snapshot of the store. The sequence number of the snapshot has to be the sequence number
+         * of the last change published before the snapshot was taken.
+         *
+         * @return a snapshot of the store.
+         */
+        StoreSnapshot<DT> getSnapshot();
+    }
+
+    private final SyncObject bufferLock = new SyncObject("StoreChangeBufferLock");
+    private final StoreChange<DT>[] buffer;
+    private final SnapshotProvider<DT> snapshotProvider;
+    private final Set<Subscription> subscriptionSet;
+
+    /**
+     * The sequence number of the last published change.
+     */
+    private long sequenceNumber;
+
+    /**
+     * All subscriptions which have not yet received the change with this sequence number have to be resynchronized.
+     */
+    private long resyncBarrier;
+
+    /**
+     * Create a new change stream with the default capacity.
+     *
+     * @param snapshotProvider provider used to resynchronize subscriptions.
+     */
+    public StoreChangeStream(final SnapshotProvider<DT> snapshotProvider) {
+        this(snapshotProvider, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new change stream.
+     *
+     * @param snapshotProvider provider used to resynchronize subscriptions.
+     * @param capacity         the number of changes buffered for subscriptions which are behind.
+     */
+    @SuppressWarnings("unchecked")
+    public StoreChangeStream(final SnapshotProvider<DT> snapshotProvider, final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity of a change stream has to be positive but is[" + capacity + "]");
+        }
+        this.snapshotProvider = snapshotProvider;
+        this.buffer = new StoreChange[capacity];
+        this.subscriptionSet = new CopyOnWriteArraySet<>();
+        this.sequenceNumber = 0;
+        this.resyncBarrier = 0;
+    }
+
+    /**
+     * Get the sequence number of the last published change.
+     *
+     * @return the current sequence number.
+     */
+    public long getSequenceNumber() {
+        synchronized (bufferLock) {
+            return sequenceNumber;
+        }
+    }
+
+    /**
+     * Publish a new change. This method only buffers the change and schedules the delivery,
+     * so it never blocks on listeners.
+     *
+     * @param changeType the kind of the change.
+     * @param id         the id of the changed entry.
+     * @param value      the new value of the entry or the value of a removed entry.
+     *
+     * @return the sequence number assigned to the change.
+     */
+    public long publish(final ChangeType changeType, final String id, final DT value) {
+        final long changeSequenceNumber;
+        synchronized (bufferLock) {
+            changeSequenceNumber = ++sequenceNumber;
+            buffer[getBufferIndex(changeSequenceNumber)] = new StoreChange<>(changeSequenceNumber, changeType, id, value);
+        }
+        scheduleAll();
+        return changeSequenceNumber;
+    }
+
+    /**
+     * Invalidate all buffered changes, e.g. because the store was reloaded or cleared.
+     * Every subscription is resynchronized by a snapshot.
+     *
+     * @return the sequence number consumed by the invalidation.
+     */
+    public long invalidate() {
+        final long invalidationSequenceNumber;
+        synchronized (bufferLock) {
+            invalidationSequenceNumber = ++sequenceNumber;
+            buffer[getBufferIndex(invalidationSequenceNumber)] = null;
+            resyncBarrier = invalidationSequenceNumber;
+        }
+        scheduleAll();
+        return invalidationSequenceNumber;
+    }
+
+    /**
+     * Subscribe a listener to this stream. The listener will receive all changes with a sequence number greater
+     * than the given one. If these are not buffered anymore it will be resynchronized by a snapshot first.
+     *
+     * @param listener       the listener.
+     * @param sequenceNumber the sequence number of the last change already known by the listener,
+     *                       or {@link #SNAPSHOT} to start with a snapshot.
+     *
+     * @return the subscription which can be used to cancel it.
+     */
+    public Subscription subscribe(final StoreChangeListener<DT> listener, final long sequenceNumber) {
+        final Subscription subscription = new Subscription(listener, sequenceNumber + 1);
+        subscriptionSet.add(subscription);
+        subscription.schedule();
+        return subscription;
+    }
+
+    /**
+     * Cancel all subscriptions of this stream.
+     */
+    public void cancelAll() {
+        for (final Subscription subscription : subscriptionSet) {
+            subscription.cancel();
+        }
+    }
+
+    private int getBufferIndex(final long sequenceNumber) {
+        return (int) (sequenceNumber % buffer.length);
+    }
+
+    private void scheduleAll() {
+        for (final Subscription subscription : subscriptionSet) {
+            subscription.schedule();
+        }
+    }
+
+    /**
+     * A subscription of a listener to the change stream.
+     */
+    public class Subscription {
+
+        private final StoreChangeListener<DT> listener;
+        private final AtomicBoolean scheduled;
+        private volatile boolean canceled;
+
+        /**
+         * The sequence number of the next change to deliver. Only accessed by the drain task.
+         */
+        private long nextSequenceNumber;
+
+        private Subscription(final StoreChangeListener<DT> listener, final long nextSequenceNumber) {
+            this.listener = listener;
+            this.nextSequenceNumber = nextSequenceNumber;
+            this.scheduled = new AtomicBoolean(false);
+            this.canceled = false;
+        }
+
+        /**
+         * Cancel this subscription. Changes which are currently delivered are not interrupted.
+         */
+        public void cancel() {
+            canceled = true;
+            subscriptionSet.remove(this);
+        }
+
+        /**
+         * Check if this subscription has been canceled.
+         *
+         * @return true if canceled.
+         */
+        public boolean isCanceled() {
+            return canceled;
+        }
+
+        private void schedule() {
+            if (canceled || !scheduled.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                GlobalCachedExecutorService.submit((Callable<Void>) () -> {
+                    drain();
+                    return null;
+                });
+            } catch (RuntimeException ex) {
+                scheduled.set(false);
+                ExceptionPrinter.printHistory(new CouldNotPerformException("Could not schedule delivery of store changes", ex), LOGGER, LogLevel.WARN);
+            }
+        }
+
+        private void drain() {
+            do {
+                try {
+                    deliverPendingChanges();
+                } finally {
+                    scheduled.set(false);
+                }
+                // changes published while the scheduled flag was still set have to be delivered by this task
+            } while (hasPendingChanges() && scheduled.compareAndSet(false, true));
+        }
+
+        private boolean hasPendingChanges() {
+            synchronized (bufferLock) {
+                return !canceled && nextSequenceNumber <= sequenceNumber;
+            }
+        }
+
+        private void deliverPendingChanges() {
+            final List<StoreChange<DT>> changeList = new ArrayList<>(DRAIN_BATCH_SIZE);
+            while (!canceled) {
+                boolean resync = false;
+                changeList.clear();
+                synchronized (bufferLock) {
+                    if (nextSequenceNumber > sequenceNumber) {
+                        return;
+                    }
+
+                    if (nextSequenceNumber <= resyncBarrier || nextSequenceNumber <= sequenceNumber - buffer.length) {
+                        resync = true;
+                    } else {
+                        final long last = Math.min(sequenceNumber, nextSequenceNumber + DRAIN_BATCH_SIZE - 1);
+                        for (long i = nextSequenceNumber; i <= last; i++) {
+                            changeList.add(buffer[getBufferIndex(i)]);
+                        }
+                    }
+                }
+
+                if (resync) {
+                    final StoreSnapshot<DT> snapshot = snapshotProvider.getSnapshot();
+                    try {
+                        listener.handleResync(snapshot);
+                    } catch (Exception ex) {
+                        ExceptionPrinter.printHistory(new CouldNotPerformException("Listener could not handle store snapshot[" + snapshot.getSequenceNumber() + "]", ex), LOGGER, LogLevel.WARN);
+                    }
+                    nextSequenceNumber = snapshot.getSequenceNumber() + 1;
+                    continue;
+                }
+
+                for (final StoreChange<DT> change : changeList) {
+                    if (canceled) {
+                        return;
+                    }
+                    try {
+                        listener.handleChange(change);
+                    } catch (Exception ex) {
+                        ExceptionPrinter.printHistory(new CouldNotPerformException("Listener could not handle " + change, ex), LOGGER, LogLevel.WARN);
+                    }
+                    nextSequenceNumber = change.getSequenceNumber() + 1;
+                }
+            }
+        }
+    }
+}
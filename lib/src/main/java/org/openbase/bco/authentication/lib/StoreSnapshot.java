@@ -0,0 +1,69 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable copy of all entries of a protected store together with the sequence number
+ * of the last change contained in it. Listeners of the change stream can continue with the change
+ * following this sequence number after applying the snapshot.
+ *
+ * @param <DT> the internal data type of the store this snapshot was taken from
+ */
+public class StoreSnapshot<DT> {
+
+    private final long sequenceNumber;
+    private final Map<String, DT> entryMap;
+
+    /**
+     * Create a new snapshot by copying the given entries.
+     *
+     * @param sequenceNumber the sequence number of the last change contained in the snapshot.
+     * @param entryMap       the entries of the store. The map is copied.
+     */
+    public StoreSnapshot(final long sequenceNumber, final Map<String, DT> entryMap) {
+        this.sequenceNumber = sequenceNumber;
+        this.entryMap = Collections.unmodifiableMap(new HashMap<>(entryMap));
+    }
+
+    /**
+     * Get the sequence number of the last change contained in this snapshot.
+     *
+     * @return the sequence number.
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * Get all entries of the store at the time the snapshot was taken.
+     *
+     * @return an unmodifiable map of the entries.
+     */
+    public Map<String, DT> getEntryMap() {
+        return entryMap;
+    }
+}
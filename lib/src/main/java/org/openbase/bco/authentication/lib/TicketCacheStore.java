@@ -0,0 +1,280 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.exception.printer.LogLevel;
+import org.openbase.jul.processing.json.JSonObjectFileProcessor;
+import org.openbase.type.domotic.authentication.AuthenticatorType.Authenticator;
+import org.openbase.type.domotic.authentication.LoginCredentialsType.LoginCredentials;
+import org.openbase.type.domotic.authentication.TicketAuthenticatorWrapperType.TicketAuthenticatorWrapper;
+import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Class for a protected store caching the tickets of sessions.
+ * <p>
+ * A cached ticket contains everything needed to perform requests with a session: the ticket authenticator wrapper,
+ * the plaintext authenticator and the session key. It allows a restarted process to resume its session with a
+ * single request to the authenticator instead of performing the whole login handshake again.
+ * Because the session key is stored the file of this store is protected like the credential store.
+ * A cached ticket is only handed out for the credentials it was created with and until its expiration.
+ */
+public class TicketCacheStore extends AbstractProtectedStore<TicketCacheStore.CachedTicket, Map> {
+
+    /**
+     * Name of the file of the ticket cache in the credentials directory.
+     */
+    public static final String STORE_FILENAME = "ticket_cache.json";
+
+    private static final String USER_ID_KEY = "user_id";
+    private static final String CLIENT_ID_KEY = "client_id";
+    private static final String WRAPPER_KEY = "ticket_authenticator_wrapper";
+    private static final String AUTHENTICATOR_KEY = "authenticator";
+    private static final String SESSION_KEY_KEY = "session_key";
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final String EXPIRATION_KEY = "expiration";
+
+    private static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+    /**
+     * Create a new ticket cache store.
+     */
+    public TicketCacheStore() {
+        super(new JSonObjectFileProcessor<>(Map.class));
+    }
+
+    /**
+     * Cache the ticket of a session. A previously cached ticket of the same user and client is replaced.
+     *
+     * @param cachedTicket the ticket to be cached.
+     */
+    public void addTicket(final CachedTicket cachedTicket) {
+        addEntry(getId(cachedTicket.getUserClientPair()), cachedTicket);
+    }
+
+    /**
+     * Get the cached ticket of a user and client if it was created with the given credentials and does not expire
+     * within the given time.
+     *
+     * @param userClientPair    the user and client of the session.
+     * @param userCredentials   the credentials of the user or null if no user is logged in.
+     * @param clientCredentials the credentials of the client or null if no client is logged in.
+     * @param minimalValidity   the time in milliseconds for which the ticket has to be valid at least.
+     *
+     * @return the cached ticket.
+     *
+     * @throws NotAvailableException if no ticket matching the credentials is cached or if it expires too soon.
+     */
+    public CachedTicket getTicket(final UserClientPair userClientPair, final LoginCredentials userCredentials, final LoginCredentials clientCredentials, final long minimalValidity) throws NotAvailableException {
+        final String id = getId(userClientPair);
+        final CachedTicket cachedTicket = getEntry(id);
+        if (!cachedTicket.getFingerprint().equals(computeFingerprint(userCredentials, clientCredentials))) {
+            throw new NotAvailableException("Ticket[" + id + "]", new CouldNotPerformException("Ticket has been cached for different credentials"));
+        }
+        if (cachedTicket.getExpiration() <= System.currentTimeMillis() + minimalValidity) {
+            throw new NotAvailableException("Ticket[" + id + "]", new CouldNotPerformException("Ticket is expired"));
+        }
+        return cachedTicket;
+    }
+
+    /**
+     * Get the cached ticket of a user and client regardless of its credentials and expiration.
+     *
+     * @param userClientPair the user and client of the session.
+     *
+     * @return the cached ticket.
+     *
+     * @throws NotAvailableException if no ticket is cached for the user and client.
+     */
+    public CachedTicket getTicket(final UserClientPair userClientPair) throws NotAvailableException {
+        return getEntry(getId(userClientPair));
+    }
+
+    /**
+     * Remove the cached ticket of a user and client.
+     *
+     * @param userClientPair the user and client of the session.
+     */
+    public void removeTicket(final UserClientPair userClientPair) {
+        final String id = getId(userClientPair);
+        if (hasEntry(id)) {
+            removeEntry(id);
+        }
+    }
+
+    private static String getId(final UserClientPair userClientPair) {
+        return userClientPair.getUserId() + "@" + userClientPair.getClientId();
+    }
+
+    /**
+     * Compute the fingerprint of the credentials a session has been created with.
+     * Only a digest is stored so that the cache does not contain the credentials themselves.
+     *
+     * @param userCredentials   the credentials of the user or null.
+     * @param clientCredentials the credentials of the client or null.
+     *
+     * @return the fingerprint encoded in Base64.
+     */
+    public static String computeFingerprint(final LoginCredentials userCredentials, final LoginCredentials clientCredentials) {
+        try {
+            final MessageDigest messageDigest = MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+            for (final LoginCredentials loginCredentials : new LoginCredentials[]{userCredentials, clientCredentials}) {
+                if (loginCredentials == null) {
+                    // separate a missing user from a missing client
+                    messageDigest.update((byte) 0);
+                } else {
+                    messageDigest.update((byte) 1);
+                    messageDigest.update(loginCredentials.getCredentials().toByteArray());
+                }
+            }
+            return Base64.getEncoder().encodeToString(messageDigest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Digest algorithm[" + FINGERPRINT_ALGORITHM + "] not available", ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * Entries which cannot be parsed are skipped.
+     *
+     * @param dataCollection {@inheritDoc}
+     * @param map            {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void load(final Map dataCollection, final Map<String, CachedTicket> map) {
+        final Base64.Decoder decoder = Base64.getDecoder();
+        for (Object object : dataCollection.entrySet()) {
+            final Entry<String, Object> entry = (Entry<String, Object>) object;
+            try {
+                final Map<String, Object> ticketMap = (Map<String, Object>) entry.getValue();
+                final UserClientPair userClientPair = UserClientPair.newBuilder()
+                        .setUserId((String) ticketMap.get(USER_ID_KEY))
+                        .setClientId((String) ticketMap.get(CLIENT_ID_KEY))
+                        .build();
+                map.put(entry.getKey(), new CachedTicket(
+                        userClientPair,
+                        TicketAuthenticatorWrapper.parseFrom(decoder.decode((String) ticketMap.get(WRAPPER_KEY))),
+                        Authenticator.parseFrom(decoder.decode((String) ticketMap.get(AUTHENTICATOR_KEY))),
+                        new SessionKey(decoder.decode((String) ticketMap.get(SESSION_KEY_KEY))),
+                        (String) ticketMap.get(FINGERPRINT_KEY),
+                        ((Number) ticketMap.get(EXPIRATION_KEY)).longValue()));
+            } catch (InvalidProtocolBufferException | ClassCastException | IllegalArgumentException | NullPointerException ex) {
+                ExceptionPrinter.printHistory("Skip invalid cached ticket[" + entry.getKey() + "]", ex, logger, LogLevel.WARN);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param map {@inheritDoc}
+     *
+     * @return {@inheritDoc}
+     */
+    @Override
+    protected Map save(final Map<String, CachedTicket> map) {
+        final Base64.Encoder encoder = Base64.getEncoder();
+        final Map<String, Object> dataCollection = new HashMap<>();
+        for (final Entry<String, CachedTicket> entry : map.entrySet()) {
+            final CachedTicket cachedTicket = entry.getValue();
+            final Map<String, Object> ticketMap = new HashMap<>();
+            ticketMap.put(USER_ID_KEY, cachedTicket.getUserClientPair().getUserId());
+            ticketMap.put(CLIENT_ID_KEY, cachedTicket.getUserClientPair().getClientId());
+            ticketMap.put(WRAPPER_KEY, encoder.encodeToString(cachedTicket.getTicketAuthenticatorWrapper().toByteArray()));
+            ticketMap.put(AUTHENTICATOR_KEY, encoder.encodeToString(cachedTicket.getAuthenticator().toByteArray()));
+            ticketMap.put(SESSION_KEY_KEY, encoder.encodeToString(cachedTicket.getSessionKey().getEncoded()));
+            ticketMap.put(FINGERPRINT_KEY, cachedTicket.getFingerprint());
+            ticketMap.put(EXPIRATION_KEY, cachedTicket.getExpiration());
+            dataCollection.put(entry.getKey(), ticketMap);
+        }
+        return dataCollection;
+    }
+
+    /**
+     * Ticket of a session together with the key and the plaintext authenticator needed to use it.
+     */
+    public static final class CachedTicket {
+
+        private final UserClientPair userClientPair;
+        private final TicketAuthenticatorWrapper ticketAuthenticatorWrapper;
+        private final Authenticator authenticator;
+        private final SessionKey sessionKey;
+        private final String fingerprint;
+        private final long expiration;
+
+        /**
+         * Create a cached ticket.
+         *
+         * @param userClientPair             the user and client of the session.
+         * @param ticketAuthenticatorWrapper the ticket and encrypted authenticator.
+         * @param authenticator              the plaintext authenticator of the wrapper.
+         * @param sessionKey                 the session key.
+         * @param fingerprint                the fingerprint of the credentials the session has been created with,
+         *                                   see {@link #computeFingerprint(LoginCredentials, LoginCredentials)}.
+         * @param expiration                 the time in milliseconds at which the ticket expires.
+         */
+        public CachedTicket(final UserClientPair userClientPair, final TicketAuthenticatorWrapper ticketAuthenticatorWrapper, final Authenticator authenticator, final SessionKey sessionKey, final String fingerprint, final long expiration) {
+            this.userClientPair = userClientPair;
+            this.ticketAuthenticatorWrapper = ticketAuthenticatorWrapper;
+            this.authenticator = authenticator;
+            this.sessionKey = sessionKey;
+            this.fingerprint = fingerprint;
+            this.expiration = expiration;
+        }
+
+        public UserClientPair getUserClientPair() {
+            return userClientPair;
+        }
+
+        public TicketAuthenticatorWrapper getTicketAuthenticatorWrapper() {
+            return ticketAuthenticatorWrapper;
+        }
+
+        public Authenticator getAuthenticator() {
+            return authenticator;
+        }
+
+        public SessionKey getSessionKey() {
+            return sessionKey;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getExpiration() {
+            return expiration;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package org.openbase.bco.authentication.lib;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical timing wheel used as an expiration index.
+ * <p>
+ * Keys are scheduled with an absolute deadline and returned by {@link #advance(long)} once the deadline has passed.
+ * The wheel consists of {@link #LEVEL_COUNT} levels with {@link #WHEEL_SIZE} slots each. A slot of the first level spans
+ * one tick while a slot of every further level spans a whole rotation of the level below. Entries are moved
+ * into a lower level when the slot they are stored in is reached, so scheduling, cancelling and expiring an entry
+ * are O(1) amortized. Deadlines further away than the range of the wheel are stored in the last slot reachable
+ * and rescheduled when it is reached.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @param <K> the type of the keys scheduled by this wheel
+ */
+public class TimingWheel<K> {
+
+    /**
+     * Number of bits used to address a slot of a level.
+     */
+    private static final int SLOT_BITS = 6;
+
+    /**
+     * Number of slots per level.
+     */
+    public static final int WHEEL_SIZE = 1 << SLOT_BITS;
+
+    /**
+     * Number of levels of the wheel.
+     */
+    public static final int LEVEL_COUNT = 4;
+
+    private static final int SLOT_MASK = WHEEL_SIZE - 1;
+    private static final long MAX_TICK_DELTA = (1L << (SLOT_BITS * LEVEL_COUNT)) - 1;
+
+    private final long tickDuration;
+    private final Map<K, Entry<K>> entryMap;
+    private final Entry<K>[][] slots;
+
+    /**
+     * The tick up to which all entries have been expired.
+     */
+    private long currentTick;
+
+    /**
+     * Create a new timing wheel.
+     *
+     * @param tickDuration the duration of a tick which is the resolution of the wheel.
+     * @param timeUnit     the time unit of the tick duration.
+     * @param currentTime  the current time in milliseconds.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(final long tickDuration, final TimeUnit timeUnit, final long currentTime) {
+        this.tickDuration = timeUnit.toMillis(tickDuration);
+        if (this.tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration of a timing wheel has to be at least one millisecond");
+        }
+        this.entryMap = new HashMap<>();
+        this.slots = new Entry[LEVEL_COUNT][WHEEL_SIZE];
+        this.currentTick = currentTime / this.tickDuration;
+    }
+
+    /**
+     * Schedule a key to expire at the given deadline. If the key is already scheduled its deadline is replaced.
+     *
+     * @param key      the key.
+     * @param deadline the time in milliseconds at which the key expires.
+     */
+    public void schedule(final K key, final long deadline) {
+        cancel(key);
+        final Entry<K> entry = new Entry<>(key, deadline, (deadline + tickDuration - 1) / tickDuration);
+        entryMap.put(key, entry);
+        insert(entry);
+    }
+
+    /**
+     * Remove a key from the wheel.
+     *
+     * @param key the key.
+     *
+     * @return true if the key was scheduled.
+     */
+    public boolean cancel(final K key) {
+        final Entry<K> entry = entryMap.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        unlink(entry);
+        return true;
+    }
+
+    /**
+     * Get the deadline of a key.
+     *
+     * @param key the key.
+     *
+     * @return the deadline in milliseconds or null if the key is not scheduled.
+     */
+    public Long getDeadline(final K key) {
+        final Entry<K> entry = entryMap.get(key);
+        return entry == null ? null : entry.deadline;
+    }
+
+    /**
+     * Remove all keys from the wheel.
+     */
+    public void clear() {
+        entryMap.clear();
+        for (final Entry<K>[] levelSlots : slots) {
+            Arrays.fill(levelSlots, null);
+        }
+    }
+
+    /**
+     * Get the number of scheduled keys.
+     *
+     * @return the number of keys.
+     */
+    public int size() {
+        return entryMap.size();
+    }
+
+    /**
+     * Advance the wheel to the given time and remove all keys whose deadline has passed.
+     *
+     * @param currentTime the current time in milliseconds.
+     *
+     * @return all keys which expired, in no particular order.
+     */
+    public List<K> advance(final long currentTime) {
+        final List<K> expiredList = new ArrayList<>();
+        final long targetTick = currentTime / tickDuration;
+
+        while (currentTick < targetTick) {
+            if (entryMap.isEmpty()) {
+                // nothing to expire so the wheel can jump directly to the target
+                currentTick = targetTick;
+                break;
+            }
+
+            currentTick++;
+
+            // move entries of higher levels whose slot has been reached into lower levels
+            for (int level = 1; level < LEVEL_COUNT; level++) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                cascade(level, getSlotIndex(currentTick, level), expiredList);
+            }
+
+            // expire all entries of the current slot of the first level
+            Entry<K> entry = detachSlot(0, getSlotIndex(currentTick, 0));
+            while (entry != null) {
+                final Entry<K> next = entry.next;
+                entry.next = null;
+                entryMap.remove(entry.key);
+                expiredList.add(entry.key);
+                entry = next;
+            }
+        }
+        return expiredList;
+    }
+
+    private void cascade(final int level, final int slotIndex, final List<K> expiredList) {
+        Entry<K> entry = detachSlot(level, slotIndex);
+        while (entry != null) {
+            final Entry<K> next = entry.next;
+            entry.next = null;
+            if (entry.deadlineTick <= currentTick) {
+                entryMap.remove(entry.key);
+                expiredList.add(entry.key);
+            } else {
+                insert(entry);
+            }
+            entry = next;
+        }
+    }
+
+    private void insert(final Entry<K> entry) {
+        long delta = entry.deadlineTick - currentTick;
+        if (delta <= 0) {
+            // already expired so it is returned by the next advance
+            delta = 1;
+        }
+        final long tick = currentTick + Math.min(delta, MAX_TICK_DELTA);
+
+        int level = 0;
+        while (level < LEVEL_COUNT - 1 && (delta >>> (SLOT_BITS * (level + 1))) != 0) {
+            level++;
+        }
+
+        final int slotIndex = getSlotIndex(tick, level);
+        entry.level = level;
+        entry.slotIndex = slotIndex;
+        entry.previous = null;
+        entry.next = slots[level][slotIndex];
+        if (entry.next != null) {
+            entry.next.previous = entry;
+        }
+        slots[level][slotIndex] = entry;
+    }
+
+    private void unlink(final Entry<K> entry) {
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            slots[entry.level][entry.slotIndex] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    private Entry<K> detachSlot(final int level, final int slotIndex) {
+        final Entry<K> head = slots[level][slotIndex];
+        slots[level][slotIndex] = null;
+        return head;
+    }
+
+    private static int getSlotIndex(final long tick, final int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    }
+
+    private static class Entry<K> {
+
+        private final K key;
+        private final long deadline;
+        private final long deadlineTick;
+
+        private int level;
+        private int slotIndex;
+        private Entry<K> previous;
+        private Entry<K> next;
+
+        private Entry(final K key, final long deadline, final long deadlineTick) {
+            this.key = key;
+            this.deadline = deadline;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -22,24 +22,91 @@ package org.openbase.bco.authentication.lib;
  * #L%
  */
 
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.InitializationException;
 import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.exception.printer.LogLevel;
 import org.openbase.jul.processing.json.JSonObjectFileProcessor;
+import org.openbase.jul.schedule.GlobalScheduledExecutorService;
+import org.openbase.jul.schedule.SyncObject;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Class for a protected token store.
+ * <p>
+ * Tokens can be added with a time to live after which they expire. Expired tokens are not returned anymore
+ * and are purged in batches from memory and from the store file by a periodic task. Deadlines are indexed
+ * by a {@link TimingWheel} so that the purge task only touches tokens which actually expired.
+ * Tokens with an expiration are serialized as a map containing the token and its expiration time while
+ * tokens without are serialized as plain strings as before.
  *
  * @author <a href="mailto:pleminoq@openbase.org">Tamino Huxohl</a>
  */
 public class TokenStore extends AbstractProtectedStore<String, Map> {
 
+    /**
+     * Resolution of token expirations and interval of the purge task in milliseconds.
+     */
+    public static final long EXPIRATION_TICK_DURATION = TimeUnit.SECONDS.toMillis(1);
+
+    private static final String TOKEN_KEY = "token";
+    private static final String EXPIRATION_KEY = "expiration";
+
+    private final SyncObject expirationLock = new SyncObject("TokenExpirationLock");
+    private final Map<String, Long> expirationMap;
+    private final TimingWheel<String> expirationWheel;
+    private final AtomicLong expiredTokenCount;
+
+    private ScheduledFuture<?> purgeTask;
+
     /**
      * Create a new token store.
      */
     public TokenStore() {
         super(new JSonObjectFileProcessor<>(Map.class));
+        this.expirationMap = new ConcurrentHashMap<>();
+        this.expirationWheel = new TimingWheel<>(EXPIRATION_TICK_DURATION, TimeUnit.MILLISECONDS, System.currentTimeMillis());
+        this.expiredTokenCount = new AtomicLong(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Afterwards the expiration of loaded tokens is indexed and the purge task is started.
+     *
+     * @param filename {@inheritDoc}
+     *
+     * @throws InitializationException {@inheritDoc}
+     */
+    @Override
+    public void init(final String filename) throws InitializationException {
+        super.init(filename);
+
+        synchronized (expirationLock) {
+            expirationWheel.clear();
+            for (final Entry<String, Long> entry : expirationMap.entrySet()) {
+                expirationWheel.schedule(entry.getKey(), entry.getValue());
+            }
+
+            if (purgeTask == null) {
+                try {
+                    purgeTask = GlobalScheduledExecutorService.scheduleAtFixedRate(this::purgeExpiredTokens, EXPIRATION_TICK_DURATION, EXPIRATION_TICK_DURATION, TimeUnit.MILLISECONDS);
+                } catch (CouldNotPerformException ex) {
+                    throw new InitializationException(this, ex);
+                }
+            }
+        }
+
+        // purge tokens which expired while the store was not loaded
+        purgeExpiredTokens();
     }
 
     /**
@@ -47,20 +114,45 @@ public class TokenStore extends AbstractProtectedStore<String, Map> {
      *
      * @param id the identifier of the token
      * @return the token belonging to the identifier
-     * @throws NotAvailableException if no token for the identifier is available
+     * @throws NotAvailableException if no token for the identifier is available or if it is expired
      */
     public String getToken(final String id) throws NotAvailableException {
-        return getEntry(id);
+        final String token = getEntry(id);
+        if (isExpired(id, System.currentTimeMillis())) {
+            throw new NotAvailableException("Token with id[" + id + "]", new CouldNotPerformException("Token is expired"));
+        }
+        return token;
     }
 
     /**
-     * Add or replace a token in the store for a given id.
+     * Add or replace a token in the store for a given id. The token does not expire.
      *
      * @param id    the id for which the token is added or replaced
      * @param token the token
      */
     public void addToken(final String id, final String token) {
-        addEntry(id, token);
+        synchronized (expirationLock) {
+            expirationMap.remove(id);
+            expirationWheel.cancel(id);
+            addEntry(id, token);
+        }
+    }
+
+    /**
+     * Add or replace a token in the store for a given id which expires after the given time to live.
+     *
+     * @param id         the id for which the token is added or replaced
+     * @param token      the token
+     * @param timeToLive the time after which the token expires
+     * @param timeUnit   the time unit of the time to live
+     */
+    public void addToken(final String id, final String token, final long timeToLive, final TimeUnit timeUnit) {
+        final long expiration = System.currentTimeMillis() + timeUnit.toMillis(timeToLive);
+        synchronized (expirationLock) {
+            expirationMap.put(id, expiration);
+            expirationWheel.schedule(id, expiration);
+            addEntry(id, token);
+        }
     }
 
     /**
@@ -69,7 +161,93 @@ public class TokenStore extends AbstractProtectedStore<String, Map> {
      * @param id the identifier for the token
      */
     public void removeToken(final String id) {
-        removeEntry(id);
+        synchronized (expirationLock) {
+            removeEntry(id);
+            expirationMap.remove(id);
+            expirationWheel.cancel(id);
+        }
+    }
+
+    /**
+     * Get the expiration time of a token.
+     *
+     * @param id the identifier of the token
+     * @return the time in milliseconds at which the token expires
+     * @throws NotAvailableException if no token with the identifier exists or if it does not expire
+     */
+    public long getExpiration(final String id) throws NotAvailableException {
+        final Long expiration = expirationMap.get(id);
+        if (expiration == null) {
+            throw new NotAvailableException("Expiration of token[" + id + "]");
+        }
+        return expiration;
+    }
+
+    /**
+     * Remove all expired tokens from the store. The store file is only written once for all removed tokens.
+     * This method is called periodically after the store is initialized.
+     *
+     * @return the number of purged tokens
+     */
+    public int purgeExpiredTokens() {
+        try {
+            final int purgedCount;
+            synchronized (expirationLock) {
+                final long currentTime = System.currentTimeMillis();
+                final List<String> expiredIdList = expirationWheel.advance(currentTime);
+                if (expiredIdList.isEmpty()) {
+                    return 0;
+                }
+
+                purgedCount = removeEntries(expiredIdList);
+                for (final String id : expiredIdList) {
+                    expirationMap.remove(id);
+                }
+            }
+            expiredTokenCount.addAndGet(purgedCount);
+            return purgedCount;
+        } catch (RuntimeException ex) {
+            ExceptionPrinter.printHistory(new CouldNotPerformException("Could not purge expired tokens", ex), logger, LogLevel.WARN);
+            return 0;
+        }
+    }
+
+    /**
+     * Get the number of tokens currently held by this store. Tokens which expired less than one
+     * {@link #EXPIRATION_TICK_DURATION} ago may still be contained.
+     *
+     * @return the number of live tokens
+     */
+    public int getLiveTokenCount() {
+        return getSize();
+    }
+
+    /**
+     * Get the number of tokens which have been purged because they expired since this store was created.
+     *
+     * @return the number of expired tokens
+     */
+    public long getExpiredTokenCount() {
+        return expiredTokenCount.get();
+    }
+
+    /**
+     * Stop the purge task and shutdown the store.
+     */
+    @Override
+    public void shutdown() {
+        synchronized (expirationLock) {
+            if (purgeTask != null) {
+                purgeTask.cancel(false);
+                purgeTask = null;
+            }
+        }
+        super.shutdown();
+    }
+
+    private boolean isExpired(final String id, final long currentTime) {
+        final Long expiration = expirationMap.get(id);
+        return expiration != null && expiration <= currentTime;
     }
 
     /**
@@ -81,9 +259,16 @@ public class TokenStore extends AbstractProtectedStore<String, Map> {
     @SuppressWarnings("unchecked")
     @Override
     protected void load(final Map dataCollection, final Map<String, String> map) {
+        expirationMap.clear();
         for (Object object : dataCollection.entrySet()) {
-            final Entry<String, String> entry = (Entry<String, String>) object;
-            map.put(entry.getKey(), entry.getValue());
+            final Entry<String, Object> entry = (Entry<String, Object>) object;
+            if (entry.getValue() instanceof Map) {
+                final Map<String, Object> tokenMap = (Map<String, Object>) entry.getValue();
+                map.put(entry.getKey(), (String) tokenMap.get(TOKEN_KEY));
+                expirationMap.put(entry.getKey(), ((Number) tokenMap.get(EXPIRATION_KEY)).longValue());
+            } else {
+                map.put(entry.getKey(), (String) entry.getValue());
+            }
         }
     }
 
@@ -95,6 +280,22 @@ public class TokenStore extends AbstractProtectedStore<String, Map> {
      */
     @Override
     protected Map save(final Map<String, String> map) {
-        return map;
+        if (expirationMap.isEmpty()) {
+            return map;
+        }
+
+        final Map<String, Object> dataCollection = new HashMap<>();
+        for (final Entry<String, String> entry : map.entrySet()) {
+            final Long expiration = expirationMap.get(entry.getKey());
+            if (expiration == null) {
+                dataCollection.put(entry.getKey(), entry.getValue());
+            } else {
+                final Map<String, Object> tokenMap = new HashMap<>();
+                tokenMap.put(TOKEN_KEY, entry.getValue());
+                tokenMap.put(EXPIRATION_KEY, expiration);
+                dataCollection.put(entry.getKey(), tokenMap);
+            }
+        }
+        return dataCollection;
     }
 }
@@ -53,6 +53,8 @@ public abstract class AbstractAuthenticatedConfigurableController<M extends Abst
         DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(TicketAuthenticatorWrapper.getDefaultInstance()));
     }
 
+    private final FilteredDataCache<M> filteredDataCache = new FilteredDataCache<>();
+
     public AbstractAuthenticatedConfigurableController(MB builder) throws InstantiationException {
         super(builder);
     }
@@ -67,6 +69,8 @@ public abstract class AbstractAuthenticatedConfigurableController<M extends Abst
     @Override
     public void registerMethods(final RSBLocalServer server) throws CouldNotPerformException {
         RPCHelper.registerInterface(AuthenticatedRequestable.class, this, server);
+        // log in the service server in the background so that it is ready when the first request arrives
+        AuthenticatedServerManager.prepare();
     }
 
     /**
@@ -98,8 +102,8 @@ public abstract class AbstractAuthenticatedConfigurableController<M extends Abst
         // evaluate the ticket
         final AuthenticationBaseData authenticationBaseData = AuthenticatedServerManager.getInstance().verifyClientServerTicket(ticket);
 
-        // filter data for user
-        M newData = filterDataForUser(cloneDataBuilder(), authenticationBaseData.getUserClientPair());
+        // filter data for user or reuse the data filtered for a user with the same permissions
+        final M newData = filteredDataCache.get(authenticationBaseData.getUserClientPair(), this::getPermissionClass, userClientPair -> filterDataForUser(cloneDataBuilder(), userClientPair));
 
         // build response
         AuthenticatedValue.Builder response = AuthenticatedValue.newBuilder();
@@ -109,8 +113,35 @@ public abstract class AbstractAuthenticatedConfigurableController<M extends Abst
         return response.build();
     }
 
+    /**
+     * Get the permission class of a user and client, see
+     * {@link AbstractAuthenticatedControllerServer#getPermissionClass(UserClientPair)}.
+     *
+     * @param userClientPair the user and client for which data is requested.
+     *
+     * @return a key identifying the permission class, which has to implement equals and hashCode.
+     *
+     * @throws CouldNotPerformException if the permission class cannot be determined.
+     */
+    protected Object getPermissionClass(final UserClientPair userClientPair) throws CouldNotPerformException {
+        return userClientPair;
+    }
+
+    /**
+     * Drop all cached filtered data, see {@link AbstractAuthenticatedControllerServer#invalidateFilteredData()}.
+     */
+    protected void invalidateFilteredData() {
+        filteredDataCache.invalidate();
+    }
+
     @Override
     protected M updateDataToPublish(MB dataBuilder) throws CouldNotPerformException {
+        // new data is published so all filtered data becomes invalid
+        // the cache is not yet initialized if data is published while the super class is constructed
+        if (filteredDataCache != null) {
+            filteredDataCache.invalidate();
+        }
+
         try {
             if (JPService.getProperty(JPAuthentication.class).getValue()) {
                 try {
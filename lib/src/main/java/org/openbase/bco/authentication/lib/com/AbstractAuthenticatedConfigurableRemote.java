@@ -33,7 +33,6 @@ import org.openbase.jul.exception.printer.ExceptionPrinter;
 import org.openbase.jul.communication.controller.AbstractConfigurableRemote;
 import org.openbase.jul.pattern.Observer;
 import org.openbase.jul.schedule.FutureProcessor;
-import org.openbase.jul.schedule.GlobalCachedExecutorService;
 import org.openbase.type.domotic.authentication.TicketAuthenticatorWrapperType.TicketAuthenticatorWrapper;
 import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
 import rsb.Event;
@@ -49,7 +48,16 @@ public class AbstractAuthenticatedConfigurableRemote<M extends Message, CONFIG e
         DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(TicketAuthenticatorWrapper.getDefaultInstance()));
     }
 
+    /**
+     * Time to wait for an authenticated data request triggered by a data event in milliseconds.
+     */
+    private static final long RESYNC_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
     private final Observer<SessionManager, UserClientPair> loginObserver;
+    /**
+     * Scheduler coalescing the authenticated requests triggered by data events.
+     */
+    private final ResyncScheduler resyncScheduler;
     /**
      * Data object for other permissions;
      */
@@ -58,6 +66,14 @@ public class AbstractAuthenticatedConfigurableRemote<M extends Message, CONFIG e
     public AbstractAuthenticatedConfigurableRemote(final Class<M> dataClass, final Class<CONFIG> configClass) {
         super(dataClass, configClass);
         this.setMessageProcessor(new AuthenticatedMessageProcessor<>(dataClass));
+        this.resyncScheduler = new ResyncScheduler(() -> {
+            if (isSyncRunning()) {
+                // a sync task is currently running so wait for it to finish and trigger a new one
+                // to make sure that the latest data update is received
+                requestData().get(RESYNC_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+            return requestData();
+        }, RESYNC_TIMEOUT, TimeUnit.MILLISECONDS);
 
         this.loginObserver = (source, data) -> {
             // somebody new logged in
@@ -74,6 +90,16 @@ public class AbstractAuthenticatedConfigurableRemote<M extends Message, CONFIG e
         };
     }
 
+    /**
+     * Get the scheduler of the authenticated requests triggered by data events, e.g. to inspect how many of them
+     * have been coalesced.
+     *
+     * @return the resync scheduler of this remote.
+     */
+    public ResyncScheduler getResyncScheduler() {
+        return resyncScheduler;
+    }
+
     @Override
     public void activate() throws InterruptedException, CouldNotPerformException {
         super.activate();
@@ -114,26 +140,7 @@ public class AbstractAuthenticatedConfigurableRemote<M extends Message, CONFIG e
                     otherData = (M) event.getData();
                     if (SessionManager.getInstance().isLoggedIn()) {
                         // received a new data event from the controller which is filtered for other permissions, so trigger an authenticated request
-                        GlobalCachedExecutorService.submit((Callable<Void>) () -> {
-                            if (isSyncRunning()) {
-                                // a sync task is currently running so wait for it to finish and trigger a new one
-                                // to make sure that the latest data update is received
-                                try {
-                                    requestData().get(10, TimeUnit.SECONDS);
-                                } catch (InterruptedException ex) {
-                                    Thread.currentThread().interrupt();
-                                    return null;
-                                } catch (ExecutionException | TimeoutException ex) {
-                                    throw new CouldNotPerformException("Could not wait for running sync task", ex);
-                                } catch (CancellationException ex) {
-                                    logger.error("Cancellation exception", ex);
-                                    // request data was cancelled and is most likely done again by the login observer
-                                    return null;
-                                }
-                            }
-                            requestData();
-                            return null;
-                        });
+                        resyncScheduler.schedule();
                     } else {
                         applyEventUpdate(event);
                     }
@@ -27,6 +27,7 @@ import org.openbase.bco.authentication.lib.AuthenticatedServerManager;
 import org.openbase.bco.authentication.lib.AuthenticationBaseData;
 import org.openbase.bco.authentication.lib.EncryptionHelper;
 import org.openbase.bco.authentication.lib.iface.AuthenticatedRequestable;
+import org.openbase.bco.authentication.lib.iface.GroupKeyRequestable;
 import org.openbase.bco.authentication.lib.jp.JPAuthentication;
 import org.openbase.jps.core.JPService;
 import org.openbase.jps.exception.JPNotAvailableException;
@@ -36,6 +37,7 @@ import org.openbase.jul.exception.InvalidStateException;
 import org.openbase.jul.exception.NotAvailableException;
 import org.openbase.jul.exception.printer.ExceptionPrinter;
 import org.openbase.jul.exception.printer.LogLevel;
+import org.openbase.jul.schedule.GlobalCachedExecutorService;
 import org.openbase.jul.communication.controller.AbstractControllerServer;
 import org.openbase.jul.communication.controller.RPCHelper;
 import org.openbase.jul.extension.rsb.iface.RSBLocalServer;
@@ -48,12 +50,20 @@ import rsb.converter.ProtocolBufferConverter;
 import java.io.Serializable;
 
 
-public abstract class AbstractAuthenticatedControllerServer<M extends AbstractMessage & Serializable, MB extends M.Builder<MB>> extends AbstractControllerServer<M, MB> implements AuthenticatedRequestable {
+public abstract class AbstractAuthenticatedControllerServer<M extends AbstractMessage & Serializable, MB extends M.Builder<MB>> extends AbstractControllerServer<M, MB> implements AuthenticatedRequestable, GroupKeyRequestable {
 
     static {
         DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(TicketAuthenticatorWrapper.getDefaultInstance()));
     }
 
+    /**
+     * Key under which the data is cached if authentication is disabled.
+     */
+    private static final Object UNFILTERED_DATA_KEY = new Object();
+
+    private final FilteredDataCache<M> filteredDataCache = new FilteredDataCache<>();
+    private final GroupDataPublisher<M> groupDataPublisher = new GroupDataPublisher<>();
+
     /**
      * Create a communication service.
      *
@@ -75,6 +85,9 @@ public abstract class AbstractAuthenticatedControllerServer<M extends AbstractMe
     @Override
     public void registerMethods(final RSBLocalServer server) throws CouldNotPerformException {
         RPCHelper.registerInterface(AuthenticatedRequestable.class, this, server);
+        RPCHelper.registerInterface(GroupKeyRequestable.class, this, server);
+        // log in the service server in the background so that it is ready when the first request arrives
+        AuthenticatedServerManager.prepare();
     }
 
     /**
@@ -111,10 +124,9 @@ public abstract class AbstractAuthenticatedControllerServer<M extends AbstractMe
         try {
             if (!JPService.getProperty(JPAuthentication.class).getValue()) {
                 // bypass authentication
-                newData = (M) cloneDataBuilder().build();
+                newData = filteredDataCache.get(authenticationBaseData.getUserClientPair(), userClientPair -> UNFILTERED_DATA_KEY, userClientPair -> (M) cloneDataBuilder().build());
             } else {
-                // filter data for user
-                newData = filterDataForUser(cloneDataBuilder(), authenticationBaseData.getUserClientPair());
+                newData = getFilteredData(authenticationBaseData.getUserClientPair());
             }
         } catch (JPNotAvailableException ex) {
             ExceptionPrinter.printHistory("Could not validate authentication property.", ex, logger);
@@ -132,8 +144,92 @@ public abstract class AbstractAuthenticatedControllerServer<M extends AbstractMe
         return response.build();
     }
 
+    @Override
+    public AuthenticatedValue requestGroupKeyAuthenticated(final TicketAuthenticatorWrapper ticket) throws CouldNotPerformException {
+        logger.trace("requestGroupKeyAuthenticated of " + this);
+        // evaluate the ticket
+        final AuthenticationBaseData authenticationBaseData = AuthenticatedServerManager.getInstance().verifyClientServerTicket(ticket);
+
+        try {
+            if (!JPService.getProperty(JPAuthentication.class).getValue()) {
+                throw new InvalidStateException("Group keys are not available if authentication is disabled");
+            }
+        } catch (JPNotAvailableException ex) {
+            throw new CouldNotPerformException("Could not validate authentication property", ex);
+        }
+
+        final UserClientPair userClientPair = authenticationBaseData.getUserClientPair();
+        final GroupKeyGrant groupKeyGrant = groupDataPublisher.grant(getPermissionClass(userClientPair), userClientPair, getScope());
+
+        // build response
+        AuthenticatedValue.Builder response = AuthenticatedValue.newBuilder();
+        response.setTicketAuthenticatorWrapper(authenticationBaseData.getTicketAuthenticatorWrapper());
+        response.setValue(EncryptionHelper.encryptSymmetric(groupKeyGrant, authenticationBaseData.getSessionKey()));
+
+        return response.build();
+    }
+
+    /**
+     * Filter the current data for a user or reuse the data filtered for a user with the same permissions.
+     *
+     * @param userClientPair the user and client for which data is filtered.
+     *
+     * @return the filtered data.
+     *
+     * @throws CouldNotPerformException if the data cannot be filtered.
+     */
+    private M getFilteredData(final UserClientPair userClientPair) throws CouldNotPerformException {
+        return filteredDataCache.get(userClientPair, this::getPermissionClass, pair -> filterDataForUser(cloneDataBuilder(), pair));
+    }
+
+    /**
+     * Get the permission class of a user and client. Data filtered for one of them is reused for all other
+     * users and clients of the same permission class as long as the data does not change.
+     * Therefore, {@code filterDataForUser} has to produce the same data for
+     * all users and clients of a permission class.
+     * <p>
+     * By default every user and client pair is its own permission class. Controllers which can determine which
+     * users have the same permissions, e.g. because permissions are only granted to groups, should override
+     * this method so that filtered data is shared between them. The permission class also determines the
+     * group key with which data is pushed to its members, see {@link GroupKeyRequestable}.
+     * <p>
+     * Filtered data is only filtered again if the data of the controller changes. If permissions on which
+     * {@code filterDataForUser} or this method depend change, e.g. group memberships or permissions of locations,
+     * subclasses have to call {@link #invalidateFilteredData()}.
+     *
+     * @param userClientPair the user and client for which data is requested.
+     *
+     * @return a key identifying the permission class, which has to implement equals and hashCode.
+     *
+     * @throws CouldNotPerformException if the permission class cannot be determined.
+     */
+    protected Object getPermissionClass(final UserClientPair userClientPair) throws CouldNotPerformException {
+        return userClientPair;
+    }
+
+    /**
+     * Drop all cached filtered data and close all channels of group data. Subclasses have to call this method
+     * whenever permissions change which are not part of the data of the controller but on which
+     * {@code filterDataForUser} or {@link #getPermissionClass(UserClientPair)} depend. Members of permission classes
+     * request their group key again and are thereby assigned to their new permission class.
+     */
+    protected void invalidateFilteredData() {
+        filteredDataCache.invalidate();
+        groupDataPublisher.closeChannels();
+    }
+
     @Override
     protected M updateDataToPublish(MB dataBuilder) throws CouldNotPerformException {
+        // new data is published so all filtered data becomes invalid
+        // the cache is not yet initialized if data is published while the super class is constructed
+        if (filteredDataCache != null) {
+            filteredDataCache.invalidate();
+        }
+
+        // push the new data to all permission classes with members listening
+        if (groupDataPublisher != null && groupDataPublisher.hasChannels()) {
+            GlobalCachedExecutorService.submit(() -> groupDataPublisher.publish(this::getFilteredData));
+        }
 
         try {
             if (!JPService.getProperty(JPAuthentication.class).getValue()) {
@@ -159,5 +255,11 @@ public abstract class AbstractAuthenticatedControllerServer<M extends AbstractMe
         }
     }
 
+    @Override
+    public void deactivate() throws InterruptedException, CouldNotPerformException {
+        groupDataPublisher.shutdown();
+        super.deactivate();
+    }
+
     protected abstract M filterDataForUser(final MB dataBuilder, final UserClientPair userClientPair) throws CouldNotPerformException;
 }
@@ -23,24 +23,35 @@ package org.openbase.bco.authentication.lib.com;
  */
 
 import com.google.protobuf.Message;
+import org.openbase.bco.authentication.lib.AuthenticationClientHandler.RequestTicket;
+import org.openbase.bco.authentication.lib.EncryptionHelper;
 import org.openbase.bco.authentication.lib.SessionManager;
 import org.openbase.bco.authentication.lib.future.ReLoginFuture;
 import org.openbase.bco.authentication.lib.iface.AuthenticatedRequestable;
+import org.openbase.bco.authentication.lib.iface.GroupKeyRequestable;
 import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.ExceptionProcessor;
 import org.openbase.jul.exception.RejectedException;
 import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.exception.printer.LogLevel;
 import org.openbase.jul.communication.controller.AbstractRemoteClient;
 import org.openbase.jul.pattern.Observer;
+import org.openbase.jul.pattern.controller.Remote;
 import org.openbase.jul.schedule.FutureProcessor;
 import org.openbase.jul.schedule.GlobalCachedExecutorService;
+import org.openbase.jul.schedule.GlobalScheduledExecutorService;
+import org.openbase.jul.schedule.SyncObject;
+import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
 import org.openbase.type.domotic.authentication.TicketAuthenticatorWrapperType.TicketAuthenticatorWrapper;
 import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+import org.openbase.type.domotic.state.ConnectionStateType.ConnectionState;
 import rsb.Event;
 import rsb.Handler;
 import rsb.converter.DefaultConverterRepository;
 import rsb.converter.ProtocolBufferConverter;
 
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class AbstractAuthenticatedRemoteClient<M extends Message> extends AbstractRemoteClient<M> {
 
@@ -48,18 +59,65 @@ public abstract class AbstractAuthenticatedRemoteClient<M extends Message> exten
         DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(TicketAuthenticatorWrapper.getDefaultInstance()));
     }
 
+    /**
+     * Time to wait for the group key of the permission class of the logged in user in milliseconds.
+     */
+    private static final long GROUP_KEY_REQUEST_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * Time to wait for an authenticated data request triggered by a data event in milliseconds.
+     */
+    private static final long RESYNC_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * Time in milliseconds within which pushed group data is expected around a data event of the controller.
+     * If none is received the subscription is considered stale, e.g. because the controller restarted or closed
+     * the channel, and data is requested again.
+     */
+    private static final long GROUP_DATA_TIMEOUT = TimeUnit.SECONDS.toMillis(5);
+    /**
+     * Time in milliseconds for which group data received before a data event still counts as the data of the event,
+     * because the controller publishes both independently.
+     */
+    private static final long GROUP_DATA_TOLERANCE = TimeUnit.SECONDS.toMillis(1);
+
     /**
      * Observer updating data on login changes.
      */
     private final Observer<SessionManager, UserClientPair> loginObserver;
+    /**
+     * Observer subscribing to group data again whenever the connection to the controller is established.
+     */
+    private final Observer<Remote<?>, ConnectionState.State> connectionStateObserver;
+    private final Class<M> dataClass;
+    /**
+     * Set while a check for group data following a data event is scheduled.
+     */
+    private final AtomicBoolean groupDataCheckScheduled = new AtomicBoolean(false);
+    private final SyncObject groupDataLock = new SyncObject("GroupDataLock");
+    /**
+     * Scheduler coalescing the authenticated requests triggered by data events.
+     */
+    private final ResyncScheduler resyncScheduler;
     /**
      * Data object for other permissions;
      */
     private M otherData;
+    /**
+     * Subscription to the data pushed by the controller for the permission class of the logged in user.
+     */
+    private volatile GroupDataSubscription<M> groupDataSubscription;
 
     public AbstractAuthenticatedRemoteClient(Class<M> dataClass) {
         super(dataClass);
+        this.dataClass = dataClass;
         this.setMessageProcessor(new AuthenticatedMessageProcessor<>(dataClass));
+        this.resyncScheduler = new ResyncScheduler(() -> {
+            if (isSyncRunning()) {
+                // a sync task is currently running so wait for it to finish and trigger a new one
+                // to make sure that the latest data update is received
+                requestData().get(RESYNC_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+            return requestData();
+        }, RESYNC_TIMEOUT, TimeUnit.MILLISECONDS);
 
         this.loginObserver = (source, data) -> {
             // somebody new logged in
@@ -73,9 +131,121 @@ public abstract class AbstractAuthenticatedRemoteClient<M extends Message> exten
                 // trigger a new data request to update data for the user
                 requestData();
             }
+            // the permission class changes with the user so the group key has to be requested again
+            resubscribeGroupData();
+        };
+
+        this.connectionStateObserver = (source, state) -> {
+            // a restarted controller publishes on new channels and a lost connection may have missed a key rotation
+            if (state == ConnectionState.State.CONNECTED && SessionManager.getInstance().isLoggedIn()) {
+                resubscribeGroupData();
+            } else if (state != ConnectionState.State.CONNECTED) {
+                synchronized (groupDataLock) {
+                    cancelGroupDataSubscription();
+                }
+            }
         };
     }
 
+    /**
+     * Check if data is pushed by the controller for the permission class of the logged in user,
+     * so that data updates do not require authenticated data requests.
+     *
+     * @return true if a subscription to the group data is active.
+     */
+    public boolean isReceivingGroupData() {
+        final GroupDataSubscription<M> subscription = groupDataSubscription;
+        return subscription != null && !subscription.isExpired();
+    }
+
+    /**
+     * Cancel the current subscription to group data and create a new one in the background if a user is logged in.
+     */
+    private void resubscribeGroupData() {
+        GlobalCachedExecutorService.submit(() -> {
+            try {
+                synchronized (groupDataLock) {
+                    cancelGroupDataSubscription();
+                    if (isActive() && SessionManager.getInstance().isLoggedIn()) {
+                        groupDataSubscription = subscribeGroupData();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (CouldNotPerformException | ExecutionException | TimeoutException ex) {
+                // controllers without group data support are still synchronized by authenticated data requests
+                if (!ExceptionProcessor.isCausedBySystemShutdown(ex)) {
+                    ExceptionPrinter.printHistory("Could not subscribe to group data of " + this, ex, logger, LogLevel.DEBUG);
+                }
+            }
+        });
+    }
+
+    private GroupDataSubscription<M> subscribeGroupData() throws CouldNotPerformException, InterruptedException, ExecutionException, TimeoutException {
+        final SessionManager sessionManager = SessionManager.getInstance();
+        final RequestTicket requestTicket = sessionManager.initializeRequestTicket();
+        final Event event = new Event(TicketAuthenticatorWrapper.class, requestTicket.getTicketAuthenticatorWrapper());
+        final Event response = getRemoteServer().callAsync(GroupKeyRequestable.REQUEST_GROUP_KEY_AUTHENTICATED_METHOD, event).get(GROUP_KEY_REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+        final AuthenticatedValue authenticatedValue = (AuthenticatedValue) response.getData();
+        sessionManager.verifyServiceServerResponse(requestTicket, authenticatedValue.getTicketAuthenticatorWrapper());
+        final GroupKeyGrant groupKeyGrant = EncryptionHelper.decryptSymmetric(authenticatedValue.getValue(), requestTicket.getSessionKey(), GroupKeyGrant.class);
+
+        if (sessionManager.getSessionKey() != requestTicket.getSessionKey()) {
+            // the user changed while the key was requested so the login observer subscribes again
+            throw new CouldNotPerformException("Session changed while requesting the group key");
+        }
+
+        return new GroupDataSubscription<>(groupKeyGrant, dataClass, data -> {
+            if (SessionManager.getInstance().getSessionKey() == requestTicket.getSessionKey()) {
+                setData(data);
+            }
+        }, () -> {
+            // the group key has been rotated so request the current data and the new key
+            requestData();
+            resubscribeGroupData();
+        });
+    }
+
+    /**
+     * Verify that group data is pushed around a data event. Otherwise the subscription is stale, e.g. because the
+     * channel has been closed or filtering failed on the controller, so data is requested and the key again.
+     *
+     * @param subscription the subscription expected to receive the data.
+     *
+     * @throws CouldNotPerformException if the check cannot be scheduled.
+     */
+    private void scheduleGroupDataCheck(final GroupDataSubscription<M> subscription) throws CouldNotPerformException {
+        if (!groupDataCheckScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        final long eventTime = System.currentTimeMillis();
+        try {
+            GlobalScheduledExecutorService.schedule(() -> {
+                groupDataCheckScheduled.set(false);
+                // data may be pushed shortly before the event on the main scope arrives
+                if (subscription != groupDataSubscription || subscription.isExpired() || subscription.getLastReceiveTime() >= eventTime - GROUP_DATA_TOLERANCE) {
+                    return;
+                }
+
+                logger.debug("No group data received for data event of " + this + ", request data instead");
+                resyncScheduler.schedule();
+                resubscribeGroupData();
+            }, GROUP_DATA_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (CouldNotPerformException ex) {
+            groupDataCheckScheduled.set(false);
+            throw ex;
+        }
+    }
+
+    private void cancelGroupDataSubscription() throws InterruptedException {
+        final GroupDataSubscription<M> subscription = groupDataSubscription;
+        groupDataSubscription = null;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
     @Override
     protected Handler generateHandler() {
         return new AuthenticatedUpdateHandler();
@@ -84,9 +254,12 @@ public abstract class AbstractAuthenticatedRemoteClient<M extends Message> exten
     @Override
     protected Future<Event> internalRequestStatus() {
         try {
-            if (SessionManager.getInstance().isLoggedIn()) {
-                final Event event = new Event(TicketAuthenticatorWrapper.class, SessionManager.getInstance().initializeServiceServerRequest());
-                return new ReLoginFuture<>(getRemoteServer().callAsync(AuthenticatedRequestable.REQUEST_DATA_AUTHENTICATED_METHOD, event), SessionManager.getInstance());
+            final SessionManager sessionManager = SessionManager.getInstance();
+            if (sessionManager.isLoggedIn()) {
+                // remember the session of the request so that failing requests of the same session cause a single re-login
+                final RequestTicket requestTicket = sessionManager.initializeRequestTicket();
+                final Event event = new Event(TicketAuthenticatorWrapper.class, requestTicket.getTicketAuthenticatorWrapper());
+                return new ReLoginFuture<>(getRemoteServer().callAsync(AuthenticatedRequestable.REQUEST_DATA_AUTHENTICATED_METHOD, event), sessionManager, requestTicket.getSessionKey());
             } else {
                 return super.internalRequestStatus();
             }
@@ -95,15 +268,33 @@ public abstract class AbstractAuthenticatedRemoteClient<M extends Message> exten
         }
     }
 
+    /**
+     * Get the scheduler of the authenticated requests triggered by data events, e.g. to inspect how many of them
+     * have been coalesced.
+     *
+     * @return the resync scheduler of this remote.
+     */
+    public ResyncScheduler getResyncScheduler() {
+        return resyncScheduler;
+    }
+
     @Override
     public void activate() throws InterruptedException, CouldNotPerformException {
         super.activate();
         SessionManager.getInstance().addLoginObserver(loginObserver);
+        addConnectionStateObserver(connectionStateObserver);
+        if (SessionManager.getInstance().isLoggedIn()) {
+            resubscribeGroupData();
+        }
     }
 
     @Override
     public void deactivate() throws InterruptedException, CouldNotPerformException {
         SessionManager.getInstance().removeLoginObserver(loginObserver);
+        removeConnectionStateObserver(connectionStateObserver);
+        synchronized (groupDataLock) {
+            cancelGroupDataSubscription();
+        }
         super.deactivate();
     }
 
@@ -114,28 +305,15 @@ public abstract class AbstractAuthenticatedRemoteClient<M extends Message> exten
             try {
                 if (event.getData() != null) {
                     otherData = (M) event.getData();
+                    final GroupDataSubscription<M> subscription = groupDataSubscription;
+                    if (subscription != null && !subscription.isExpired()) {
+                        // the data filtered for the user is pushed by the controller on its own
+                        scheduleGroupDataCheck(subscription);
+                        return;
+                    }
                     if (SessionManager.getInstance().isLoggedIn()) {
                         // received a new data event from the controller which is filtered for other permissions, so trigger an authenticated request
-                        GlobalCachedExecutorService.submit((Callable<Void>) () -> {
-                            if (isSyncRunning()) {
-                                // a sync task is currently running so wait for it to finish and trigger a new one
-                                // to make sure that the latest data update is received
-                                try {
-                                    requestData().get(10, TimeUnit.SECONDS);
-                                } catch (InterruptedException ex) {
-                                    Thread.currentThread().interrupt();
-                                    return null;
-                                } catch (ExecutionException | TimeoutException ex) {
-                                    throw new CouldNotPerformException("Could not wait for running sync task", ex);
-                                } catch (CancellationException ex) {
-                                    logger.error("Cancellation exception", ex);
-                                    // request data was cancelled and is most likely done again by the login observer
-                                    return null;
-                                }
-                            }
-                            requestData();
-                            return null;
-                        });
+                        resyncScheduler.schedule();
                     } else {
                         applyEventUpdate(event);
                     }
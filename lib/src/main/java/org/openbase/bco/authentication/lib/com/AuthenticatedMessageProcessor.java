@@ -22,17 +22,15 @@ package org.openbase.bco.authentication.lib.com;
  * #L%
  */
 
-import com.google.protobuf.ByteString;
 import com.google.protobuf.Message;
 import org.openbase.bco.authentication.lib.EncryptionHelper;
+import org.openbase.bco.authentication.lib.MessageParserRegistry;
+import org.openbase.bco.authentication.lib.SessionKey;
 import org.openbase.bco.authentication.lib.SessionManager;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.extension.protobuf.processing.SimpleMessageProcessor;
 import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-
 public class AuthenticatedMessageProcessor<M extends Message> extends SimpleMessageProcessor<M> {
 
     public AuthenticatedMessageProcessor(Class<M> dataClass) {
@@ -55,7 +53,7 @@ public class AuthenticatedMessageProcessor<M extends Message> extends SimpleMess
 
     public static <M extends Message> M getDataFromAuthenticatedValue(final AuthenticatedValue authenticatedValue, final SessionManager sessionManager, final Class<M> dataClass) throws CouldNotPerformException {
         if (authenticatedValue.hasTicketAuthenticatorWrapper()) {
-            final byte[] sessionKey = sessionManager.getSessionKey();
+            final SessionKey sessionKey = sessionManager.getSessionKey();
             if (sessionKey == null) {
                 // user has logged out while the request was running
                 throw new CouldNotPerformException("Could not decrypt authenticated message");
@@ -63,12 +61,7 @@ public class AuthenticatedMessageProcessor<M extends Message> extends SimpleMess
 
             return EncryptionHelper.decryptSymmetric(authenticatedValue.getValue(), sessionKey, dataClass);
         } else {
-            try {
-                Method parseFrom = dataClass.getMethod("parseFrom", ByteString.class);
-                return (M) parseFrom.invoke(null, authenticatedValue.getValue());
-            } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-                throw new CouldNotPerformException("Could not invoke parseFrom method on [" + dataClass.getSimpleName() + "]", ex);
-            }
+            return MessageParserRegistry.parseFrom(authenticatedValue.getValue(), dataClass);
         }
     }
 }
@@ -0,0 +1,128 @@
+package org.openbase.bco.authentication.lib.com;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.bco.authentication.lib.ExpiringCache;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the data of a controller filtered for different permission classes, i.e. groups of users and clients
+ * for which filtering produces the same view of the data.
+ * <p>
+ * Every cached view is tagged with the version of the data it has been filtered from. The version is incremented
+ * whenever the controller publishes new data. A view filtered from an outdated version is never returned, even if
+ * it is added after the version changed. Views also expire after a while in case the data changes without being
+ * published.
+ *
+ * @param <M> the type of the data of the controller
+ */
+class FilteredDataCache<M> {
+
+    /**
+     * Resolver of the permission class of a user and client.
+     */
+    interface PermissionClassResolver {
+
+        /**
+         * Get the permission class of a user and client.
+         *
+         * @param userClientPair the user and client for which data is requested.
+         *
+         * @return a key identifying the permission class, which has to implement equals and hashCode.
+         *
+         * @throws CouldNotPerformException if the permission class cannot be determined.
+         */
+        Object resolve(final UserClientPair userClientPair) throws CouldNotPerformException;
+    }
+
+    /**
+     * Maximal number of permission classes for which filtered data is cached.
+     */
+    static final int MAX_PERMISSION_CLASSES = 256;
+    /**
+     * Time after which filtered data expires in milliseconds.
+     */
+    static final long TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(1);
+
+    private final ExpiringCache<Object, VersionedData<M>> dataCache;
+    private final AtomicLong version;
+
+    FilteredDataCache() {
+        this.dataCache = new ExpiringCache<>(MAX_PERMISSION_CLASSES, TIME_TO_LIVE, TimeUnit.MILLISECONDS);
+        this.version = new AtomicLong(0);
+    }
+
+    /**
+     * Mark the data as changed so that all cached views become invalid.
+     */
+    void invalidate() {
+        version.incrementAndGet();
+        dataCache.clear();
+    }
+
+    /**
+     * Get the data filtered for the permission class of a user and client. The data is only filtered if no data
+     * of the current version has been cached for the permission class, and the result is cached for it.
+     *
+     * @param userClientPair          the user and client for which data is requested.
+     * @param permissionClassResolver the resolver of the permission class of the user and client.
+     * @param dataFilter              the filter applied to the current data if nothing is cached.
+     *
+     * @return the filtered data.
+     *
+     * @throws CouldNotPerformException if the permission class cannot be resolved or the data cannot be filtered.
+     */
+    M get(final UserClientPair userClientPair, final PermissionClassResolver permissionClassResolver, final GroupDataPublisher.DataFilter<M> dataFilter) throws CouldNotPerformException {
+        // read the version first so that a permission class resolved from outdated permissions is not cached for newer data
+        final long dataVersion = version.get();
+        final Object permissionClass = permissionClassResolver.resolve(userClientPair);
+
+        final VersionedData<M> versionedData = dataCache.get(permissionClass);
+        if (versionedData != null && versionedData.version == dataVersion) {
+            return versionedData.data;
+        }
+
+        final M data = dataFilter.filter(userClientPair);
+
+        // data of an outdated version is not cached
+        if (dataVersion == version.get()) {
+            dataCache.put(permissionClass, new VersionedData<>(dataVersion, data));
+        }
+        return data;
+    }
+
+    private static final class VersionedData<M> {
+
+        private final long version;
+        private final M data;
+
+        private VersionedData(final long version, final M data) {
+            this.version = version;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package org.openbase.bco.authentication.lib.com;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.bco.authentication.lib.EncryptionHelper;
+import org.openbase.bco.authentication.lib.KeyRing;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.ExceptionProcessor;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.exception.printer.LogLevel;
+import org.openbase.jul.extension.rsb.com.RSBFactoryImpl;
+import org.openbase.jul.extension.rsb.com.RSBSharedConnectionConfig;
+import org.openbase.jul.extension.rsb.iface.RSBInformer;
+import org.openbase.jul.extension.rsb.scope.ScopeTransformer;
+import org.openbase.jul.iface.Shutdownable;
+import org.openbase.jul.schedule.GlobalScheduledExecutorService;
+import org.openbase.jul.schedule.SyncObject;
+import org.openbase.type.communication.ScopeType.Scope;
+import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
+import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+import org.slf4j.LoggerFactory;
+import rsb.converter.DefaultConverterRepository;
+import rsb.converter.ProtocolBufferConverter;
+
+import java.io.Serializable;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publisher of the data of a controller filtered for its permission classes.
+ * <p>
+ * Every permission class for which a member requested the group key gets a channel with its own scope below the
+ * scope of the controller and its own key ring. Whenever the data of the controller changes it is filtered once per
+ * channel, encrypted with the current key of the channel and published, so that members receive their view of the
+ * data without requesting it. The key of a channel is rotated after {@link #KEY_ROTATION_INTERVAL} so members which
+ * left a permission class lose access. Members only get the new key by requesting it again, which closes channels
+ * without active members: a channel is closed if nobody requested its key since the previous rotation.
+ * Keys are rotated and idle channels are closed by a periodic task while channels are open, so this also happens
+ * if the data of the controller does not change.
+ *
+ * @param <M> the type of the data of the controller
+ */
+class GroupDataPublisher<M extends Serializable> implements Shutdownable {
+
+    static {
+        DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(AuthenticatedValue.getDefaultInstance()));
+    }
+
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(GroupDataPublisher.class);
+
+    /**
+     * Scope component below the scope of the controller under which channels are created.
+     */
+    static final String GROUP_DATA_SCOPE_COMPONENT = "authenticated";
+    /**
+     * Time after which the key of a channel is rotated in milliseconds.
+     */
+    static final long KEY_ROTATION_INTERVAL = TimeUnit.MINUTES.toMillis(15);
+    /**
+     * Time for which the previous key of a channel is accepted after a rotation in milliseconds,
+     * so that data published right before the rotation can still be decrypted.
+     */
+    static final long KEY_RETENTION_TIME = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * Period of the task rotating keys which are due and closing idle channels in milliseconds.
+     */
+    static final long MAINTENANCE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Filter for the data published in a channel.
+     *
+     * @param <M> the type of the data
+     */
+    interface DataFilter<M> {
+
+        /**
+         * Filter the current data of the controller for a user.
+         *
+         * @param userClientPair a member of the permission class of a channel.
+         *
+         * @return the filtered data.
+         *
+         * @throws CouldNotPerformException if the data cannot be filtered.
+         */
+        M filter(final UserClientPair userClientPair) throws CouldNotPerformException;
+    }
+
+    private final SyncObject channelLock = new SyncObject("GroupDataChannelLock");
+    private final SyncObject publishLock = new SyncObject("GroupDataPublishLock");
+    private final Map<Object, Channel> channelMap;
+    /**
+     * Task rotating keys and closing idle channels, which is only scheduled while channels are open.
+     */
+    private ScheduledFuture<?> maintenanceTask;
+
+    GroupDataPublisher() {
+        this.channelMap = new HashMap<>();
+    }
+
+    /**
+     * Grant the group key of a permission class to one of its members. The channel of the permission class is
+     * created if it does not exist.
+     *
+     * @param permissionClass the key of the permission class.
+     * @param userClientPair  the member of the permission class.
+     * @param controllerScope the scope of the controller.
+     *
+     * @return the group key of the permission class.
+     *
+     * @throws CouldNotPerformException if the channel cannot be created.
+     */
+    GroupKeyGrant grant(final Object permissionClass, final UserClientPair userClientPair, final Scope controllerScope) throws CouldNotPerformException {
+        synchronized (channelLock) {
+            final Channel channel = channelMap.get(permissionClass);
+            if (channel != null) {
+                return channel.grant();
+            }
+        }
+
+        // creating a channel activates its informer so it is not done while holding the lock
+        final Channel newChannel = new Channel(userClientPair, controllerScope);
+        final Channel existingChannel;
+        final GroupKeyGrant groupKeyGrant;
+        synchronized (channelLock) {
+            existingChannel = channelMap.putIfAbsent(permissionClass, newChannel);
+            if (existingChannel == null) {
+                groupKeyGrant = newChannel.grant();
+                startMaintenance();
+            } else {
+                groupKeyGrant = existingChannel.grant();
+            }
+        }
+
+        // another member created the channel concurrently
+        if (existingChannel != null) {
+            newChannel.close();
+        }
+        return groupKeyGrant;
+    }
+
+    /**
+     * Check if any channel is open.
+     *
+     * @return true if data has to be published.
+     */
+    boolean hasChannels() {
+        synchronized (channelLock) {
+            return !channelMap.isEmpty();
+        }
+    }
+
+    /**
+     * Filter the current data for every channel and publish it encrypted with the key of the channel.
+     * Keys which are due are rotated before and channels without active members are closed.
+     *
+     * @param dataFilter the filter applied for every channel.
+     */
+    void publish(final DataFilter<M> dataFilter) {
+        // publications are serialized so that the latest data is always published last
+        synchronized (publishLock) {
+            final List<Channel> closedChannelList = new ArrayList<>();
+            final List<Channel> channelList;
+            synchronized (channelLock) {
+                channelList = rotateKeys(closedChannelList);
+            }
+
+            for (final Channel channel : closedChannelList) {
+                channel.close();
+            }
+
+            for (final Channel channel : channelList) {
+                try {
+                    final M data = dataFilter.filter(channel.userClientPair);
+                    channel.informer.publish(AuthenticatedValue.newBuilder().setValue(channel.keyRing.encrypt(data)).build());
+                } catch (Exception ex) {
+                    if (ex instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (!ExceptionProcessor.isCausedBySystemShutdown(ex)) {
+                        ExceptionPrinter.printHistory("Could not publish data of channel[" + channel.scope.getComponentList() + "]", ex, LOGGER, LogLevel.WARN);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Rotate the keys which are due and close channels without active members. Must be called while holding the
+     * channel lock.
+     *
+     * @param closedChannelList list to which the removed channels are added, they have to be closed by the caller.
+     *
+     * @return the channels which are still open.
+     */
+    private List<Channel> rotateKeys(final List<Channel> closedChannelList) {
+        final long currentTime = System.currentTimeMillis();
+        final List<Channel> channelList = new ArrayList<>();
+        channelMap.values().removeIf(channel -> {
+            if (currentTime - channel.rotationTime < KEY_ROTATION_INTERVAL) {
+                channelList.add(channel);
+                return false;
+            }
+
+            if (channel.lastGrantTime < channel.rotationTime) {
+                // nobody requested the key since the last rotation
+                closedChannelList.add(channel);
+                return true;
+            }
+
+            channel.keyRing.rotate(KEY_RETENTION_TIME);
+            channel.rotationTime = currentTime;
+            channelList.add(channel);
+            return false;
+        });
+
+        if (channelMap.isEmpty()) {
+            stopMaintenance();
+        }
+        return channelList;
+    }
+
+    /**
+     * Rotate the keys which are due and close idle channels independently of publications.
+     */
+    private void maintainChannels() {
+        final List<Channel> closedChannelList = new ArrayList<>();
+        synchronized (channelLock) {
+            rotateKeys(closedChannelList);
+        }
+
+        for (final Channel channel : closedChannelList) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Schedule the maintenance of the channels if it is not yet scheduled. Must be called while holding the
+     * channel lock.
+     */
+    private void startMaintenance() {
+        if (maintenanceTask != null) {
+            return;
+        }
+
+        try {
+            maintenanceTask = GlobalScheduledExecutorService.scheduleAtFixedRate(this::maintainChannels, MAINTENANCE_INTERVAL, MAINTENANCE_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (CouldNotPerformException ex) {
+            if (!ExceptionProcessor.isCausedBySystemShutdown(ex)) {
+                ExceptionPrinter.printHistory("Could not schedule the key rotation of group data channels", ex, LOGGER, LogLevel.WARN);
+            }
+        }
+    }
+
+    /**
+     * Cancel the maintenance of the channels. Must be called while holding the channel lock.
+     */
+    private void stopMaintenance() {
+        if (maintenanceTask != null) {
+            maintenanceTask.cancel(false);
+            maintenanceTask = null;
+        }
+    }
+
+    /**
+     * Close all channels. Members have to request the group key again, which assigns them to their current
+     * permission class.
+     */
+    void closeChannels() {
+        final List<Channel> channelList;
+        synchronized (channelLock) {
+            channelList = new ArrayList<>(channelMap.values());
+            channelMap.clear();
+            stopMaintenance();
+        }
+
+        for (final Channel channel : channelList) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Close all channels.
+     */
+    @Override
+    public void shutdown() {
+        closeChannels();
+    }
+
+    /**
+     * Scope, key ring and informer of a permission class.
+     */
+    private static final class Channel {
+
+        private final UserClientPair userClientPair;
+        private final Scope scope;
+        private final KeyRing keyRing;
+        private final RSBInformer<AuthenticatedValue> informer;
+        private long rotationTime;
+        private long lastGrantTime;
+
+        private Channel(final UserClientPair userClientPair, final Scope controllerScope) throws CouldNotPerformException {
+            // the filtered data is the same for all members so the first one represents the whole class
+            this.userClientPair = userClientPair;
+            this.scope = controllerScope.toBuilder().addComponent(GROUP_DATA_SCOPE_COMPONENT).addComponent(generateChannelId()).build();
+            this.keyRing = new KeyRing(EncryptionHelper.generateKey());
+            this.rotationTime = System.currentTimeMillis();
+            try {
+                this.informer = RSBFactoryImpl.getInstance().createSynchronizedInformer(ScopeTransformer.transform(scope), AuthenticatedValue.class, RSBSharedConnectionConfig.getParticipantConfig());
+                this.informer.activate();
+            } catch (Exception ex) {
+                if (ex instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new CouldNotPerformException("Could not create channel[" + scope.getComponentList() + "]", ex);
+            }
+        }
+
+        /**
+         * Grant the key of this channel to a member. Must be called while holding the channel lock.
+         *
+         * @return the group key of the channel.
+         */
+        private GroupKeyGrant grant() {
+            lastGrantTime = System.currentTimeMillis();
+            return new GroupKeyGrant(scope, keyRing.encode());
+        }
+
+        private void close() {
+            try {
+                informer.deactivate();
+            } catch (Exception ex) {
+                if (ex instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                ExceptionPrinter.printHistory("Could not close channel[" + scope.getComponentList() + "]", ex, LOGGER, LogLevel.WARN);
+            }
+        }
+
+        private static String generateChannelId() {
+            // scope components only consist of lower case letters and digits
+            return Long.toHexString(RANDOM.nextLong() & Long.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.openbase.bco.authentication.lib.com;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.Message;
+import org.openbase.bco.authentication.lib.KeyRing;
+import org.openbase.bco.authentication.lib.exception.SessionExpiredException;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.exception.printer.LogLevel;
+import org.openbase.jul.extension.rsb.com.RSBFactoryImpl;
+import org.openbase.jul.extension.rsb.com.RSBSharedConnectionConfig;
+import org.openbase.jul.extension.rsb.iface.RSBListener;
+import org.openbase.jul.extension.rsb.scope.ScopeTransformer;
+import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
+import org.slf4j.LoggerFactory;
+import rsb.Event;
+import rsb.Handler;
+import rsb.converter.DefaultConverterRepository;
+import rsb.converter.ProtocolBufferConverter;
+
+import java.util.function.Consumer;
+
+/**
+ * Subscription of a remote to the data a controller pushes to the members of a permission class.
+ * The data is decrypted with the key ring of the {@link GroupKeyGrant} the subscription has been created from.
+ * If the data is encrypted with a key not contained in the ring, e.g. because the controller rotated the group key,
+ * the subscription is expired and a new grant has to be requested.
+ *
+ * @param <M> the type of the data of the controller
+ */
+class GroupDataSubscription<M extends Message> {
+
+    static {
+        DefaultConverterRepository.getDefaultConverterRepository().addConverter(new ProtocolBufferConverter<>(AuthenticatedValue.getDefaultInstance()));
+    }
+
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(GroupDataSubscription.class);
+
+    private final KeyRing keyRing;
+    private final RSBListener listener;
+    private volatile boolean expired;
+    private volatile long lastReceiveTime;
+
+    /**
+     * Subscribe to the data published for a permission class.
+     *
+     * @param groupKeyGrant     the grant containing the scope and key ring of the permission class.
+     * @param dataClass         the class of the data.
+     * @param dataConsumer      consumer of the decrypted data.
+     * @param expirationHandler called once if data cannot be decrypted with the key ring anymore.
+     *
+     * @throws CouldNotPerformException if the subscription cannot be created.
+     * @throws InterruptedException     if interrupted while activating the listener.
+     */
+    GroupDataSubscription(final GroupKeyGrant groupKeyGrant, final Class<M> dataClass, final Consumer<M> dataConsumer, final Runnable expirationHandler) throws CouldNotPerformException, InterruptedException {
+        this.keyRing = KeyRing.decode(groupKeyGrant.getEncodedKeyRing());
+        this.expired = false;
+        this.lastReceiveTime = System.currentTimeMillis();
+
+        final Handler handler = (Event event) -> {
+            if (expired || !(event.getData() instanceof AuthenticatedValue)) {
+                return;
+            }
+
+            try {
+                final M data = keyRing.decrypt(((AuthenticatedValue) event.getData()).getValue(), dataClass);
+                lastReceiveTime = System.currentTimeMillis();
+                dataConsumer.accept(data);
+            } catch (SessionExpiredException ex) {
+                expired = true;
+                expirationHandler.run();
+            } catch (CouldNotPerformException ex) {
+                ExceptionPrinter.printHistory("Could not decrypt data published on " + groupKeyGrant.getScope().getComponentList(), ex, LOGGER, LogLevel.WARN);
+            }
+        };
+
+        this.listener = RSBFactoryImpl.getInstance().createSynchronizedListener(ScopeTransformer.transform(groupKeyGrant.getScope()), RSBSharedConnectionConfig.getParticipantConfig());
+        this.listener.addHandler(handler, true);
+        this.listener.activate();
+    }
+
+    /**
+     * Check if data cannot be decrypted with the key ring of this subscription anymore.
+     *
+     * @return true if a new grant has to be requested.
+     */
+    boolean isExpired() {
+        return expired;
+    }
+
+    /**
+     * Get the time at which data has been received the last time, or the subscription has been created if no data
+     * has been received yet.
+     *
+     * @return the time in milliseconds.
+     */
+    long getLastReceiveTime() {
+        return lastReceiveTime;
+    }
+
+    /**
+     * Stop receiving data.
+     *
+     * @throws InterruptedException if interrupted while deactivating the listener.
+     */
+    void cancel() throws InterruptedException {
+        expired = true;
+        try {
+            listener.deactivate();
+        } catch (CouldNotPerformException ex) {
+            ExceptionPrinter.printHistory("Could not cancel subscription", ex, LOGGER, LogLevel.WARN);
+        }
+    }
+}
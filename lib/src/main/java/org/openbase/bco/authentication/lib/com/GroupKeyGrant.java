@@ -0,0 +1,69 @@
+package org.openbase.bco.authentication.lib.com;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.type.communication.ScopeType.Scope;
+
+import java.io.Serializable;
+
+/**
+ * Group key of a permission class handed out by a controller to a member of the class.
+ * It contains the scope on which the controller publishes the data filtered for the permission class and the
+ * key ring with which this data is encrypted.
+ */
+public class GroupKeyGrant implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Scope scope;
+    private final byte[] encodedKeyRing;
+
+    /**
+     * Create a new grant.
+     *
+     * @param scope          the scope on which data for the permission class is published.
+     * @param encodedKeyRing the encoded key ring of the permission class.
+     */
+    public GroupKeyGrant(final Scope scope, final byte[] encodedKeyRing) {
+        this.scope = scope;
+        this.encodedKeyRing = encodedKeyRing;
+    }
+
+    /**
+     * Get the scope on which data for the permission class is published.
+     *
+     * @return the scope.
+     */
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Get the key ring with which data for the permission class is encrypted.
+     *
+     * @return the encoded key ring, see {@link org.openbase.bco.authentication.lib.KeyRing#decode(byte[])}.
+     */
+    public byte[] getEncodedKeyRing() {
+        return encodedKeyRing;
+    }
+}
@@ -0,0 +1,174 @@
+package org.openbase.bco.authentication.lib.com;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.ExceptionProcessor;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+import org.openbase.jul.exception.printer.LogLevel;
+import org.openbase.jul.schedule.GlobalCachedExecutorService;
+import org.openbase.jul.schedule.SyncObject;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scheduler coalescing the data requests with which an authenticated remote resynchronizes after data events.
+ * <p>
+ * At most one request is in flight and at most one is pending. Resyncs scheduled while a request is in flight
+ * mark the pending one, and all further resyncs are folded into it because the pending request already fetches
+ * the latest data. So a burst of events costs at most two requests and a single worker thread instead of one
+ * parked thread per event.
+ */
+public class ResyncScheduler {
+
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ResyncScheduler.class);
+
+    private final Callable<? extends Future<?>> request;
+    private final long timeout;
+    private final SyncObject stateLock = new SyncObject("ResyncStateLock");
+    private final AtomicLong scheduledCounter;
+    private final AtomicLong performedCounter;
+    private final AtomicLong coalescedCounter;
+
+    private boolean inFlight;
+    private boolean pending;
+
+    /**
+     * Create a new scheduler.
+     *
+     * @param request  the data request, which returns a future completed when the data has been received.
+     * @param timeout  the maximal time to wait for a request.
+     * @param timeUnit the time unit of the timeout.
+     */
+    public ResyncScheduler(final Callable<? extends Future<?>> request, final long timeout, final TimeUnit timeUnit) {
+        this.request = request;
+        this.timeout = timeUnit.toMillis(timeout);
+        this.scheduledCounter = new AtomicLong(0);
+        this.performedCounter = new AtomicLong(0);
+        this.coalescedCounter = new AtomicLong(0);
+        this.inFlight = false;
+        this.pending = false;
+    }
+
+    /**
+     * Schedule a resync. It is performed immediately if no request is in flight, otherwise after the current one.
+     */
+    public void schedule() {
+        scheduledCounter.incrementAndGet();
+        synchronized (stateLock) {
+            if (inFlight) {
+                if (pending) {
+                    coalescedCounter.incrementAndGet();
+                } else {
+                    pending = true;
+                }
+                return;
+            }
+            inFlight = true;
+        }
+
+        try {
+            GlobalCachedExecutorService.submit(this::performRequests);
+        } catch (RuntimeException ex) {
+            synchronized (stateLock) {
+                inFlight = false;
+                pending = false;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Check if a request is in flight.
+     *
+     * @return true if the scheduler is currently requesting data.
+     */
+    public boolean isBusy() {
+        synchronized (stateLock) {
+            return inFlight;
+        }
+    }
+
+    /**
+     * Get the number of resyncs scheduled.
+     *
+     * @return the number of calls of {@link #schedule()}.
+     */
+    public long getScheduledCount() {
+        return scheduledCounter.get();
+    }
+
+    /**
+     * Get the number of requests actually performed.
+     *
+     * @return the number of data requests.
+     */
+    public long getPerformedCount() {
+        return performedCounter.get();
+    }
+
+    /**
+     * Get the number of resyncs which have been folded into an already pending request.
+     *
+     * @return the number of coalesced resyncs.
+     */
+    public long getCoalescedCount() {
+        return coalescedCounter.get();
+    }
+
+    private void performRequests() {
+        while (true) {
+            try {
+                performedCounter.incrementAndGet();
+                request.call().get(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                synchronized (stateLock) {
+                    inFlight = false;
+                    pending = false;
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (CancellationException ex) {
+                // request data was cancelled and is most likely done again by the login observer
+                LOGGER.debug("Resync has been cancelled");
+            } catch (Exception ex) {
+                if (!ExceptionProcessor.isCausedBySystemShutdown(ex)) {
+                    ExceptionPrinter.printHistory(new CouldNotPerformException("Could not resync data", ex), LOGGER, LogLevel.WARN);
+                }
+            }
+
+            synchronized (stateLock) {
+                if (!pending) {
+                    inFlight = false;
+                    return;
+                }
+                pending = false;
+            }
+        }
+    }
+}
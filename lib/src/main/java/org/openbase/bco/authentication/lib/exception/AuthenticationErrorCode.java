@@ -0,0 +1,263 @@
+package org.openbase.bco.authentication.lib.exception;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.exception.PermissionDeniedException;
+import org.openbase.jul.exception.RejectedException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Error codes of the authentication service.
+ * <p>
+ * The responses of the authentication service are fixed protobuf types and errors only reach a client as the
+ * message of an exception, which the middleware may even flatten together with the stack trace.
+ * Therefore the server tags the message of an exception it sends to a client with a marker like
+ * {@code [AUTH-ERR:SESSION_EXPIRED]}. A client resolves the code with a plain search for the marker and can branch
+ * on it instead of matching the names of exception classes in the message. Exceptions recreated by a client do not
+ * contain the marker anymore, so that it does not show up in messages presented to users.
+ */
+public enum AuthenticationErrorCode {
+
+    /**
+     * The message does not contain an error code, e.g. because it was sent by an older server.
+     */
+    UNKNOWN,
+    /**
+     * A user or client, or their credentials, are not known by the authenticator.
+     */
+    NOT_AVAILABLE,
+    /**
+     * A ticket or request has been rejected.
+     */
+    REJECTED,
+    /**
+     * The user or client is not permitted to perform an action.
+     */
+    PERMISSION_DENIED,
+    /**
+     * The session of a ticket ran out.
+     */
+    SESSION_EXPIRED;
+
+    /**
+     * Prefix of the marker with which messages are tagged.
+     */
+    public static final String MARKER_PREFIX = "[AUTH-ERR:";
+    private static final char MARKER_SUFFIX = ']';
+    /**
+     * Maximal number of causes inspected when resolving the code of an exception.
+     */
+    private static final int MAX_CAUSE_DEPTH = 16;
+    private static final Map<String, AuthenticationErrorCode> CODE_MAP = new HashMap<>();
+
+    static {
+        for (final AuthenticationErrorCode errorCode : values()) {
+            CODE_MAP.put(errorCode.name(), errorCode);
+        }
+    }
+
+    /**
+     * Tag a message with the marker of this code. A message which already contains a marker is returned unchanged,
+     * so that the most specific code is kept if an exception is wrapped.
+     *
+     * @param message the message to be tagged.
+     *
+     * @return the tagged message.
+     */
+    public String tag(final String message) {
+        if (message != null && message.contains(MARKER_PREFIX)) {
+            return message;
+        }
+        return MARKER_PREFIX + name() + MARKER_SUFFIX + " " + message;
+    }
+
+    /**
+     * Create an exception of the type belonging to this code.
+     *
+     * @param taggedMessage the message of the exception. A marker contained in the message is removed.
+     *
+     * @return the new exception.
+     */
+    public CouldNotPerformException toException(final String taggedMessage) {
+        final String message = removeMarker(taggedMessage);
+        switch (this) {
+            case NOT_AVAILABLE:
+                return new NotAvailableException(message);
+            case REJECTED:
+                return new RejectedException(message);
+            case PERMISSION_DENIED:
+                return new PermissionDeniedException(message);
+            case SESSION_EXPIRED:
+                return new SessionExpiredException(message);
+            case UNKNOWN:
+            default:
+                return new CouldNotPerformException(message);
+        }
+    }
+
+    /**
+     * Tag the message of an exception which is sent to a client. The code with which the exception is already
+     * tagged is kept. Otherwise an exception caused by an expired session is tagged with {@link #SESSION_EXPIRED}
+     * and any other exception with the given code.
+     *
+     * @param throwable   the exception.
+     * @param defaultCode the code used if the exception is neither tagged nor caused by an expired session.
+     *
+     * @return the tagged message of the exception.
+     */
+    public static String tagMessage(final Throwable throwable, final AuthenticationErrorCode defaultCode) {
+        AuthenticationErrorCode errorCode = resolve(throwable);
+        if (errorCode == UNKNOWN) {
+            errorCode = isCausedBySessionExpiration(throwable) ? SESSION_EXPIRED : defaultCode;
+        }
+        return errorCode.tag(extractMessage(throwable));
+    }
+
+    /**
+     * Resolve the code with which the message of an exception or one of its causes is tagged.
+     *
+     * @param throwable the exception.
+     *
+     * @return the resolved code or {@link #UNKNOWN} if no message is tagged.
+     */
+    public static AuthenticationErrorCode resolve(final Throwable throwable) {
+        final String message = findTaggedMessage(throwable);
+        if (message == null) {
+            return UNKNOWN;
+        }
+        return resolve(message);
+    }
+
+    /**
+     * Resolve the code with which a message is tagged.
+     *
+     * @param message the message.
+     *
+     * @return the resolved code or {@link #UNKNOWN} if the message is not tagged.
+     */
+    public static AuthenticationErrorCode resolve(final String message) {
+        if (message == null) {
+            return UNKNOWN;
+        }
+
+        final int markerIndex = message.indexOf(MARKER_PREFIX);
+        if (markerIndex < 0) {
+            return UNKNOWN;
+        }
+
+        final int codeIndex = markerIndex + MARKER_PREFIX.length();
+        final int suffixIndex = message.indexOf(MARKER_SUFFIX, codeIndex);
+        if (suffixIndex < 0) {
+            return UNKNOWN;
+        }
+
+        final AuthenticationErrorCode errorCode = CODE_MAP.get(message.substring(codeIndex, suffixIndex));
+        return (errorCode == null) ? UNKNOWN : errorCode;
+    }
+
+    /**
+     * Extract the message tagged with a code from an exception or one of its causes.
+     * The message ends at the first line break because the middleware may append the stack trace.
+     *
+     * @param throwable the exception.
+     *
+     * @return the message without the marker or the message of the exception if no message is tagged.
+     */
+    public static String extractMessage(final Throwable throwable) {
+        final String message = findTaggedMessage(throwable);
+        if (message == null) {
+            return throwable.getMessage();
+        }
+
+        int beginIndex = message.indexOf(MARKER_SUFFIX, message.indexOf(MARKER_PREFIX)) + 1;
+        if (beginIndex < message.length() && message.charAt(beginIndex) == ' ') {
+            beginIndex++;
+        }
+
+        int endIndex = message.length();
+        for (int i = beginIndex; i < message.length(); i++) {
+            final char character = message.charAt(i);
+            if (character == '\n' || character == '\r') {
+                endIndex = i;
+                break;
+            }
+        }
+        return message.substring(beginIndex, endIndex);
+    }
+
+    /**
+     * Remove the marker of a code from a message.
+     *
+     * @param message the message.
+     *
+     * @return the message without the marker or the message itself if it is not tagged.
+     */
+    public static String removeMarker(final String message) {
+        if (message == null) {
+            return null;
+        }
+
+        final int markerIndex = message.indexOf(MARKER_PREFIX);
+        if (markerIndex < 0) {
+            return message;
+        }
+
+        final int suffixIndex = message.indexOf(MARKER_SUFFIX, markerIndex + MARKER_PREFIX.length());
+        if (suffixIndex < 0) {
+            return message;
+        }
+
+        int endIndex = suffixIndex + 1;
+        if (endIndex < message.length() && message.charAt(endIndex) == ' ') {
+            endIndex++;
+        }
+        return message.substring(0, markerIndex) + message.substring(endIndex);
+    }
+
+    private static boolean isCausedBySessionExpiration(final Throwable throwable) {
+        Throwable current = throwable;
+        for (int depth = 0; current != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            if (current instanceof SessionExpiredException) {
+                return true;
+            }
+            current = current.getCause();
+        }
+        return false;
+    }
+
+    private static String findTaggedMessage(final Throwable throwable) {
+        Throwable current = throwable;
+        for (int depth = 0; current != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            final String message = current.getMessage();
+            if (message != null && message.contains(MARKER_PREFIX)) {
+                return message;
+            }
+            current = current.getCause();
+        }
+        return null;
+    }
+}
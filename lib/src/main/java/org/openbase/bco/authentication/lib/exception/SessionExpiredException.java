@@ -25,6 +25,10 @@ package org.openbase.bco.authentication.lib.exception;
 import org.openbase.jul.exception.RejectedException;
 
 /**
+ * Exception thrown if the session of a ticket ran out.
+ * Its message is tagged with {@link AuthenticationErrorCode#SESSION_EXPIRED} when it is sent to a client,
+ * see {@link AuthenticationErrorCode#tagMessage(Throwable, AuthenticationErrorCode)}.
+ *
  * @author <a href="mailto:thuxohl@techfak.uni-bielefeld.de">Tamino Huxohl</a>
  */
 public class SessionExpiredException extends RejectedException {
@@ -23,6 +23,8 @@ package org.openbase.bco.authentication.lib.future;
  */
 
 import org.openbase.bco.authentication.lib.AuthenticationClientHandler;
+import org.openbase.bco.authentication.lib.AuthenticationClientHandler.RequestTicket;
+import org.openbase.bco.authentication.lib.SessionKey;
 import org.openbase.bco.authentication.lib.SessionManager;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.NotAvailableException;
@@ -55,6 +57,7 @@ public abstract class AbstractAuthenticationFuture<RETURN, INTERNAL> implements
     private final SessionManager sessionManager;
     private final Class<RETURN> returnClass;
     private final TicketAuthenticatorWrapper wrapper;
+    private final RequestTicket requestTicket;
 
     /**
      * Create an AuthenticatedFuture that uses the SessionManager singleton for the verification.
@@ -76,10 +79,39 @@ public abstract class AbstractAuthenticationFuture<RETURN, INTERNAL> implements
      * @param sessionManager The session manager that is used for the verification.
      */
     public AbstractAuthenticationFuture(final Future<INTERNAL> internalFuture, final Class<RETURN> returnClass, final TicketAuthenticatorWrapper wrapper, final SessionManager sessionManager) {
+        this(internalFuture, returnClass, wrapper, null, sessionManager);
+    }
+
+    /**
+     * Create an AuthenticatedFuture that uses the SessionManager singleton for the verification.
+     *
+     * @param internalFuture The internal future whose result is verified.
+     * @param returnClass    Class of type RETURN.
+     * @param requestTicket  The request ticket that was used for the request.
+     */
+    public AbstractAuthenticationFuture(final Future<INTERNAL> internalFuture, final Class<RETURN> returnClass, final RequestTicket requestTicket) {
+        this(internalFuture, returnClass, requestTicket, SessionManager.getInstance());
+    }
+
+    /**
+     * Create an AuthenticatedFuture which verifies the response by only decrypting its authenticator,
+     * because the request ticket remembers the timestamp of the request.
+     *
+     * @param internalFuture The internal future whose result is verified.
+     * @param returnClass    Class of type RETURN.
+     * @param requestTicket  The request ticket that was used for the request.
+     * @param sessionManager The session manager that is used for the verification.
+     */
+    public AbstractAuthenticationFuture(final Future<INTERNAL> internalFuture, final Class<RETURN> returnClass, final RequestTicket requestTicket, final SessionManager sessionManager) {
+        this(internalFuture, returnClass, requestTicket.getTicketAuthenticatorWrapper(), requestTicket, sessionManager);
+    }
+
+    private AbstractAuthenticationFuture(final Future<INTERNAL> internalFuture, final Class<RETURN> returnClass, final TicketAuthenticatorWrapper wrapper, final RequestTicket requestTicket, final SessionManager sessionManager) {
         this.internalFuture = new ReLoginFuture<>(internalFuture, sessionManager);
         this.returnClass = returnClass;
         this.sessionManager = sessionManager;
         this.wrapper = wrapper;
+        this.requestTicket = requestTicket;
 
         synchronized (listSync) {
             if (responseVerificationFuture == null) {
@@ -203,6 +235,11 @@ public abstract class AbstractAuthenticationFuture<RETURN, INTERNAL> implements
                 return;
             }
 
+            if (requestTicket != null) {
+                sessionManager.verifyServiceServerResponse(requestTicket, ticketAuthenticatorWrapper);
+                return;
+            }
+
             sessionManager.updateTicketAuthenticatorWrapper(AuthenticationClientHandler.handleServiceServerResponse(
                     this.sessionManager.getSessionKey(),
                     this.wrapper,
@@ -225,6 +262,19 @@ public abstract class AbstractAuthenticationFuture<RETURN, INTERNAL> implements
         return returnClass;
     }
 
+    /**
+     * Get the session key with which the response is encrypted.
+     * This is the key of the request ticket if available and else the current key of the session manager.
+     *
+     * @return The session key or null if no one is logged in.
+     */
+    protected SessionKey getSessionKey() {
+        if (requestTicket != null) {
+            return requestTicket.getSessionKey();
+        }
+        return sessionManager.getSessionKey();
+    }
+
     /**
      * Get the session manager used by this authenticated future.
      *
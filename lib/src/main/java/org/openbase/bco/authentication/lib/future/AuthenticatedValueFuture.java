@@ -22,9 +22,11 @@ package org.openbase.bco.authentication.lib.future;
  * #L%
  */
 
-import com.google.protobuf.ByteString;
 import com.google.protobuf.Message;
+import org.openbase.bco.authentication.lib.AuthenticationClientHandler.RequestTicket;
 import org.openbase.bco.authentication.lib.EncryptionHelper;
+import org.openbase.bco.authentication.lib.MessageParserRegistry;
+import org.openbase.bco.authentication.lib.SessionKey;
 import org.openbase.bco.authentication.lib.SessionManager;
 import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.InvalidStateException;
@@ -32,8 +34,6 @@ import org.openbase.jul.exception.NotAvailableException;
 import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
 import org.openbase.type.domotic.authentication.TicketAuthenticatorWrapperType.TicketAuthenticatorWrapper;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.concurrent.Future;
 
 /**
@@ -56,6 +56,18 @@ public class AuthenticatedValueFuture<RETURN> extends AbstractAuthenticationFutu
         super(internalFuture, returnClass, wrapper, sessionManager);
     }
 
+    /**
+     * Create an AuthenticationFutureImpl.
+     *
+     * @param internalFuture The internal future whose result is verified.
+     * @param returnClass    Class of type RETURN.
+     * @param requestTicket  The request ticket that was used for the request.
+     * @param sessionManager The session manager that is used for the verification.
+     */
+    public AuthenticatedValueFuture(final Future<AuthenticatedValue> internalFuture, final Class<RETURN> returnClass, final RequestTicket requestTicket, final SessionManager sessionManager) {
+        super(internalFuture, returnClass, requestTicket, sessionManager);
+    }
+
     @Override
     protected TicketAuthenticatorWrapper getTicketFromInternal(final AuthenticatedValue authenticatedValue) throws NotAvailableException {
         try {
@@ -83,19 +95,15 @@ public class AuthenticatedValueFuture<RETURN> extends AbstractAuthenticationFutu
                 return null;
             }
 
-            if (getSessionManager().isLoggedIn()) {
-                return EncryptionHelper.decryptSymmetric(authenticatedValue.getValue(), getSessionManager().getSessionKey(), getReturnClass());
+            final SessionKey sessionKey = getSessionKey();
+            if (sessionKey != null) {
+                return EncryptionHelper.decryptSymmetric(authenticatedValue.getValue(), sessionKey, getReturnClass());
             } else {
-                try {
-                    if (!Message.class.isAssignableFrom(getReturnClass())) {
-                        throw new CouldNotPerformException("AuthenticatedValue has a value but the client method did not expect one");
-                    }
-
-                    Method parseFrom = getReturnClass().getMethod("parseFrom", ByteString.class);
-                    return (RETURN) parseFrom.invoke(null, authenticatedValue.getValue());
-                } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-                    throw new CouldNotPerformException("Could not invoke parseFrom method on [" + getReturnClass().getSimpleName() + "]", ex);
+                if (!Message.class.isAssignableFrom(getReturnClass())) {
+                    throw new CouldNotPerformException("AuthenticatedValue has a value but the client method did not expect one");
                 }
+
+                return MessageParserRegistry.parseFrom(authenticatedValue.getValue(), getReturnClass());
             }
         } catch (CouldNotPerformException ex) {
             throw new CouldNotPerformException("Could not get return value from internal value", ex);
@@ -22,9 +22,10 @@ package org.openbase.bco.authentication.lib.future;
  * #L%
  */
 
+import org.openbase.bco.authentication.lib.SessionKey;
 import org.openbase.bco.authentication.lib.SessionManager;
+import org.openbase.bco.authentication.lib.exception.AuthenticationErrorCode;
 import org.openbase.bco.authentication.lib.exception.SessionExpiredException;
-import org.openbase.jul.exception.CouldNotPerformException;
 import org.openbase.jul.exception.ExceptionProcessor;
 import org.openbase.jul.schedule.FutureWrapper;
 import org.slf4j.Logger;
@@ -37,6 +38,10 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
+ * Future which re-logins the session manager if a request failed because the session expired or because the
+ * authenticator could not decrypt the ticket, e.g. after it restarted.
+ * All requests failing for the same session share a single re-login of the session manager and wait for it.
+ *
  * @author <a href="mailto:pleminoq@openbase.org">Tamino Huxohl</a>
  */
 public class ReLoginFuture<T> implements Future<T>, FutureWrapper<T> {
@@ -45,10 +50,23 @@ public class ReLoginFuture<T> implements Future<T>, FutureWrapper<T> {
 
     private final Future<T> internalFuture;
     private final SessionManager sessionManager;
+    private final SessionKey sessionKey;
 
     public ReLoginFuture(final Future<T> internalFuture, final SessionManager sessionManager) {
+        this(internalFuture, sessionManager, sessionManager.getSessionKey());
+    }
+
+    /**
+     * Create a future for a request performed with a given session.
+     *
+     * @param internalFuture the future of the request.
+     * @param sessionManager the session manager which is logged in again if the request failed.
+     * @param sessionKey     the key of the session with which the request has been performed.
+     */
+    public ReLoginFuture(final Future<T> internalFuture, final SessionManager sessionManager, final SessionKey sessionKey) {
         this.internalFuture = internalFuture;
         this.sessionManager = sessionManager;
+        this.sessionKey = sessionKey;
     }
 
     /**
@@ -90,7 +108,7 @@ public class ReLoginFuture<T> implements Future<T>, FutureWrapper<T> {
         try {
             return internalFuture.get();
         } catch (ExecutionException ex) {
-            throw handleLoginError(ex);
+            throw handleLoginError(ex, Long.MAX_VALUE);
         }
     }
 
@@ -105,27 +123,57 @@ public class ReLoginFuture<T> implements Future<T>, FutureWrapper<T> {
      */
     @Override
     public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        final long startTime = System.nanoTime();
         try {
             return internalFuture.get(timeout, unit);
         } catch (ExecutionException ex) {
-            throw handleLoginError(ex);
+            // the re-login is only awaited for the rest of the timeout
+            throw handleLoginError(ex, unit.toNanos(timeout) - (System.nanoTime() - startTime));
         }
     }
 
-    private ExecutionException handleLoginError(ExecutionException ex) {
+    /**
+     * Re-login the session manager if the request failed because of its session.
+     *
+     * @param ex       the exception with which the request failed.
+     * @param timeout  the time in nanoseconds for which the re-login is awaited or {@link Long#MAX_VALUE} to wait
+     *                 until it is finished. The re-login continues in the background if it is not finished in time.
+     *
+     * @return the exception to be thrown by this future.
+     *
+     * @throws InterruptedException if interrupted while waiting for the re-login.
+     */
+    private ExecutionException handleLoginError(final ExecutionException ex, final long timeout) throws InterruptedException {
         try {
+            // the error code is resolved first because it survives if the middleware flattens the exception
+            if (AuthenticationErrorCode.resolve(ex) == AuthenticationErrorCode.SESSION_EXPIRED) {
+                // session ran out so re-login or logout
+                awaitReLogin(timeout);
+                return ex;
+            }
+
             final Throwable initialCause = ExceptionProcessor.getInitialCause(ex);
             if (initialCause instanceof BadPaddingException || initialCause instanceof SessionExpiredException) {
                 // authenticator could not decrypt ticket (likely the server restarted) or session ran out so re-login or logout
-                sessionManager.reLogin();
+                awaitReLogin(timeout);
             }
-        } catch (CouldNotPerformException exx) {
-            return new ExecutionException("Could not re login", exx);
+        } catch (ExecutionException exx) {
+            return new ExecutionException("Could not re login", exx.getCause());
+        } catch (TimeoutException exx) {
+            LOGGER.debug("Re-login not finished in time, return request error without waiting any longer");
         }
         // was no login error so just return the exception
         return ex;
     }
 
+    private void awaitReLogin(final long timeout) throws InterruptedException, ExecutionException, TimeoutException {
+        if (timeout == Long.MAX_VALUE) {
+            sessionManager.reLoginAsync(sessionKey).get();
+        } else {
+            sessionManager.reLoginAsync(sessionKey).get(Math.max(0, timeout), TimeUnit.NANOSECONDS);
+        }
+    }
+
     /**
      * {@inheritDoc}
      * @return {@inheritDoc}
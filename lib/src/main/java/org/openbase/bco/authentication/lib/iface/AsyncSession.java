@@ -0,0 +1,83 @@
+package org.openbase.bco.authentication.lib.iface;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+
+import org.openbase.type.domotic.authentication.LoginCredentialsType.LoginCredentials;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of the operations of a {@link Session} which have to contact the authenticator.
+ * The returned futures are completed by the thread receiving the response of the authenticator, so the calling
+ * thread is never blocked. The blocking methods of {@link Session} wait for these futures.
+ * Failures are reported with the same {@link org.openbase.jul.exception.CouldNotPerformException} types as
+ * thrown by the blocking methods.
+ */
+public interface AsyncSession {
+
+    /**
+     * Login a user asynchronously. If a client is already logged in the user will be logged in on top of the client.
+     *
+     * @param id           the id of the user to be logged in.
+     * @param credentials  the credentials of the user.
+     * @param stayLoggedIn if the ticket of the user is automatically extended before it expires.
+     *
+     * @return a future completed when the user is logged in.
+     */
+    CompletableFuture<Void> loginUserAsync(String id, LoginCredentials credentials, boolean stayLoggedIn);
+
+    /**
+     * Login a client asynchronously. If a user is logged in it will be logged out.
+     *
+     * @param id           the id of the client to be logged in.
+     * @param credentials  the credentials of the client.
+     * @param stayLoggedIn if the ticket of the client is automatically extended before it expires.
+     *
+     * @return a future completed when the client is logged in.
+     */
+    CompletableFuture<Void> loginClientAsync(String id, LoginCredentials credentials, boolean stayLoggedIn);
+
+    /**
+     * Renew the ticket of the current session asynchronously.
+     *
+     * @return a future completed when the renewed ticket is set.
+     */
+    CompletableFuture<Void> renewAsync();
+
+    /**
+     * Logout immediately. Logins which are queued or in progress are cancelled. If a user and a client were logged in
+     * the client is logged in again asynchronously.
+     *
+     * @return a future completed when the client is logged in again or right away if no client has to be logged in.
+     */
+    CompletableFuture<Void> logoutAsync();
+
+    /**
+     * Logout and re-login what is possible asynchronously while skipping notifications.
+     * Calls made while a re-login is in progress join it instead of starting another one.
+     *
+     * @return a future completed when the login is finished.
+     */
+    CompletableFuture<Void> reLoginAsync();
+}
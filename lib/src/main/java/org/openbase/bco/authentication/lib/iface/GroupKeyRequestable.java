@@ -0,0 +1,50 @@
+package org.openbase.bco.authentication.lib.iface;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jul.annotation.RPCMethod;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
+import org.openbase.type.domotic.authentication.TicketAuthenticatorWrapperType.TicketAuthenticatorWrapper;
+
+/**
+ * Interface of controllers which push the data filtered for a permission class to all its members.
+ * The data is encrypted with a rotating group key of the permission class, which members receive by this request.
+ */
+public interface GroupKeyRequestable {
+
+    String REQUEST_GROUP_KEY_AUTHENTICATED_METHOD = "requestGroupKeyAuthenticated";
+
+    /**
+     * Request the group key of the permission class of the user and client of a ticket.
+     *
+     * @param ticketWrapper the ticket of the user and client.
+     *
+     * @return an authenticated value containing the {@link org.openbase.bco.authentication.lib.com.GroupKeyGrant}
+     * encrypted with the session key of the ticket.
+     *
+     * @throws CouldNotPerformException if the ticket is invalid or the group key cannot be granted.
+     */
+    @RPCMethod
+    AuthenticatedValue requestGroupKeyAuthenticated(final TicketAuthenticatorWrapper ticketWrapper) throws CouldNotPerformException;
+}
@@ -0,0 +1,56 @@
+package org.openbase.bco.authentication.lib.iface;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.bco.authentication.lib.StoreChange;
+import org.openbase.bco.authentication.lib.StoreSnapshot;
+
+/**
+ * Listener for the change stream of a protected store.
+ * Both methods are called asynchronously and never concurrently for the same subscription,
+ * so implementations do not have to synchronize between them.
+ *
+ * @param <DT> the internal data type of the observed store
+ */
+public interface StoreChangeListener<DT> {
+
+    /**
+     * Called for every change of the store in the order of the sequence numbers.
+     *
+     * @param change the change.
+     *
+     * @throws Exception if the change could not be handled. The exception is logged and the stream continues with the next change.
+     */
+    void handleChange(final StoreChange<DT> change) throws Exception;
+
+    /**
+     * Called if the listener cannot be updated by single changes anymore, e.g. because it fell behind
+     * the buffered changes or because the store was reloaded. The listener should replace its
+     * whole state by the snapshot. Afterwards changes continue with the sequence number following the snapshot.
+     *
+     * @param snapshot a snapshot of the store.
+     *
+     * @throws Exception if the snapshot could not be handled. The exception is logged and the stream continues after the snapshot.
+     */
+    void handleResync(final StoreSnapshot<DT> snapshot) throws Exception;
+}
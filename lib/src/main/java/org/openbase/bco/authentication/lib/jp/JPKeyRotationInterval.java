@@ -0,0 +1,65 @@
+package org.openbase.bco.authentication.lib.jp;
+
+/*-
+ * #%L
+ * BCO Authentication Library
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.openbase.jps.exception.JPNotAvailableException;
+import org.openbase.jps.exception.JPValidationException;
+import org.openbase.jps.preset.AbstractJPTime;
+
+/**
+ * Property defining the interval in which the authenticator rotates the keys used to encrypt tickets.
+ * Rotation is disabled by default.
+ */
+public class JPKeyRotationInterval extends AbstractJPTime {
+
+    public final static String[] COMMAND_IDENTIFIERS = {"--key-rotation-interval"};
+
+    /**
+     * Value disabling the key rotation.
+     */
+    public static final long DISABLED = 0;
+
+    public JPKeyRotationInterval() {
+        super(COMMAND_IDENTIFIERS);
+    }
+
+    @Override
+    protected Long getPropertyDefaultValue() throws JPNotAvailableException {
+        return DISABLED;
+    }
+
+    @Override
+    protected void validate() throws JPValidationException {
+        super.validate();
+
+        final long keyRotationInterval = getValue();
+        if (keyRotationInterval < 0) {
+            throw new JPValidationException("KeyRotationInterval is negative[" + keyRotationInterval + "]");
+        }
+    }
+
+    @Override
+    public String getTimeDescription() {
+        return "Set the interval in which the keys used to encrypt tickets are rotated. Rotation is disabled if it is 0.";
+    }
+}
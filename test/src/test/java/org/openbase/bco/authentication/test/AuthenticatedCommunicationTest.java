@@ -46,6 +46,9 @@ import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
 import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertTrue;
 
 public class AuthenticatedCommunicationTest extends AuthenticationTest {
@@ -152,6 +155,164 @@ public class AuthenticatedCommunicationTest extends AuthenticationTest {
         assertTrue(!remoteService.getData().getAgentUnitConfigList().contains(userAgentConfig.build()));
     }
 
+    /**
+     * Test that data filtered for a user is reused until the data changes.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 20000)
+    public void testFilteredDataCache() throws Exception {
+        System.out.println("testFilteredDataCache");
+
+        UnitConfig.Builder otherAgentConfig = UnitConfig.newBuilder();
+        otherAgentConfig.setId("OtherAgent");
+        otherAgentConfig.setUnitType(UnitType.AGENT);
+        otherAgentConfig.getPermissionConfigBuilder().getOtherPermissionBuilder().setRead(true).setWrite(false).setAccess(true);
+
+        UnitConfig.Builder userAgentConfig = UnitConfig.newBuilder();
+        userAgentConfig.setId("UserAgent");
+        userAgentConfig.setUnitType(UnitType.AGENT);
+        userAgentConfig.getPermissionConfigBuilder().getOtherPermissionBuilder().setRead(false).setAccess(false).setWrite(false);
+        userAgentConfig.getPermissionConfigBuilder().getOwnerPermissionBuilder().setRead(true).setAccess(true).setWrite(true);
+        userAgentConfig.getPermissionConfigBuilder().setOwnerId(USER_ID);
+
+        try (ClosableDataBuilder<Builder> dataBuilder = communicationService.getDataBuilderInterruptible(this)) {
+            dataBuilder.getInternalBuilder().addAgentUnitConfig(otherAgentConfig);
+            dataBuilder.getInternalBuilder().addAgentUnitConfig(userAgentConfig);
+        }
+
+        SessionManager.getInstance().loginUser(USER_ID, USER_PASSWORD, false);
+        try {
+            remoteService.requestData().get();
+            assertTrue(remoteService.getData().getAgentUnitConfigList().contains(userAgentConfig.build()));
+
+            // further requests for unchanged data do not filter it again
+            final int filterCount = communicationService.getUserFilterCount();
+            for (int i = 0; i < 3; i++) {
+                remoteService.requestData().get();
+            }
+            assertEquals(filterCount, communicationService.getUserFilterCount());
+            assertTrue(remoteService.getData().getAgentUnitConfigList().contains(userAgentConfig.build()));
+
+            // changed data is filtered again
+            otherAgentConfig.getPermissionConfigBuilder().getOtherPermissionBuilder().setAccess(false);
+            try (ClosableDataBuilder<Builder> dataBuilder = communicationService.getDataBuilderInterruptible(this)) {
+                dataBuilder.getInternalBuilder().setAgentUnitConfig(0, otherAgentConfig);
+            }
+            remoteService.requestData().get();
+            assertTrue(communicationService.getUserFilterCount() > filterCount);
+            assertTrue(remoteService.getData().getAgentUnitConfigList().contains(otherAgentConfig.build()));
+            assertTrue(remoteService.getData().getAgentUnitConfigList().contains(userAgentConfig.build()));
+
+            // unchanged data is filtered again after permissions changed
+            final int changedFilterCount = communicationService.getUserFilterCount();
+            communicationService.permissionsChanged();
+            remoteService.requestData().get();
+            assertTrue(communicationService.getUserFilterCount() > changedFilterCount);
+        } finally {
+            SessionManager.getInstance().logout();
+        }
+    }
+
+    /**
+     * Test that data changes are pushed to a logged in remote without authenticated data requests.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 20000)
+    public void testGroupDataPush() throws Exception {
+        System.out.println("testGroupDataPush");
+
+        UnitConfig.Builder otherAgentConfig = UnitConfig.newBuilder();
+        otherAgentConfig.setId("OtherAgent");
+        otherAgentConfig.setUnitType(UnitType.AGENT);
+        otherAgentConfig.getPermissionConfigBuilder().getOtherPermissionBuilder().setRead(true).setWrite(false).setAccess(true);
+
+        UnitConfig.Builder userAgentConfig = UnitConfig.newBuilder();
+        userAgentConfig.setId("UserAgent");
+        userAgentConfig.setUnitType(UnitType.AGENT);
+        userAgentConfig.getPermissionConfigBuilder().getOtherPermissionBuilder().setRead(false).setAccess(false).setWrite(false);
+        userAgentConfig.getPermissionConfigBuilder().getOwnerPermissionBuilder().setRead(true).setAccess(true).setWrite(true);
+        userAgentConfig.getPermissionConfigBuilder().setOwnerId(USER_ID);
+
+        try (ClosableDataBuilder<Builder> dataBuilder = communicationService.getDataBuilderInterruptible(this)) {
+            dataBuilder.getInternalBuilder().addAgentUnitConfig(otherAgentConfig);
+            dataBuilder.getInternalBuilder().addAgentUnitConfig(userAgentConfig);
+        }
+
+        SessionManager.getInstance().loginUser(USER_ID, USER_PASSWORD, false);
+        try {
+            while (!remoteService.isReceivingGroupData()) {
+                Thread.sleep(50);
+            }
+            remoteService.requestData().get();
+            assertTrue(remoteService.getData().getAgentUnitConfigList().contains(userAgentConfig.build()));
+
+            // the change is pushed filtered for the user so the remote does not request it
+            final int requestCount = communicationService.getDataRequestCount();
+            otherAgentConfig.getPermissionConfigBuilder().getOtherPermissionBuilder().setAccess(false);
+            try (ClosableDataBuilder<Builder> dataBuilder = communicationService.getDataBuilderInterruptible(this)) {
+                dataBuilder.getInternalBuilder().setAgentUnitConfig(0, otherAgentConfig);
+            }
+            while (!remoteService.getData().getAgentUnitConfigList().contains(otherAgentConfig.build())) {
+                Thread.sleep(50);
+            }
+            assertTrue(remoteService.getData().getAgentUnitConfigList().contains(userAgentConfig.build()));
+            assertEquals(requestCount, communicationService.getDataRequestCount());
+        } finally {
+            SessionManager.getInstance().logout();
+        }
+    }
+
+    /**
+     * Test that a remote does not miss data changes if the controller closed the channel of its group data.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 30000)
+    public void testGroupDataRestart() throws Exception {
+        System.out.println("testGroupDataRestart");
+
+        UnitConfig.Builder otherAgentConfig = UnitConfig.newBuilder();
+        otherAgentConfig.setId("OtherAgent");
+        otherAgentConfig.setUnitType(UnitType.AGENT);
+        otherAgentConfig.getPermissionConfigBuilder().getOtherPermissionBuilder().setRead(true).setWrite(false).setAccess(true);
+
+        UnitConfig.Builder userAgentConfig = UnitConfig.newBuilder();
+        userAgentConfig.setId("UserAgent");
+        userAgentConfig.setUnitType(UnitType.AGENT);
+        userAgentConfig.getPermissionConfigBuilder().getOtherPermissionBuilder().setRead(false).setAccess(false).setWrite(false);
+        userAgentConfig.getPermissionConfigBuilder().getOwnerPermissionBuilder().setRead(true).setAccess(true).setWrite(true);
+        userAgentConfig.getPermissionConfigBuilder().setOwnerId(USER_ID);
+
+        try (ClosableDataBuilder<Builder> dataBuilder = communicationService.getDataBuilderInterruptible(this)) {
+            dataBuilder.getInternalBuilder().addAgentUnitConfig(otherAgentConfig);
+            dataBuilder.getInternalBuilder().addAgentUnitConfig(userAgentConfig);
+        }
+
+        SessionManager.getInstance().loginUser(USER_ID, USER_PASSWORD, false);
+        try {
+            while (!remoteService.isReceivingGroupData()) {
+                Thread.sleep(50);
+            }
+
+            // restarting the controller closes all channels of group data
+            communicationService.deactivate();
+            communicationService.activate();
+
+            otherAgentConfig.getPermissionConfigBuilder().getOtherPermissionBuilder().setAccess(false);
+            try (ClosableDataBuilder<Builder> dataBuilder = communicationService.getDataBuilderInterruptible(this)) {
+                dataBuilder.getInternalBuilder().setAgentUnitConfig(0, otherAgentConfig);
+            }
+            while (!remoteService.getData().getAgentUnitConfigList().contains(otherAgentConfig.build())) {
+                Thread.sleep(50);
+            }
+            assertTrue(remoteService.getData().getAgentUnitConfigList().contains(userAgentConfig.build()));
+        } finally {
+            SessionManager.getInstance().logout();
+        }
+    }
+
     private class AuthenticatedControllerServer extends AbstractAuthenticatedControllerServer<UnitRegistryData, Builder> {
 
         /**
@@ -163,8 +324,15 @@ public class AuthenticatedCommunicationTest extends AuthenticationTest {
             super(UnitRegistryData.newBuilder());
         }
 
+        private final AtomicInteger userFilterCounter = new AtomicInteger(0);
+        private final AtomicInteger dataRequestCounter = new AtomicInteger(0);
+
         @Override
         protected UnitRegistryData filterDataForUser(UnitRegistryData.Builder dataBuilder, UserClientPair userClientPair) {
+            if (!userClientPair.getUserId().isEmpty() || !userClientPair.getClientId().isEmpty()) {
+                userFilterCounter.incrementAndGet();
+            }
+
             // remove all agent unit configs for which the user does not have direct read permissions
             for (int i = 0; i < dataBuilder.getAgentUnitConfigCount(); i++) {
                 if (!canRead(dataBuilder.getAgentUnitConfig(i), userClientPair)) {
@@ -189,6 +357,18 @@ public class AuthenticatedCommunicationTest extends AuthenticationTest {
             return unitConfig.getPermissionConfig().getOtherPermission().getRead();
         }
 
+        public int getUserFilterCount() {
+            return userFilterCounter.get();
+        }
+
+        public int getDataRequestCount() {
+            return dataRequestCounter.get();
+        }
+
+        public void permissionsChanged() {
+            invalidateFilteredData();
+        }
+
         @Override
         public UnitRegistryData requestStatus() throws CouldNotPerformException {
             return super.requestStatus();
@@ -196,6 +376,7 @@ public class AuthenticatedCommunicationTest extends AuthenticationTest {
 
         @Override
         public AuthenticatedValue requestDataAuthenticated(TicketAuthenticatorWrapper ticket) throws CouldNotPerformException {
+            dataRequestCounter.incrementAndGet();
             return super.requestDataAuthenticated(ticket);
         }
 
@@ -0,0 +1,102 @@
+package org.openbase.bco.authentication.test;
+
+/*-
+ * #%L
+ * BCO Authentication Test
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.openbase.bco.authentication.lib.exception.AuthenticationErrorCode;
+import org.openbase.bco.authentication.lib.exception.SessionExpiredException;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.RejectedException;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+public class AuthenticationErrorCodeTest {
+
+    /**
+     * Test resolving error codes from tagged messages and exceptions.
+     */
+    @Test(timeout = 5000)
+    public void testResolve() {
+        System.out.println("testResolve");
+
+        for (final AuthenticationErrorCode errorCode : AuthenticationErrorCode.values()) {
+            assertEquals(errorCode, AuthenticationErrorCode.resolve(errorCode.tag("message")));
+        }
+
+        assertEquals(AuthenticationErrorCode.UNKNOWN, AuthenticationErrorCode.resolve("RejectedException: message\n"));
+        assertEquals(AuthenticationErrorCode.UNKNOWN, AuthenticationErrorCode.resolve((String) null));
+        assertEquals(AuthenticationErrorCode.UNKNOWN, AuthenticationErrorCode.resolve(AuthenticationErrorCode.MARKER_PREFIX + "NO_CODE] message"));
+
+        // the code of a cause is found
+        final SessionExpiredException sessionExpiredException = new SessionExpiredException(AuthenticationErrorCode.SESSION_EXPIRED.tag("Your session has expired!"));
+        final ExecutionException ex = new ExecutionException(new CouldNotPerformException("Request failed", sessionExpiredException));
+        assertEquals(AuthenticationErrorCode.SESSION_EXPIRED, AuthenticationErrorCode.resolve(ex));
+        assertEquals("Your session has expired!", AuthenticationErrorCode.extractMessage(ex));
+
+        // wrapping keeps the most specific code
+        final String message = AuthenticationErrorCode.REJECTED.tag(sessionExpiredException.getMessage());
+        assertEquals(AuthenticationErrorCode.SESSION_EXPIRED, AuthenticationErrorCode.resolve(message));
+
+        // locally thrown exceptions are not tagged
+        assertEquals(AuthenticationErrorCode.UNKNOWN, AuthenticationErrorCode.resolve(new SessionExpiredException()));
+    }
+
+    /**
+     * Test tagging exceptions sent to a client and removing the marker from recreated exceptions.
+     */
+    @Test(timeout = 5000)
+    public void testTagMessage() {
+        System.out.println("testTagMessage");
+
+        // an expired session is tagged as such even if wrapped
+        final CouldNotPerformException expired = new CouldNotPerformException("Could not validate ticket", new SessionExpiredException("Ticket ran out"));
+        assertEquals(AuthenticationErrorCode.SESSION_EXPIRED, AuthenticationErrorCode.resolve(AuthenticationErrorCode.tagMessage(expired, AuthenticationErrorCode.REJECTED)));
+
+        final String message = AuthenticationErrorCode.tagMessage(new RejectedException("Ticket rejected"), AuthenticationErrorCode.REJECTED);
+        assertEquals(AuthenticationErrorCode.REJECTED, AuthenticationErrorCode.resolve(message));
+
+        // the marker does not reach the message of a recreated exception
+        final CouldNotPerformException recreated = AuthenticationErrorCode.resolve(message).toException(message);
+        assertTrue(recreated instanceof RejectedException);
+        assertFalse(recreated.getMessage().contains(AuthenticationErrorCode.MARKER_PREFIX));
+        assertEquals("Ticket rejected", AuthenticationErrorCode.removeMarker(AuthenticationErrorCode.PERMISSION_DENIED.tag("Ticket rejected")));
+    }
+
+    /**
+     * Test extracting a message if the middleware flattens the stack trace into the message.
+     */
+    @Test(timeout = 5000)
+    public void testExtractMessageFromStackTrace() {
+        System.out.println("testExtractMessageFromStackTrace");
+
+        final String flattenedMessage = "org.openbase.jul.exception.RejectedException: " + AuthenticationErrorCode.REJECTED.tag("Ticket rejected") + "\n"
+                + "\tat org.openbase.bco.authentication.core.AuthenticatorController.lambda$validateClientServerTicket$2(AuthenticatorController.java:323)\n";
+        final RuntimeException ex = new RuntimeException(flattenedMessage);
+
+        assertEquals(AuthenticationErrorCode.REJECTED, AuthenticationErrorCode.resolve(ex));
+        assertEquals("Ticket rejected", AuthenticationErrorCode.extractMessage(ex));
+        assertTrue(AuthenticationErrorCode.REJECTED.toException("Ticket rejected") instanceof RejectedException);
+    }
+}
@@ -37,7 +37,9 @@ import org.openbase.type.domotic.unit.authorizationgroup.AuthorizationGroupConfi
 import org.openbase.type.domotic.unit.location.LocationConfigType.LocationConfig;
 import org.openbase.type.spatial.PlacementConfigType.PlacementConfig;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -293,6 +295,57 @@ public class AuthorizationHelperTest {
         assertEquals(true, AuthorizationHelper.canAccess(unitConfig, userClientPair2, groups, locations));
     }
 
+    /**
+     * Validate that evaluating all permissions of a user@client at once matches the single checks.
+     */
+    @Test
+    public void testUserClientPermission() {
+        System.out.println("testUserClientPermission");
+
+        // create a location which can only be read by clients
+        UnitConfig.Builder locationBuilder = UnitConfig.newBuilder()
+                .setId(LOCATION_1)
+                .setUnitType(UnitType.LOCATION)
+                .setLocationConfig(LocationConfig.newBuilder().setRoot(false))
+                .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(LOCATION_ROOT));
+        locationBuilder.getPermissionConfigBuilder().setOtherPermission(NONE).addGroupPermissionBuilder().setGroupId(GROUP_CLIENTS).setPermission(READ_ONLY);
+        locations.put(LOCATION_1, new IdentifiableMessage<>(locationBuilder.build()));
+
+        final UserClientPair userClientPair1 = UserClientPair.newBuilder().setUserId(USER_1).setClientId(CLIENT_1).build();
+        final UserClientPair userClientPair2 = UserClientPair.newBuilder().setUserId(USER_2).setClientId(CLIENT_1).build();
+        final UserClientPair userOnlyPair = UserClientPair.newBuilder().setUserId(USER_1).build();
+
+        for (final String locationId : new String[]{LOCATION_ROOT, LOCATION_1}) {
+            // the owner has all permissions while clients can only read
+            final UnitConfig.Builder unitConfigBuilder = UnitConfig.newBuilder().setId(UNIT_ID).setPlacementConfig(PlacementConfig.newBuilder().setLocationId(locationId));
+            unitConfigBuilder.getPermissionConfigBuilder()
+                    .setOwnerId(USER_1)
+                    .setOwnerPermission(RWX)
+                    .setOtherPermission(NONE)
+                    .addGroupPermissionBuilder().setGroupId(GROUP_CLIENTS).setPermission(READ_ONLY);
+            final UnitConfig unitConfig = unitConfigBuilder.build();
+
+            for (final UserClientPair userClientPair : new UserClientPair[]{userClientPair1, userClientPair2, userOnlyPair}) {
+                final Permission expected = Permission.newBuilder()
+                        .setAccess(AuthorizationHelper.canAccess(unitConfig, userClientPair, groups, locations))
+                        .setRead(AuthorizationHelper.canRead(unitConfig, userClientPair, groups, locations))
+                        .setWrite(AuthorizationHelper.canWrite(unitConfig, userClientPair, groups, locations))
+                        .build();
+                assertEquals(expected, AuthorizationHelper.getPermission(unitConfig, userClientPair, groups, locations));
+            }
+        }
+
+        // at the root location the owner keeps all permissions and the client of another user can only read
+        final UnitConfig.Builder unitConfigBuilder = UnitConfig.newBuilder().setId(UNIT_ID).setPlacementConfig(PlacementConfig.newBuilder().setLocationId(LOCATION_ROOT));
+        unitConfigBuilder.getPermissionConfigBuilder()
+                .setOwnerId(USER_1)
+                .setOwnerPermission(RWX)
+                .setOtherPermission(NONE)
+                .addGroupPermissionBuilder().setGroupId(GROUP_CLIENTS).setPermission(READ_ONLY);
+        assertEquals(RWX, AuthorizationHelper.getPermission(unitConfigBuilder.build(), userClientPair1, groups, locations));
+        assertEquals(READ_ONLY, AuthorizationHelper.getPermission(unitConfigBuilder.build(), userClientPair2, groups, locations));
+    }
+
     @Test
     public void testLocationPermission() throws Exception {
         LocationConfig location1 = LocationConfig.newBuilder().setRoot(false).build();
@@ -364,4 +417,130 @@ public class AuthorizationHelperTest {
         // validate that user now has rwx permissions
         assertEquals("User is added as a group but did not get the according permissions", RWX, AuthorizationHelper.getPermission(unitConfigBuilder.build(), userId, groups, locations));
     }
+
+    /**
+     * Validate that cached permissions of a unit are updated if a location further up the hierarchy changes.
+     */
+    @Test
+    public void testChangedParentLocation() {
+        System.out.println("testChangedParentLocation");
+
+        // create a location below the root location which inherits all permissions
+        UnitConfig.Builder locationBuilder = UnitConfig.newBuilder()
+                .setId(LOCATION_1)
+                .setUnitType(UnitType.LOCATION)
+                .setLocationConfig(LocationConfig.newBuilder().setRoot(false))
+                .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(LOCATION_ROOT));
+        locations.put(LOCATION_1, new IdentifiableMessage<>(locationBuilder.build()));
+
+        // create a unit at this location which also inherits all permissions
+        final UnitConfig unitConfig = UnitConfig.newBuilder().setId(UNIT_ID).setPlacementConfig(PlacementConfig.newBuilder().setLocationId(LOCATION_1)).build();
+        assertEquals(READ_ONLY, AuthorizationHelper.getPermission(unitConfig, USER_1, groups, locations));
+
+        // grant all permissions to everyone at the root location
+        final UnitConfig.Builder rootLocationBuilder = locations.get(LOCATION_ROOT).getMessage().toBuilder();
+        rootLocationBuilder.getPermissionConfigBuilder().setOtherPermission(RWX);
+        locations.put(LOCATION_ROOT, new IdentifiableMessage<>(rootLocationBuilder.build()));
+        assertEquals(RWX, AuthorizationHelper.getPermission(unitConfig, USER_1, groups, locations));
+
+        // revoke all permissions at the intermediate location
+        locationBuilder.getPermissionConfigBuilder().setOtherPermission(NONE);
+        locations.put(LOCATION_1, new IdentifiableMessage<>(locationBuilder.build()));
+        assertEquals(NONE, AuthorizationHelper.getPermission(unitConfig, USER_1, groups, locations));
+    }
+
+    /**
+     * Validate that locations maps sharing location ids and unit configs resolve their permissions independently.
+     */
+    @Test
+    public void testSeparateLocationMaps() {
+        System.out.println("testSeparateLocationMaps");
+
+        // create a second locations map with the same location below a root location which grants all permissions
+        final UnitConfig location = UnitConfig.newBuilder()
+                .setId(LOCATION_1)
+                .setUnitType(UnitType.LOCATION)
+                .setLocationConfig(LocationConfig.newBuilder().setRoot(false))
+                .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(LOCATION_ROOT))
+                .build();
+        locations.put(LOCATION_1, new IdentifiableMessage<>(location));
+        final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> otherLocations = new HashMap<>();
+        final UnitConfig.Builder rootLocationBuilder = locations.get(LOCATION_ROOT).getMessage().toBuilder();
+        rootLocationBuilder.getPermissionConfigBuilder().setOtherPermission(RWX);
+        otherLocations.put(LOCATION_ROOT, new IdentifiableMessage<>(rootLocationBuilder.build()));
+        otherLocations.put(LOCATION_1, new IdentifiableMessage<>(location));
+
+        // resolving the permissions alternately must not mix up the locations maps
+        final UnitConfig unitConfig = UnitConfig.newBuilder().setId(UNIT_ID).setPlacementConfig(PlacementConfig.newBuilder().setLocationId(LOCATION_1)).build();
+        for (int i = 0; i < 3; i++) {
+            assertEquals(READ_ONLY, AuthorizationHelper.getPermission(unitConfig, USER_1, groups, locations));
+            assertEquals(RWX, AuthorizationHelper.getPermission(unitConfig, USER_1, groups, otherLocations));
+        }
+    }
+
+    /**
+     * Validate that filtering many units at once matches the single read checks.
+     */
+    @Test
+    public void testFilterReadable() {
+        System.out.println("testFilterReadable");
+
+        // create a location which can only be read by clients and a location below it which can be read by everyone
+        UnitConfig.Builder locationBuilder = UnitConfig.newBuilder()
+                .setId(LOCATION_1)
+                .setUnitType(UnitType.LOCATION)
+                .setLocationConfig(LocationConfig.newBuilder().setRoot(false))
+                .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(LOCATION_ROOT));
+        locationBuilder.getPermissionConfigBuilder().setOtherPermission(NONE).addGroupPermissionBuilder().setGroupId(GROUP_CLIENTS).setPermission(READ_ONLY);
+        locations.put(LOCATION_1, new IdentifiableMessage<>(locationBuilder.build()));
+        final String location2 = "location2";
+        locationBuilder = UnitConfig.newBuilder()
+                .setId(location2)
+                .setUnitType(UnitType.LOCATION)
+                .setLocationConfig(LocationConfig.newBuilder().setRoot(false))
+                .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(LOCATION_1));
+        locationBuilder.getPermissionConfigBuilder().setOtherPermission(READ_ONLY);
+        locations.put(location2, new IdentifiableMessage<>(locationBuilder.build()));
+
+        // create enough units with different owners and group permissions to filter them in parallel
+        final String[] locationIds = {LOCATION_ROOT, LOCATION_1, location2};
+        final String[] principalIds = {USER_1, USER_2, USER_3, CLIENT_1, GROUP_1, GROUP_2, GROUP_CLIENTS};
+        final List<UnitConfig> unitConfigList = new ArrayList<>();
+        for (int i = 0; i < 2048; i++) {
+            final UnitConfig.Builder unitConfigBuilder = UnitConfig.newBuilder().setId(UNIT_ID + i).setPlacementConfig(PlacementConfig.newBuilder().setLocationId(locationIds[i % locationIds.length]));
+            if (i % 5 != 0) {
+                unitConfigBuilder.getPermissionConfigBuilder()
+                        .setOwnerId(principalIds[i % principalIds.length])
+                        .setOwnerPermission((i % 2 == 0) ? RWX : NONE)
+                        .setOtherPermission(NONE)
+                        .addGroupPermissionBuilder().setGroupId(principalIds[(i / 7) % principalIds.length]).setPermission(READ_ONLY);
+            }
+            unitConfigList.add(unitConfigBuilder.build());
+        }
+        unitConfigList.add(locations.get(LOCATION_1).getMessage());
+        unitConfigList.add(locations.get(location2).getMessage());
+
+        final UserClientPair[] userClientPairs = {
+                UserClientPair.getDefaultInstance(),
+                UserClientPair.newBuilder().setUserId(USER_1).build(),
+                UserClientPair.newBuilder().setUserId(USER_2).setClientId(CLIENT_1).build(),
+                UserClientPair.newBuilder().setUserId(USER_3).build(),
+                UserClientPair.newBuilder().setClientId(CLIENT_1).build()
+        };
+        for (final UserClientPair userClientPair : userClientPairs) {
+            final List<UnitConfig> expected = new ArrayList<>();
+            for (final UnitConfig unitConfig : unitConfigList) {
+                if (AuthorizationHelper.canRead(unitConfig, userClientPair, groups, locations)) {
+                    expected.add(unitConfig);
+                }
+            }
+            assertEquals(expected, AuthorizationHelper.filterReadable(unitConfigList, userClientPair, groups, locations));
+
+            // small collections are filtered sequentially
+            final List<UnitConfig> smallUnitConfigList = unitConfigList.subList(0, 16);
+            final List<UnitConfig> smallExpected = new ArrayList<>(expected);
+            smallExpected.retainAll(smallUnitConfigList);
+            assertEquals(smallExpected, AuthorizationHelper.filterReadable(smallUnitConfigList, userClientPair, groups, locations));
+        }
+    }
 }
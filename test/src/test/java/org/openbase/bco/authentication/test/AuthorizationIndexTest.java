@@ -0,0 +1,217 @@
+package org.openbase.bco.authentication.test;
+
+/*-
+ * #%L
+ * BCO Authentication Test
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.openbase.bco.authentication.lib.AuthorizationHelper;
+import org.openbase.bco.authentication.lib.AuthorizationIndex;
+import org.openbase.jul.extension.protobuf.IdentifiableMessage;
+import org.openbase.type.domotic.authentication.PermissionConfigType.PermissionConfig;
+import org.openbase.type.domotic.authentication.PermissionType.Permission;
+import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+import org.openbase.type.domotic.unit.UnitConfigType.UnitConfig;
+import org.openbase.type.domotic.unit.UnitTemplateType.UnitTemplate.UnitType;
+import org.openbase.type.domotic.unit.authorizationgroup.AuthorizationGroupConfigType.AuthorizationGroupConfig;
+import org.openbase.type.domotic.unit.location.LocationConfigType.LocationConfig;
+import org.openbase.type.spatial.PlacementConfigType.PlacementConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class AuthorizationIndexTest {
+
+    private static final int USER_COUNT = 8;
+    private static final int CLIENT_COUNT = 3;
+    private static final int GROUP_COUNT = 5;
+    private static final int LOCATION_COUNT = 12;
+    private static final int UNIT_COUNT = 40;
+    private static final String LOCATION_ROOT = "root";
+
+    private final Random random = new Random(42);
+    private final List<String> principalIdList = new ArrayList<>();
+    private final List<String> locationIdList = new ArrayList<>();
+    private final List<UnitConfig> unitConfigList = new ArrayList<>();
+    private final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> groups = new HashMap<>();
+    private final Map<String, IdentifiableMessage<String, UnitConfig, UnitConfig.Builder>> locations = new HashMap<>();
+
+    public AuthorizationIndexTest() {
+        for (int i = 0; i < USER_COUNT; i++) {
+            principalIdList.add("user" + i);
+        }
+        for (int i = 0; i < CLIENT_COUNT; i++) {
+            principalIdList.add("client" + i);
+        }
+
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            groups.put("group" + i, new IdentifiableMessage<>(createGroup("group" + i)));
+        }
+
+        locationIdList.add(LOCATION_ROOT);
+        locations.put(LOCATION_ROOT, new IdentifiableMessage<>(UnitConfig.newBuilder()
+                .setId(LOCATION_ROOT)
+                .setUnitType(UnitType.LOCATION)
+                .setLocationConfig(LocationConfig.newBuilder().setRoot(true))
+                .setPermissionConfig(createPermissionConfig())
+                .build()));
+        for (int i = 0; i < LOCATION_COUNT; i++) {
+            final UnitConfig.Builder locationBuilder = UnitConfig.newBuilder()
+                    .setId("location" + i)
+                    .setUnitType(UnitType.LOCATION)
+                    .setLocationConfig(LocationConfig.newBuilder().setRoot(false))
+                    .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(locationIdList.get(random.nextInt(locationIdList.size()))));
+            if (random.nextBoolean()) {
+                locationBuilder.setPermissionConfig(createPermissionConfig());
+            }
+            locationIdList.add(locationBuilder.getId());
+            locations.put(locationBuilder.getId(), new IdentifiableMessage<>(locationBuilder.build()));
+        }
+
+        for (int i = 0; i < UNIT_COUNT; i++) {
+            final UnitConfig.Builder unitConfigBuilder = UnitConfig.newBuilder()
+                    .setId("unit" + i)
+                    .setPlacementConfig(PlacementConfig.newBuilder().setLocationId(locationIdList.get(random.nextInt(locationIdList.size()))));
+            if (random.nextBoolean()) {
+                unitConfigBuilder.setPermissionConfig(createPermissionConfig());
+            }
+            unitConfigList.add(unitConfigBuilder.build());
+        }
+    }
+
+    private UnitConfig createGroup(final String groupId) {
+        final AuthorizationGroupConfig.Builder groupConfig = AuthorizationGroupConfig.newBuilder();
+        for (final String principalId : principalIdList) {
+            if (random.nextInt(3) == 0) {
+                groupConfig.addMemberId(principalId);
+            }
+        }
+        return UnitConfig.newBuilder().setId(groupId).setUnitType(UnitType.AUTHORIZATION_GROUP).setAuthorizationGroupConfig(groupConfig).build();
+    }
+
+    private PermissionConfig createPermissionConfig() {
+        final PermissionConfig.Builder permissionConfig = PermissionConfig.newBuilder()
+                .setOwnerId(principalIdList.get(random.nextInt(principalIdList.size())))
+                .setOwnerPermission(createPermission())
+                .setOtherPermission(createPermission());
+        for (int i = 0; i < 3; i++) {
+            // grant permissions to groups, to principals which are used as groups and to unknown groups
+            final String groupId;
+            switch (random.nextInt(3)) {
+                case 0:
+                    groupId = "group" + random.nextInt(GROUP_COUNT);
+                    break;
+                case 1:
+                    groupId = principalIdList.get(random.nextInt(principalIdList.size()));
+                    break;
+                default:
+                    groupId = "unknown" + i;
+                    break;
+            }
+            permissionConfig.addGroupPermissionBuilder().setGroupId(groupId).setPermission(createPermission());
+        }
+        return permissionConfig.build();
+    }
+
+    private Permission createPermission() {
+        // bias towards read permissions so that permissions below locations are not always denied
+        return Permission.newBuilder().setRead(random.nextInt(4) != 0).setWrite(random.nextBoolean()).setAccess(random.nextBoolean()).build();
+    }
+
+    private void validate(final AuthorizationIndex authorizationIndex) {
+        final List<UnitConfig> checkedUnitConfigList = new ArrayList<>(unitConfigList);
+        for (final IdentifiableMessage<String, UnitConfig, UnitConfig.Builder> location : locations.values()) {
+            checkedUnitConfigList.add(location.getMessage());
+        }
+
+        for (final UnitConfig unitConfig : checkedUnitConfigList) {
+            assertEquals(AuthorizationHelper.getPermission(unitConfig, "", groups, locations), authorizationIndex.getPermission(unitConfig, ""));
+            for (final String userId : principalIdList) {
+                assertEquals("Permission of " + userId + " for " + unitConfig.getId() + " differs",
+                        AuthorizationHelper.getPermission(unitConfig, userId, groups, locations), authorizationIndex.getPermission(unitConfig, userId));
+                for (final AuthorizationHelper.PermissionType type : AuthorizationHelper.PermissionType.values()) {
+                    assertEquals(AuthorizationHelper.canDo(unitConfig, userId, groups, locations, type), authorizationIndex.canDo(unitConfig, userId, type));
+                }
+
+                final UserClientPair userClientPair = UserClientPair.newBuilder().setUserId(userId).setClientId(principalIdList.get(USER_COUNT + random.nextInt(CLIENT_COUNT))).build();
+                assertEquals(AuthorizationHelper.canRead(unitConfig, userClientPair, groups, locations), authorizationIndex.canDo(unitConfig, userClientPair, AuthorizationHelper.PermissionType.READ));
+                assertEquals(AuthorizationHelper.canWrite(unitConfig, userClientPair, groups, locations), authorizationIndex.canDo(unitConfig, userClientPair, AuthorizationHelper.PermissionType.WRITE));
+                assertEquals(AuthorizationHelper.canAccess(unitConfig, userClientPair, groups, locations), authorizationIndex.canDo(unitConfig, userClientPair, AuthorizationHelper.PermissionType.ACCESS));
+                assertEquals(AuthorizationHelper.getPermission(unitConfig, userClientPair, groups, locations), authorizationIndex.getPermission(unitConfig, userClientPair));
+            }
+        }
+    }
+
+    /**
+     * Test that the index grants the same permissions as the authorization helper for a random location hierarchy.
+     */
+    @Test(timeout = 10000)
+    public void testDifferential() {
+        System.out.println("testDifferential");
+
+        final AuthorizationIndex authorizationIndex = new AuthorizationIndex();
+        authorizationIndex.update(groups, locations);
+        validate(authorizationIndex);
+
+        // without groups only owner and other permissions apply
+        authorizationIndex.update(null, locations);
+        for (final UnitConfig unitConfig : unitConfigList) {
+            for (final String userId : principalIdList) {
+                assertEquals(AuthorizationHelper.getPermission(unitConfig, userId, null, locations), authorizationIndex.getPermission(unitConfig, userId));
+            }
+        }
+    }
+
+    /**
+     * Test that the index is updated if groups or locations change.
+     */
+    @Test(timeout = 10000)
+    public void testUpdate() {
+        System.out.println("testUpdate");
+
+        final AuthorizationIndex authorizationIndex = new AuthorizationIndex();
+        authorizationIndex.update(groups, locations);
+        validate(authorizationIndex);
+
+        for (int i = 0; i < 10; i++) {
+            // replace, add and remove groups
+            final String groupId = "group" + random.nextInt(GROUP_COUNT + 2);
+            if (groups.containsKey(groupId) && random.nextInt(4) == 0) {
+                groups.remove(groupId);
+            } else {
+                groups.put(groupId, new IdentifiableMessage<>(createGroup(groupId)));
+            }
+
+            // replace the permission config of a location
+            final String locationId = locationIdList.get(random.nextInt(locationIdList.size()));
+            final UnitConfig.Builder locationBuilder = locations.get(locationId).getMessage().toBuilder().setPermissionConfig(createPermissionConfig());
+            locations.put(locationId, new IdentifiableMessage<>(locationBuilder.build()));
+
+            authorizationIndex.update(groups, locations);
+            validate(authorizationIndex);
+        }
+    }
+}
@@ -32,10 +32,10 @@ import org.openbase.jul.exception.NotAvailableException;
 import org.openbase.jul.exception.printer.ExceptionPrinter;
 import org.slf4j.LoggerFactory;
 
+import java.security.Key;
 import java.security.KeyPair;
 
-import static org.junit.Assert.assertArrayEquals;
-import static org.junit.Assert.fail;
+import static org.junit.Assert.*;
 
 /**
  * @author <a href="mailto:thuxohl@techfak.uni-bielefeld.de">Tamino Huxohl</a>
@@ -104,4 +104,46 @@ public class CredentialStoreTest {
         credentialStore.shutdown();
         loadingCredentialStore.shutdown();
     }
+
+    /**
+     * Test if parsed keys are cached per credentials and invalidated if the credentials change.
+     *
+     * @throws Exception if something fails.
+     */
+    @Test
+    public void testKeyCache() throws Exception {
+        System.out.println("testKeyCache");
+
+        final CredentialStore credentialStore = new CredentialStore();
+        credentialStore.init("key_cache_credential_store.json");
+
+        final String clientId = "client";
+        final KeyPair keyPair = EncryptionHelper.generateKeyPair();
+        credentialStore.addCredentials(clientId, keyPair.getPublic().getEncoded(), false, false);
+
+        final Key encryptionKey = credentialStore.getEncryptionKey(clientId);
+        assertArrayEquals(keyPair.getPublic().getEncoded(), encryptionKey.getEncoded());
+        assertSame("Key has been parsed again", encryptionKey, credentialStore.getEncryptionKey(clientId));
+        assertSame("Key has been parsed again", encryptionKey, credentialStore.getEncryptionKey(credentialStore.getCredentials(clientId)));
+
+        // replacing the credentials invalidates the cache
+        final KeyPair newKeyPair = EncryptionHelper.generateKeyPair();
+        credentialStore.addCredentials(clientId, newKeyPair.getPublic().getEncoded(), false, false);
+        assertArrayEquals(newKeyPair.getPublic().getEncoded(), credentialStore.getEncryptionKey(clientId).getEncoded());
+
+        // keys created from the cache can be used interchangeably with the credentials
+        final String message = "message";
+        final byte[] encrypted = EncryptionHelper.encrypt(message, credentialStore.getEncryptionKey(clientId));
+        assertEquals(message, EncryptionHelper.decrypt(encrypted, newKeyPair.getPrivate().getEncoded(), String.class, false));
+
+        credentialStore.removeEntry(clientId);
+        try {
+            credentialStore.getEncryptionKey(clientId);
+            fail("Key of removed credentials returned");
+        } catch (NotAvailableException ex) {
+            // expected
+        }
+
+        credentialStore.shutdown();
+    }
 }
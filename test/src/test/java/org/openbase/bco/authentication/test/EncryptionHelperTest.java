@@ -25,6 +25,7 @@ import com.google.protobuf.ByteString;
 import java.security.KeyPair;
 
 import org.openbase.bco.authentication.lib.EncryptionHelper;
+import org.openbase.bco.authentication.lib.SessionKey;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -72,6 +73,33 @@ public class EncryptionHelperTest {
         assertEquals(str, decrypted);
     }
 
+    @Test
+    public void testSessionKeyEncryptionDecryption() throws Exception {
+        LOGGER.info("test encryption and decryption with a session key");
+        final SessionKey sessionKey = SessionKey.generate();
+        final SessionKey wrongSessionKey = SessionKey.generate();
+
+        // ciphers of the session key are reused for multiple operations
+        for (int i = 0; i < 3; i++) {
+            final String str = "test" + i;
+            final ByteString encrypted = EncryptionHelper.encryptSymmetric(str, sessionKey);
+            assertEquals(str, EncryptionHelper.decryptSymmetric(encrypted, sessionKey, String.class));
+            // the encoding is compatible with the raw key
+            assertEquals(str, EncryptionHelper.decryptSymmetric(encrypted, sessionKey.getEncoded(), String.class));
+        }
+
+        // a failed decryption does not break the session key
+        final ByteString encrypted = EncryptionHelper.encryptSymmetric("test", sessionKey);
+        try {
+            wrongSessionKey.decrypt(encrypted, String.class);
+            fail("Decryption with wrong session key succeeded");
+        } catch (CouldNotPerformException ex) {
+            // expected
+        }
+        assertEquals("test", wrongSessionKey.decrypt(EncryptionHelper.encryptSymmetric("test", wrongSessionKey.getEncoded()), String.class));
+        assertEquals(sessionKey, new SessionKey(sessionKey.toByteString()));
+    }
+
     @Test
     public void testAsymmetricEncryptionDecryption() throws Exception {
         LOGGER.info("test asymmetric encryption and decryption");
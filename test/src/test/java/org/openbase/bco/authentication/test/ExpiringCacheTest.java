@@ -0,0 +1,77 @@
+package org.openbase.bco.authentication.test;
+
+/*-
+ * #%L
+ * BCO Authentication Test
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.openbase.bco.authentication.lib.ExpiringCache;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ExpiringCacheTest {
+
+    /**
+     * Test that the least recently used entry is evicted if the cache is full.
+     */
+    @Test(timeout = 5000)
+    public void testEviction() {
+        System.out.println("testEviction");
+
+        final ExpiringCache<String, Integer> cache = new ExpiringCache<>(2, 1, TimeUnit.MINUTES);
+        cache.put("first", 1);
+        cache.put("second", 2);
+
+        // access the first entry so that the second one is the least recently used
+        assertEquals(Integer.valueOf(1), cache.get("first"));
+        cache.put("third", 3);
+
+        assertEquals(2, cache.size());
+        assertEquals(Integer.valueOf(1), cache.get("first"));
+        assertNull(cache.get("second"));
+        assertEquals(Integer.valueOf(3), cache.get("third"));
+
+        cache.invalidate("first");
+        assertNull(cache.get("first"));
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Test that entries are not returned after they expired.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testExpiration() throws Exception {
+        System.out.println("testExpiration");
+
+        final ExpiringCache<String, Integer> cache = new ExpiringCache<>(16, 50, TimeUnit.MILLISECONDS);
+        cache.put("entry", 1);
+        assertEquals(Integer.valueOf(1), cache.get("entry"));
+
+        Thread.sleep(100);
+        assertNull(cache.get("entry"));
+        assertEquals(0, cache.size());
+    }
+}
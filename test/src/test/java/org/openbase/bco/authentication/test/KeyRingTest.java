@@ -0,0 +1,125 @@
+package org.openbase.bco.authentication.test;
+
+/*-
+ * #%L
+ * BCO Authentication Test
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.openbase.bco.authentication.lib.EncryptionHelper;
+import org.openbase.bco.authentication.lib.KeyRing;
+import org.openbase.bco.authentication.lib.exception.SessionExpiredException;
+
+import static org.junit.Assert.*;
+
+public class KeyRingTest {
+
+    /**
+     * Test that data encrypted with the previous key is accepted until the key retired.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testRotation() throws Exception {
+        System.out.println("testRotation");
+
+        final KeyRing keyRing = new KeyRing(EncryptionHelper.generateKey());
+        final ByteString initialEncrypted = keyRing.encrypt("initial");
+        // data of a ring which has never been rotated has the format from before key rotation
+        assertEquals(KeyRing.NO_KEY_ID, KeyRing.getKeyId(initialEncrypted));
+        assertEquals("initial", keyRing.decrypt(initialEncrypted, String.class));
+
+        // the previous key is still accepted after a rotation
+        assertEquals(1, keyRing.rotate(60000));
+        final ByteString rotatedEncrypted = keyRing.encrypt("rotated");
+        assertEquals(1, KeyRing.getKeyId(rotatedEncrypted));
+        assertEquals("initial", keyRing.decrypt(initialEncrypted, String.class));
+        assertEquals("rotated", keyRing.decrypt(rotatedEncrypted, String.class));
+
+        // a retired key is rejected while the current one still works
+        assertEquals(2, keyRing.rotate(0));
+        try {
+            keyRing.decrypt(rotatedEncrypted, String.class);
+            fail("Data encrypted with a retired key has been accepted");
+        } catch (SessionExpiredException ex) {
+            // expected
+        }
+        assertEquals("current", keyRing.decrypt(keyRing.encrypt("current"), String.class));
+
+        // retired keys are removed on the next rotation but the initial key is kept
+        keyRing.rotate(0);
+        assertTrue(keyRing.hasKey(KeyRing.INITIAL_KEY_ID));
+        assertFalse(keyRing.hasKey(1));
+        assertFalse(keyRing.hasKey(2));
+        assertTrue(keyRing.hasKey(3));
+    }
+
+    /**
+     * Test that data and keys from before key rotation are still supported.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testLegacyKey() throws Exception {
+        System.out.println("testLegacyKey");
+
+        final byte[] secretKey = EncryptionHelper.generateKey();
+        final ByteString legacyEncrypted = EncryptionHelper.encryptSymmetric("legacy", secretKey);
+        assertEquals(KeyRing.NO_KEY_ID, KeyRing.getKeyId(legacyEncrypted));
+
+        final KeyRing keyRing = KeyRing.decode(secretKey);
+        assertArrayEquals(secretKey, keyRing.getInitialKey());
+        assertEquals("legacy", keyRing.decrypt(legacyEncrypted, String.class));
+        assertArrayEquals(secretKey, keyRing.encodeCompatible());
+
+        // a secret key starting with the marker of an encoded ring is still decoded as a key
+        final byte[] markedKey = EncryptionHelper.generateKey();
+        markedKey[0] = (byte) 0xB0;
+        markedKey[1] = (byte) 0xC1;
+        assertArrayEquals(markedKey, KeyRing.decode(markedKey).getInitialKey());
+
+        // a rotated ring is distributed as a whole
+        keyRing.rotate(60000);
+        assertEquals(keyRing.getCurrentKeyId(), KeyRing.decode(keyRing.encodeCompatible()).getCurrentKeyId());
+    }
+
+    /**
+     * Test that a ring keeps its keys when it is encoded and decoded.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testEncoding() throws Exception {
+        System.out.println("testEncoding");
+
+        final byte[] secretKey = EncryptionHelper.generateKey();
+        final KeyRing keyRing = new KeyRing(secretKey);
+        final ByteString initialEncrypted = keyRing.encrypt("initial");
+        keyRing.rotate(60000);
+        final ByteString rotatedEncrypted = keyRing.encrypt("rotated");
+
+        final KeyRing decodedKeyRing = KeyRing.decode(keyRing.encode());
+        assertArrayEquals(secretKey, decodedKeyRing.getInitialKey());
+        assertEquals(keyRing.getCurrentKeyId(), decodedKeyRing.getCurrentKeyId());
+        assertEquals("initial", decodedKeyRing.decrypt(initialEncrypted, String.class));
+        assertEquals("rotated", decodedKeyRing.decrypt(rotatedEncrypted, String.class));
+    }
+}
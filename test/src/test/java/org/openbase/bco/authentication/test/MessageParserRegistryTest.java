@@ -0,0 +1,56 @@
+package org.openbase.bco.authentication.test;
+
+/*-
+ * #%L
+ * BCO Authentication Test
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.openbase.bco.authentication.lib.MessageParserRegistry;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+
+import static org.junit.Assert.*;
+
+public class MessageParserRegistryTest {
+
+    /**
+     * Test parsing messages with the registered parsers.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testParseFrom() throws Exception {
+        System.out.println("testParseFrom");
+
+        final UserClientPair userClientPair = UserClientPair.newBuilder().setUserId("user").setClientId("client").build();
+        assertEquals(userClientPair, MessageParserRegistry.parseFrom(userClientPair.toByteString(), UserClientPair.class));
+
+        // the parser is only resolved once
+        assertSame(MessageParserRegistry.getParser(UserClientPair.class), MessageParserRegistry.getParser(UserClientPair.class));
+
+        try {
+            MessageParserRegistry.parseFrom(userClientPair.toByteString(), String.class);
+            fail("Parsed a class which is not a message");
+        } catch (CouldNotPerformException ex) {
+            // expected
+        }
+    }
+}
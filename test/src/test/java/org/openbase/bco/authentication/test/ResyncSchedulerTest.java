@@ -0,0 +1,114 @@
+package org.openbase.bco.authentication.test;
+
+/*-
+ * #%L
+ * BCO Authentication Test
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.openbase.bco.authentication.lib.com.ResyncScheduler;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ResyncSchedulerTest {
+
+    /**
+     * Test that resyncs scheduled while a request is in flight are folded into a single pending request.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testCoalescing() throws Exception {
+        System.out.println("testCoalescing");
+
+        final BlockingQueue<CompletableFuture<Void>> requestQueue = new LinkedBlockingQueue<>();
+        final ResyncScheduler resyncScheduler = new ResyncScheduler(() -> {
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            requestQueue.put(future);
+            return future;
+        }, 5, TimeUnit.SECONDS);
+
+        resyncScheduler.schedule();
+        final CompletableFuture<Void> firstRequest = requestQueue.take();
+        assertTrue(resyncScheduler.isBusy());
+
+        // the first resync becomes pending and all further ones are folded into it
+        for (int i = 0; i < 10; i++) {
+            resyncScheduler.schedule();
+        }
+        assertEquals(11, resyncScheduler.getScheduledCount());
+        assertEquals(9, resyncScheduler.getCoalescedCount());
+        assertTrue(requestQueue.isEmpty());
+
+        // the pending request is performed after the one in flight
+        firstRequest.complete(null);
+        final CompletableFuture<Void> pendingRequest = requestQueue.take();
+        pendingRequest.complete(null);
+
+        while (resyncScheduler.isBusy()) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, resyncScheduler.getPerformedCount());
+        assertTrue(requestQueue.isEmpty());
+
+        // an idle scheduler performs a resync immediately
+        resyncScheduler.schedule();
+        requestQueue.take().complete(null);
+        while (resyncScheduler.isBusy()) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, resyncScheduler.getPerformedCount());
+        assertEquals(9, resyncScheduler.getCoalescedCount());
+    }
+
+    /**
+     * Test that a failing request does not block further resyncs.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testFailingRequest() throws Exception {
+        System.out.println("testFailingRequest");
+
+        final BlockingQueue<CompletableFuture<Void>> requestQueue = new LinkedBlockingQueue<>();
+        final ResyncScheduler resyncScheduler = new ResyncScheduler(() -> {
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            requestQueue.put(future);
+            return future;
+        }, 5, TimeUnit.SECONDS);
+
+        resyncScheduler.schedule();
+        final CompletableFuture<Void> failingRequest = requestQueue.take();
+        resyncScheduler.schedule();
+        failingRequest.completeExceptionally(new RuntimeException("Request failed"));
+
+        // the pending resync is still performed
+        requestQueue.take().complete(null);
+        while (resyncScheduler.isBusy()) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, resyncScheduler.getPerformedCount());
+    }
+}
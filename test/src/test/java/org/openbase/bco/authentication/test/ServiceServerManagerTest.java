@@ -22,14 +22,26 @@ package org.openbase.bco.authentication.test;
  * #L%
  */
 
+import com.google.protobuf.ByteString;
 import org.junit.*;
 import org.openbase.bco.authentication.core.AuthenticatorController;
 import org.openbase.bco.authentication.lib.*;
+import org.openbase.bco.authentication.lib.AuthenticationClientHandler.RequestTicket;
+import org.openbase.bco.authentication.lib.exception.AuthenticationErrorCode;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.PermissionDeniedException;
 import org.openbase.type.domotic.authentication.AuthenticatedValueType.AuthenticatedValue;
 import org.openbase.type.domotic.authentication.LoginCredentialsType.LoginCredentials;
 import org.slf4j.LoggerFactory;
 import org.openbase.type.domotic.authentication.LoginCredentialsChangeType.LoginCredentialsChange;
 import org.openbase.type.domotic.authentication.TicketAuthenticatorWrapperType.TicketAuthenticatorWrapper;
+import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
@@ -69,4 +81,165 @@ public class ServiceServerManagerTest extends AuthenticationTest {
 
         AuthenticationClientHandler.handleServiceServerResponse(SessionManager.getInstance().getSessionKey(), request, response);
     }
+
+    /**
+     * Test if the session manager verifies responses with a request ticket and rejects responses
+     * which do not belong to the request.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testRequestTicketVerification() throws Exception {
+        System.out.println("testRequestTicketVerification");
+
+        // register a user from which a ticket can be validated
+        String userId = "RequestTicketUser";
+        String password = "Security";
+        LoginCredentials.Builder loginCredentials = LoginCredentials.newBuilder();
+        loginCredentials.setSymmetric(true);
+        loginCredentials.setId(userId);
+        loginCredentials.setCredentials(EncryptionHelper.encryptSymmetric(EncryptionHelper.hash(password), EncryptionHelper.hash(AuthenticatorController.getInitialPassword())));
+        final AuthenticatedValue authenticatedValue = AuthenticatedValue.newBuilder().setValue(loginCredentials.build().toByteString()).build();
+        CachedAuthenticationRemote.getRemote().register(authenticatedValue).get();
+
+        SessionManager.getInstance().loginUser(userId, password, false);
+
+        RequestTicket requestTicket = SessionManager.getInstance().initializeRequestTicket();
+        TicketAuthenticatorWrapper response = AuthenticatedServerManager.getInstance().verifyClientServerTicket(requestTicket.getTicketAuthenticatorWrapper()).getTicketAuthenticatorWrapper();
+
+        // a verified response becomes the current ticket
+        SessionManager.getInstance().verifyServiceServerResponse(requestTicket, response);
+        Assert.assertEquals(response, SessionManager.getInstance().getTicketAuthenticatorWrapper());
+
+        // the response does not match a later request
+        Thread.sleep(1);
+        RequestTicket laterRequestTicket = SessionManager.getInstance().initializeRequestTicket();
+        try {
+            SessionManager.getInstance().verifyServiceServerResponse(laterRequestTicket, response);
+            Assert.fail("Response verified for a request it does not belong to");
+        } catch (CouldNotPerformException ex) {
+            // expected
+        }
+        Assert.assertEquals(response, SessionManager.getInstance().getTicketAuthenticatorWrapper());
+
+        SessionManager.getInstance().logout();
+    }
+
+    /**
+     * Test that tickets with forged key ids are rejected without requesting the keys of the service server every time.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 10000)
+    public void testForgedKeyId() throws Exception {
+        System.out.println("testForgedKeyId");
+
+        final AuthenticatedServerManager serverManager = AuthenticatedServerManager.getInstance();
+        serverManager.getReadyFuture().get();
+
+        // the key id prefix of a ticket is not authenticated so anybody can claim an unknown key
+        final ByteBuffer forgedTicket = ByteBuffer.allocate(64);
+        forgedTicket.put((byte) 0xB0).put((byte) 0xC0).putInt(Integer.MAX_VALUE);
+        final TicketAuthenticatorWrapper request = TicketAuthenticatorWrapper.newBuilder()
+                .setTicket(ByteString.copyFrom(forgedTicket.array()))
+                .setAuthenticator(ByteString.copyFrom(new byte[32]))
+                .build();
+
+        // the first ticket triggers a single refresh of the keys and all further ones are rejected right away
+        for (int i = 0; i < 2; i++) {
+            try {
+                serverManager.verifyClientServerTicket(request);
+                Assert.fail("Ticket with forged key id has been accepted");
+            } catch (CouldNotPerformException ex) {
+                // expected
+            }
+        }
+
+        final long startTime = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            try {
+                serverManager.verifyClientServerTicket(request);
+                Assert.fail("Ticket with forged key id has been accepted");
+            } catch (CouldNotPerformException ex) {
+                // expected
+            }
+        }
+        Assert.assertTrue("Forged tickets are not rejected right away", System.currentTimeMillis() - startTime < 2000);
+    }
+
+    /**
+     * Test that the service server logs in asynchronously and that the instance is shared.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testAsynchronousBootstrap() throws Exception {
+        System.out.println("testAsynchronousBootstrap");
+
+        final AuthenticatedServerManager serverManager = AuthenticatedServerManager.getInstance();
+        Assert.assertSame(serverManager, AuthenticatedServerManager.getInstance());
+        Assert.assertSame(serverManager.getReadyFuture(), AuthenticatedServerManager.prepare());
+
+        // the service server becomes ready without a request triggering the login
+        serverManager.getReadyFuture().get();
+        Assert.assertNotNull(serverManager.getServiceServerSecretKey());
+    }
+
+    /**
+     * Test that a batch of messages is processed with a single ticket and that every message gets its own result.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testBatchedAuthenticatedAction() throws Exception {
+        System.out.println("testBatchedAuthenticatedAction");
+
+        // register a user from which a ticket can be validated
+        String userId = "BatchUser";
+        String password = "Security";
+        LoginCredentials.Builder loginCredentials = LoginCredentials.newBuilder();
+        loginCredentials.setSymmetric(true);
+        loginCredentials.setId(userId);
+        loginCredentials.setCredentials(EncryptionHelper.encryptSymmetric(EncryptionHelper.hash(password), EncryptionHelper.hash(AuthenticatorController.getInitialPassword())));
+        final AuthenticatedValue authenticatedValue = AuthenticatedValue.newBuilder().setValue(loginCredentials.build().toByteString()).build();
+        CachedAuthenticationRemote.getRemote().register(authenticatedValue).get();
+
+        SessionManager.getInstance().loginUser(userId, password, false);
+
+        final List<UserClientPair> messageList = Arrays.asList(
+                UserClientPair.newBuilder().setClientId("first").build(),
+                UserClientPair.newBuilder().setClientId("denied").build(),
+                UserClientPair.newBuilder().setClientId("third").build());
+        final AtomicInteger verificationCounter = new AtomicInteger(0);
+
+        final AuthenticatedBatchResponse response = AuthenticatedServiceProcessor.requestAuthenticatedBatchAction(messageList, SessionManager.getInstance(), request -> {
+            final AuthenticatedValue result = AuthenticatedServiceProcessor.authenticatedBatchAction(request, UserClientPair.class, value -> {
+                verificationCounter.incrementAndGet();
+                return AuthenticatedServerManager.getInstance().verifyClientServerTicket(value);
+            }, (message, authenticationBaseData) -> {
+                if (message.getClientId().equals("denied")) {
+                    throw new PermissionDeniedException("Client[" + message.getClientId() + "] is not permitted");
+                }
+                // answer with the user who performed the request
+                return message.toBuilder().setUserId(authenticationBaseData.getUserClientPair().getUserId()).build();
+            });
+            return CompletableFuture.completedFuture(result);
+        }).get();
+
+        Assert.assertEquals(1, verificationCounter.get());
+        Assert.assertEquals(messageList.size(), response.size());
+        Assert.assertEquals(userId, response.getResult(0, UserClientPair.class).getUserId());
+        Assert.assertEquals("third", response.getResult(2, UserClientPair.class).getClientId());
+
+        Assert.assertFalse(response.isSuccessful(1));
+        try {
+            response.getResult(1, UserClientPair.class);
+            Assert.fail("Result of a denied message is available");
+        } catch (PermissionDeniedException ex) {
+            // expected without the marker of the error code
+            Assert.assertFalse(ex.getMessage().contains(AuthenticationErrorCode.MARKER_PREFIX));
+        }
+
+        SessionManager.getInstance().logout();
+    }
 }
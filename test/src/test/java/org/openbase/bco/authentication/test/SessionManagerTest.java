@@ -22,6 +22,7 @@ package org.openbase.bco.authentication.test;
  * #L%
  */
 
+import com.google.protobuf.ByteString;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -30,6 +31,8 @@ import org.openbase.bco.authentication.core.AuthenticatorController;
 import org.openbase.bco.authentication.lib.CachedAuthenticationRemote;
 import org.openbase.bco.authentication.lib.CredentialStore;
 import org.openbase.bco.authentication.lib.EncryptionHelper;
+import org.openbase.bco.authentication.lib.KeyRing;
+import org.openbase.bco.authentication.lib.SessionKey;
 import org.openbase.bco.authentication.lib.SessionManager;
 import org.openbase.bco.authentication.mock.MockClientStore;
 import org.openbase.bco.authentication.mock.MockCredentialStore;
@@ -43,6 +46,9 @@ import org.openbase.type.domotic.authentication.TicketType.Ticket;
 import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.*;
@@ -130,6 +136,62 @@ public class SessionManagerTest extends AuthenticationTest {
         manager.loginUser(MockClientStore.USER_ID, MockClientStore.USER_PASSWORD, false);
     }
 
+    /**
+     * Test that asynchronous logins are performed in the order in which they are requested.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void loginUserAsync() throws Exception {
+        System.out.println("loginUserAsync");
+        SessionManager manager = new SessionManager(clientStore);
+
+        final LoginCredentials adminCredentials = LoginCredentials.newBuilder().setId(MockClientStore.ADMIN_ID).setSymmetric(true)
+                .setCredentials(ByteString.copyFrom(EncryptionHelper.hash(MockClientStore.ADMIN_PASSWORD))).build();
+        final LoginCredentials userCredentials = LoginCredentials.newBuilder().setId(MockClientStore.USER_ID).setSymmetric(true)
+                .setCredentials(ByteString.copyFrom(EncryptionHelper.hash(MockClientStore.USER_PASSWORD))).build();
+
+        // start both logins without waiting so that the second one is queued behind the first
+        final CompletableFuture<Void> adminLogin = manager.loginUserAsync(MockClientStore.ADMIN_ID, adminCredentials, false);
+        final CompletableFuture<Void> userLogin = manager.loginUserAsync(MockClientStore.USER_ID, userCredentials, false);
+        userLogin.get();
+        assertTrue(adminLogin.isDone());
+        assertEquals(MockClientStore.USER_ID, manager.getUserClientPair().getUserId());
+
+        // renewing the ticket does not change the logged in user
+        manager.renewAsync().get();
+        assertEquals(MockClientStore.USER_ID, manager.getUserClientPair().getUserId());
+    }
+
+    /**
+     * Test that re-logins requested for the same failed session are performed only once.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void reLoginCoalescing() throws Exception {
+        System.out.println("reLoginCoalescing");
+        SessionManager manager = new SessionManager(clientStore);
+        manager.loginUser(MockClientStore.USER_ID, MockClientStore.USER_PASSWORD, false);
+        final SessionKey failedSessionKey = manager.getSessionKey();
+
+        // many requests of the same session fail at the same time
+        final List<CompletableFuture<Void>> reLoginList = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            reLoginList.add(manager.reLoginAsync(failedSessionKey));
+        }
+        for (final CompletableFuture<Void> reLogin : reLoginList) {
+            reLogin.get();
+        }
+        final SessionKey sessionKey = manager.getSessionKey();
+        assertNotSame("Session has not been replaced", failedSessionKey, sessionKey);
+        assertEquals(MockClientStore.USER_ID, manager.getUserClientPair().getUserId());
+
+        // a late failure of the replaced session does not trigger another re-login
+        manager.reLoginAsync(failedSessionKey).get();
+        assertSame("Session has been replaced again", sessionKey, manager.getSessionKey());
+    }
+
     /**
      * Test of SessionManager.login() for user.
      *
@@ -198,7 +260,33 @@ public class SessionManagerTest extends AuthenticationTest {
 
         manager.logout();
         assertEquals(null, manager.getTicketAuthenticatorWrapper());
-        assertArrayEquals(null, manager.getSessionKey());
+        assertNull(manager.getSessionKey());
+    }
+
+    /**
+     * Test that a logout cancels logins which have been queued before.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void logoutCancelsQueuedLogin() throws Exception {
+        System.out.println("logoutCancelsQueuedLogin");
+        SessionManager manager = new SessionManager(clientStore);
+
+        final LoginCredentials adminCredentials = LoginCredentials.newBuilder().setId(MockClientStore.ADMIN_ID).setSymmetric(true)
+                .setCredentials(ByteString.copyFrom(EncryptionHelper.hash(MockClientStore.ADMIN_PASSWORD))).build();
+
+        // logout while the login is queued or in progress
+        final CompletableFuture<Void> login = manager.loginUserAsync(MockClientStore.ADMIN_ID, adminCredentials, false);
+        manager.logoutAsync().get();
+
+        try {
+            login.get();
+        } catch (ExecutionException ex) {
+            // the login has been cancelled
+        }
+        assertFalse(manager.isLoggedIn());
+        assertNull(manager.getSessionKey());
     }
 
     /**
@@ -244,11 +332,13 @@ public class SessionManagerTest extends AuthenticationTest {
     public void registerClientAndLoginAndLoginUserAndLogout() throws Exception {
         System.out.println("registerClientAndLoginAndLoginUserAndLogout");
         SessionManager manager = new SessionManager(clientStore);
+        // the key ring also decrypts tickets encrypted with the raw service server key, as issued before its first rotation
+        final KeyRing serviceServerKeyRing = new KeyRing(serviceServerSecretKey);
         Ticket ticket;
 
         // login admin
         manager.loginUser(MockClientStore.ADMIN_ID, MockClientStore.ADMIN_PASSWORD, false);
-        ticket = EncryptionHelper.decryptSymmetric(manager.getTicketAuthenticatorWrapper().getTicket(), serviceServerSecretKey, Ticket.class);
+        ticket = serviceServerKeyRing.decrypt(manager.getTicketAuthenticatorWrapper().getTicket(), Ticket.class);
         assertEquals(ticket.getUserClientPair().getUserId(), MockClientStore.ADMIN_ID);
 
         // register client
@@ -256,12 +346,12 @@ public class SessionManagerTest extends AuthenticationTest {
 
         // login client
         manager.loginClient(MockClientStore.CLIENT_ID, false);
-        ticket = EncryptionHelper.decryptSymmetric(manager.getTicketAuthenticatorWrapper().getTicket(), serviceServerSecretKey, Ticket.class);
+        ticket = serviceServerKeyRing.decrypt(manager.getTicketAuthenticatorWrapper().getTicket(), Ticket.class);
         assertEquals(ticket.getUserClientPair().getClientId(), MockClientStore.CLIENT_ID);
 
         // login admin (on the client)
         manager.loginUser(MockClientStore.ADMIN_ID, MockClientStore.ADMIN_PASSWORD, false);
-        ticket = EncryptionHelper.decryptSymmetric(manager.getTicketAuthenticatorWrapper().getTicket(), serviceServerSecretKey, Ticket.class);
+        ticket = serviceServerKeyRing.decrypt(manager.getTicketAuthenticatorWrapper().getTicket(), Ticket.class);
         assertEquals(MockClientStore.ADMIN_ID, ticket.getUserClientPair().getUserId());
         assertEquals(MockClientStore.CLIENT_ID, ticket.getUserClientPair().getClientId());
 
@@ -270,7 +360,7 @@ public class SessionManagerTest extends AuthenticationTest {
         assertNotEquals(null, manager.getTicketAuthenticatorWrapper());
 
         // now client should be logged in again
-        ticket = EncryptionHelper.decryptSymmetric(manager.getTicketAuthenticatorWrapper().getTicket(), serviceServerSecretKey, Ticket.class);
+        ticket = serviceServerKeyRing.decrypt(manager.getTicketAuthenticatorWrapper().getTicket(), Ticket.class);
         assertEquals(ticket.getUserClientPair().getClientId(), MockClientStore.CLIENT_ID);
 
         manager.shutdown();
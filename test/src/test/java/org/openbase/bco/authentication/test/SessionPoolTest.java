@@ -0,0 +1,159 @@
+package org.openbase.bco.authentication.test;
+
+/*-
+ * #%L
+ * BCO Authentication Test
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.Test;
+import org.openbase.bco.authentication.lib.CredentialStore;
+import org.openbase.bco.authentication.lib.PooledSession;
+import org.openbase.bco.authentication.lib.SessionManager;
+import org.openbase.bco.authentication.lib.SessionPool;
+import org.openbase.bco.authentication.mock.MockClientStore;
+import org.openbase.bco.authentication.mock.MockCredentialStore;
+import org.openbase.jul.exception.NotAvailableException;
+import org.openbase.jul.pattern.Observer;
+import org.openbase.type.domotic.authentication.UserClientPairType.UserClientPair;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SessionPoolTest extends AuthenticationTest {
+
+    /**
+     * Test that sessions of a pool are independent of each other.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testIndependentSessions() throws Exception {
+        System.out.println("testIndependentSessions");
+
+        final SessionPool sessionPool = new SessionPool(createCredentialStore(), 16, 1, TimeUnit.MINUTES);
+        try {
+            final PooledSession adminSession = sessionPool.openSession(MockCredentialStore.ADMIN_ID);
+            final PooledSession userSession = sessionPool.openSession(MockCredentialStore.USER_ID);
+            assertSame(adminSession, sessionPool.openSession(MockCredentialStore.ADMIN_ID));
+
+            final AtomicInteger userNotificationCounter = new AtomicInteger(0);
+            final Observer<SessionManager, UserClientPair> userLoginObserver = (source, data) -> {
+                synchronized (userNotificationCounter) {
+                    userNotificationCounter.incrementAndGet();
+                    userNotificationCounter.notifyAll();
+                }
+            };
+            userSession.addLoginObserver(userLoginObserver);
+
+            adminSession.loginUser(MockCredentialStore.ADMIN_ID, MockCredentialStore.ADMIN_PASSWORD, true);
+            userSession.loginUser(MockCredentialStore.USER_ID, MockCredentialStore.USER_PASSWORD, true);
+
+            assertEquals(MockCredentialStore.ADMIN_ID, adminSession.getUserClientPair().getUserId());
+            assertEquals(MockCredentialStore.USER_ID, userSession.getUserClientPair().getUserId());
+            assertNotEquals(adminSession.getSessionKey(), userSession.getSessionKey());
+
+            // the observer of the user session is only notified about the login of the user
+            synchronized (userNotificationCounter) {
+                while (userNotificationCounter.get() < 1) {
+                    userNotificationCounter.wait(1000);
+                }
+            }
+            assertEquals(1, userNotificationCounter.get());
+
+            // closing one session does not affect the other
+            sessionPool.closeSession(MockCredentialStore.ADMIN_ID);
+            assertFalse(adminSession.isLoggedIn());
+            assertTrue(userSession.isLoggedIn());
+            assertFalse(sessionPool.hasSession(MockCredentialStore.ADMIN_ID));
+
+            userSession.removeLoginObserver(userLoginObserver);
+        } finally {
+            sessionPool.shutdown();
+        }
+    }
+
+    /**
+     * Test that the least recently used session is evicted if the pool is full.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        System.out.println("testLeastRecentlyUsedEviction");
+
+        final SessionPool sessionPool = new SessionPool(createCredentialStore(), 2, 1, TimeUnit.MINUTES);
+        try {
+            sessionPool.openSession("first");
+            final PooledSession secondSession = sessionPool.openSession("second");
+            secondSession.loginUser(MockCredentialStore.USER_ID, MockCredentialStore.USER_PASSWORD, false);
+
+            // access the first session so that the second one is the least recently used
+            sessionPool.getSession("first");
+            sessionPool.openSession("third");
+
+            assertEquals(2, sessionPool.getSize());
+            assertTrue(sessionPool.hasSession("first"));
+            assertFalse(sessionPool.hasSession("second"));
+            assertTrue(sessionPool.hasSession("third"));
+            assertFalse("Evicted session is still logged in", secondSession.isLoggedIn());
+
+            try {
+                sessionPool.getSession("second");
+                fail("Evicted session is still available");
+            } catch (NotAvailableException ex) {
+                // expected
+            }
+        } finally {
+            sessionPool.shutdown();
+        }
+    }
+
+    /**
+     * Test that sessions which are not accessed are evicted after the idle timeout.
+     *
+     * @throws java.lang.Exception
+     */
+    @Test(timeout = 5000)
+    public void testIdleEviction() throws Exception {
+        System.out.println("testIdleEviction");
+
+        final SessionPool sessionPool = new SessionPool(createCredentialStore(), 16, 100, TimeUnit.MILLISECONDS);
+        try {
+            sessionPool.openSession("idle");
+            assertTrue(sessionPool.hasSession("idle"));
+
+            while (sessionPool.hasSession("idle")) {
+                Thread.sleep(SessionPool.MAINTENANCE_INTERVAL / 10);
+            }
+            assertEquals(0, sessionPool.getSize());
+        } finally {
+            sessionPool.shutdown();
+        }
+    }
+
+    private static CredentialStore createCredentialStore() throws Exception {
+        // the pool requires an initialized store with its own file
+        final MockClientStore credentialStore = new MockClientStore();
+        credentialStore.init("session_pool_credential_store.json");
+        return credentialStore;
+    }
+}
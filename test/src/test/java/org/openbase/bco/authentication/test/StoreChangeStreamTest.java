@@ -0,0 +1,174 @@
+package org.openbase.bco.authentication.test;
+
+/*-
+ * #%L
+ * BCO Authentication Test
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openbase.bco.authentication.lib.StoreChange;
+import org.openbase.bco.authentication.lib.StoreChange.ChangeType;
+import org.openbase.bco.authentication.lib.StoreChangeStream;
+import org.openbase.bco.authentication.lib.StoreSnapshot;
+import org.openbase.bco.authentication.lib.TokenStore;
+import org.openbase.bco.authentication.lib.iface.StoreChangeListener;
+import org.openbase.bco.authentication.lib.jp.JPCredentialsDirectory;
+import org.openbase.bco.authentication.lib.jp.JPResetCredentials;
+import org.openbase.jps.core.JPService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StoreChangeStreamTest {
+
+    private static final long TIMEOUT = 5;
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        JPService.setupJUnitTestMode();
+        JPService.registerProperty(JPResetCredentials.class);
+        JPService.registerProperty(JPCredentialsDirectory.class);
+    }
+
+    /**
+     * Test if changes of a store are delivered in order and with the correct change type.
+     *
+     * @throws Exception if something fails.
+     */
+    @Test(timeout = 10000)
+    public void testChangeOrder() throws Exception {
+        System.out.println("testChangeOrder");
+
+        final TokenStore tokenStore = new TokenStore();
+        tokenStore.init("change_stream_token_store.json");
+
+        final QueueListener listener = new QueueListener();
+        tokenStore.subscribe(listener, tokenStore.getSequenceNumber());
+
+        tokenStore.addToken("token", "first");
+        tokenStore.addToken("token", "second");
+        tokenStore.removeToken("token");
+        // removing a non existing entry does not produce a change
+        tokenStore.removeToken("token");
+        tokenStore.addToken("other", "third");
+
+        final long initialSequenceNumber = tokenStore.getSequenceNumber() - 4;
+        assertChange(listener.changeQueue.poll(TIMEOUT, TimeUnit.SECONDS), initialSequenceNumber + 1, ChangeType.ADDED, "token", "first");
+        assertChange(listener.changeQueue.poll(TIMEOUT, TimeUnit.SECONDS), initialSequenceNumber + 2, ChangeType.UPDATED, "token", "second");
+        assertChange(listener.changeQueue.poll(TIMEOUT, TimeUnit.SECONDS), initialSequenceNumber + 3, ChangeType.REMOVED, "token", "second");
+        assertChange(listener.changeQueue.poll(TIMEOUT, TimeUnit.SECONDS), initialSequenceNumber + 4, ChangeType.ADDED, "other", "third");
+        assertTrue("Listener was resynchronized unexpectedly", listener.snapshotQueue.isEmpty());
+
+        tokenStore.shutdown();
+    }
+
+    /**
+     * Test if a subscription starting with a snapshot receives the current state and all following changes.
+     *
+     * @throws Exception if something fails.
+     */
+    @Test(timeout = 10000)
+    public void testSubscriptionFromSnapshot() throws Exception {
+        System.out.println("testSubscriptionFromSnapshot");
+
+        final TokenStore tokenStore = new TokenStore();
+        tokenStore.init("change_stream_snapshot_token_store.json");
+        tokenStore.addToken("existing", "token");
+
+        final QueueListener listener = new QueueListener();
+        tokenStore.subscribe(listener);
+
+        final StoreSnapshot<String> snapshot = listener.snapshotQueue.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull("Snapshot not delivered", snapshot);
+        assertEquals(Collections.singletonMap("existing", "token"), snapshot.getEntryMap());
+
+        tokenStore.addToken("new", "token");
+        assertChange(listener.changeQueue.poll(TIMEOUT, TimeUnit.SECONDS), snapshot.getSequenceNumber() + 1, ChangeType.ADDED, "new", "token");
+
+        tokenStore.shutdown();
+    }
+
+    /**
+     * Test if a subscription which is behind the buffered changes is resynchronized by a snapshot.
+     *
+     * @throws Exception if something fails.
+     */
+    @Test(timeout = 10000)
+    public void testResyncAfterOverflow() throws Exception {
+        System.out.println("testResyncAfterOverflow");
+
+        final Map<String, String> entryMap = new HashMap<>();
+        final StoreChangeStream<String>[] streamHolder = new StoreChangeStream[1];
+        streamHolder[0] = new StoreChangeStream<>(() -> {
+            synchronized (entryMap) {
+                return new StoreSnapshot<>(streamHolder[0].getSequenceNumber(), entryMap);
+            }
+        }, 4);
+        final StoreChangeStream<String> stream = streamHolder[0];
+
+        // publish more changes than buffered before subscribing from the beginning
+        for (int i = 0; i < 10; i++) {
+            synchronized (entryMap) {
+                entryMap.put("id" + i, "value" + i);
+                stream.publish(ChangeType.ADDED, "id" + i, "value" + i);
+            }
+        }
+
+        final QueueListener listener = new QueueListener();
+        stream.subscribe(listener, 0);
+
+        final StoreSnapshot<String> snapshot = listener.snapshotQueue.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull("Listener was not resynchronized", snapshot);
+        assertEquals(10, snapshot.getSequenceNumber());
+        assertEquals(10, snapshot.getEntryMap().size());
+        assertTrue("Changes contained in the snapshot have been delivered", listener.changeQueue.isEmpty());
+    }
+
+    private void assertChange(final StoreChange<String> change, final long sequenceNumber, final ChangeType changeType, final String id, final String value) {
+        assertNotNull("Change[" + sequenceNumber + "] not delivered", change);
+        assertEquals(sequenceNumber, change.getSequenceNumber());
+        assertEquals(changeType, change.getChangeType());
+        assertEquals(id, change.getId());
+        assertEquals(value, change.getValue());
+    }
+
+    private static class QueueListener implements StoreChangeListener<String> {
+
+        private final BlockingQueue<StoreChange<String>> changeQueue = new LinkedBlockingQueue<>();
+        private final BlockingQueue<StoreSnapshot<String>> snapshotQueue = new LinkedBlockingQueue<>();
+
+        @Override
+        public void handleChange(final StoreChange<String> change) {
+            changeQueue.add(change);
+        }
+
+        @Override
+        public void handleResync(final StoreSnapshot<String> snapshot) {
+            snapshotQueue.add(snapshot);
+        }
+    }
+}
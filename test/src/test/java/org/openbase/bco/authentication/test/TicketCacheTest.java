@@ -0,0 +1,98 @@
+package org.openbase.bco.authentication.test;
+
+/*-
+ * #%L
+ * BCO Authentication Test
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openbase.bco.authentication.lib.CachedAuthenticationRemote;
+import org.openbase.bco.authentication.lib.SessionManager;
+import org.openbase.bco.authentication.lib.jp.JPTicketCache;
+import org.openbase.bco.authentication.mock.MockClientStore;
+import org.openbase.jps.core.JPService;
+import org.openbase.jul.exception.CouldNotPerformException;
+import org.openbase.jul.exception.printer.ExceptionPrinter;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test resuming sessions of the session manager from the ticket cache.
+ * This is not inside the session manager tests because the ticket cache has to be enabled.
+ */
+public class TicketCacheTest extends AuthenticationTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        // enable the ticket cache and use the super method for initialization
+        JPService.registerProperty(JPTicketCache.class, true);
+        AuthenticationTest.setUpClass();
+    }
+
+    /**
+     * Test that a session which stays logged in is resumed by a new session manager.
+     *
+     * @throws Exception if something does not work as expected
+     */
+    @Test(timeout = 10000)
+    public void testResumeSession() throws Exception {
+        System.out.println("testResumeSession");
+
+        // login with stay logged in activated and shutdown as done on a restart
+        final SessionManager sessionManager = new SessionManager(new MockClientStore());
+        sessionManager.loginUser(MockClientStore.USER_ID, MockClientStore.USER_PASSWORD, true);
+        final byte[] sessionKey = sessionManager.getSessionKey().getEncoded();
+        sessionManager.shutdown();
+
+        // a new session manager resumes the session
+        final SessionManager resumingSessionManager = new SessionManager(new MockClientStore());
+        resumingSessionManager.loginUser(MockClientStore.USER_ID, MockClientStore.USER_PASSWORD, true);
+        assertTrue("Session has not been resumed", Arrays.equals(sessionKey, resumingSessionManager.getSessionKey().getEncoded()));
+        resumingSessionManager.updateTicketAuthenticatorWrapper(CachedAuthenticationRemote.getRemote().validateClientServerTicket(resumingSessionManager.initializeServiceServerRequest()).get());
+        resumingSessionManager.shutdown();
+
+        // the cached session is not handed out for other credentials
+        final SessionManager otherSessionManager = new SessionManager(new MockClientStore());
+        try {
+            ExceptionPrinter.setBeQuit(true);
+            otherSessionManager.loginUser(MockClientStore.USER_ID, "wrongPassword", true);
+            fail("Session has been resumed with wrong credentials");
+        } catch (CouldNotPerformException ex) {
+            // expected
+        } finally {
+            ExceptionPrinter.setBeQuit(false);
+        }
+        assertFalse(otherSessionManager.isLoggedIn());
+
+        // a logout removes the session from the cache
+        final SessionManager loggingOutSessionManager = new SessionManager(new MockClientStore());
+        loggingOutSessionManager.loginUser(MockClientStore.USER_ID, MockClientStore.USER_PASSWORD, true);
+        assertTrue("Session has not been resumed", Arrays.equals(sessionKey, loggingOutSessionManager.getSessionKey().getEncoded()));
+        loggingOutSessionManager.logout();
+
+        final SessionManager newSessionManager = new SessionManager(new MockClientStore());
+        newSessionManager.loginUser(MockClientStore.USER_ID, MockClientStore.USER_PASSWORD, true);
+        assertFalse("Session has been resumed after a logout", Arrays.equals(sessionKey, newSessionManager.getSessionKey().getEncoded()));
+        newSessionManager.completeLogout();
+    }
+}
@@ -0,0 +1,132 @@
+package org.openbase.bco.authentication.test;
+
+/*-
+ * #%L
+ * BCO Authentication Test
+ * %%
+ * Copyright (C) 2017 - 2021 openbase.org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Lesser Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/lgpl-3.0.html>.
+ * #L%
+ */
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openbase.bco.authentication.lib.TimingWheel;
+import org.openbase.bco.authentication.lib.TokenStore;
+import org.openbase.bco.authentication.lib.jp.JPCredentialsDirectory;
+import org.openbase.bco.authentication.lib.jp.JPResetCredentials;
+import org.openbase.jps.core.JPService;
+import org.openbase.jul.exception.NotAvailableException;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TokenStoreTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        JPService.setupJUnitTestMode();
+        JPService.registerProperty(JPResetCredentials.class);
+        JPService.registerProperty(JPCredentialsDirectory.class);
+    }
+
+    /**
+     * Test if expired tokens are not returned anymore and purged from the store file.
+     *
+     * @throws Exception if something fails.
+     */
+    @Test(timeout = 10000)
+    public void testTokenExpiration() throws Exception {
+        System.out.println("testTokenExpiration");
+
+        final String storeFileName = "expiring_token_store.json";
+        final TokenStore tokenStore = new TokenStore();
+        tokenStore.init(storeFileName);
+
+        tokenStore.addToken("permanent", "token");
+        tokenStore.addToken("expiring", "token", 100, TimeUnit.MILLISECONDS);
+        tokenStore.addToken("lasting", "token", 1, TimeUnit.HOURS);
+        assertEquals("token", tokenStore.getToken("expiring"));
+
+        // expiration is persisted
+        final TokenStore loadingTokenStore = new TokenStore();
+        loadingTokenStore.init(storeFileName);
+        assertEquals(tokenStore.getExpiration("lasting"), loadingTokenStore.getExpiration("lasting"));
+        assertEquals("token", loadingTokenStore.getToken("permanent"));
+
+        Thread.sleep(200);
+        try {
+            tokenStore.getToken("expiring");
+            fail("Expired token has been returned");
+        } catch (NotAvailableException ex) {
+            // expected
+        }
+
+        // wait until the purge task has removed the token
+        while (tokenStore.getExpiredTokenCount() == 0) {
+            Thread.sleep(100);
+        }
+        assertEquals(1, tokenStore.getExpiredTokenCount());
+        assertEquals(2, tokenStore.getLiveTokenCount());
+        assertFalse(tokenStore.hasEntry("expiring"));
+
+        loadingTokenStore.init(storeFileName);
+        assertFalse("Expired token has not been removed from the store file", loadingTokenStore.hasEntry("expiring"));
+        assertTrue(loadingTokenStore.hasEntry("lasting"));
+
+        loadingTokenStore.shutdown();
+        tokenStore.shutdown();
+    }
+
+    /**
+     * Test if the timing wheel expires keys exactly once and not before their deadline,
+     * also for deadlines which are stored in higher levels or beyond the range of the wheel.
+     */
+    @Test
+    public void testTimingWheel() {
+        System.out.println("testTimingWheel");
+
+        final long startTime = 1000;
+        final TimingWheel<Long> timingWheel = new TimingWheel<>(1, TimeUnit.MILLISECONDS, startTime);
+        final long[] deadlines = {startTime, startTime + 1, startTime + 63, startTime + 64, startTime + 65, startTime + 4095,
+                startTime + 4096, startTime + 300000, startTime + (1L << 24) + 17};
+        for (final long deadline : deadlines) {
+            timingWheel.schedule(deadline, deadline);
+        }
+        timingWheel.schedule(-1L, startTime + 10);
+        assertTrue(timingWheel.cancel(-1L));
+        assertEquals(deadlines.length, timingWheel.size());
+
+        final Set<Long> expiredSet = new HashSet<>();
+        long time = startTime;
+        final long endTime = startTime + (1L << 24) + 100;
+        while (time < endTime) {
+            // advance in irregular steps to cover jumps over multiple ticks
+            time += (time % 7) * 13 + 1;
+            final List<Long> expiredList = timingWheel.advance(time);
+            for (final Long deadline : expiredList) {
+                assertTrue("Key[" + deadline + "] expired before its deadline at[" + time + "]", deadline <= time);
+                assertTrue("Key[" + deadline + "] expired twice", expiredSet.add(deadline));
+            }
+        }
+        assertEquals(deadlines.length, expiredSet.size());
+        assertEquals(0, timingWheel.size());
+    }
+}